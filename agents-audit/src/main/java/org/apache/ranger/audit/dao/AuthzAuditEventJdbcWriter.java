@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.entity.AuthzAuditEventDbObj;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+
+/**
+ * Inserts AuthzAuditEvents into xa_access_audit with JDBC batches of prepared
+ * statements, without going through JPA.
+ * <p>
+ * Where the database supports it, rows are inserted multiRowSize at a time with
+ * a multi-row INSERT ... VALUES (...), (...); the remaining rows use a single-row
+ * INSERT. Statements are added to a JDBC batch, which is executed every
+ * batchSize rows. Column values are truncated as configured for
+ * AuthzAuditEventDbObj. The caller owns the connection and the transaction.
+ * <p>
+ * Not thread-safe; prepared statements are cached for the connection last used.
+ */
+public class AuthzAuditEventJdbcWriter {
+	private static final Log LOG = LogFactory.getLog(AuthzAuditEventJdbcWriter.class);
+
+	public enum Dialect {
+		MYSQL(true, 0), POSTGRES(true, 32767), SQLSERVER(true, 2100), ORACLE(false, 0), SQLANYWHERE(false, 0), DERBY(true, 0), H2(true, 0), OTHER(false, 0);
+
+		final boolean isMultiRowSupported;
+		final int     maxParameterCount; // 0: no limit
+
+		Dialect(boolean isMultiRowSupported, int maxParameterCount) {
+			this.isMultiRowSupported = isMultiRowSupported;
+			this.maxParameterCount   = maxParameterCount;
+		}
+
+		public static Dialect fromJdbcUrl(String jdbcUrl) {
+			String url = jdbcUrl == null ? "" : jdbcUrl.toLowerCase();
+
+			if (url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:")) {
+				return MYSQL;
+			} else if (url.startsWith("jdbc:postgresql:")) {
+				return POSTGRES;
+			} else if (url.startsWith("jdbc:sqlserver:") || url.startsWith("jdbc:jtds:sqlserver:")) {
+				return SQLSERVER;
+			} else if (url.startsWith("jdbc:oracle:")) {
+				return ORACLE;
+			} else if (url.startsWith("jdbc:sqlanywhere:")) {
+				return SQLANYWHERE;
+			} else if (url.startsWith("jdbc:derby:")) {
+				return DERBY;
+			} else if (url.startsWith("jdbc:h2:")) {
+				return H2;
+			}
+
+			return OTHER;
+		}
+	}
+
+	static final String   TABLE_NAME         = "xa_access_audit";
+	static final String   ORACLE_ID_SEQUENCE = "XA_ACCESS_AUDIT_SEQ";
+	static final String[] COLUMNS            = {
+		"repo_type", "repo_name", "request_user", "event_time", "access_type", "resource_path", "resource_type",
+		"action", "access_result", "agent_id", "policy_id", "result_reason", "acl_enforcer", "session_id",
+		"client_type", "client_ip", "request_data", "seq_num", "event_count", "event_dur_ms", "tags"
+	};
+
+	private final Dialect dialect;
+	private final int     batchSize;
+	private final int     multiRowSize;
+
+	private Connection        connection    = null;
+	private PreparedStatement singleRowStmt = null;
+	private PreparedStatement multiRowStmt  = null;
+
+	/**
+	 * @param multiRowSize rows per multi-row INSERT; 1 or less to insert a row per statement
+	 */
+	public AuthzAuditEventJdbcWriter(Dialect dialect, int batchSize, int multiRowSize) {
+		int maxMultiRowSize = dialect.maxParameterCount > 0 ? (dialect.maxParameterCount - 1) / COLUMNS.length : Integer.MAX_VALUE;
+
+		if (dialect == Dialect.SQLSERVER) {
+			maxMultiRowSize = Math.min(maxMultiRowSize, 1000); // rows allowed in a VALUES list
+		}
+
+		this.dialect      = dialect;
+		this.batchSize    = Math.max(1, batchSize);
+		this.multiRowSize = dialect.isMultiRowSupported ? Math.max(1, Math.min(multiRowSize, maxMultiRowSize)) : 1;
+
+		LOG.info("AuthzAuditEventJdbcWriter(dialect=" + dialect + ", batchSize=" + this.batchSize + ", multiRowSize=" + this.multiRowSize + ")");
+	}
+
+	public Dialect getDialect() {
+		return dialect;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public int getMultiRowSize() {
+		return multiRowSize;
+	}
+
+	/**
+	 * Adds the events to JDBC batches on the given connection and executes them.
+	 * Does not commit.
+	 */
+	public void write(Connection conn, List<AuthzAuditEvent> events) throws SQLException {
+		prepareStatements(conn);
+
+		int rowsInBatch = 0;
+		int idx         = 0;
+
+		while (idx < events.size()) {
+			int remaining = events.size() - idx;
+
+			if (multiRowSize > 1 && remaining >= multiRowSize) {
+				setParameters(multiRowStmt, events, idx, multiRowSize);
+				multiRowStmt.addBatch();
+
+				idx         += multiRowSize;
+				rowsInBatch += multiRowSize;
+			} else {
+				setParameters(singleRowStmt, events, idx, 1);
+				singleRowStmt.addBatch();
+
+				idx++;
+				rowsInBatch++;
+			}
+
+			if (rowsInBatch >= batchSize) {
+				executeBatches();
+
+				rowsInBatch = 0;
+			}
+		}
+
+		if (rowsInBatch > 0) {
+			executeBatches();
+		}
+	}
+
+	public void close() {
+		closeStatement(singleRowStmt);
+		closeStatement(multiRowStmt);
+
+		singleRowStmt = null;
+		multiRowStmt  = null;
+		connection    = null;
+	}
+
+	String getInsertSql(int rowCount) {
+		StringBuilder sb = new StringBuilder("INSERT INTO ").append(TABLE_NAME).append(" (");
+
+		if (dialect == Dialect.ORACLE) {
+			sb.append("id, ");
+		}
+
+		for (int i = 0; i < COLUMNS.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+
+			sb.append(COLUMNS[i]);
+		}
+
+		sb.append(") VALUES ");
+
+		for (int row = 0; row < rowCount; row++) {
+			if (row > 0) {
+				sb.append(", ");
+			}
+
+			sb.append('(');
+
+			if (dialect == Dialect.ORACLE) {
+				sb.append(ORACLE_ID_SEQUENCE).append(".NEXTVAL, ");
+			}
+
+			for (int i = 0; i < COLUMNS.length; i++) {
+				sb.append(i == 0 ? "?" : ", ?");
+			}
+
+			sb.append(')');
+		}
+
+		return sb.toString();
+	}
+
+	private void prepareStatements(Connection conn) throws SQLException {
+		if (conn == connection && singleRowStmt != null) {
+			return;
+		}
+
+		close();
+
+		singleRowStmt = conn.prepareStatement(getInsertSql(1));
+
+		if (multiRowSize > 1) {
+			multiRowStmt = conn.prepareStatement(getInsertSql(multiRowSize));
+		}
+
+		connection = conn;
+	}
+
+	private void executeBatches() throws SQLException {
+		if (multiRowStmt != null) {
+			multiRowStmt.executeBatch();
+		}
+
+		singleRowStmt.executeBatch();
+	}
+
+	private static void setParameters(PreparedStatement stmt, List<AuthzAuditEvent> events, int fromIdx, int rowCount) throws SQLException {
+		int paramIdx = 1;
+
+		for (int row = 0; row < rowCount; row++) {
+			AuthzAuditEventDbObj obj = new AuthzAuditEventDbObj(events.get(fromIdx + row)); // for UTC time and column truncation
+
+			stmt.setInt(paramIdx++, obj.getRepositoryType());
+			setString(stmt, paramIdx++, obj.getRepositoryName());
+			setString(stmt, paramIdx++, obj.getUser());
+			stmt.setTimestamp(paramIdx++, new Timestamp(obj.getTimeStamp().getTime()));
+			setString(stmt, paramIdx++, obj.getAccessType());
+			setString(stmt, paramIdx++, obj.getResourcePath());
+			setString(stmt, paramIdx++, obj.getResourceType());
+			setString(stmt, paramIdx++, obj.getAction());
+			stmt.setInt(paramIdx++, obj.getAccessResult());
+			setString(stmt, paramIdx++, obj.getAgentId());
+			stmt.setLong(paramIdx++, obj.getPolicyId());
+			setString(stmt, paramIdx++, obj.getResultReason());
+			setString(stmt, paramIdx++, obj.getAclEnforcer());
+			setString(stmt, paramIdx++, obj.getSessionId());
+			setString(stmt, paramIdx++, obj.getClientType());
+			setString(stmt, paramIdx++, obj.getClientIP());
+			setString(stmt, paramIdx++, obj.getRequestData());
+			stmt.setLong(paramIdx++, obj.getSeqNum());
+			stmt.setLong(paramIdx++, obj.getEventCount());
+			stmt.setLong(paramIdx++, obj.getEventDurationMS());
+			setString(stmt, paramIdx++, obj.getTags());
+		}
+	}
+
+	private static void setString(PreparedStatement stmt, int paramIdx, String value) throws SQLException {
+		if (value == null) {
+			stmt.setNull(paramIdx, Types.VARCHAR);
+		} else {
+			stmt.setString(paramIdx, value);
+		}
+	}
+
+	private static void closeStatement(PreparedStatement stmt) {
+		if (stmt != null) {
+			try {
+				stmt.close();
+			} catch (SQLException excp) {
+				LOG.warn("AuthzAuditEventJdbcWriter.closeStatement(): failed", excp);
+			}
+		}
+	}
+}
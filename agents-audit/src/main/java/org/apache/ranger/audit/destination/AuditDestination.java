@@ -24,6 +24,7 @@ import java.util.Properties;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.provider.BaseAuditHandler;
+import org.apache.ranger.audit.queue.AuditQueue;
 
 /**
  * This class needs to be extended by anyone who wants to build custom
@@ -32,6 +33,9 @@ import org.apache.ranger.audit.provider.BaseAuditHandler;
 public abstract class AuditDestination extends BaseAuditHandler {
 	private static final Log logger = LogFactory.getLog(AuditDestination.class);
 
+	// the queue that sends the events to this destination; set by the queue
+	private volatile AuditQueue ownerQueue = null;
+
 	public AuditDestination() {
 		logger.info("AuditDestination() enter");
 	}
@@ -77,5 +81,13 @@ public abstract class AuditDestination extends BaseAuditHandler {
 	public void waitToComplete(long timeout) {
 		
 	}
+
+	public AuditQueue getOwnerQueue() {
+		return ownerQueue;
+	}
+
+	public void setOwnerQueue(AuditQueue ownerQueue) {
+		this.ownerQueue = ownerQueue;
+	}
 	
 }
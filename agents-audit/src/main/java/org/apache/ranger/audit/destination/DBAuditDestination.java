@@ -19,8 +19,12 @@
 
 package org.apache.ranger.audit.destination;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -32,9 +36,11 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Persistence;
 
+import org.apache.ranger.audit.dao.AuthzAuditEventJdbcWriter;
 import org.apache.ranger.audit.dao.DaoManager;
 import org.apache.ranger.audit.entity.AuthzAuditEventDbObj;
 import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.audit.provider.MiscUtil;
 
 public class DBAuditDestination extends AuditDestination {
@@ -47,6 +53,9 @@ public class DBAuditDestination extends AuditDestination {
 	public static final String PROP_DB_USER = "user";
 	public static final String PROP_DB_PASSWORD = "password";
 	public static final String PROP_DB_PASSWORD_ALIAS = "password.alias";
+	public static final String PROP_DB_JDBC_BATCH_ENABLED = "jdbc.batch.enabled";
+	public static final String PROP_DB_JDBC_BATCH_SIZE = "jdbc.batch.size";
+	public static final String PROP_DB_JDBC_MULTIROW_SIZE = "jdbc.multirow.size";
 
 	private EntityManagerFactory entityManagerFactory;
 	private DaoManager daoManager;
@@ -56,6 +65,13 @@ public class DBAuditDestination extends AuditDestination {
 	private String dbUser = null;
 	private String dbPasswordAlias = "auditDBCred";
 
+	// JDBC batch insert, used instead of JPA when enabled
+	private boolean isJdbcBatchEnabled = false;
+	private int jdbcBatchSize = 1000;
+	private int jdbcMultiRowSize = 100;
+	private AuthzAuditEventJdbcWriter jdbcWriter;
+	private Connection jdbcConnection;
+
 	public DBAuditDestination() {
 		logger.info("DBAuditDestination() called");
 	}
@@ -64,6 +80,14 @@ public class DBAuditDestination extends AuditDestination {
 	public void init(Properties props, String propPrefix) {
 		logger.info("init() called");
 		super.init(props, propPrefix);
+
+		isJdbcBatchEnabled = MiscUtil.getBooleanProperty(props, propPrefix
+				+ "." + PROP_DB_JDBC_BATCH_ENABLED, isJdbcBatchEnabled);
+		jdbcBatchSize = MiscUtil.getIntProperty(props, propPrefix + "."
+				+ PROP_DB_JDBC_BATCH_SIZE, jdbcBatchSize);
+		jdbcMultiRowSize = MiscUtil.getIntProperty(props, propPrefix + "."
+				+ PROP_DB_JDBC_MULTIROW_SIZE, jdbcMultiRowSize);
+
 		// Initial connect
 		connect();
 
@@ -84,6 +108,10 @@ public class DBAuditDestination extends AuditDestination {
 		logStatusIfRequired();
 		addTotalCount(events.size());
 		
+		if (isJdbcBatchEnabled) {
+			return logWithJdbcBatch(events); // updates success/failed/deferred counts of the events
+		}
+
 		if (beginTransaction()) {
 			boolean isFailed = false;
 			for (AuditEventBase event : events) {
@@ -111,6 +139,50 @@ public class DBAuditDestination extends AuditDestination {
 		return retValue;
 	}
 
+	private synchronized boolean logWithJdbcBatch(Collection<AuditEventBase> events) {
+		Connection conn = getJdbcConnection();
+
+		if (conn == null) {
+			addDeferredCount(events.size());
+
+			return false;
+		}
+
+		List<AuthzAuditEvent> authzEvents = new ArrayList<AuthzAuditEvent>(events.size());
+
+		for (AuditEventBase event : events) {
+			if (event instanceof AuthzAuditEvent) {
+				authzEvents.add((AuthzAuditEvent) event);
+			} else {
+				addFailedCount(1);
+				logFailedEvent(event, "JDBC batch insert not supported for event type");
+			}
+		}
+
+		try {
+			jdbcWriter.write(conn, authzEvents);
+			conn.commit();
+
+			addSuccessCount(authzEvents.size());
+
+			return true;
+		} catch (Throwable t) {
+			logger.error("Error inserting audit events in JDBC batch. count=" + authzEvents.size(), t);
+
+			try {
+				conn.rollback();
+			} catch (Throwable excp) {
+				logger.warn("DBAuditDestination.logWithJdbcBatch(): rollback failed", excp);
+			}
+
+			cleanUp(); // so that next insert will reconnect
+		}
+
+		addDeferredCount(authzEvents.size());
+
+		return false;
+	}
+
 	@Override
 	public void stop() {
 		cleanUp();
@@ -169,6 +241,11 @@ public class DBAuditDestination extends AuditDestination {
 					+ dbPasswordAlias + ", credFile=" + credFile
 					+ ", usingPassword=" + (dbPassword == null ? "no" : "yes"));
 
+			if (isJdbcBatchEnabled) {
+				connectJdbc(dbPassword);
+				return;
+			}
+
 			Map<String, String> dbProperties = new HashMap<String, String>();
 			dbProperties.put("javax.persistence.jdbc.driver", jdbcDriver);
 			dbProperties.put("javax.persistence.jdbc.url", jdbcURL);
@@ -200,9 +277,57 @@ public class DBAuditDestination extends AuditDestination {
 		}
 	}
 
+	private void connectJdbc(String dbPassword) throws Exception {
+		if (jdbcWriter == null) {
+			jdbcWriter = new AuthzAuditEventJdbcWriter(
+					AuthzAuditEventJdbcWriter.Dialect.fromJdbcUrl(jdbcURL),
+					jdbcBatchSize, jdbcMultiRowSize);
+		}
+
+		Class.forName(jdbcDriver);
+
+		Connection conn = DriverManager.getConnection(jdbcURL, dbUser,
+				dbPassword != null ? dbPassword : "");
+
+		conn.setAutoCommit(false);
+
+		jdbcConnection = conn;
+
+		logger.info("Connected to audit database for JDBC batch insert. dbURL="
+				+ jdbcURL + ", dbUser=" + dbUser);
+	}
+
+	private synchronized Connection getJdbcConnection() {
+		try {
+			if (jdbcConnection == null || jdbcConnection.isClosed()) {
+				connect();
+			}
+		} catch (Throwable t) {
+			logger.error("DBAuditDestination.getJdbcConnection(): failed", t);
+
+			jdbcConnection = null;
+		}
+
+		return jdbcConnection;
+	}
+
 	private synchronized void cleanUp() {
 		logger.info("DBAuditDestination: cleanUp()");
 
+		if (jdbcWriter != null) {
+			jdbcWriter.close();
+		}
+
+		try {
+			if (jdbcConnection != null) {
+				jdbcConnection.close();
+			}
+		} catch (Exception excp) {
+			logger.warn("DBAuditDestination.cleanUp(): failed to close JDBC connection", excp);
+		} finally {
+			jdbcConnection = null;
+		}
+
 		try {
 			if (entityManagerFactory != null && entityManagerFactory.isOpen()) {
 				entityManagerFactory.close();
@@ -0,0 +1,371 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.destination;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.PrivilegedExceptionAction;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.Deflater;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.utils.ColumnarAuditFile;
+import org.apache.ranger.audit.utils.RollingTimeUtil;
+
+/**
+ * Writes audit events to HDFS - or any Hadoop FileSystem, including the local
+ * file system - in the columnar format of ColumnarAuditFile.
+ * <p>
+ * Events are buffered into a row group, which is written, compressed, once it
+ * has rowgroup.size events or its oldest event is older than
+ * rowgroup.max.interval.ms, and on flush/stop/rollover. Only AuthzAuditEvent
+ * is supported.
+ * <p>
+ * Events are counted as success only once their row group is written. A row
+ * group that fails to be written is kept and written again later; while it is
+ * full, log() returns false so that the caller keeps further events.
+ */
+public class HDFSColumnarAuditDestination extends AuditDestination {
+	private static final Log logger = LogFactory.getLog(HDFSColumnarAuditDestination.class);
+
+	public static final String PROP_HDFS_DIR                   = "dir";
+	public static final String PROP_HDFS_SUBDIR                = "subdir";
+	public static final String PROP_HDFS_FILE_NAME_FORMAT      = "filename.format";
+	public static final String PROP_HDFS_ROLLOVER              = "file.rollover.sec";
+	public static final String PROP_HDFS_ROLLOVER_PERIOD       = "file.rollover.period";
+	public static final String PROP_ROW_GROUP_SIZE             = "rowgroup.size";
+	public static final String PROP_ROW_GROUP_MAX_INTERVAL_MS  = "rowgroup.max.interval.ms";
+	public static final String PROP_COMPRESSION_LEVEL          = "compression.level";
+
+	public static final int DEFAULT_ROW_GROUP_SIZE            = 10000;
+	public static final int DEFAULT_ROW_GROUP_MAX_INTERVAL_MS = 60 * 1000;
+
+	int fileRolloverSec = 24 * 60 * 60; // In seconds
+
+	private int rowGroupSize          = DEFAULT_ROW_GROUP_SIZE;
+	private int rowGroupMaxIntervalMs = DEFAULT_ROW_GROUP_MAX_INTERVAL_MS;
+
+	private String logFileNameFormat;
+
+	private String rolloverPeriod;
+
+	boolean initDone = false;
+
+	private String logFolder;
+
+	private ColumnarAuditFile.RowGroupWriter rowGroupWriter = null;
+
+	private FSDataOutputStream ostream = null;
+
+	private String currentFileName;
+
+	private boolean isStopped = false;
+
+	private RollingTimeUtil rollingTimeUtil = null;
+
+	private Date nextRollOverTime = null;
+
+	private boolean rollOverByDuration = false;
+
+	@Override
+	public void init(Properties prop, String propPrefix) {
+		super.init(prop, propPrefix);
+
+		String logFolderProp = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_HDFS_DIR);
+		if (logFolderProp == null || logFolderProp.isEmpty()) {
+			logger.fatal("File destination folder is not configured. Please set "
+					+ propPrefix + "." + PROP_HDFS_DIR + ". name=" + getName());
+			return;
+		}
+
+		String logSubFolder = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_HDFS_SUBDIR);
+		if (logSubFolder == null || logSubFolder.isEmpty()) {
+			logSubFolder = "%app-type%/%time:yyyyMMdd%";
+		}
+
+		logFileNameFormat = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_HDFS_FILE_NAME_FORMAT);
+		fileRolloverSec   = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_HDFS_ROLLOVER, fileRolloverSec);
+
+		if (logFileNameFormat == null || logFileNameFormat.isEmpty()) {
+			logFileNameFormat = "%app-type%_ranger_audit_%hostname%" + ".rcol";
+		}
+
+		rowGroupSize          = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_ROW_GROUP_SIZE, DEFAULT_ROW_GROUP_SIZE);
+		rowGroupMaxIntervalMs = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_ROW_GROUP_MAX_INTERVAL_MS, DEFAULT_ROW_GROUP_MAX_INTERVAL_MS);
+
+		int compressionLevel = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_COMPRESSION_LEVEL, Deflater.DEFAULT_COMPRESSION);
+
+		rowGroupWriter = new ColumnarAuditFile.RowGroupWriter(compressionLevel);
+
+		logFolder = logFolderProp + "/" + logSubFolder;
+		logger.info("logFolder=" + logFolder + ", destName=" + getName());
+		logger.info("logFileNameFormat=" + logFileNameFormat + ", destName=" + getName());
+		logger.info("rowGroupSize=" + rowGroupSize + ", rowGroupMaxIntervalMs=" + rowGroupMaxIntervalMs
+				+ ", compressionLevel=" + compressionLevel + ", destName=" + getName());
+		logger.info("config=" + configProps.toString());
+
+		rolloverPeriod  = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_HDFS_ROLLOVER_PERIOD);
+		rollingTimeUtil = RollingTimeUtil.getInstance();
+
+		// same as HDFSAuditDestination: file.rollover.period is used when set, else file.rollover.sec
+		if (StringUtils.isEmpty(rolloverPeriod)) {
+			rolloverPeriod = rollingTimeUtil.convertRolloverSecondsToRolloverPeriod(fileRolloverSec);
+		}
+
+		try {
+			nextRollOverTime = rollingTimeUtil.computeNextRollingTime(rolloverPeriod);
+		} catch (Exception e) {
+			logger.warn("Rollover by file.rollover.period failed...will be using the file.rollover.sec for hdfs audit file rollover...", e);
+			rollOverByDuration = true;
+			nextRollOverTime   = rollOverByDuration();
+		}
+		initDone = true;
+	}
+
+	@Override
+	synchronized public boolean log(Collection<AuditEventBase> events) {
+		logStatusIfRequired();
+		addTotalCount(events.size());
+
+		if (!initDone) {
+			addDeferredCount(events.size());
+			return false;
+		}
+		if (isStopped) {
+			addDeferredCount(events.size());
+			logError("log() called after stop was requested. name=" + getName());
+			return false;
+		}
+
+		// a row group that failed to be written is retried before more events are buffered
+		if (rowGroupWriter.getRowCount() >= rowGroupSize && !writeRowGroup()) {
+			addDeferredCount(events.size());
+			return false;
+		}
+
+		for (AuditEventBase event : events) {
+			if (event instanceof AuthzAuditEvent) {
+				rowGroupWriter.add((AuthzAuditEvent) event);
+			} else {
+				logger.error("Unsupported audit event type for columnar destination. event=" + event);
+				addFailedCount(1);
+				logFailedEvent(event);
+			}
+		}
+
+		boolean isRowGroupDue = rowGroupWriter.getRowCount() >= rowGroupSize
+				|| (rowGroupWriter.getRowCount() > 0 && System.currentTimeMillis() - rowGroupWriter.getFirstRowAddedTime() >= rowGroupMaxIntervalMs);
+
+		if (isRowGroupDue) {
+			// on failure the events stay buffered, and the row group is written again later
+			writeRowGroup();
+		}
+
+		return true;
+	}
+
+	@Override
+	synchronized public void flush() {
+		logger.info("Flush called. name=" + getName());
+
+		if (rowGroupWriter != null && rowGroupWriter.getRowCount() > 0) {
+			writeRowGroup();
+		}
+
+		if (ostream != null) {
+			try {
+				ostream.hflush();
+				logger.info("Flush HDFS columnar audit logs completed.....");
+			} catch (IOException e) {
+				logger.error("Error on flushing HDFS columnar audit file: " + e.getMessage()
+						+ "\nException will be ignored. name=" + getName() + ", fileName=" + currentFileName);
+			}
+		}
+	}
+
+	@Override
+	public void start() {
+		// Nothing to do here. We will open the file when the first row group is written
+	}
+
+	@Override
+	synchronized public void stop() {
+		if (rowGroupWriter != null && rowGroupWriter.getRowCount() > 0 && !writeRowGroup()) {
+			int rowCount = rowGroupWriter.getRowCount();
+
+			logError("Discarding " + rowCount + " events of the row group not written on stop. name=" + getName());
+			addFailedCount(rowCount);
+			rowGroupWriter.reset();
+		}
+
+		isStopped = true;
+
+		closeFile();
+
+		if (rowGroupWriter != null) {
+			rowGroupWriter.close();
+		}
+
+		logStatus();
+	}
+
+	// Helper methods in this class
+	private boolean writeRowGroup() {
+		final int rowCount = rowGroupWriter.getRowCount();
+
+		try {
+			if (logger.isDebugEnabled()) {
+				logger.debug("UGI=" + MiscUtil.getUGILoginUser() + ". Will write row group of " + rowCount
+						+ " events to HDFS file=" + currentFileName);
+			}
+
+			int len = MiscUtil.executePrivilegedAction(new PrivilegedExceptionAction<Integer>() {
+				@Override
+				public Integer run() throws Exception {
+					FSDataOutputStream out = getLogFileStream();
+
+					return rowGroupWriter.writeTo(out);
+				}
+			});
+
+			logger.info("Wrote HDFS columnar audit row group. Event Size:" + rowCount + ", compressedBytes=" + len);
+
+			addSuccessCount(rowCount);
+		} catch (Throwable t) {
+			// writeTo() resets the row group only after it is written; its events are kept to be written again
+			logError("Error writing row group to log file. Will retry " + rowCount + " events. fileName=" + currentFileName, t);
+
+			// a partially written row group is skipped by readers only at the end of a file; start a new file
+			closeFile();
+
+			return false;
+		}
+
+		return true;
+	}
+
+	synchronized private FSDataOutputStream getLogFileStream() throws Exception {
+		closeFileIfNeeded();
+
+		if (ostream == null) {
+			Date currentTime = new Date();
+			// Create a new file
+			String fileName     = MiscUtil.replaceTokens(logFileNameFormat, currentTime.getTime());
+			String parentFolder = MiscUtil.replaceTokens(logFolder, currentTime.getTime());
+			Configuration conf  = createConfiguration();
+
+			String fullPath    = parentFolder + Path.SEPARATOR + fileName;
+			String defaultPath = fullPath;
+			URI uri = URI.create(fullPath);
+			FileSystem fileSystem = FileSystem.get(uri, conf);
+
+			Path hdfPath = new Path(fullPath);
+			logger.info("Checking whether log file exists. hdfPath=" + fullPath + ", UGI=" + MiscUtil.getUGILoginUser());
+			int i = 0;
+			while (fileSystem.exists(hdfPath)) {
+				i++;
+				int lastDot = defaultPath.lastIndexOf('.');
+				String baseName  = defaultPath.substring(0, lastDot);
+				String extension = defaultPath.substring(lastDot);
+				fullPath = baseName + "." + i + extension;
+				hdfPath  = new Path(fullPath);
+				logger.info("Checking whether log file exists. hdfPath=" + fullPath);
+			}
+			logger.info("Log file doesn't exists. Will create and use it. hdfPath=" + fullPath);
+
+			Path parentPath = hdfPath.getParent();
+			if (parentPath != null && !fileSystem.exists(parentPath)) {
+				fileSystem.mkdirs(parentPath);
+			}
+
+			logger.info("Creating new log file. hdfPath=" + fullPath);
+			ostream = fileSystem.create(hdfPath);
+			ColumnarAuditFile.writeHeader(ostream);
+			currentFileName = fullPath;
+		}
+		return ostream;
+	}
+
+	Configuration createConfiguration() {
+		Configuration conf = new Configuration();
+		for (Map.Entry<String, String> entry : configProps.entrySet()) {
+			String key   = entry.getKey();
+			String value = entry.getValue();
+			// for ease of install config file may contain properties with empty value, skip those
+			if (StringUtils.isNotEmpty(value)) {
+				conf.set(key, value);
+			}
+		}
+		return conf;
+	}
+
+	private void closeFile() {
+		if (ostream != null) {
+			try {
+				ostream.close();
+			} catch (Throwable t) {
+				logger.error("Error on closing log file. Exception will be ignored. name="
+						+ getName() + ", fileName=" + currentFileName);
+			}
+			ostream         = null;
+			currentFileName = null;
+		}
+	}
+
+	private void closeFileIfNeeded() {
+		if (ostream == null) {
+			return;
+		}
+
+		if (System.currentTimeMillis() > nextRollOverTime.getTime()) {
+			logger.info("Closing file. Rolling over. name=" + getName() + ", fileName=" + currentFileName);
+
+			closeFile();
+
+			if (!rollOverByDuration) {
+				try {
+					nextRollOverTime = rollingTimeUtil.computeNextRollingTime(rolloverPeriod);
+				} catch (Exception e) {
+					logger.warn("Rollover by file.rollover.period failed...will be using the file.rollover.sec for hdfs audit file rollover...", e);
+					nextRollOverTime = rollOverByDuration();
+				}
+			} else {
+				nextRollOverTime = rollOverByDuration();
+			}
+		}
+	}
+
+	private Date rollOverByDuration() {
+		long rollOverTime = rollingTimeUtil.computeNextRollingTime(fileRolloverSec, nextRollOverTime);
+		return new Date(rollOverTime);
+	}
+}
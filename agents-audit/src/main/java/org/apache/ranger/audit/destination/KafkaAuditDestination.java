@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.destination;
+
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.model.AuthzAuditEventEnvelope;
+import org.apache.ranger.audit.model.AuthzAuditEventEnvelope.Codec;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+/**
+ * Sends audit events to Kafka in compressed envelopes of up to
+ * envelope.max.events events each; see AuthzAuditEventEnvelope for the format.
+ * <p>
+ * Envelopes of a batch are handed to the producer together, so that they are
+ * batched by the producer, and log() returns once all of them are acknowledged.
+ * If any of them fails, or is not acknowledged within send.timeout.ms, log()
+ * returns false and the queue stashes the batch to its file spool, if enabled;
+ * envelopes of the batch already sent are then sent again when the spool is
+ * drained, so consumers should drop duplicates by eventId.
+ * <p>
+ * Producer properties can be set with the prefix &lt;destination&gt;.config.,
+ * for example xasecure.audit.destination.kafka_envelope.config.linger.ms=50.
+ */
+public class KafkaAuditDestination extends AuditDestination {
+	private static final Log LOG = LogFactory.getLog(KafkaAuditDestination.class);
+
+	public static final String PROP_BROKER_LIST         = "broker_list";
+	public static final String PROP_TOPIC_NAME          = "topic_name";
+	public static final String PROP_ENVELOPE_CODEC      = "envelope.codec";
+	public static final String PROP_ENVELOPE_MAX_EVENTS = "envelope.max.events";
+	public static final String PROP_SEND_TIMEOUT_MS     = "send.timeout.ms";
+
+	public static final String DEFAULT_TOPIC_NAME = "ranger_audits";
+
+	private Producer<byte[], byte[]> producer          = null;
+	private String                   topic             = DEFAULT_TOPIC_NAME;
+	private Codec                    codec             = Codec.GZIP;
+	private int                      maxEnvelopeEvents = 500;
+	private long                     sendTimeoutMs     = 30 * 1000;
+	private final AtomicLong         sentBytes         = new AtomicLong();
+
+	public KafkaAuditDestination() {
+	}
+
+	public KafkaAuditDestination(Producer<byte[], byte[]> producer) {
+		this.producer = producer;
+	}
+
+	@Override
+	public void init(Properties props, String propPrefix) {
+		LOG.info("init() called");
+
+		super.init(props, propPrefix);
+
+		String topicName = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_TOPIC_NAME);
+		String codecName = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_ENVELOPE_CODEC);
+
+		if (topicName != null && !topicName.isEmpty()) {
+			topic = topicName;
+		}
+
+		if (codecName != null && !codecName.isEmpty()) {
+			try {
+				codec = Codec.valueOf(codecName.trim().toUpperCase());
+			} catch (IllegalArgumentException excp) {
+				LOG.error("Invalid envelope codec " + codecName + ". Using " + codec);
+			}
+		}
+
+		maxEnvelopeEvents = Math.max(1, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_ENVELOPE_MAX_EVENTS, maxEnvelopeEvents));
+		sendTimeoutMs     = MiscUtil.getLongProperty(props, propPrefix + "." + PROP_SEND_TIMEOUT_MS, sendTimeoutMs);
+
+		if (producer == null) {
+			String brokerList = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_BROKER_LIST);
+
+			if (brokerList == null || brokerList.isEmpty()) {
+				brokerList = "localhost:9092";
+			}
+
+			final Map<String, Object> kafkaProps = new HashMap<String, Object>();
+
+			kafkaProps.put("bootstrap.servers", brokerList);
+			kafkaProps.put("acks", "1");
+			kafkaProps.put("linger.ms", "50");
+			kafkaProps.putAll(configProps);
+
+			LOG.info("Connecting to Kafka using properties: " + kafkaProps);
+
+			try {
+				producer = MiscUtil.executePrivilegedAction(new PrivilegedAction<Producer<byte[], byte[]>>() {
+					@Override
+					public Producer<byte[], byte[]> run() {
+						return new KafkaProducer<byte[], byte[]>(kafkaProps, new ByteArraySerializer(), new ByteArraySerializer());
+					}
+				});
+			} catch (Throwable t) {
+				LOG.fatal("Error initializing Kafka producer", t);
+			}
+		}
+
+		LOG.info("KafkaAuditDestination: topic=" + topic + ", codec=" + codec + ", maxEnvelopeEvents=" + maxEnvelopeEvents + ", sendTimeoutMs=" + sendTimeoutMs);
+	}
+
+	@Override
+	public boolean log(Collection<AuditEventBase> events) {
+		if (producer == null) {
+			addDeferredCount(events.size());
+			return false;
+		}
+
+		List<AuthzAuditEvent> authzEvents = new ArrayList<AuthzAuditEvent>(events.size());
+
+		for (AuditEventBase event : events) {
+			if (event instanceof AuthzAuditEvent) {
+				AuthzAuditEvent authzEvent = (AuthzAuditEvent) event;
+
+				if (authzEvent.getAgentHostname() == null) {
+					authzEvent.setAgentHostname(MiscUtil.getHostname());
+				}
+
+				if (authzEvent.getLogType() == null) {
+					authzEvent.setLogType("RangerAudit");
+				}
+
+				if (authzEvent.getEventId() == null) {
+					authzEvent.setEventId(MiscUtil.generateUniqueId());
+				}
+
+				authzEvents.add(authzEvent);
+			} else {
+				addFailedCount(1);
+				logFailedEvent(event, "unsupported event type " + event.getClass().getName());
+			}
+		}
+
+		if (authzEvents.isEmpty()) {
+			return true;
+		}
+
+		int                              envelopeCount = (authzEvents.size() + maxEnvelopeEvents - 1) / maxEnvelopeEvents;
+		final CountDownLatch             acks          = new CountDownLatch(envelopeCount);
+		final AtomicReference<Exception> sendError     = new AtomicReference<Exception>();
+
+		Callback callback = new Callback() {
+			@Override
+			public void onCompletion(RecordMetadata metadata, Exception excp) {
+				if (excp != null) {
+					sendError.compareAndSet(null, excp);
+				}
+
+				acks.countDown();
+			}
+		};
+
+		try {
+			for (int i = 0; i < authzEvents.size(); i += maxEnvelopeEvents) {
+				List<AuthzAuditEvent> envelopeEvents = authzEvents.subList(i, Math.min(i + maxEnvelopeEvents, authzEvents.size()));
+				byte[]                envelope       = AuthzAuditEventEnvelope.encode(envelopeEvents, codec);
+
+				send(new ProducerRecord<byte[], byte[]>(topic, envelope), callback);
+
+				sentBytes.addAndGet(envelope.length);
+			}
+
+			if (!acks.await(sendTimeoutMs, TimeUnit.MILLISECONDS)) {
+				sendError.compareAndSet(null, new Exception("no acknowledgement from Kafka in " + sendTimeoutMs + "ms"));
+			}
+		} catch (InterruptedException excp) {
+			Thread.currentThread().interrupt();
+			sendError.compareAndSet(null, excp);
+		} catch (Exception excp) {
+			sendError.compareAndSet(null, excp);
+		}
+
+		Exception excp = sendError.get();
+
+		if (excp != null) {
+			logError("Error sending audit events to Kafka. topic=" + topic + ", events=" + authzEvents.size(), excp);
+			addDeferredCount(authzEvents.size());
+			return false;
+		}
+
+		addSuccessCount(authzEvents.size());
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Sent " + authzEvents.size() + " audit events in " + envelopeCount + " envelopes to Kafka topic " + topic);
+		}
+
+		return true;
+	}
+
+	@Override
+	public boolean logJSON(Collection<String> events) {
+		List<AuditEventBase> eventList = new ArrayList<AuditEventBase>(events.size());
+
+		for (String event : events) {
+			eventList.add(MiscUtil.fromJson(event, AuthzAuditEvent.class));
+		}
+
+		return log(eventList);
+	}
+
+	@Override
+	public void flush() {
+		if (producer != null) {
+			try {
+				MiscUtil.executePrivilegedAction(new PrivilegedAction<Void>() {
+					@Override
+					public Void run() {
+						producer.flush();
+						return null;
+					}
+				});
+			} catch (Throwable t) {
+				LOG.error("Error flushing Kafka producer", t);
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		LOG.info("stop() called. sentBytes=" + sentBytes.get());
+
+		logStatus();
+
+		if (producer != null) {
+			try {
+				MiscUtil.executePrivilegedAction(new PrivilegedAction<Void>() {
+					@Override
+					public Void run() {
+						producer.close();
+						return null;
+					}
+				});
+			} catch (Throwable t) {
+				LOG.error("Error closing Kafka producer", t);
+			}
+
+			producer = null;
+		}
+	}
+
+	/**
+	 * @return size of the envelopes sent to Kafka, in bytes
+	 */
+	public long getSentBytes() {
+		return sentBytes.get();
+	}
+
+	private void send(final ProducerRecord<byte[], byte[]> record, final Callback callback) {
+		MiscUtil.executePrivilegedAction(new PrivilegedAction<Void>() {
+			@Override
+			public Void run() {
+				producer.send(record, callback);
+				return null;
+			}
+		});
+	}
+}
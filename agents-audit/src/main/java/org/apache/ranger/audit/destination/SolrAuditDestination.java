@@ -24,8 +24,10 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.queue.AuditQueue;
 import org.apache.ranger.audit.utils.InMemoryJAASConfiguration;
 import org.apache.ranger.audit.utils.SolrAppUtil;
+import org.apache.ranger.audit.utils.SolrAsyncIndexer;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
 import org.apache.solr.client.solrj.impl.HttpClientUtil;
@@ -52,29 +54,74 @@ public class SolrAuditDestination extends AuditDestination {
 	public static final String PROP_SOLR_ZK = "zookeepers";
 	public static final String PROP_SOLR_COLLECTION = "collection";
 	public static final String PROP_SOLR_FORCE_USE_INMEMORY_JAAS_CONFIG = "force.use.inmemory.jaas.config";
+	public static final String PROP_SOLR_ASYNC_ENABLED = "async.enabled";
+	public static final String PROP_SOLR_ASYNC_BATCH_SIZE = "async.batch.size";
+	public static final String PROP_SOLR_ASYNC_BATCH_INTERVAL_MS = "async.batch.interval.ms";
+	public static final String PROP_SOLR_ASYNC_MAX_INFLIGHT = "async.max.inflight";
+	public static final String PROP_SOLR_ASYNC_MAX_PENDING = "async.max.pending";
+	public static final String PROP_SOLR_ASYNC_OFFER_TIMEOUT_MS = "async.offer.timeout.ms";
+	public static final String PROP_SOLR_ASYNC_RETRY_INTERVAL_MS = "async.retry.interval.ms";
+	public static final String PROP_SOLR_ASYNC_DRAIN_TIMEOUT_MS = "async.drain.timeout.ms";
 
 	public static final String DEFAULT_COLLECTION_NAME = "ranger_audits";
 	public static final String PROP_JAVA_SECURITY_AUTH_LOGIN_CONFIG = "java.security.auth.login.config";
 
 	private volatile SolrClient solrClient = null;
 
+	// when enabled, log() hands the documents to asyncIndexer instead of waiting for Solr
+	private SolrAsyncIndexer asyncIndexer = null;
+	private long asyncOfferTimeoutMs = 1000;
+	private long asyncDrainTimeoutMs = 30 * 1000;
+
 	public SolrAuditDestination() {
 	}
 
+	public SolrAuditDestination(SolrClient solrClient) {
+		this.solrClient = solrClient;
+	}
+
 	@Override
 	public void init(Properties props, String propPrefix) {
 		LOG.info("init() called");
 		super.init(props, propPrefix);
 		init();
 		connect();
+
+		if (MiscUtil.getBooleanProperty(props, propPrefix + "." + PROP_SOLR_ASYNC_ENABLED, false)) {
+			initAsyncIndexer();
+		}
+	}
+
+	@Override
+	public void start() {
+		super.start();
+
+		if (asyncIndexer != null) {
+			asyncIndexer.start();
+		}
 	}
 
 	@Override
 	public void stop() {
+		if (asyncIndexer != null) {
+			asyncIndexer.stop(asyncDrainTimeoutMs);
+		}
 		super.stop();
 		logStatus();
 	}
 
+	@Override
+	public void logStatus() {
+		super.logStatus();
+
+		if (asyncIndexer != null) {
+			LOG.info("Solr async indexer status: name=" + getName()
+					+ ", pending=" + asyncIndexer.getPendingCount()
+					+ ", inFlight=" + asyncIndexer.getInFlightCount()
+					+ ", " + asyncIndexer.getAndResetLatencyStats());
+		}
+	}
+
 	synchronized void connect() {
 		SolrClient me = solrClient;
 		if (me == null) {
@@ -214,13 +261,24 @@ public class SolrAuditDestination extends AuditDestination {
 				}
 			}
 
-			final Collection<SolrInputDocument> docs = new ArrayList<SolrInputDocument>();
+			final List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>();
 			for (AuditEventBase event : events) {
 				AuthzAuditEvent authzEvent = (AuthzAuditEvent) event;
 				// Convert AuditEventBase to Solr document
 				SolrInputDocument document = toSolrDoc(authzEvent);
 				docs.add(document);
 			}
+
+			if (asyncIndexer != null) {
+				// success/failure counts are updated when the batches are sent
+				ret = asyncIndexer.offer(new ArrayList<AuditEventBase>(events), docs, asyncOfferTimeoutMs);
+				if (!ret) {
+					// backpressure: let the queue spool or retry these events
+					addDeferredCount(events.size());
+				}
+				return ret;
+			}
+
 			try {
 				final UpdateResponse response = SolrAppUtil.addDocsToSolr(solrClient, docs);
 
@@ -249,7 +307,72 @@ public class SolrAuditDestination extends AuditDestination {
 	 */
 	@Override
 	public void flush() {
+		if (asyncIndexer != null) {
+			try {
+				asyncIndexer.flush(asyncDrainTimeoutMs);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void initAsyncIndexer() {
+		int batchSize = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_ASYNC_BATCH_SIZE, 1000);
+		int batchIntervalMs = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_ASYNC_BATCH_INTERVAL_MS, 1000);
+		int maxInFlight = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_ASYNC_MAX_INFLIGHT, 4);
+		int maxPending = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_ASYNC_MAX_PENDING, 10 * batchSize);
+		int retryIntervalMs = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_ASYNC_RETRY_INTERVAL_MS, 5000);
+
+		asyncOfferTimeoutMs = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_ASYNC_OFFER_TIMEOUT_MS, (int) asyncOfferTimeoutMs);
+		asyncDrainTimeoutMs = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_ASYNC_DRAIN_TIMEOUT_MS, (int) asyncDrainTimeoutMs);
+
+		SolrAsyncIndexer.BatchSender sender = new SolrAsyncIndexer.BatchSender() {
+			@Override
+			public void send(List<SolrInputDocument> docs) throws Exception {
+				SolrClient client = solrClient;
+				if (client == null) {
+					connect();
+					client = solrClient;
+					if (client == null) {
+						throw new IllegalStateException("Solr client is not initialized");
+					}
+				}
+
+				UpdateResponse response = SolrAppUtil.addDocsToSolr(client, docs);
+				if (response.getStatus() != 0) {
+					throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, response.toString());
+				}
+			}
+		};
+
+		SolrAsyncIndexer.BatchListener listener = new SolrAsyncIndexer.BatchListener() {
+			@Override
+			public void onSuccess(List<AuditEventBase> events, long latencyMs) {
+				addSuccessCount(events.size());
+			}
+
+			@Override
+			public void onFailure(List<AuditEventBase> events, Throwable excp) {
+				AuditQueue ownerQueue = getOwnerQueue();
+
+				// log() already returned true for these events, so hand them back to the queue's file spool to be sent again
+				if (ownerQueue != null && ownerQueue.stashUndelivered(events)) {
+					addDeferredCount(events.size());
+					LOG.warn("Audit batch not sent to Solr; stashed to file spool. name=" + getName() + ", events=" + events.size()
+							+ ", error=" + (excp != null ? excp.toString() : "not sent before shutdown"));
+					return;
+				}
+
+				addFailedCount(events.size());
+				if (excp != null) {
+					logFailedEvent(events, excp);
+				} else {
+					logFailedEvent(events, "not sent to Solr before shutdown");
+				}
+			}
+		};
 
+		asyncIndexer = new SolrAsyncIndexer(getName(), sender, listener, batchSize, batchIntervalMs, maxInFlight, maxPending, retryIntervalMs);
 	}
 
 	SolrInputDocument toSolrDoc(AuthzAuditEvent auditEvent) {
@@ -0,0 +1,416 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary envelope of a batch of AuthzAuditEvent.
+ * <p>
+ * An envelope starts with a 4 byte header: the magic bytes 'R' 'A', the schema
+ * version and the codec used to compress the rest. That has the number of
+ * events, followed by the fields of each event in declaration order; numbers are
+ * written as zig-zag varints and the event time as the delta from the previous
+ * event. Strings are dictionary-encoded within the envelope: the first
+ * occurrence of a string is written inline, and later ones as its index, so the
+ * repeated repository, cluster, agent host and user of a batch cost a byte or two.
+ */
+public final class AuthzAuditEventEnvelope {
+	public static final byte SCHEMA_VERSION = 1;
+
+	private static final byte MAGIC_0 = 'R';
+	private static final byte MAGIC_1 = 'A';
+
+	// string tags; a tag >= STRING_REF is STRING_REF + dictionary index
+	private static final int STRING_NULL    = 0;
+	private static final int STRING_LITERAL = 1;
+	private static final int STRING_REF     = 2;
+
+	public enum Codec {
+		NONE((byte) 0), DEFLATE((byte) 1), GZIP((byte) 2);
+
+		private final byte id;
+
+		Codec(byte id) {
+			this.id = id;
+		}
+
+		public static Codec fromId(byte id) {
+			for (Codec codec : values()) {
+				if (codec.id == id) {
+					return codec;
+				}
+			}
+
+			return null;
+		}
+	}
+
+	private AuthzAuditEventEnvelope() { }
+
+	public static byte[] encode(Collection<AuthzAuditEvent> events, Codec codec) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + events.size() * 64);
+
+		bytes.write(MAGIC_0);
+		bytes.write(MAGIC_1);
+		bytes.write(SCHEMA_VERSION);
+		bytes.write(codec.id);
+
+		OutputStream out;
+		Deflater     deflater = null;
+
+		switch (codec) {
+			case DEFLATE:
+				deflater = new Deflater(Deflater.BEST_SPEED);
+				out      = new DeflaterOutputStream(bytes, deflater, 8 * 1024);
+				break;
+			case GZIP:
+				out = new GZIPOutputStream(bytes, 8 * 1024);
+				break;
+			default:
+				out = bytes;
+				break;
+		}
+
+		try {
+			Writer writer = new Writer(out);
+
+			writer.writeLong(events.size());
+
+			for (AuthzAuditEvent event : events) {
+				writer.write(event);
+			}
+
+			out.close();
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+
+		return bytes.toByteArray();
+	}
+
+	public static List<AuthzAuditEvent> decode(byte[] envelope) throws IOException {
+		if (envelope == null || envelope.length < 4 || envelope[0] != MAGIC_0 || envelope[1] != MAGIC_1) {
+			throw new IOException("not an audit event envelope");
+		}
+
+		if (envelope[2] != SCHEMA_VERSION) {
+			throw new IOException("unsupported audit event envelope schema version " + envelope[2]);
+		}
+
+		Codec codec = Codec.fromId(envelope[3]);
+
+		if (codec == null) {
+			throw new IOException("unsupported audit event envelope codec " + envelope[3]);
+		}
+
+		InputStream in       = new ByteArrayInputStream(envelope, 4, envelope.length - 4);
+		Inflater    inflater = null;
+
+		switch (codec) {
+			case DEFLATE:
+				inflater = new Inflater();
+				in       = new InflaterInputStream(in, inflater, 8 * 1024);
+				break;
+			case GZIP:
+				in = new GZIPInputStream(in, 8 * 1024);
+				break;
+			default:
+				break;
+		}
+
+		try {
+			Reader                reader = new Reader(in);
+			int                   count  = (int) reader.readLong();
+			List<AuthzAuditEvent> ret    = new ArrayList<AuthzAuditEvent>(count);
+
+			for (int i = 0; i < count; i++) {
+				ret.add(reader.read());
+			}
+
+			return ret;
+		} finally {
+			in.close();
+
+			if (inflater != null) {
+				inflater.end();
+			}
+		}
+	}
+
+	private static class Writer {
+		private final OutputStream         out;
+		private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+		private final byte[]               buffer     = new byte[10];
+		private long                       prevTimeMs = 0;
+
+		Writer(OutputStream out) {
+			this.out = out;
+		}
+
+		void write(AuthzAuditEvent event) throws IOException {
+			writeLong(event.getRepositoryType());
+			writeString(event.getRepositoryName());
+			writeString(event.getUser());
+			writeDate(event.getEventTime());
+			writeString(event.getAccessType());
+			writeString(event.getResourcePath());
+			writeString(event.getResourceType());
+			writeString(event.getAction());
+			writeLong(event.getAccessResult());
+			writeString(event.getAgentId());
+			writeLong(event.getPolicyId());
+			writeString(event.getResultReason());
+			writeString(event.getAclEnforcer());
+			writeString(event.getSessionId());
+			writeString(event.getClientType());
+			writeString(event.getClientIP());
+			writeString(event.getRequestData());
+			writeString(event.getAgentHostname());
+			writeString(event.getLogType());
+			writeString(event.getEventId());
+			writeLong(event.getSeqNum());
+			writeLong(event.getEventCount());
+			writeLong(event.getEventDurationMS());
+			writeTags(event.getTags());
+			writeString(event.getAdditionalInfo());
+			writeString(event.getClusterName());
+		}
+
+		void writeLong(long value) throws IOException {
+			writeVarint((value << 1) ^ (value >> 63));
+		}
+
+		void writeString(String value) throws IOException {
+			if (value == null) {
+				writeVarint(STRING_NULL);
+			} else {
+				Integer index = dictionary.get(value);
+
+				if (index != null) {
+					writeVarint(STRING_REF + (long) index);
+				} else {
+					byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+
+					writeVarint(STRING_LITERAL);
+					writeVarint(utf8.length);
+					out.write(utf8);
+
+					dictionary.put(value, dictionary.size());
+				}
+			}
+		}
+
+		void writeDate(Date value) throws IOException {
+			if (value == null) {
+				writeVarint(0);
+			} else {
+				long delta = value.getTime() - prevTimeMs;
+
+				writeVarint(((delta << 1) ^ (delta >> 63)) + 1);
+
+				prevTimeMs = value.getTime();
+			}
+		}
+
+		void writeTags(Set<String> tags) throws IOException {
+			if (tags == null) {
+				writeVarint(0);
+			} else {
+				writeVarint(tags.size() + 1L);
+
+				for (String tag : tags) {
+					writeString(tag);
+				}
+			}
+		}
+
+		void writeVarint(long value) throws IOException {
+			int len = 0;
+
+			while ((value & ~0x7FL) != 0) {
+				buffer[len++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+
+			buffer[len++] = (byte) value;
+
+			out.write(buffer, 0, len);
+		}
+	}
+
+	private static class Reader {
+		private final InputStream  in;
+		private final List<String> dictionary = new ArrayList<String>();
+		private long               prevTimeMs = 0;
+
+		Reader(InputStream in) {
+			this.in = in;
+		}
+
+		AuthzAuditEvent read() throws IOException {
+			AuthzAuditEvent ret = new AuthzAuditEvent();
+
+			ret.setRepositoryType((int) readLong());
+			ret.setRepositoryName(readString());
+			ret.setUser(readString());
+			ret.setEventTime(readDate());
+			ret.setAccessType(readString());
+			ret.setResourcePath(readString());
+			ret.setResourceType(readString());
+			ret.setAction(readString());
+			ret.setAccessResult((short) readLong());
+			ret.setAgentId(readString());
+			ret.setPolicyId(readLong());
+			ret.setResultReason(readString());
+			ret.setAclEnforcer(readString());
+			ret.setSessionId(readString());
+			ret.setClientType(readString());
+			ret.setClientIP(readString());
+			ret.setRequestData(readString());
+			ret.setAgentHostname(readString());
+			ret.setLogType(readString());
+			ret.setEventId(readString());
+			ret.setSeqNum(readLong());
+			ret.setEventCount(readLong());
+			ret.setEventDurationMS(readLong());
+			ret.setTags(readTags());
+			ret.setAdditionalInfo(readString());
+			ret.setClusterName(readString());
+
+			return ret;
+		}
+
+		long readLong() throws IOException {
+			long value = readVarint();
+
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		String readString() throws IOException {
+			long tag = readVarint();
+
+			if (tag == STRING_NULL) {
+				return null;
+			} else if (tag == STRING_LITERAL) {
+				byte[] utf8 = new byte[(int) readVarint()];
+
+				readFully(utf8);
+
+				String ret = new String(utf8, StandardCharsets.UTF_8);
+
+				dictionary.add(ret);
+
+				return ret;
+			} else {
+				long index = tag - STRING_REF;
+
+				if (index >= dictionary.size()) {
+					throw new IOException("invalid string reference " + index + " in audit event envelope");
+				}
+
+				return dictionary.get((int) index);
+			}
+		}
+
+		Date readDate() throws IOException {
+			long value = readVarint();
+
+			if (value == 0) {
+				return null;
+			}
+
+			value -= 1;
+			prevTimeMs += (value >>> 1) ^ -(value & 1);
+
+			return new Date(prevTimeMs);
+		}
+
+		Set<String> readTags() throws IOException {
+			long count = readVarint();
+
+			if (count == 0) {
+				return null;
+			}
+
+			Set<String> ret = new HashSet<String>();
+
+			for (long i = 1; i < count; i++) {
+				ret.add(readString());
+			}
+
+			return ret;
+		}
+
+		long readVarint() throws IOException {
+			long ret = 0;
+
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = in.read();
+
+				if (b < 0) {
+					throw new EOFException("truncated audit event envelope");
+				}
+
+				ret |= (long) (b & 0x7F) << shift;
+
+				if ((b & 0x80) == 0) {
+					return ret;
+				}
+			}
+
+			throw new IOException("malformed varint in audit event envelope");
+		}
+
+		void readFully(byte[] buf) throws IOException {
+			for (int off = 0; off < buf.length; ) {
+				int n = in.read(buf, off, buf.length - off);
+
+				if (n < 0) {
+					throw new EOFException("truncated audit event envelope");
+				}
+
+				off += n;
+			}
+		}
+	}
+}
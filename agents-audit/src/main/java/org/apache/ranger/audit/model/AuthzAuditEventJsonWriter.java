@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Writes AuthzAuditEvent as JSON without reflection, into a reusable per-thread buffer.
+ * <p>
+ * The output is identical to that of the Gson instance in MiscUtil: fields in
+ * declaration order with their @SerializedName, null fields left out, dates in
+ * "yyyy-MM-dd HH:mm:ss.SSS" format in the default time zone, and strings
+ * escaped the way Gson does, including HTML-safe escaping. Only AuthzAuditEvent
+ * itself is supported; subclasses may add fields, hence should be written with Gson.
+ */
+public final class AuthzAuditEventJsonWriter {
+	public static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+
+	private static final int    MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+	private static final char[] HEX_DIGITS               = "0123456789abcdef".toCharArray();
+	private static final long   MILLIS_PER_DAY           = 24L * 60 * 60 * 1000;
+
+	// same as the time zone of SimpleDateFormat created by Gson, when MiscUtil is loaded
+	private static final TimeZone TIME_ZONE = TimeZone.getDefault();
+
+	private static final ThreadLocal<StringBuilder> CHAR_BUFFER = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(1024);
+		}
+	};
+
+	private static final ThreadLocal<byte[]> BYTE_BUFFER = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[4 * 1024];
+		}
+	};
+
+	private AuthzAuditEventJsonWriter() { }
+
+	public static boolean isSupported(Object obj) {
+		return obj != null && obj.getClass() == AuthzAuditEvent.class;
+	}
+
+	public static String toJson(AuthzAuditEvent event) {
+		StringBuilder sb = getCharBuffer();
+
+		write(event, sb);
+
+		return sb.toString();
+	}
+
+	/*
+	 * Writes UTF-8 encoded JSON of the event to the stream
+	 */
+	public static void writeTo(AuthzAuditEvent event, OutputStream out) throws IOException {
+		StringBuilder sb = getCharBuffer();
+
+		write(event, sb);
+
+		byte[] bytes = BYTE_BUFFER.get();
+		int    len   = 0;
+
+		for (int i = 0; i < sb.length(); i++) {
+			if (len + 4 > bytes.length) {
+				out.write(bytes, 0, len);
+				len = 0;
+			}
+
+			char c = sb.charAt(i);
+
+			if (c < 0x80) {
+				bytes[len++] = (byte) c;
+			} else if (c < 0x800) {
+				bytes[len++] = (byte) (0xc0 | (c >> 6));
+				bytes[len++] = (byte) (0x80 | (c & 0x3f));
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < sb.length() && Character.isLowSurrogate(sb.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, sb.charAt(++i));
+
+					bytes[len++] = (byte) (0xf0 | (codePoint >> 18));
+					bytes[len++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+					bytes[len++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+					bytes[len++] = (byte) (0x80 | (codePoint & 0x3f));
+				} else { // unpaired surrogate: replaced with '?', same as String.getBytes()
+					bytes[len++] = (byte) '?';
+				}
+			} else {
+				bytes[len++] = (byte) (0xe0 | (c >> 12));
+				bytes[len++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				bytes[len++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+
+		if (len > 0) {
+			out.write(bytes, 0, len);
+		}
+	}
+
+	public static void write(AuthzAuditEvent event, StringBuilder sb) {
+		sb.append("{\"repoType\":").append(event.repositoryType);
+		appendField(sb, "repo", event.repositoryName);
+		appendField(sb, "reqUser", event.user);
+		appendField(sb, "evtTime", event.eventTime);
+		appendField(sb, "access", event.accessType);
+		appendField(sb, "resource", event.resourcePath);
+		appendField(sb, "resType", event.resourceType);
+		appendField(sb, "action", event.action);
+		sb.append(",\"result\":").append(event.accessResult);
+		appendField(sb, "agent", event.agentId);
+		sb.append(",\"policy\":").append(event.policyId);
+		appendField(sb, "reason", event.resultReason);
+		appendField(sb, "enforcer", event.aclEnforcer);
+		appendField(sb, "sess", event.sessionId);
+		appendField(sb, "cliType", event.clientType);
+		appendField(sb, "cliIP", event.clientIP);
+		appendField(sb, "reqData", event.requestData);
+		appendField(sb, "agentHost", event.agentHostname);
+		appendField(sb, "logType", event.logType);
+		appendField(sb, "id", event.eventId);
+		sb.append(",\"seq_num\":").append(event.seqNum);
+		sb.append(",\"event_count\":").append(event.eventCount);
+		sb.append(",\"event_dur_ms\":").append(event.eventDurationMS);
+
+		if (event.tags != null) {
+			sb.append(",\"tags\":[");
+
+			boolean isFirst = true;
+
+			for (String tag : event.tags) {
+				if (!isFirst) {
+					sb.append(',');
+				}
+
+				if (tag == null) {
+					sb.append("null");
+				} else {
+					appendString(sb, tag);
+				}
+
+				isFirst = false;
+			}
+
+			sb.append(']');
+		}
+
+		appendField(sb, "additional_info", event.additionalInfo);
+		appendField(sb, "cluster_name", event.clusterName);
+		sb.append('}');
+	}
+
+	private static StringBuilder getCharBuffer() {
+		StringBuilder ret = CHAR_BUFFER.get();
+
+		if (ret.capacity() > MAX_RETAINED_BUFFER_SIZE) { // don't hold on to a large buffer after an unusually large event
+			ret = new StringBuilder(1024);
+
+			CHAR_BUFFER.set(ret);
+		} else {
+			ret.setLength(0);
+		}
+
+		return ret;
+	}
+
+	private static void appendField(StringBuilder sb, String name, String value) {
+		if (value != null) {
+			sb.append(",\"").append(name).append("\":");
+			appendString(sb, value);
+		}
+	}
+
+	private static void appendField(StringBuilder sb, String name, Date value) {
+		if (value != null) {
+			sb.append(",\"").append(name).append("\":\"");
+			appendDate(sb, value.getTime());
+			sb.append('"');
+		}
+	}
+
+	/*
+	 * same escaping as com.google.gson.stream.JsonWriter with htmlSafe=true
+	 */
+	private static void appendString(StringBuilder sb, String value) {
+		sb.append('"');
+
+		int last   = 0;
+		int length = value.length();
+
+		for (int i = 0; i < length; i++) {
+			char   c           = value.charAt(i);
+			String replacement = null;
+
+			if (c < 0x20) {
+				switch (c) {
+					case '\t': replacement = "\\t"; break;
+					case '\b': replacement = "\\b"; break;
+					case '\n': replacement = "\\n"; break;
+					case '\r': replacement = "\\r"; break;
+					case '\f': replacement = "\\f"; break;
+					default:   break;
+				}
+
+				if (replacement == null) {
+					if (last < i) {
+						sb.append(value, last, i);
+					}
+
+					appendUnicodeEscape(sb, c);
+					last = i + 1;
+
+					continue;
+				}
+			} else {
+				switch (c) {
+					case '"':      replacement = "\\\""; break;
+					case '\\':     replacement = "\\\\"; break;
+					case '<':      replacement = "\\u003c"; break;
+					case '>':      replacement = "\\u003e"; break;
+					case '&':      replacement = "\\u0026"; break;
+					case '=':      replacement = "\\u003d"; break;
+					case '\'':     replacement = "\\u0027"; break;
+					case '\u2028': replacement = "\\u2028"; break;
+					case '\u2029': replacement = "\\u2029"; break;
+					default:       break;
+				}
+
+				if (replacement == null) {
+					continue;
+				}
+			}
+
+			if (last < i) {
+				sb.append(value, last, i);
+			}
+
+			sb.append(replacement);
+			last = i + 1;
+		}
+
+		if (last < length) {
+			sb.append(value, last, length);
+		}
+
+		sb.append('"');
+	}
+
+	private static void appendUnicodeEscape(StringBuilder sb, char c) {
+		sb.append("\\u")
+		  .append(HEX_DIGITS[(c >> 12) & 0xf])
+		  .append(HEX_DIGITS[(c >> 8) & 0xf])
+		  .append(HEX_DIGITS[(c >> 4) & 0xf])
+		  .append(HEX_DIGITS[c & 0xf]);
+	}
+
+	/*
+	 * formats the time as yyyy-MM-dd HH:mm:ss.SSS in TIME_ZONE, without allocating. Times outside years 1970-9999 are
+	 * formatted with SimpleDateFormat, to match its handling of such years
+	 */
+	static void appendDate(StringBuilder sb, long time) {
+		long localTime = time + TIME_ZONE.getOffset(time);
+		long days      = Math.floorDiv(localTime, MILLIS_PER_DAY);
+		long millis    = localTime - days * MILLIS_PER_DAY;
+
+		// civil date from days since 1970-01-01, in proleptic Gregorian calendar
+		long z     = days + 719468;
+		long era   = Math.floorDiv(z, 146097);
+		long doe   = z - era * 146097;
+		long yoe   = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long doy   = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		long mp    = (5 * doy + 2) / 153;
+		long day   = doy - (153 * mp + 2) / 5 + 1;
+		long month = mp < 10 ? mp + 3 : mp - 9;
+		long year  = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+		if (year < 1970 || year > 9999) {
+			SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT, Locale.US);
+
+			dateFormat.setTimeZone(TIME_ZONE);
+			sb.append(dateFormat.format(new Date(time)));
+
+			return;
+		}
+
+		int millisOfDay = (int) millis;
+
+		appendDigits(sb, (int) year, 4);
+		sb.append('-');
+		appendDigits(sb, (int) month, 2);
+		sb.append('-');
+		appendDigits(sb, (int) day, 2);
+		sb.append(' ');
+		appendDigits(sb, millisOfDay / 3600000, 2);
+		sb.append(':');
+		appendDigits(sb, (millisOfDay / 60000) % 60, 2);
+		sb.append(':');
+		appendDigits(sb, (millisOfDay / 1000) % 60, 2);
+		sb.append('.');
+		appendDigits(sb, millisOfDay % 1000, 3);
+	}
+
+	private static void appendDigits(StringBuilder sb, int value, int width) {
+		for (int divisor = width == 4 ? 1000 : (width == 3 ? 100 : 10); divisor > 0; divisor /= 10) {
+			sb.append((char) ('0' + (value / divisor) % 10));
+		}
+	}
+}
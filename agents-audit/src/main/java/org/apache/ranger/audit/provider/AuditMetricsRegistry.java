@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.provider;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.utils.AuditHistogram;
+import org.apache.ranger.audit.utils.AuditRateMeter;
+
+/**
+ * Metrics of the audit handlers (queues and destinations) of the process,
+ * published as the "Metrics" attribute of the MBean
+ * org.apache.ranger.audit:type=AuditMetrics, and available to plugin hosts via
+ * getSnapshot().
+ * <p>
+ * Metric names are prefixed with the name of the handler; for example
+ * hiveServer2.async.multi_dest.batch.solr.write.latency.us.p99 is the 99th
+ * percentile of the time taken to write a batch to Solr, in microseconds.
+ * Counts and histograms are cumulative since the handler was initialized.
+ */
+public class AuditMetricsRegistry implements AuditMetricsRegistryMXBean {
+	private static final Log LOG = LogFactory.getLog(AuditMetricsRegistry.class);
+
+	public static final String MBEAN_NAME = "org.apache.ranger.audit:type=AuditMetrics";
+
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	private final Map<BaseAuditHandler, Boolean> handlers               = new WeakHashMap<BaseAuditHandler, Boolean>();
+	private final AuditHistogram                 serializationLatencyUs = new AuditHistogram();
+
+	private static class RegistryHolder {
+		static final AuditMetricsRegistry INSTANCE = new AuditMetricsRegistry();
+
+		static {
+			registerMBean(INSTANCE);
+		}
+	}
+
+	public static AuditMetricsRegistry getInstance() {
+		return RegistryHolder.INSTANCE;
+	}
+
+	AuditMetricsRegistry() {
+	}
+
+	public void register(BaseAuditHandler handler) {
+		synchronized (handlers) {
+			handlers.put(handler, Boolean.TRUE);
+		}
+	}
+
+	public void unregister(BaseAuditHandler handler) {
+		synchronized (handlers) {
+			handlers.remove(handler);
+		}
+	}
+
+	/**
+	 * @return time taken to serialize audit events to JSON, in microseconds
+	 */
+	public AuditHistogram getSerializationLatency() {
+		return serializationLatencyUs;
+	}
+
+	@Override
+	public Map<String, Long> getMetrics() {
+		return getSnapshot();
+	}
+
+	public SortedMap<String, Long> getSnapshot() {
+		SortedMap<String, Long> ret = new TreeMap<String, Long>();
+		List<BaseAuditHandler>  handlerList;
+
+		synchronized (handlers) {
+			handlerList = new ArrayList<BaseAuditHandler>(handlers.keySet());
+		}
+
+		for (BaseAuditHandler handler : handlerList) {
+			String prefix = handler.getName();
+
+			if (ret.containsKey(prefix + ".events.total")) {
+				prefix = prefix + "#" + Integer.toHexString(System.identityHashCode(handler));
+			}
+
+			ret.put(prefix + ".events.total", handler.getTotalCount());
+			ret.put(prefix + ".events.success", handler.getTotalSuccessCount());
+			ret.put(prefix + ".events.failed", handler.getTotalFailedCount());
+			ret.put(prefix + ".events.stashed", handler.getTotalStashedCount());
+			ret.put(prefix + ".events.deferred", handler.getTotalDeferredCount());
+
+			int queueSize = handler.getQueueSize();
+
+			if (queueSize >= 0) {
+				ret.put(prefix + ".queue.depth", (long) queueSize);
+			}
+
+			addRate(ret, prefix + ".enqueue", handler.getEnqueueRate());
+			addRate(ret, prefix + ".dequeue", handler.getDequeueRate());
+			addHistogram(ret, prefix + ".batch.size", handler.getBatchSizes());
+			addHistogram(ret, prefix + ".queue.wait.ms", handler.getQueueWaitLatency());
+			addHistogram(ret, prefix + ".write.latency.us", handler.getWriteLatency());
+			addHistogram(ret, prefix + ".spool.latency.us", handler.getSpoolLatency());
+		}
+
+		addHistogram(ret, "serialization.latency.us", serializationLatencyUs);
+
+		return Collections.unmodifiableSortedMap(ret);
+	}
+
+	private static void addRate(Map<String, Long> metrics, String prefix, AuditRateMeter meter) {
+		if (meter.getCount() > 0) {
+			metrics.put(prefix + ".count", meter.getCount());
+			metrics.put(prefix + ".rate.1m", Math.round(meter.getOneMinuteRate()));
+		}
+	}
+
+	private static void addHistogram(Map<String, Long> metrics, String prefix, AuditHistogram histogram) {
+		if (histogram.getCount() > 0) {
+			metrics.put(prefix + ".count", histogram.getCount());
+			metrics.put(prefix + ".mean", histogram.getMean());
+			metrics.put(prefix + ".max", histogram.getMax());
+
+			for (double percentile : PERCENTILES) {
+				String name = percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile).replace(".", "");
+
+				metrics.put(prefix + ".p" + name, histogram.getValueAtPercentile(percentile));
+			}
+		}
+	}
+
+	private static void registerMBean(AuditMetricsRegistry registry) {
+		try {
+			MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+
+			mbeanServer.registerMBean(registry, new ObjectName(MBEAN_NAME));
+
+			LOG.info("Registered audit metrics MBean " + MBEAN_NAME);
+		} catch (InstanceAlreadyExistsException excp) {
+			// another plugin, in a different classloader, registered its metrics first
+			LOG.info("Audit metrics MBean " + MBEAN_NAME + " is already registered. Metrics of this classloader are available via getSnapshot()");
+		} catch (Throwable excp) {
+			LOG.warn("Failed to register audit metrics MBean " + MBEAN_NAME, excp);
+		}
+	}
+}
@@ -31,6 +31,8 @@ import org.apache.hadoop.util.ShutdownHookManager;
 import org.apache.ranger.audit.destination.DBAuditDestination;
 import org.apache.ranger.audit.destination.FileAuditDestination;
 import org.apache.ranger.audit.destination.HDFSAuditDestination;
+import org.apache.ranger.audit.destination.HDFSColumnarAuditDestination;
+import org.apache.ranger.audit.destination.KafkaAuditDestination;
 import org.apache.ranger.audit.destination.Log4JAuditDestination;
 import org.apache.ranger.audit.destination.SolrAuditDestination;
 import org.apache.ranger.audit.provider.hdfs.HdfsAuditProvider;
@@ -442,10 +444,14 @@ public class AuditProviderFactory {
 				provider = new FileAuditDestination();
 			} else if (providerName.equalsIgnoreCase("hdfs")) {
 				provider = new HDFSAuditDestination();
+			} else if (providerName.equalsIgnoreCase("hdfs_columnar")) {
+				provider = new HDFSColumnarAuditDestination();
 			} else if (providerName.equals("solr")) {
 				provider = new SolrAuditDestination();
 			} else if (providerName.equals("kafka")) {
 				provider = new KafkaAuditProvider();
+			} else if (providerName.equals("kafka_envelope")) {
+				provider = new KafkaAuditDestination();
 			} else if (providerName.equals("db")) {
 				provider = new DBAuditDestination();
 			} else if (providerName.equals("log4j")) {
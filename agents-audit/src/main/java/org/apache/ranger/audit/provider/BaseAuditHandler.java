@@ -22,6 +22,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.utils.AuditHistogram;
+import org.apache.ranger.audit.utils.AuditRateMeter;
 
 import com.google.gson.GsonBuilder;
 
@@ -69,6 +71,14 @@ public abstract class BaseAuditHandler implements AuditHandler {
 	long lastStashedCount = 0;
 	long lastDeferredCount = 0;
 
+	// published by AuditMetricsRegistry
+	private final AuditRateMeter enqueueRate    = new AuditRateMeter();
+	private final AuditRateMeter dequeueRate    = new AuditRateMeter();
+	private final AuditHistogram batchSizes     = new AuditHistogram();
+	private final AuditHistogram queueWaitMs    = new AuditHistogram();
+	private final AuditHistogram writeLatencyUs = new AuditHistogram();
+	private final AuditHistogram spoolLatencyUs = new AuditHistogram();
+
 	long lastStatusLogTime = System.currentTimeMillis();
 	long statusLogIntervalMS = 1 * 60 * 1000;
 
@@ -129,6 +139,8 @@ public abstract class BaseAuditHandler implements AuditHandler {
 			configProps.put(configName, configValue);
 			LOG.info("Found Config property: " + configName + " => " + configValue);
 		}
+
+		AuditMetricsRegistry.getInstance().register(this);
 	}
 
 	/*
@@ -249,6 +261,46 @@ public abstract class BaseAuditHandler implements AuditHandler {
 		return lastDeferredCount;
 	}
 
+	/**
+	 * @return number of events waiting in the queue of this handler, or -1 if it has no queue
+	 */
+	public int getQueueSize() {
+		return -1;
+	}
+
+	public AuditRateMeter getEnqueueRate() {
+		return enqueueRate;
+	}
+
+	public AuditRateMeter getDequeueRate() {
+		return dequeueRate;
+	}
+
+	public AuditHistogram getBatchSizes() {
+		return batchSizes;
+	}
+
+	/**
+	 * @return time between the event and its dispatch from the queue, in milliseconds
+	 */
+	public AuditHistogram getQueueWaitLatency() {
+		return queueWaitMs;
+	}
+
+	/**
+	 * @return time taken to write a batch to this handler, in microseconds
+	 */
+	public AuditHistogram getWriteLatency() {
+		return writeLatencyUs;
+	}
+
+	/**
+	 * @return time taken to stash events to the file spool, in microseconds
+	 */
+	public AuditHistogram getSpoolLatency() {
+		return spoolLatencyUs;
+	}
+
 	public void logStatusIfRequired() {
 		long currTime = System.currentTimeMillis();
 		if ((currTime - lastStatusLogTime) > statusLogIntervalMS) {
@@ -53,6 +53,8 @@ import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.security.authentication.util.KerberosName;
 import org.apache.hadoop.security.authentication.util.KerberosUtil;
 import org.apache.log4j.helpers.LogLog;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.model.AuthzAuditEventJsonWriter;
 import org.apache.ranger.authorization.hadoop.utils.RangerCredentialProvider;
 
 import com.google.gson.Gson;
@@ -89,7 +91,7 @@ public class MiscUtil {
 	static {
 		try {
 			sGsonBuilder = new GsonBuilder().setDateFormat(
-					"yyyy-MM-dd HH:mm:ss.SSS").create();
+					AuthzAuditEventJsonWriter.DATE_FORMAT).create();
 		} catch (Throwable excp) {
 			LogLog.warn(
 					"failed to create GsonBuilder object. stringify() will return obj.toString(), instead of Json",
@@ -300,10 +302,18 @@ public class MiscUtil {
 		if (log != null) {
 			if (log instanceof String) {
 				ret = (String) log;
-			} else if (MiscUtil.sGsonBuilder != null) {
-				ret = MiscUtil.sGsonBuilder.toJson(log);
 			} else {
-				ret = log.toString();
+				long startTime = System.nanoTime();
+
+				if (AuthzAuditEventJsonWriter.isSupported(log)) {
+					ret = AuthzAuditEventJsonWriter.toJson((AuthzAuditEvent) log);
+				} else if (MiscUtil.sGsonBuilder != null) {
+					ret = MiscUtil.sGsonBuilder.toJson(log);
+				} else {
+					ret = log.toString();
+				}
+
+				AuditMetricsRegistry.getInstance().getSerializationLatency().record((System.nanoTime() - startTime) / 1000);
 			}
 		}
 
@@ -21,6 +21,8 @@ package org.apache.ranger.audit.queue;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.apache.commons.logging.Log;
@@ -35,7 +37,7 @@ import org.apache.ranger.audit.provider.AuditHandler;
 public class AuditAsyncQueue extends AuditQueue implements Runnable {
 	private static final Log logger = LogFactory.getLog(AuditAsyncQueue.class);
 
-	LinkedBlockingQueue<AuditEventBase> queue = new LinkedBlockingQueue<AuditEventBase>();
+	BlockingQueue<AuditEventBase> queue = new LinkedBlockingQueue<AuditEventBase>();
 	Thread consumerThread = null;
 
 	static final int MAX_DRAIN = 1000;
@@ -60,8 +62,28 @@ public class AuditAsyncQueue extends AuditQueue implements Runnable {
 		if (queue.size() >= getMaxQueueSize()) {
 			return false;
 		}
-		queue.add(event);
-		return true;
+		boolean ret = queue.offer(event);
+		if (ret) {
+			getEnqueueRate().mark(1);
+		}
+		return ret;
+	}
+
+	@Override
+	public void init(Properties props, String basePropertyName) {
+		super.init(props, basePropertyName);
+
+		// created before the queue is handed to producers, so it is never swapped while they log
+		if (isRingBufferQueue()) {
+			logger.info("Creating MpscRingBufferQueue with maxSize="
+					+ getMaxQueueSize());
+			queue = new MpscRingBufferQueue<AuditEventBase>(getMaxQueueSize());
+		}
+	}
+
+	@Override
+	public int getQueueSize() {
+		return queue.size();
 	}
 
 	@Override
@@ -149,7 +171,7 @@ public class AuditAsyncQueue extends AuditQueue implements Runnable {
 					Collection<AuditEventBase> eventList = new ArrayList<AuditEventBase>();
 					eventList.add(event);
 					queue.drainTo(eventList, MAX_DRAIN - 1);
-					consumer.log(eventList);
+					logToConsumer(eventList);
 				}
 			} catch (InterruptedException e) {
 				logger.info("Caught exception in consumer thread. Shutdown might be in progress");
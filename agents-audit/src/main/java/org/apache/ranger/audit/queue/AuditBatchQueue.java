@@ -21,6 +21,7 @@ package org.apache.ranger.audit.queue;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Properties;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -56,9 +57,26 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 	 */
 	@Override
 	public boolean log(AuditEventBase event) {
-		// Add to batchQueue. Block if full
-		queue.add(event);
-		return true;
+		if (!isRingBufferQueue()) {
+			// Add to batchQueue. Block if full
+			queue.add(event);
+			getEnqueueRate().mark(1);
+			return true;
+		}
+
+		// Lock-free add. If the queue is full, stash to the file spool if enabled
+		boolean ret = queue.offer(event);
+		if (!ret && fileSpoolerEnabled) {
+			synchronized (fileSpooler) {
+				stashToSpool(Collections.singletonList(event));
+				addStashedCount(1);
+			}
+			ret = true;
+		}
+		if (ret) {
+			getEnqueueRate().mark(1);
+		}
+		return ret;
 	}
 
 	@Override
@@ -73,6 +91,12 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 		return ret;
 	}
 
+	@Override
+	public int getQueueSize() {
+		BlockingQueue<AuditEventBase> q = queue;
+		return q != null ? q.size() : 0;
+	}
+
 	@Override
 	public void init(Properties prop, String basePropertyName) {
 		String propPrefix = "xasecure.audit.batch";
@@ -95,9 +119,15 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 			logger.error("Provider is already started. name=" + getName());
 			return;
 		}
-		logger.info("Creating ArrayBlockingQueue with maxSize="
-				+ getMaxQueueSize());
-		queue = new ArrayBlockingQueue<AuditEventBase>(getMaxQueueSize());
+		if (isRingBufferQueue()) {
+			logger.info("Creating MpscRingBufferQueue with maxSize="
+					+ getMaxQueueSize());
+			queue = new MpscRingBufferQueue<AuditEventBase>(getMaxQueueSize());
+		} else {
+			logger.info("Creating ArrayBlockingQueue with maxSize="
+					+ getMaxQueueSize());
+			queue = new ArrayBlockingQueue<AuditEventBase>(getMaxQueueSize());
+		}
 
 		// Start the consumer first
 		consumer.start();
@@ -294,7 +324,7 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 				isDestActive = false;
 				// Just before stashing
 				lastDispatchTime = System.currentTimeMillis();
-				fileSpooler.stashLogs(localBatchBuffer);
+				stashToSpool(localBatchBuffer);
 				addStashedCount(localBatchBuffer.size());
 				localBatchBuffer.clear();
 			} else if (localBatchBuffer.size() > 0
@@ -306,13 +336,13 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 				}
 				// Reset time just before sending the logs
 				lastDispatchTime = System.currentTimeMillis();
-				boolean ret = consumer.log(localBatchBuffer);
+				boolean ret = logToConsumer(localBatchBuffer);
 				if (!ret) {
 					if (fileSpoolerEnabled) {
 						logger.info("Switching to file spool. Queue="
 								+ getName() + ", dest=" + consumer.getName());
 						// Transient error. Stash and move on
-						fileSpooler.stashLogs(localBatchBuffer);
+						stashToSpool(localBatchBuffer);
 						isDestActive = false;
 						addStashedCount(localBatchBuffer.size());
 					} else {
@@ -52,7 +52,7 @@ import com.google.gson.GsonBuilder;
  * This class temporarily stores logs in file system if the destination is
  * overloaded or down
  */
-public class AuditFileSpool implements Runnable {
+public class AuditFileSpool implements AuditSpool, Runnable {
 	private static final Log logger = LogFactory.getLog(AuditFileSpool.class);
 
 	public enum SPOOL_FILE_STATUS {
@@ -121,6 +121,7 @@ public class AuditFileSpool implements Runnable {
 		init(prop, null);
 	}
 
+	@Override
 	public boolean init(Properties props, String basePropertyName) {
 		if (initDone) {
 			logger.error("init() called more than once. queueProvider="
@@ -294,6 +295,7 @@ public class AuditFileSpool implements Runnable {
 	/**
 	 * Start looking for outstanding logs and update status according.
 	 */
+	@Override
 	public void start() {
 		if (!initDone) {
 			logger.error("Cannot start Audit File Spooler. Initilization not done yet. queueName="
@@ -312,6 +314,7 @@ public class AuditFileSpool implements Runnable {
 		destinationThread.start();
 	}
 
+	@Override
 	public void stop() {
 		if (!initDone) {
 			logger.error("Cannot stop Audit File Spooler. Initilization not done. queueName="
@@ -360,6 +363,7 @@ public class AuditFileSpool implements Runnable {
 		}
 	}
 
+	@Override
 	public void flush() {
 		if (!initDone) {
 			logger.error("Cannot flush Audit File Spooler. Initilization not done. queueName="
@@ -378,6 +382,7 @@ public class AuditFileSpool implements Runnable {
 	 *
 	 * @return
 	 */
+	@Override
 	public boolean isPending() {
 		if (!initDone) {
 			logError("isPending(): File Spooler not initialized. queueName="
@@ -393,6 +398,7 @@ public class AuditFileSpool implements Runnable {
 	 *
 	 * @return
 	 */
+	@Override
 	public long getLastAttemptTimeDelta() {
 		if (lastAttemptTime == 0) {
 			return 0;
@@ -400,6 +406,7 @@ public class AuditFileSpool implements Runnable {
 		return System.currentTimeMillis() - lastAttemptTime;
 	}
 
+	@Override
 	synchronized public void stashLogs(AuditEventBase event) {
 		if (isDrain) {
 			// Stop has been called, so this method shouldn't be called
@@ -422,6 +429,7 @@ public class AuditFileSpool implements Runnable {
 
 	}
 
+	@Override
 	synchronized public void stashLogs(Collection<AuditEventBase> events) {
 		for (AuditEventBase event : events) {
 			stashLogs(event);
@@ -19,12 +19,16 @@
 
 package org.apache.ranger.audit.queue;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.destination.AuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.AuditMetricsRegistry;
 import org.apache.ranger.audit.provider.BaseAuditHandler;
 import org.apache.ranger.audit.provider.MiscUtil;
 
@@ -48,19 +52,28 @@ public abstract class AuditQueue extends BaseAuditHandler {
 	public static final String PROP_BATCH_SIZE = "batch.size";
 	public static final String PROP_QUEUE_SIZE = "queue.size";
 	public static final String PROP_BATCH_INTERVAL = "batch.interval.ms";
+	public static final String PROP_QUEUE_TYPE = "queue.type";
+
+	// lock-free multi-producer/single-consumer queue; the default is the queue implementation of each AuditQueue type
+	public static final String QUEUE_TYPE_RING_BUFFER = "ringbuffer";
 
 	public static final String PROP_FILE_SPOOL_ENABLE = "filespool.enable";
 	public static final String PROP_FILE_SPOOL_WAIT_FOR_FULL_DRAIN = "filespool.drain.full.wait.ms";
 	public static final String PROP_FILE_SPOOL_QUEUE_THRESHOLD = "filespool.drain.threshold.percent";
+	public static final String PROP_FILE_SPOOL_TYPE = "filespool.type";
+
+	// memory-mapped segment log spool; the default is the line per event AuditFileSpool
+	public static final String FILE_SPOOL_TYPE_SEGMENT = "segment";
 
 	final protected AuditHandler consumer;
-	protected AuditFileSpool fileSpooler = null;
+	protected AuditSpool fileSpooler = null;
 
 	private boolean isDrain = false;
 
 	protected boolean fileSpoolerEnabled = false;
 	protected int fileSpoolMaxWaitTime = 5 * 60 * 1000; // Default 5 minutes
 	protected int fileSpoolDrainThresholdPercent = 80;
+	protected String queueType = null;
 
 	boolean isConsumerDestination = false;
 	// This is set when the first time stop is called.
@@ -80,6 +93,7 @@ public abstract class AuditQueue extends BaseAuditHandler {
 			// If consumer is destination, then the thread should run as server
 			// user
 			isConsumerDestination = true;
+			((AuditDestination) consumer).setOwnerQueue(this);
 		}
 	}
 
@@ -94,6 +108,8 @@ public abstract class AuditQueue extends BaseAuditHandler {
 				+ PROP_QUEUE_SIZE, getMaxQueueSize()));
 		setMaxBatchInterval(MiscUtil.getIntProperty(props, propPrefix + "."
 				+ PROP_BATCH_INTERVAL, getMaxBatchInterval()));
+		queueType = MiscUtil.getStringProperty(props, propPrefix + "."
+				+ PROP_QUEUE_TYPE);
 
 		fileSpoolerEnabled = MiscUtil.getBooleanProperty(props, propPrefix
 				+ "." + PROP_FILE_SPOOL_ENABLE, false);
@@ -111,7 +127,13 @@ public abstract class AuditQueue extends BaseAuditHandler {
 			fileSpoolDrainThresholdPercent = MiscUtil.getIntProperty(props,
 					propPrefix + "." + PROP_FILE_SPOOL_QUEUE_THRESHOLD,
 					fileSpoolDrainThresholdPercent);
-			fileSpooler = new AuditFileSpool(this, consumer);
+			String fileSpoolType = MiscUtil.getStringProperty(props,
+					propPrefix + "." + PROP_FILE_SPOOL_TYPE);
+			if (FILE_SPOOL_TYPE_SEGMENT.equalsIgnoreCase(fileSpoolType)) {
+				fileSpooler = new AuditSegmentSpool(this, consumer);
+			} else {
+				fileSpooler = new AuditFileSpool(this, consumer);
+			}
 			if (!fileSpooler.init(props, basePropertyName)) {
 				fileSpoolerEnabled = false;
 				LOG.fatal("Couldn't initialize file spooler. Disabling it. queue="
@@ -121,6 +143,11 @@ public abstract class AuditQueue extends BaseAuditHandler {
 			LOG.info("File spool is disabled for " + getName());
 		}
 
+		if (consumer instanceof BaseAuditHandler) {
+			// the write latency of the consumer is recorded by this queue
+			AuditMetricsRegistry.getInstance().register((BaseAuditHandler) consumer);
+		}
+
 	}
 
 	@Override
@@ -172,6 +199,10 @@ public abstract class AuditQueue extends BaseAuditHandler {
 		this.isDrain = isDrain;
 	}
 
+	public boolean isRingBufferQueue() {
+		return QUEUE_TYPE_RING_BUFFER.equalsIgnoreCase(queueType);
+	}
+
 	public int getMaxQueueSize() {
 		return maxQueueSize;
 	}
@@ -196,6 +227,64 @@ public abstract class AuditQueue extends BaseAuditHandler {
 		this.maxBatchSize = maxBatchSize;
 	}
 
+	/**
+	 * Sends a batch dequeued by this queue to the consumer, recording the batch
+	 * metrics and the write latency of the consumer.
+	 */
+	protected boolean logToConsumer(Collection<AuditEventBase> events) {
+		long startTime = System.nanoTime();
+		long oldestMs  = Long.MAX_VALUE;
+
+		for (AuditEventBase event : events) {
+			Date eventTime = event.getEventTime();
+
+			if (eventTime != null && eventTime.getTime() < oldestMs) {
+				oldestMs = eventTime.getTime();
+			}
+		}
+
+		getDequeueRate().mark(events.size());
+		getBatchSizes().record(events.size());
+
+		if (oldestMs != Long.MAX_VALUE) {
+			getQueueWaitLatency().record(System.currentTimeMillis() - oldestMs);
+		}
+
+		boolean ret = consumer.log(events);
+
+		BaseAuditHandler writer = consumer instanceof BaseAuditHandler ? (BaseAuditHandler) consumer : this;
+
+		writer.getWriteLatency().record((System.nanoTime() - startTime) / 1000);
+
+		return ret;
+	}
+
+	protected void stashToSpool(Collection<AuditEventBase> events) {
+		long startTime = System.nanoTime();
+
+		fileSpooler.stashLogs(events);
+
+		getSpoolLatency().record((System.nanoTime() - startTime) / 1000);
+	}
+
+	/**
+	 * Stashes events that the consumer accepted but later failed to deliver,
+	 * like batches of a destination that sends asynchronously, so that the
+	 * file spool sends them again.
+	 *
+	 * @return false if the file spool is not enabled
+	 */
+	public boolean stashUndelivered(Collection<AuditEventBase> events) {
+		if (!fileSpoolerEnabled || fileSpooler == null) {
+			return false;
+		}
+
+		stashToSpool(events);
+		addStashedCount(events.size());
+
+		return true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -0,0 +1,755 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.log4j.MDC;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+/**
+ * Spools audit events to a log of fixed-size, memory-mapped segment files,
+ * while the destination is overloaded or down.
+ * <p>
+ * Each event is stored as a record: length(int), crc32 of data(int), data (JSON
+ * in UTF-8). A record is written data first and length last, hence a record
+ * with zero length or mismatching crc marks the end of the data written before
+ * a crash. A segment that is full is ended with length -1.
+ * <p>
+ * The sender thread reads records up to the position published by the writer,
+ * sends them to the destination in batches and, after each successful batch,
+ * appends its position to a checkpoint file. After a restart, sending resumes
+ * from the last checkpoint. Segments are deleted once sent.
+ * <p>
+ * Writers never wait for the sender: when filespool.segment.max.count
+ * segments are pending, new events are dropped and an error is logged.
+ */
+public class AuditSegmentSpool implements AuditSpool, Runnable {
+	private static final Log logger = LogFactory.getLog(AuditSegmentSpool.class);
+
+	public static final String PROP_FILE_SPOOL_SEGMENT_SIZE_KB   = "filespool.segment.size.kb";
+	public static final String PROP_FILE_SPOOL_SEGMENT_MAX_COUNT = "filespool.segment.max.count";
+
+	private static final int    RECORD_HEADER_SIZE     = 8;
+	private static final int    END_OF_SEGMENT         = -1;
+	private static final int    CHECKPOINT_ENTRY_SIZE  = 16;
+	private static final int    MAX_CHECKPOINT_ENTRIES = 4096;
+	private static final int    MAX_SEGMENT_SIZE_KB    = 1024 * 1024;
+	private static final String SEGMENT_FILE_SUFFIX    = ".seg";
+
+	final AuditQueue   queueProvider;
+	final AuditHandler consumerProvider;
+
+	File   logFolder          = null;
+	String fileNamePrefix     = null;
+	int    segmentSize        = 64 * 1024 * 1024;
+	int    maxSegmentCount    = 64;
+	int    retryDestinationMS = 30 * 1000; // Default 30 seconds
+
+	int  errorLogIntervalMS = 30 * 1000; // Every 30 seconds
+	long lastErrorLogMS     = 0;
+
+	boolean initDone = false;
+
+	// writer state; guarded by this. writeSegment is also read by the sender
+	private volatile Segment writeSegment = null;
+	private int              writeOffset  = 0;
+	private long             droppedCount = 0;
+	private final CRC32      writeCrc     = new CRC32();
+
+	// position up to which records are written: segment id in the high 32 bits, offset in the low 32 bits
+	private volatile long publishedPosition = 0;
+	// position up to which records have been sent to the destination
+	private volatile long readPosition = 0;
+
+	// sender state; accessed only by the sender thread, after init
+	private Segment          readSegment       = null;
+	private ByteBuffer       readBuffer        = null;
+	private int              batchEndOffset    = 0;
+	private FileChannel      checkpointChannel = null;
+	private int              checkpointCount   = 0;
+	private final CRC32      readCrc           = new CRC32();
+	private final ByteBuffer checkpointEntry   = ByteBuffer.allocate(CHECKPOINT_ENTRY_SIZE);
+
+	private volatile long    lastAttemptTime   = 0;
+	private volatile boolean isDrain           = false;
+	private volatile boolean isDestDown        = false;
+	private volatile Thread  destinationThread = null;
+
+	public AuditSegmentSpool(AuditQueue queueProvider, AuditHandler consumerProvider) {
+		this.queueProvider    = queueProvider;
+		this.consumerProvider = consumerProvider;
+	}
+
+	@Override
+	public boolean init(Properties props, String basePropertyName) {
+		if (initDone) {
+			logger.error("init() called more than once. queueProvider="
+					+ queueProvider.getName() + ", consumerProvider="
+					+ consumerProvider.getName());
+			return true;
+		}
+		String propPrefix = "xasecure.audit.filespool";
+		if (basePropertyName != null) {
+			propPrefix = basePropertyName;
+		}
+
+		try {
+			String logFolderProp = MiscUtil.getStringProperty(props, propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR);
+			fileNamePrefix       = MiscUtil.getStringProperty(props, propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_FILENAME_PREFIX);
+			retryDestinationMS   = MiscUtil.getIntProperty(props, propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_DEST_RETRY_MS, retryDestinationMS);
+			maxSegmentCount      = Math.max(2, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_FILE_SPOOL_SEGMENT_MAX_COUNT, maxSegmentCount));
+
+			int segmentSizeKB = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_FILE_SPOOL_SEGMENT_SIZE_KB, segmentSize / 1024);
+
+			segmentSize = Math.min(Math.max(segmentSizeKB, 1), MAX_SEGMENT_SIZE_KB) * 1024;
+
+			if (logFolderProp == null || logFolderProp.isEmpty()) {
+				logger.fatal("Audit spool folder is not configured. Please set "
+						+ propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR
+						+ ". queueName=" + queueProvider.getName());
+				return false;
+			}
+			logFolder = new File(logFolderProp);
+			if (!logFolder.isDirectory()) {
+				logFolder.mkdirs();
+				if (!logFolder.isDirectory()) {
+					logger.fatal("File Spool folder not found and can't be created. folder="
+							+ logFolder.getAbsolutePath() + ", queueName=" + queueProvider.getName());
+					return false;
+				}
+			}
+			if (fileNamePrefix == null || fileNamePrefix.isEmpty()) {
+				fileNamePrefix = queueProvider.getName() + "_" + consumerProvider.getName();
+			}
+
+			logger.info("logFolder=" + logFolder + ", fileNamePrefix=" + fileNamePrefix
+					+ ", segmentSize=" + segmentSize + ", maxSegmentCount=" + maxSegmentCount
+					+ ", retryDestinationMS=" + retryDestinationMS + ", queueName=" + queueProvider.getName());
+
+			recover();
+		} catch (Throwable t) {
+			logger.fatal("Error initializing segment file spooler. queue=" + queueProvider.getName(), t);
+			return false;
+		}
+		initDone = true;
+		return true;
+	}
+
+	@Override
+	public void start() {
+		if (!initDone) {
+			logger.error("Cannot start Audit Segment Spooler. Initilization not done yet. queueName="
+					+ queueProvider.getName());
+			return;
+		}
+
+		logger.info("Starting writerThread, queueName=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName());
+
+		Thread thread = new Thread(this, queueProvider.getName() + "_" + consumerProvider.getName() + "_destWriter");
+		thread.setDaemon(true);
+		destinationThread = thread;
+		thread.start();
+	}
+
+	@Override
+	public void stop() {
+		if (!initDone) {
+			logger.error("Cannot stop Audit Segment Spooler. Initilization not done. queueName="
+					+ queueProvider.getName());
+			return;
+		}
+		logger.info("Stop called, queueName=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName());
+
+		isDrain = true;
+
+		Thread thread = destinationThread;
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join(retryDestinationMS + 5000L);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+		destinationThread = null;
+
+		flush();
+
+		synchronized (this) {
+			if (droppedCount > 0) {
+				logger.error("Audit segment spool was full; dropped " + droppedCount + " events. queueName=" + queueProvider.getName());
+			}
+		}
+	}
+
+	/*
+	 * forces the current segment to disk. Not called on every write: records are in the page cache as soon as
+	 * written, which survives a crash of the process
+	 */
+	@Override
+	synchronized public void flush() {
+		if (writeSegment != null) {
+			writeSegment.buffer.force();
+		}
+	}
+
+	@Override
+	public boolean isPending() {
+		return initDone && readPosition != publishedPosition;
+	}
+
+	@Override
+	public long getLastAttemptTimeDelta() {
+		if (lastAttemptTime == 0) {
+			return 0;
+		}
+		return System.currentTimeMillis() - lastAttemptTime;
+	}
+
+	@Override
+	synchronized public void stashLogs(AuditEventBase event) {
+		if (isDrain) {
+			// Stop has been called, so this method shouldn't be called
+			logger.error("stashLogs() is called after stop is called. event=" + event);
+			return;
+		}
+		try {
+			append(MiscUtil.stringify(event).getBytes(StandardCharsets.UTF_8));
+		} catch (Exception ex) {
+			logger.error("Error writing to spool segment. event=" + event, ex);
+		}
+	}
+
+	@Override
+	synchronized public void stashLogs(Collection<AuditEventBase> events) {
+		for (AuditEventBase event : events) {
+			stashLogs(event);
+		}
+	}
+
+	/*
+	 * appends a record; returns false if the spool is full
+	 */
+	synchronized boolean append(byte[] data) throws IOException {
+		int recordSize = RECORD_HEADER_SIZE + data.length;
+
+		if (data.length == 0 || recordSize > segmentSize) {
+			logError("Event of size " + data.length + " can't be spooled; segment size is " + segmentSize
+					+ ". queueName=" + queueProvider.getName());
+			droppedCount++;
+			return false;
+		}
+
+		if (writeOffset + recordSize > writeSegment.capacity) {
+			if (!rollSegment()) {
+				droppedCount++;
+				return false;
+			}
+		}
+
+		ByteBuffer buffer = writeSegment.buffer;
+
+		writeCrc.reset();
+		writeCrc.update(data, 0, data.length);
+
+		buffer.position(writeOffset + RECORD_HEADER_SIZE);
+		buffer.put(data);
+		buffer.putInt(writeOffset + 4, (int) writeCrc.getValue());
+		buffer.putInt(writeOffset, data.length);
+
+		writeOffset += recordSize;
+
+		publishedPosition = toPosition(writeSegment.id, writeOffset);
+
+		Thread sender = destinationThread;
+		if (sender != null) {
+			LockSupport.unpark(sender);
+		}
+
+		return true;
+	}
+
+	private boolean rollSegment() throws IOException {
+		long pendingSegments = writeSegment.id + 1 - segmentId(readPosition);
+
+		if (pendingSegments >= maxSegmentCount) {
+			logError("Audit segment spool is full: " + pendingSegments + " segments pending for destination. Dropping events."
+					+ " queueName=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName());
+			return false;
+		}
+
+		if (writeOffset + 4 <= writeSegment.capacity) {
+			writeSegment.buffer.putInt(writeOffset, END_OF_SEGMENT);
+		}
+		writeSegment.buffer.force();
+
+		Segment segment = openSegment(writeSegment.id + 1, true);
+
+		logger.info("Rolled over to new spool segment. file=" + segment.file + ", queueName=" + queueProvider.getName());
+
+		writeSegment = segment;
+		writeOffset  = 0;
+
+		publishedPosition = toPosition(segment.id, 0);
+
+		return true;
+	}
+
+	@Override
+	public void run() {
+		try {
+			//This is done to clear the MDC context to avoid issue with Ranger Auditing for Knox
+			MDC.clear();
+			runLogAudit();
+		} catch (Throwable t) {
+			logger.fatal("Exited thread without abnormaly. queue=" + consumerProvider.getName(), t);
+		}
+	}
+
+	public void runLogAudit() {
+		List<String> lines = new ArrayList<String>();
+
+		while (!isDrain) {
+			try {
+				if (isDestDown) {
+					Thread.sleep(retryDestinationMS);
+				}
+
+				if (lines.isEmpty()) {
+					int batchEnd = readBatch(lines, queueProvider.getMaxBatchSize());
+
+					if (lines.isEmpty()) {
+						if (batchEnd < 0) { // nothing to send; wait for the writer
+							LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(retryDestinationMS));
+						}
+						continue;
+					}
+				}
+
+				if (sendEvents(lines)) {
+					commitBatch();
+					lines.clear();
+				}
+			} catch (InterruptedException e) {
+				logger.info("Caught exception in consumer thread. Shutdown might be in progress");
+			} catch (Throwable t) {
+				logger.error("Exception in destination writing thread.", t);
+			}
+		}
+
+		closeCheckpoint();
+
+		logger.info("Exiting segment file spooler. provider=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName());
+	}
+
+	/*
+	 * reads up to maxCount records from the read position. Returns -1 if no records are available; if the read
+	 * segment is fully read and a later segment exists, moves to it and returns 0
+	 */
+	int readBatch(List<String> lines, int maxCount) throws IOException {
+		long published    = publishedPosition;
+		long readSegId    = segmentId(readPosition);
+		int  offset       = segmentOffset(readPosition);
+		boolean isCurrent = readSegId == segmentId(published);
+
+		Segment segment = getReadSegment(readSegId);
+		int     limit   = isCurrent ? segmentOffset(published) : (segment == null ? 0 : segment.capacity);
+
+		if (segment != null) {
+			ByteBuffer buffer = readBuffer;
+
+			while (lines.size() < maxCount && offset + RECORD_HEADER_SIZE <= limit) {
+				int length = buffer.getInt(offset);
+
+				if (length <= 0 || offset + RECORD_HEADER_SIZE + length > limit) {
+					break;
+				}
+
+				byte[] data = new byte[length];
+
+				buffer.position(offset + RECORD_HEADER_SIZE);
+				buffer.get(data);
+
+				readCrc.reset();
+				readCrc.update(data, 0, length);
+
+				if ((int) readCrc.getValue() != buffer.getInt(offset + 4)) {
+					logger.error("Corrupt record in spool segment; skipping rest of segment. file=" + segment.file + ", offset=" + offset);
+					offset = limit;
+					break;
+				}
+
+				lines.add(new String(data, StandardCharsets.UTF_8));
+				offset += RECORD_HEADER_SIZE + length;
+			}
+		}
+
+		if (!lines.isEmpty()) {
+			batchEndOffset = offset;
+			return offset;
+		}
+
+		if (isCurrent) {
+			return -1;
+		}
+
+		// the segment is fully sent: move to the next one
+		setReadPosition(toPosition(readSegId + 1, 0));
+		if (segment != null) {
+			deleteSegment(segment);
+		}
+		readSegment = null;
+		readBuffer  = null;
+
+		return 0;
+	}
+
+	private void commitBatch() throws IOException {
+		setReadPosition(toPosition(segmentId(readPosition), batchEndOffset));
+	}
+
+	private boolean sendEvents(List<String> lines) {
+		boolean ret = false;
+		try {
+			ret = consumerProvider.logJSON(lines);
+		} catch (Throwable t) {
+			logger.error("Error while sending logs to consumer. provider=" + queueProvider.getName()
+					+ ", consumer=" + consumerProvider.getName(), t);
+		}
+
+		if (ret) {
+			if (isDestDown) {
+				isDestDown = false;
+				logger.info("Destination up now. queueName=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName());
+			}
+		} else {
+			isDestDown      = true;
+			lastAttemptTime = System.currentTimeMillis();
+			logError("Destination down. queueName=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName());
+		}
+		return ret;
+	}
+
+	private Segment getReadSegment(long segmentId) throws IOException {
+		if (readSegment == null || readSegment.id != segmentId) {
+			Segment current = writeSegment;
+
+			if (current != null && current.id == segmentId) {
+				readSegment = current;
+			} else {
+				File file = getSegmentFile(segmentId);
+
+				readSegment = file.exists() ? openSegment(segmentId, false) : null;
+			}
+
+			// own view of the buffer: the writer changes position of the segment buffer
+			readBuffer = readSegment == null ? null : readSegment.buffer.duplicate();
+		}
+		return readSegment;
+	}
+
+	private void setReadPosition(long position) throws IOException {
+		readPosition = position;
+
+		appendCheckpoint(position);
+	}
+
+	private void deleteSegment(Segment segment) {
+		if (!segment.file.delete()) {
+			logger.warn("Failed to delete spool segment. file=" + segment.file);
+		} else if (logger.isDebugEnabled()) {
+			logger.debug("Deleted spool segment. file=" + segment.file);
+		}
+	}
+
+	/*
+	 * Checkpoint file: append-only entries of segmentId(long) offset(int) crc32(int); the last valid entry is the
+	 * read position. Compacted to a single entry once it has MAX_CHECKPOINT_ENTRIES entries
+	 */
+	private void appendCheckpoint(long position) throws IOException {
+		if (checkpointCount >= MAX_CHECKPOINT_ENTRIES) {
+			compactCheckpoint(position);
+			return;
+		}
+
+		if (checkpointChannel == null) {
+			checkpointChannel = FileChannel.open(getCheckpointFile().toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		}
+
+		writeCheckpointEntry(checkpointChannel, position);
+		checkpointCount++;
+	}
+
+	private void compactCheckpoint(long position) throws IOException {
+		File checkpointFile = getCheckpointFile();
+		File tmpFile        = new File(logFolder, checkpointFile.getName() + ".tmp");
+
+		closeCheckpoint();
+
+		try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeCheckpointEntry(channel, position);
+			channel.force(true);
+		}
+
+		Files.move(tmpFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		checkpointCount = 1;
+	}
+
+	private void writeCheckpointEntry(FileChannel channel, long position) throws IOException {
+		CRC32 crc = new CRC32();
+
+		checkpointEntry.clear();
+		checkpointEntry.putLong(segmentId(position));
+		checkpointEntry.putInt(segmentOffset(position));
+		crc.update(checkpointEntry.array(), 0, 12);
+		checkpointEntry.putInt((int) crc.getValue());
+		checkpointEntry.flip();
+
+		while (checkpointEntry.hasRemaining()) {
+			channel.write(checkpointEntry);
+		}
+	}
+
+	/*
+	 * returns the last valid position in the checkpoint file, or -1 if there is none
+	 */
+	private long readCheckpoint() throws IOException {
+		File checkpointFile = getCheckpointFile();
+		long ret            = -1;
+
+		if (checkpointFile.exists()) {
+			ByteBuffer entries = ByteBuffer.wrap(Files.readAllBytes(checkpointFile.toPath()));
+			CRC32      crc     = new CRC32();
+
+			while (entries.remaining() >= CHECKPOINT_ENTRY_SIZE) {
+				int  start     = entries.position();
+				long segmentId = entries.getLong();
+				int  offset    = entries.getInt();
+				int  entryCrc  = entries.getInt();
+
+				crc.reset();
+				crc.update(entries.array(), start, 12);
+
+				if ((int) crc.getValue() == entryCrc) {
+					ret = toPosition(segmentId, offset);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private void closeCheckpoint() {
+		if (checkpointChannel != null) {
+			try {
+				checkpointChannel.close();
+			} catch (IOException excp) {
+				logger.warn("Error closing checkpoint file. queueName=" + queueProvider.getName(), excp);
+			}
+			checkpointChannel = null;
+		}
+	}
+
+	/*
+	 * restores the read position from the checkpoint, and the write position by scanning the last segment
+	 */
+	private void recover() throws IOException {
+		TreeSet<Long> segmentIds = listSegmentIds();
+		long          checkpoint = readCheckpoint();
+		long          readSegId  = checkpoint == -1 ? (segmentIds.isEmpty() ? 0 : segmentIds.first()) : segmentId(checkpoint);
+		int           readOffset = checkpoint == -1 ? 0 : segmentOffset(checkpoint);
+
+		if (!segmentIds.isEmpty() && segmentIds.first() > readSegId) { // checkpointed segment is gone
+			readSegId  = segmentIds.first();
+			readOffset = 0;
+		} else if (!segmentIds.contains(readSegId)) {
+			readOffset = 0;
+		}
+
+		for (Long segmentId : segmentIds) {
+			if (segmentId < readSegId) {
+				logger.info("Deleting spool segment already sent. segmentId=" + segmentId);
+				if (!getSegmentFile(segmentId).delete()) {
+					logger.warn("Failed to delete spool segment. file=" + getSegmentFile(segmentId));
+				}
+			}
+		}
+
+		long lastSegId = segmentIds.isEmpty() ? readSegId : Math.max(segmentIds.last(), readSegId);
+
+		writeSegment = openSegment(lastSegId, true);
+		writeOffset  = lastSegId == readSegId ? readOffset : 0;
+
+		// skip over the records already written
+		ByteBuffer buffer         = writeSegment.buffer;
+		CRC32      crc            = new CRC32();
+		boolean    isSegmentEnded = false;
+
+		while (writeOffset + RECORD_HEADER_SIZE <= writeSegment.capacity) {
+			int length = buffer.getInt(writeOffset);
+
+			if (length == END_OF_SEGMENT) {
+				isSegmentEnded = true;
+				break;
+			}
+
+			if (length <= 0 || writeOffset + RECORD_HEADER_SIZE + length > writeSegment.capacity) {
+				break;
+			}
+
+			byte[] data = new byte[length];
+
+			buffer.position(writeOffset + RECORD_HEADER_SIZE);
+			buffer.get(data);
+
+			crc.reset();
+			crc.update(data, 0, length);
+
+			if ((int) crc.getValue() != buffer.getInt(writeOffset + 4)) {
+				logger.warn("Incomplete record found in spool segment, likely from a crash; later writes will overwrite it. file="
+						+ writeSegment.file + ", offset=" + writeOffset);
+				buffer.putInt(writeOffset, 0);
+				break;
+			}
+
+			writeOffset += RECORD_HEADER_SIZE + length;
+		}
+
+		if (isSegmentEnded) { // continue in a new segment, so that the sender moves past this one
+			writeSegment = openSegment(writeSegment.id + 1, true);
+			writeOffset  = 0;
+		}
+
+		readPosition      = toPosition(readSegId, readOffset);
+		publishedPosition = toPosition(writeSegment.id, writeOffset);
+
+		logger.info("Recovered audit segment spool. readSegment=" + readSegId + ", readOffset=" + readOffset
+				+ ", writeSegment=" + writeSegment.id + ", writeOffset=" + writeOffset + ", queueName=" + queueProvider.getName());
+	}
+
+	private TreeSet<Long> listSegmentIds() {
+		final String  prefix = getSegmentFilePrefix();
+		TreeSet<Long> ret    = new TreeSet<Long>();
+		String[]      names  = logFolder.list(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(prefix) && name.endsWith(SEGMENT_FILE_SUFFIX);
+			}
+		});
+
+		if (names != null) {
+			for (String name : names) {
+				try {
+					ret.add(Long.parseLong(name.substring(prefix.length(), name.length() - SEGMENT_FILE_SUFFIX.length())));
+				} catch (NumberFormatException excp) {
+					logger.warn("Ignoring unexpected file in spool folder. file=" + name);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private Segment openSegment(long segmentId, boolean forWrite) throws IOException {
+		File file = getSegmentFile(segmentId);
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, forWrite ? "rw" : "r")) {
+			if (forWrite && raf.length() == 0) {
+				raf.setLength(segmentSize);
+			}
+
+			int capacity = (int) raf.length();
+
+			MappedByteBuffer buffer = raf.getChannel().map(forWrite ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, capacity);
+
+			return new Segment(segmentId, file, buffer, capacity);
+		}
+	}
+
+	private String getSegmentFilePrefix() {
+		return "spool_" + fileNamePrefix + "_";
+	}
+
+	private File getSegmentFile(long segmentId) {
+		return new File(logFolder, getSegmentFilePrefix() + String.format("%010d", segmentId) + SEGMENT_FILE_SUFFIX);
+	}
+
+	private File getCheckpointFile() {
+		return new File(logFolder, "checkpoint_" + fileNamePrefix + ".dat");
+	}
+
+	private static long toPosition(long segmentId, int offset) {
+		return (segmentId << 32) | (offset & 0xFFFFFFFFL);
+	}
+
+	private static long segmentId(long position) {
+		return position >>> 32;
+	}
+
+	private static int segmentOffset(long position) {
+		return (int) position;
+	}
+
+	void logError(String msg) {
+		long currTimeMS = System.currentTimeMillis();
+		if (currTimeMS - lastErrorLogMS > errorLogIntervalMS) {
+			logger.error(msg);
+			lastErrorLogMS = currTimeMS;
+		}
+	}
+
+	private static class Segment {
+		final long             id;
+		final File             file;
+		final MappedByteBuffer buffer;
+		final int              capacity;
+
+		Segment(long id, File file, MappedByteBuffer buffer, int capacity) {
+			this.id       = id;
+			this.file     = file;
+			this.buffer   = buffer;
+			this.capacity = capacity;
+		}
+	}
+}
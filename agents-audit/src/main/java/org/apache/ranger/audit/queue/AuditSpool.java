@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.util.Collection;
+import java.util.Properties;
+
+import org.apache.ranger.audit.model.AuditEventBase;
+
+/**
+ * Local spool used by an AuditQueue to hold events while its destination is
+ * overloaded or down, and to send them once the destination is back
+ */
+public interface AuditSpool {
+	boolean init(Properties props, String basePropertyName);
+
+	void start();
+
+	void stop();
+
+	void flush();
+
+	/**
+	 * @return true if the spool has events not yet sent to the destination
+	 */
+	boolean isPending();
+
+	/**
+	 * @return milliseconds since the last failed attempt to send to the destination
+	 */
+	long getLastAttemptTimeDelta();
+
+	void stashLogs(AuditEventBase event);
+
+	void stashLogs(Collection<AuditEventBase> events);
+}
@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+
+/**
+ * Aggregates audit events into summaries, with bounded memory.
+ * <p>
+ * The first maxExactEntries distinct events (by event key) are counted exactly.
+ * Once that many are tracked, further distinct events go to a top-k sketch
+ * (space-saving) of maxSketchEntries entries: when the sketch is full, a new
+ * event takes the place of the entry with the lowest count and inherits that
+ * count. Counts of sketch entries are hence upper bounds, with frequent events
+ * counted close to exact; the counts of all summaries still add up to the number
+ * of events added.
+ * <p>
+ * Event keys of AuthzAuditEvent are hashed and compared field by field, without
+ * building the key string. Not thread-safe.
+ */
+public class AuditSummarizer {
+	private final int maxExactEntries;
+	private final int maxSketchEntries;
+
+	private final Map<SummaryKey, AuditSummary> exactSummaries  = new HashMap<SummaryKey, AuditSummary>();
+	private final Map<SummaryKey, AuditSummary> sketchSummaries = new HashMap<SummaryKey, AuditSummary>();
+	private final AuditSummary[]                 sketchHeap; // min-heap of sketchSummaries, by count
+	private final SummaryKey                     lookupKey  = new SummaryKey();
+
+	private int  sketchHeapSize = 0;
+	private long evictionCount  = 0;
+
+	public AuditSummarizer(int maxExactEntries, int maxSketchEntries) {
+		if (maxSketchEntries < 1) {
+			throw new IllegalArgumentException("maxSketchEntries must be at least 1: " + maxSketchEntries);
+		}
+
+		this.maxExactEntries  = maxExactEntries;
+		this.maxSketchEntries = maxSketchEntries;
+		this.sketchHeap       = new AuditSummary[maxSketchEntries];
+	}
+
+	public void add(AuditEventBase event) {
+		lookupKey.set(event);
+
+		AuditSummary summary = exactSummaries.get(lookupKey);
+
+		if (summary != null) {
+			summary.addEvent(event);
+		} else if (exactSummaries.size() < maxExactEntries) {
+			summary = new AuditSummary(new SummaryKey(event), event, false);
+
+			exactSummaries.put(summary.key, summary);
+		} else {
+			addToSketch(event);
+		}
+	}
+
+	public boolean isEmpty() {
+		return exactSummaries.isEmpty() && sketchSummaries.isEmpty();
+	}
+
+	public int getExactSummaryCount() {
+		return exactSummaries.size();
+	}
+
+	public int getSketchSummaryCount() {
+		return sketchSummaries.size();
+	}
+
+	/*
+	 * number of times a sketch entry was replaced by another event since the last reset
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/*
+	 * returns summaries of events added since the last reset, exact ones first
+	 */
+	public List<AuditSummary> getSummaries() {
+		List<AuditSummary> ret = new ArrayList<AuditSummary>(exactSummaries.size() + sketchSummaries.size());
+
+		ret.addAll(exactSummaries.values());
+		ret.addAll(sketchSummaries.values());
+
+		return ret;
+	}
+
+	public void reset() {
+		exactSummaries.clear();
+		sketchSummaries.clear();
+
+		for (int i = 0; i < sketchHeapSize; i++) {
+			sketchHeap[i] = null;
+		}
+
+		sketchHeapSize = 0;
+		evictionCount  = 0;
+	}
+
+	private void addToSketch(AuditEventBase event) {
+		AuditSummary summary = sketchSummaries.get(lookupKey);
+
+		if (summary != null) {
+			summary.addEvent(event);
+
+			siftDown(summary.heapIndex);
+		} else if (sketchHeapSize < maxSketchEntries) {
+			summary = new AuditSummary(new SummaryKey(event), event, true);
+			summary.heapIndex = sketchHeapSize;
+
+			sketchHeap[sketchHeapSize++] = summary;
+			sketchSummaries.put(summary.key, summary);
+
+			siftUp(summary.heapIndex);
+		} else {
+			AuditSummary evicted = sketchHeap[0];
+
+			sketchSummaries.remove(evicted.key);
+
+			summary = new AuditSummary(new SummaryKey(event), event, true);
+			summary.count     = evicted.count + 1;
+			summary.heapIndex = 0;
+
+			sketchHeap[0] = summary;
+			sketchSummaries.put(summary.key, summary);
+
+			siftDown(0);
+
+			evictionCount++;
+		}
+	}
+
+	private void siftUp(int index) {
+		AuditSummary summary = sketchHeap[index];
+
+		while (index > 0) {
+			int          parentIndex = (index - 1) >>> 1;
+			AuditSummary parent      = sketchHeap[parentIndex];
+
+			if (parent.count <= summary.count) {
+				break;
+			}
+
+			placeInHeap(parent, index);
+			index = parentIndex;
+		}
+
+		placeInHeap(summary, index);
+	}
+
+	private void siftDown(int index) {
+		AuditSummary summary = sketchHeap[index];
+
+		while (true) {
+			int childIndex = 2 * index + 1;
+
+			if (childIndex >= sketchHeapSize) {
+				break;
+			}
+
+			if (childIndex + 1 < sketchHeapSize && sketchHeap[childIndex + 1].count < sketchHeap[childIndex].count) {
+				childIndex++;
+			}
+
+			AuditSummary child = sketchHeap[childIndex];
+
+			if (summary.count <= child.count) {
+				break;
+			}
+
+			placeInHeap(child, index);
+			index = childIndex;
+		}
+
+		placeInHeap(summary, index);
+	}
+
+	private void placeInHeap(AuditSummary summary, int index) {
+		sketchHeap[index] = summary;
+		summary.heapIndex = index;
+	}
+
+	public static class AuditSummary {
+		private final SummaryKey     key;
+		private final AuditEventBase event;
+		private final boolean        isApproximate;
+		private Date                 startTime;
+		private Date                 endTime;
+		private long                 count     = 1;
+		private int                  heapIndex = -1;
+
+		AuditSummary(SummaryKey key, AuditEventBase event, boolean isApproximate) {
+			this.key           = key;
+			this.event         = event;
+			this.isApproximate = isApproximate;
+			this.startTime     = event.getEventTime();
+			this.endTime       = event.getEventTime();
+		}
+
+		void addEvent(AuditEventBase event) {
+			endTime = event.getEventTime();
+			count++;
+		}
+
+		public AuditEventBase getEvent() {
+			return event;
+		}
+
+		public Date getStartTime() {
+			return startTime;
+		}
+
+		public Date getEndTime() {
+			return endTime;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		/*
+		 * true if the count is an upper bound, as the summary was tracked in the sketch
+		 */
+		public boolean isApproximate() {
+			return isApproximate;
+		}
+	}
+
+	/*
+	 * Same identity as AuditEventBase.getEventKey(); for AuthzAuditEvent computed from the fields
+	 */
+	static final class SummaryKey {
+		private AuthzAuditEvent authzEvent;
+		private String          eventKey;
+		private int             hashCode;
+
+		SummaryKey() {
+		}
+
+		SummaryKey(AuditEventBase event) {
+			set(event);
+		}
+
+		void set(AuditEventBase event) {
+			if (event instanceof AuthzAuditEvent) {
+				AuthzAuditEvent authzEvent = (AuthzAuditEvent) event;
+
+				this.authzEvent = authzEvent;
+				this.eventKey   = null;
+
+				int hash = hash(authzEvent.getUser());
+
+				hash = 31 * hash + hash(authzEvent.getAccessType());
+				hash = 31 * hash + hash(authzEvent.getResourcePath());
+				hash = 31 * hash + hash(authzEvent.getResourceType());
+				hash = 31 * hash + hash(authzEvent.getAction());
+				hash = 31 * hash + authzEvent.getAccessResult();
+				hash = 31 * hash + hash(authzEvent.getSessionId());
+				hash = 31 * hash + hash(authzEvent.getClientIP());
+
+				this.hashCode = hash;
+			} else {
+				this.authzEvent = null;
+				this.eventKey   = event.getEventKey();
+				this.hashCode   = hash(eventKey);
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+
+			if (!(obj instanceof SummaryKey)) {
+				return false;
+			}
+
+			SummaryKey other = (SummaryKey) obj;
+
+			if (hashCode != other.hashCode) {
+				return false;
+			}
+
+			if (authzEvent != null && other.authzEvent != null) {
+				AuthzAuditEvent e1 = authzEvent;
+				AuthzAuditEvent e2 = other.authzEvent;
+
+				return e1.getAccessResult() == e2.getAccessResult()
+						&& equals(e1.getUser(), e2.getUser())
+						&& equals(e1.getAccessType(), e2.getAccessType())
+						&& equals(e1.getResourcePath(), e2.getResourcePath())
+						&& equals(e1.getResourceType(), e2.getResourceType())
+						&& equals(e1.getAction(), e2.getAction())
+						&& equals(e1.getSessionId(), e2.getSessionId())
+						&& equals(e1.getClientIP(), e2.getClientIP());
+			}
+
+			return eventKey != null && eventKey.equals(other.eventKey);
+		}
+
+		private static int hash(String str) {
+			return str == null ? 0 : str.hashCode();
+		}
+
+		private static boolean equals(String s1, String s2) {
+			return s1 == null ? s2 == null : s1.equals(s2);
+		}
+	}
+}
@@ -21,9 +21,6 @@ package org.apache.ranger.audit.queue;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -34,6 +31,7 @@ import org.apache.log4j.MDC;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.AuditHandler;
 import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.queue.AuditSummarizer.AuditSummary;
 
 /**
  * This is a non-blocking queue with no limit on capacity.
@@ -43,6 +41,8 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 			.getLog(AuditSummaryQueue.class);
 
 	public static final String PROP_SUMMARY_INTERVAL = "summary.interval.ms";
+	public static final String PROP_SUMMARY_MAX_ENTRIES = "summary.max.entries";
+	public static final String PROP_SUMMARY_SKETCH_ENTRIES = "summary.sketch.entries";
 
 	LinkedBlockingQueue<AuditEventBase> queue = new LinkedBlockingQueue<AuditEventBase>();
 	Thread consumerThread = null;
@@ -53,8 +53,10 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 	private static final int MAX_DRAIN = 100000;
 
 	private int maxSummaryIntervalMs = 5000;
+	private int maxSummaryEntries = 10000;
+	private int maxSketchEntries = 1000;
 
-	HashMap<String, AuditSummary> summaryMap = new HashMap<String, AuditSummary>();
+	AuditSummarizer summarizer = null;
 
 	public AuditSummaryQueue(AuditHandler consumer) {
 		super(consumer);
@@ -66,7 +68,14 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 		super.init(props, propPrefix);
 		maxSummaryIntervalMs = MiscUtil.getIntProperty(props, propPrefix + "."
 				+ PROP_SUMMARY_INTERVAL, maxSummaryIntervalMs);
-		logger.info("maxSummaryInterval=" + maxSummaryIntervalMs + ", name="
+		maxSummaryEntries = MiscUtil.getIntProperty(props, propPrefix + "."
+				+ PROP_SUMMARY_MAX_ENTRIES, maxSummaryEntries);
+		maxSketchEntries = Math.max(1, MiscUtil.getIntProperty(props,
+				propPrefix + "." + PROP_SUMMARY_SKETCH_ENTRIES,
+				maxSketchEntries));
+		logger.info("maxSummaryInterval=" + maxSummaryIntervalMs
+				+ ", maxSummaryEntries=" + maxSummaryEntries
+				+ ", maxSketchEntries=" + maxSketchEntries + ", name="
 				+ getName());
 	}
 
@@ -84,9 +93,15 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 			return false;
 		}
 		queue.add(event);
+		getEnqueueRate().mark(1);
 		return true;
 	}
 
+	@Override
+	public int getQueueSize() {
+		return queue.size();
+	}
+
 	@Override
 	public boolean log(Collection<AuditEventBase> events) {
 		boolean ret = true;
@@ -157,6 +172,9 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 	}
 
 	public void runLogAudit() {
+		if (summarizer == null) {
+			summarizer = new AuditSummarizer(maxSummaryEntries, maxSketchEntries);
+		}
 
 		long lastDispatchTime = System.currentTimeMillis();
 
@@ -193,45 +211,43 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 			}
 
 			for (AuditEventBase event : eventList) {
-				// Add to hash map
-				String key = event.getEventKey();
-				AuditSummary auditSummary = summaryMap.get(key);
-				if (auditSummary == null) {
-					auditSummary = new AuditSummary();
-					auditSummary.event = event;
-					auditSummary.startTime = event.getEventTime();
-					auditSummary.endTime = event.getEventTime();
-					auditSummary.count = 1;
-					summaryMap.put(key, auditSummary);
-				} else {
-					auditSummary.endTime = event.getEventTime();
-					auditSummary.count++;
-				}
+				summarizer.add(event);
+			}
+			if (!eventList.isEmpty()) {
+				getDequeueRate().mark(eventList.size());
 			}
 
 			if (isDrain() || nextDispatchDuration <= 0) {
 				// Reset time just before sending the logs
 				lastDispatchTime = System.currentTimeMillis();
 
-				for (Map.Entry<String, AuditSummary> entry : summaryMap
-						.entrySet()) {
-					AuditSummary auditSummary = entry.getValue();
-					auditSummary.event.setEventCount(auditSummary.count);
-					long timeDiff = auditSummary.endTime.getTime()
-							- auditSummary.startTime.getTime();
+				if (summarizer.getEvictionCount() > 0) {
+					logger.warn("Distinct audit events exceeded "
+							+ maxSummaryEntries + " in summary interval; "
+							+ summarizer.getSketchSummaryCount()
+							+ " summaries have approximate counts, after "
+							+ summarizer.getEvictionCount()
+							+ " evictions. name=" + getName());
+				}
+
+				for (AuditSummary auditSummary : summarizer.getSummaries()) {
+					AuditEventBase event = auditSummary.getEvent();
+					event.setEventCount(auditSummary.getCount());
+					long timeDiff = auditSummary.getEndTime().getTime()
+							- auditSummary.getStartTime().getTime();
 					timeDiff = timeDiff > 0 ? timeDiff : 1;
-					auditSummary.event.setEventDurationMS(timeDiff);
-					boolean ret = consumer.log(auditSummary.event);
+					event.setEventDurationMS(timeDiff);
+					boolean ret = consumer.log(event);
 					if (!ret) {
 						// We need to drop this event
-						logFailedEvent(auditSummary.event);
+						logFailedEvent(event);
 					}
 				}
-				summaryMap.clear();
+				summarizer.reset();
 			}
 
 			if (isDrain()) {
-				if (summaryMap.isEmpty() && queue.isEmpty()) {
+				if (summarizer.isEmpty() && queue.isEmpty()) {
 					break;
 				}
 				if (isDrainMaxTimeElapsed()) {
@@ -255,11 +271,4 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 		}
 		logger.info("Exiting consumerThread.run() method. name=" + getName());
 	}
-
-	class AuditSummary {
-		Date startTime = null;
-		Date endTime = null;
-		int count = 0;
-		AuditEventBase event;
-	}
 }
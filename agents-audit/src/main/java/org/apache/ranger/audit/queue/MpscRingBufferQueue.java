@@ -0,0 +1,337 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, lock-free queue for multiple producers and a single consumer.
+ * <p>
+ * Each slot carries a sequence number: a producer claims a position with a CAS
+ * on the tail and publishes its element by advancing the slot's sequence; the
+ * consumer frees the slot by advancing the sequence by the capacity. Producers
+ * never wait on each other or on the consumer, and no node is allocated per
+ * element.
+ * <p>
+ * Methods that remove elements - poll(), take(), drainTo(), remove(Object)
+ * etc - must be called only from the consumer thread. iterator() is weakly
+ * consistent: it walks a snapshot of the elements in the queue when it was
+ * created. An element removed through the iterator leaves an empty slot that
+ * poll() skips; until then it is still counted by size().
+ */
+public class MpscRingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	private static final long PRODUCER_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+	private static final int  CONSUMER_SPIN_COUNT = 100;
+
+	private final int                     capacity;
+	private final AtomicReferenceArray<E> buffer;
+	private final AtomicLongArray         sequences;
+	private final AtomicLong              tail = new AtomicLong();
+
+	private volatile long   head = 0;
+	private volatile Thread waitingConsumer = null;
+
+	public MpscRingBufferQueue(int capacity) {
+		if (capacity < 2) {
+			throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+		}
+
+		this.capacity  = capacity;
+		this.buffer    = new AtomicReferenceArray<E>(capacity);
+		this.sequences = new AtomicLongArray(capacity);
+
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+
+		while (true) {
+			long pos   = tail.get();
+			int  index = (int) (pos % capacity);
+			long diff  = sequences.get(index) - pos;
+
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					buffer.lazySet(index, e);
+					sequences.set(index, pos + 1);
+
+					Thread consumer = waitingConsumer;
+
+					if (consumer != null) {
+						LockSupport.unpark(consumer);
+					}
+
+					return true;
+				}
+			} else if (diff < 0) { // slot not yet freed by the consumer: queue is full
+				return false;
+			}
+			// else: another producer claimed this position; retry with the new tail
+		}
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		while (!offer(e)) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+
+			long remaining = deadline - System.nanoTime();
+
+			if (remaining <= 0) {
+				return false;
+			}
+
+			LockSupport.parkNanos(this, Math.min(remaining, PRODUCER_WAIT_NANOS));
+		}
+
+		return true;
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		offer(e, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public E poll() {
+		E ret = null;
+
+		while (ret == null) {
+			long pos   = head;
+			int  index = (int) (pos % capacity);
+
+			if (sequences.get(index) != pos + 1) { // element at this position is not yet published
+				break;
+			}
+
+			ret = buffer.getAndSet(index, null); // null if removed via iterator; skip the slot
+
+			sequences.set(index, pos + capacity);
+			head = pos + 1;
+		}
+
+		return ret;
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E ret = poll();
+
+		if (ret == null) {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+			for (int i = 0; i < CONSUMER_SPIN_COUNT && ret == null; i++) {
+				Thread.yield();
+
+				ret = poll();
+			}
+
+			while (ret == null) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+
+				long remaining = deadline - System.nanoTime();
+
+				if (remaining <= 0) {
+					break;
+				}
+
+				waitingConsumer = Thread.currentThread();
+
+				try {
+					ret = poll(); // re-check after publishing waitingConsumer, to not miss an unpark
+
+					if (ret == null) {
+						LockSupport.parkNanos(this, remaining);
+
+						ret = poll();
+					}
+				} finally {
+					waitingConsumer = null;
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		E ret = null;
+
+		while (ret == null) {
+			ret = poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+
+		return ret;
+	}
+
+	@Override
+	public E peek() {
+		for (long pos = head; ; pos++) {
+			int index = (int) (pos % capacity);
+
+			if (sequences.get(index) != pos + 1) {
+				return null;
+			}
+
+			E ret = buffer.get(index);
+
+			if (ret != null) {
+				return ret;
+			}
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == null) {
+			throw new NullPointerException();
+		}
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+
+		int ret = 0;
+
+		while (ret < maxElements) {
+			E e = poll();
+
+			if (e == null) {
+				break;
+			}
+
+			c.add(e);
+			ret++;
+		}
+
+		return ret;
+	}
+
+	@Override
+	public int size() {
+		long size = tail.get() - head;
+
+		return size <= 0 ? 0 : (int) Math.min(size, capacity);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return peek() == null;
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return capacity - size();
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new SnapshotIterator();
+	}
+
+	private class SnapshotIterator implements Iterator<E> {
+		private final List<Long> positions = new ArrayList<Long>();
+		private final List<E>    elements  = new ArrayList<E>();
+		private int              next      = 0;
+		private int              last      = -1;
+
+		SnapshotIterator() {
+			for (long pos = head; ; pos++) {
+				int index = (int) (pos % capacity);
+
+				if (sequences.get(index) != pos + 1) { // end of published elements
+					break;
+				}
+
+				E e = buffer.get(index);
+
+				if (e != null) {
+					positions.add(pos);
+					elements.add(e);
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < elements.size();
+		}
+
+		@Override
+		public E next() {
+			if (next >= elements.size()) {
+				throw new NoSuchElementException();
+			}
+
+			last = next++;
+
+			return elements.get(last);
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+
+			long pos   = positions.get(last);
+			int  index = (int) (pos % capacity);
+
+			// no-op if the consumer has already taken the element
+			if (sequences.get(index) == pos + 1) {
+				buffer.compareAndSet(index, elements.get(last), null);
+			}
+
+			last = -1;
+		}
+	}
+}
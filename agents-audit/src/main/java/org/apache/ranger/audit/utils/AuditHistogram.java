@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values, with log-linear buckets in the
+ * style of HdrHistogram: values below 64 are counted exactly, and each higher
+ * power of two is split in 32 linear sub-buckets, so percentiles are reported
+ * with a relative error under 1/32.
+ * <p>
+ * Counts are kept in LongAdders, so that threads recording concurrently don't
+ * contend on shared counters; the adder of a bucket is created on its first
+ * use, as most buckets of a histogram stay empty.
+ */
+public class AuditHistogram {
+	private static final int SUB_BUCKET_BITS  = 5;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_LIMIT     = 2 * SUB_BUCKET_COUNT;
+	private static final int BUCKET_COUNT     = LINEAR_LIMIT + (62 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	private final AtomicReferenceArray<LongAdder> counts   = new AtomicReferenceArray<LongAdder>(BUCKET_COUNT);
+	private final LongAdder                       count    = new LongAdder();
+	private final LongAdder                       sum      = new LongAdder();
+	private final LongAccumulator                 maxValue = new LongAccumulator(Math::max, 0);
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+
+		getBucket(getBucketIndex(value)).increment();
+		count.increment();
+		sum.add(value);
+		maxValue.accumulate(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMax() {
+		return maxValue.get();
+	}
+
+	public long getMean() {
+		long n = count.sum();
+
+		return n > 0 ? sum.sum() / n : 0;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the highest value equivalent to the value at the given percentile, or 0 if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] bucketCounts = new long[BUCKET_COUNT];
+		long   total        = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			LongAdder bucket = counts.get(i);
+
+			if (bucket != null) {
+				bucketCounts[i] = bucket.sum();
+				total          += bucketCounts[i];
+			}
+		}
+
+		if (total == 0) {
+			return 0;
+		}
+
+		long target     = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+		long cumulative = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			cumulative += bucketCounts[i];
+
+			if (cumulative >= target) {
+				return Math.min(getHighestEquivalentValue(i), getMax());
+			}
+		}
+
+		return getMax();
+	}
+
+	private LongAdder getBucket(int index) {
+		LongAdder ret = counts.get(index);
+
+		if (ret == null) {
+			counts.compareAndSet(index, null, new LongAdder());
+
+			ret = counts.get(index);
+		}
+
+		return ret;
+	}
+
+	static int getBucketIndex(long value) {
+		if (value < LINEAR_LIMIT) {
+			return (int) value;
+		}
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+		return LINEAR_LIMIT + (shift - 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+	}
+
+	static long getHighestEquivalentValue(int index) {
+		if (index < LINEAR_LIMIT) {
+			return index;
+		}
+
+		int  shift     = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + 1;
+		long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events and keeps their one-minute exponentially weighted moving rate,
+ * like the load average. mark() only adds to a LongAdder, so concurrent
+ * producers don't contend; the rate is updated in 5 second ticks when it is
+ * read, spreading the events counted since the last read evenly over the
+ * elapsed ticks.
+ */
+public class AuditRateMeter {
+	private static final long   TICK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+	private static final double TICK_INTERVAL_SECS  = 5;
+	private static final double ALPHA               = 1 - Math.exp(-TICK_INTERVAL_SECS / 60);
+
+	private final LongAdder count = new LongAdder();
+
+	// updated by readers only, under the lock of this meter
+	private long    lastTick      = System.nanoTime();
+	private long    lastTickCount = 0;
+	private double  rate          = 0;
+	private boolean isInitialized = false;
+
+	public void mark(long n) {
+		count.add(n);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return events per second, averaged over the last minute
+	 */
+	public synchronized double getOneMinuteRate() {
+		long age   = System.nanoTime() - lastTick;
+		long ticks = age / TICK_INTERVAL_NANOS;
+
+		if (ticks > 0) {
+			long   currCount   = count.sum();
+			double instantRate = (currCount - lastTickCount) / (ticks * TICK_INTERVAL_SECS);
+
+			lastTick     += ticks * TICK_INTERVAL_NANOS;
+			lastTickCount = currCount;
+
+			for (long i = ticks; i > 0; i--) {
+				tick(instantRate);
+			}
+		}
+
+		return rate;
+	}
+
+	private void tick(double instantRate) {
+		if (isInitialized) {
+			rate += ALPHA * (instantRate - rate);
+		} else {
+			rate          = instantRate;
+			isInitialized = true;
+		}
+	}
+}
@@ -0,0 +1,714 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+
+/**
+ * Columnar file format for AuthzAuditEvent.
+ * <p>
+ * A file starts with a header (magic and version), followed by row groups. Each
+ * row group holds up to a few thousand events, stored column by column and
+ * compressed as one deflate block:
+ * <pre>
+ *   row group : rowCount(int) uncompressedLength(int) compressedLength(int) compressedBytes
+ * </pre>
+ * Within the block, columns are written in the fixed order of the event fields:
+ * <ul>
+ * <li>timestamps and sequence numbers are delta-encoded, as zig-zag varints</li>
+ * <li>other numbers are written as zig-zag varints</li>
+ * <li>strings - user, resource, access type etc - are dictionary-encoded: the
+ *     distinct values of the row group, followed by a varint id per row. Columns
+ *     whose values are mostly distinct, like event id, are written as is</li>
+ * </ul>
+ * Row groups are self-contained, so a file being written can be read up to its
+ * last complete row group.
+ */
+public class ColumnarAuditFile {
+	public static final byte[] MAGIC   = { 'R', 'A', 'U', 'D', 'C', 'O', 'L' };
+	public static final byte   VERSION = 1;
+
+	private static final int COLUMN_COUNT = 26;
+
+	private static final byte ENCODING_DICTIONARY = 0;
+	private static final byte ENCODING_DIRECT     = 1;
+
+	private static final long NULL_TIME = Long.MIN_VALUE;
+
+	private ColumnarAuditFile() { }
+
+	public static void writeHeader(OutputStream out) throws IOException {
+		out.write(MAGIC);
+		out.write(VERSION);
+	}
+
+	/**
+	 * Buffers events of a row group, column by column. Not thread-safe; buffers
+	 * are retained across row groups to avoid reallocation.
+	 */
+	public static class RowGroupWriter {
+		private final LongColumn   eventTime      = new LongColumn(true);
+		private final LongColumn   repoType       = new LongColumn(false);
+		private final StringColumn repo           = new StringColumn();
+		private final StringColumn user           = new StringColumn();
+		private final StringColumn accessType     = new StringColumn();
+		private final StringColumn resource       = new StringColumn();
+		private final StringColumn resourceType   = new StringColumn();
+		private final StringColumn action         = new StringColumn();
+		private final LongColumn   result         = new LongColumn(false);
+		private final StringColumn agentId        = new StringColumn();
+		private final LongColumn   policyId       = new LongColumn(false);
+		private final StringColumn reason         = new StringColumn();
+		private final StringColumn aclEnforcer    = new StringColumn();
+		private final StringColumn sessionId      = new StringColumn();
+		private final StringColumn clientType     = new StringColumn();
+		private final StringColumn clientIP       = new StringColumn();
+		private final StringColumn requestData    = new StringColumn();
+		private final StringColumn agentHost      = new StringColumn();
+		private final StringColumn logType        = new StringColumn();
+		private final StringColumn eventId        = new StringColumn();
+		private final LongColumn   seqNum         = new LongColumn(true);
+		private final LongColumn   eventCount     = new LongColumn(false);
+		private final LongColumn   eventDuration  = new LongColumn(false);
+		private final TagsColumn   tags           = new TagsColumn();
+		private final StringColumn additionalInfo = new StringColumn();
+		private final StringColumn clusterName    = new StringColumn();
+
+		private final Column[] columns = { eventTime, repoType, repo, user, accessType, resource, resourceType, action, result, agentId,
+		                                   policyId, reason, aclEnforcer, sessionId, clientType, clientIP, requestData, agentHost,
+		                                   logType, eventId, seqNum, eventCount, eventDuration, tags, additionalInfo, clusterName };
+
+		private final Deflater     deflater;
+		private final ColumnBuffer rawBuffer        = new ColumnBuffer(64 * 1024);
+		private final ColumnBuffer compressedBuffer = new ColumnBuffer(16 * 1024);
+
+		private int  rowCount          = 0;
+		private long firstRowAddedTime = 0;
+
+		public RowGroupWriter(int compressionLevel) {
+			deflater = new Deflater(compressionLevel);
+		}
+
+		public int getRowCount() {
+			return rowCount;
+		}
+
+		/*
+		 * time, in epoch milliseconds, when the first event of the current row group was added
+		 */
+		public long getFirstRowAddedTime() {
+			return firstRowAddedTime;
+		}
+
+		public void add(AuthzAuditEvent event) {
+			Date evtTime = event.getEventTime();
+
+			eventTime.add(evtTime == null ? NULL_TIME : evtTime.getTime());
+			repoType.add(event.getRepositoryType());
+			repo.add(event.getRepositoryName());
+			user.add(event.getUser());
+			accessType.add(event.getAccessType());
+			resource.add(event.getResourcePath());
+			resourceType.add(event.getResourceType());
+			action.add(event.getAction());
+			result.add(event.getAccessResult());
+			agentId.add(event.getAgentId());
+			policyId.add(event.getPolicyId());
+			reason.add(event.getResultReason());
+			aclEnforcer.add(event.getAclEnforcer());
+			sessionId.add(event.getSessionId());
+			clientType.add(event.getClientType());
+			clientIP.add(event.getClientIP());
+			requestData.add(event.getRequestData());
+			agentHost.add(event.getAgentHostname());
+			logType.add(event.getLogType());
+			eventId.add(event.getEventId());
+			seqNum.add(event.getSeqNum());
+			eventCount.add(event.getEventCount());
+			eventDuration.add(event.getEventDurationMS());
+			tags.add(event.getTags());
+			additionalInfo.add(event.getAdditionalInfo());
+			clusterName.add(event.getClusterName());
+
+			if (rowCount == 0) {
+				firstRowAddedTime = System.currentTimeMillis();
+			}
+
+			rowCount++;
+		}
+
+		/*
+		 * writes the buffered events as a compressed row group, and resets the writer for the next row group.
+		 * Returns the number of bytes written
+		 */
+		public int writeTo(OutputStream out) throws IOException {
+			if (rowCount == 0) {
+				return 0;
+			}
+
+			rawBuffer.reset();
+			rawBuffer.writeVarLong(COLUMN_COUNT);
+
+			for (Column column : columns) {
+				column.writeTo(rawBuffer);
+			}
+
+			compressedBuffer.reset();
+			deflater.reset();
+			deflater.setInput(rawBuffer.array(), 0, rawBuffer.size());
+			deflater.finish();
+
+			while (!deflater.finished()) {
+				compressedBuffer.ensureCapacity(compressedBuffer.size() + 8 * 1024);
+
+				int len = deflater.deflate(compressedBuffer.array(), compressedBuffer.size(), compressedBuffer.capacity() - compressedBuffer.size());
+
+				compressedBuffer.skip(len);
+			}
+
+			writeInt(out, rowCount);
+			writeInt(out, rawBuffer.size());
+			writeInt(out, compressedBuffer.size());
+			out.write(compressedBuffer.array(), 0, compressedBuffer.size());
+
+			reset();
+
+			return 3 * 4 + compressedBuffer.size();
+		}
+
+		public void reset() {
+			for (Column column : columns) {
+				column.reset();
+			}
+
+			rowCount          = 0;
+			firstRowAddedTime = 0;
+		}
+
+		public void close() {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Reads events from a columnar audit file, one row group at a time
+	 */
+	public static class Reader {
+		private final DataInputStream in;
+		private final Inflater        inflater = new Inflater();
+
+		public Reader(InputStream in) throws IOException {
+			this.in = new DataInputStream(in);
+
+			byte[] magic = new byte[MAGIC.length];
+
+			this.in.readFully(magic);
+
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException("not a columnar audit file");
+			}
+
+			byte version = this.in.readByte();
+
+			if (version != VERSION) {
+				throw new IOException("unsupported columnar audit file version: " + version);
+			}
+		}
+
+		/*
+		 * returns events of the next row group; null at end of file, or if the last row group is incomplete
+		 */
+		public List<AuthzAuditEvent> readRowGroup() throws IOException {
+			int rowCount;
+
+			try {
+				rowCount = in.readInt();
+			} catch (EOFException excp) {
+				return null;
+			}
+
+			byte[] raw;
+
+			try {
+				int    rawLength        = in.readInt();
+				int    compressedLength = in.readInt();
+				byte[] compressed       = new byte[compressedLength];
+
+				in.readFully(compressed);
+
+				raw = new byte[rawLength];
+
+				inflater.reset();
+				inflater.setInput(compressed);
+
+				if (inflater.inflate(raw) != rawLength) {
+					throw new IOException("corrupt row group: uncompressed length mismatch");
+				}
+			} catch (EOFException excp) {
+				return null;
+			} catch (DataFormatException excp) {
+				throw new IOException("corrupt row group", excp);
+			}
+
+			ColumnBuffer buffer      = new ColumnBuffer(raw);
+			int        columnCount = (int) buffer.readVarLong();
+
+			if (columnCount != COLUMN_COUNT) {
+				throw new IOException("unexpected column count: " + columnCount);
+			}
+
+			long[]     eventTime      = LongColumn.read(buffer, rowCount, true);
+			long[]     repoType       = LongColumn.read(buffer, rowCount, false);
+			String[]   repo           = StringColumn.read(buffer, rowCount);
+			String[]   user           = StringColumn.read(buffer, rowCount);
+			String[]   accessType     = StringColumn.read(buffer, rowCount);
+			String[]   resource       = StringColumn.read(buffer, rowCount);
+			String[]   resourceType   = StringColumn.read(buffer, rowCount);
+			String[]   action         = StringColumn.read(buffer, rowCount);
+			long[]     result         = LongColumn.read(buffer, rowCount, false);
+			String[]   agentId        = StringColumn.read(buffer, rowCount);
+			long[]     policyId       = LongColumn.read(buffer, rowCount, false);
+			String[]   reason         = StringColumn.read(buffer, rowCount);
+			String[]   aclEnforcer    = StringColumn.read(buffer, rowCount);
+			String[]   sessionId      = StringColumn.read(buffer, rowCount);
+			String[]   clientType     = StringColumn.read(buffer, rowCount);
+			String[]   clientIP       = StringColumn.read(buffer, rowCount);
+			String[]   requestData    = StringColumn.read(buffer, rowCount);
+			String[]   agentHost      = StringColumn.read(buffer, rowCount);
+			String[]   logType        = StringColumn.read(buffer, rowCount);
+			String[]   eventId        = StringColumn.read(buffer, rowCount);
+			long[]     seqNum         = LongColumn.read(buffer, rowCount, true);
+			long[]     eventCount     = LongColumn.read(buffer, rowCount, false);
+			long[]     eventDuration  = LongColumn.read(buffer, rowCount, false);
+			Set<?>[]   tags           = TagsColumn.read(buffer, rowCount);
+			String[]   additionalInfo = StringColumn.read(buffer, rowCount);
+			String[]   clusterName    = StringColumn.read(buffer, rowCount);
+
+			List<AuthzAuditEvent> ret = new ArrayList<AuthzAuditEvent>(rowCount);
+
+			for (int i = 0; i < rowCount; i++) {
+				AuthzAuditEvent event = new AuthzAuditEvent();
+
+				event.setEventTime(eventTime[i] == NULL_TIME ? null : new Date(eventTime[i]));
+				event.setRepositoryType((int) repoType[i]);
+				event.setRepositoryName(repo[i]);
+				event.setUser(user[i]);
+				event.setAccessType(accessType[i]);
+				event.setResourcePath(resource[i]);
+				event.setResourceType(resourceType[i]);
+				event.setAction(action[i]);
+				event.setAccessResult((short) result[i]);
+				event.setAgentId(agentId[i]);
+				event.setPolicyId(policyId[i]);
+				event.setResultReason(reason[i]);
+				event.setAclEnforcer(aclEnforcer[i]);
+				event.setSessionId(sessionId[i]);
+				event.setClientType(clientType[i]);
+				event.setClientIP(clientIP[i]);
+				event.setRequestData(requestData[i]);
+				event.setAgentHostname(agentHost[i]);
+				event.setLogType(logType[i]);
+				event.setEventId(eventId[i]);
+				event.setSeqNum(seqNum[i]);
+				event.setEventCount(eventCount[i]);
+				event.setEventDurationMS(eventDuration[i]);
+				event.setTags(toStringSet(tags[i]));
+				event.setAdditionalInfo(additionalInfo[i]);
+				event.setClusterName(clusterName[i]);
+
+				ret.add(event);
+			}
+
+			return ret;
+		}
+
+		public void close() throws IOException {
+			inflater.end();
+			in.close();
+		}
+
+		@SuppressWarnings("unchecked")
+		private static Set<String> toStringSet(Set<?> tags) {
+			return (Set<String>) tags;
+		}
+	}
+
+	private static abstract class Column {
+		abstract void writeTo(ColumnBuffer out);
+
+		abstract void reset();
+	}
+
+	private static class LongColumn extends Column {
+		private final boolean isDeltaEncoded;
+		private long[]        values = new long[1024];
+		private int           count  = 0;
+
+		LongColumn(boolean isDeltaEncoded) {
+			this.isDeltaEncoded = isDeltaEncoded;
+		}
+
+		void add(long value) {
+			if (count == values.length) {
+				values = Arrays.copyOf(values, values.length * 2);
+			}
+
+			values[count++] = value;
+		}
+
+		@Override
+		void writeTo(ColumnBuffer out) {
+			long prev = 0;
+
+			for (int i = 0; i < count; i++) {
+				out.writeVarLong(zigZag(values[i] - prev));
+
+				if (isDeltaEncoded) {
+					prev = values[i];
+				}
+			}
+		}
+
+		@Override
+		void reset() {
+			count = 0;
+		}
+
+		static long[] read(ColumnBuffer in, int rowCount, boolean isDeltaEncoded) {
+			long[] ret  = new long[rowCount];
+			long   prev = 0;
+
+			for (int i = 0; i < rowCount; i++) {
+				ret[i] = prev + unZigZag(in.readVarLong());
+
+				if (isDeltaEncoded) {
+					prev = ret[i];
+				}
+			}
+
+			return ret;
+		}
+	}
+
+	private static class StringColumn extends Column {
+		private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+		private final List<String>         values     = new ArrayList<String>();
+		private int[]                      ids        = new int[1024];
+		private int                        count      = 0;
+
+		void add(String value) {
+			if (count == ids.length) {
+				ids = Arrays.copyOf(ids, ids.length * 2);
+			}
+
+			ids[count++] = idOf(value);
+		}
+
+		/*
+		 * id 0 is for null; others are 1 + index in values
+		 */
+		int idOf(String value) {
+			if (value == null) {
+				return 0;
+			}
+
+			Integer ret = dictionary.get(value);
+
+			if (ret == null) {
+				values.add(value);
+
+				ret = values.size();
+
+				dictionary.put(value, ret);
+			}
+
+			return ret;
+		}
+
+		@Override
+		void writeTo(ColumnBuffer out) {
+			// a dictionary is a gain only when values repeat
+			if (values.size() * 2 > count) {
+				out.write(ENCODING_DIRECT);
+
+				for (int i = 0; i < count; i++) {
+					writeString(out, ids[i] == 0 ? null : values.get(ids[i] - 1));
+				}
+			} else {
+				out.write(ENCODING_DICTIONARY);
+				writeDictionary(out);
+
+				for (int i = 0; i < count; i++) {
+					out.writeVarLong(ids[i]);
+				}
+			}
+		}
+
+		void writeDictionary(ColumnBuffer out) {
+			out.writeVarLong(values.size());
+
+			for (String value : values) {
+				writeString(out, value);
+			}
+		}
+
+		@Override
+		void reset() {
+			dictionary.clear();
+			values.clear();
+
+			count = 0;
+		}
+
+		static String[] read(ColumnBuffer in, int rowCount) throws IOException {
+			String[] ret      = new String[rowCount];
+			byte     encoding = (byte) in.read();
+
+			if (encoding == ENCODING_DIRECT) {
+				for (int i = 0; i < rowCount; i++) {
+					ret[i] = readString(in);
+				}
+			} else if (encoding == ENCODING_DICTIONARY) {
+				String[] dictionary = readDictionary(in);
+
+				for (int i = 0; i < rowCount; i++) {
+					ret[i] = dictionary[(int) in.readVarLong()];
+				}
+			} else {
+				throw new IOException("unknown column encoding: " + encoding);
+			}
+
+			return ret;
+		}
+
+		static String[] readDictionary(ColumnBuffer in) {
+			String[] ret = new String[(int) in.readVarLong() + 1];
+
+			for (int i = 1; i < ret.length; i++) {
+				ret[i] = readString(in);
+			}
+
+			return ret;
+		}
+
+		/*
+		 * length + 1, followed by UTF-8 bytes; 0 for null
+		 */
+		private static void writeString(ColumnBuffer out, String value) {
+			if (value == null) {
+				out.writeVarLong(0);
+			} else {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+				out.writeVarLong(bytes.length + 1L);
+				out.write(bytes, 0, bytes.length);
+			}
+		}
+
+		private static String readString(ColumnBuffer in) {
+			int len = (int) in.readVarLong();
+
+			return len == 0 ? null : in.readString(len - 1);
+		}
+	}
+
+	/*
+	 * tags are written as: dictionary of tags in the row group, then for each row the number of tags (0 for null,
+	 * else 1 + count) followed by their ids
+	 */
+	private static class TagsColumn extends Column {
+		private final StringColumn dictionary = new StringColumn();
+		private int[]              counts     = new int[1024];
+		private int[]              ids        = new int[1024];
+		private int                rows       = 0;
+		private int                idCount    = 0;
+
+		void add(Set<String> tags) {
+			if (rows == counts.length) {
+				counts = Arrays.copyOf(counts, counts.length * 2);
+			}
+
+			counts[rows++] = tags == null ? 0 : tags.size() + 1;
+
+			if (tags != null) {
+				for (String tag : tags) {
+					if (idCount == ids.length) {
+						ids = Arrays.copyOf(ids, ids.length * 2);
+					}
+
+					ids[idCount++] = dictionary.idOf(tag);
+				}
+			}
+		}
+
+		@Override
+		void writeTo(ColumnBuffer out) {
+			dictionary.writeDictionary(out);
+
+			int idx = 0;
+
+			for (int i = 0; i < rows; i++) {
+				out.writeVarLong(counts[i]);
+
+				for (int j = 1; j < counts[i]; j++) {
+					out.writeVarLong(ids[idx++]);
+				}
+			}
+		}
+
+		@Override
+		void reset() {
+			dictionary.reset();
+
+			rows    = 0;
+			idCount = 0;
+		}
+
+		static Set<?>[] read(ColumnBuffer in, int rowCount) {
+			Set<?>[] ret        = new Set<?>[rowCount];
+			String[] dictionary = StringColumn.readDictionary(in);
+
+			for (int i = 0; i < rowCount; i++) {
+				int count = (int) in.readVarLong();
+
+				if (count > 0) {
+					Set<String> tags = new HashSet<String>();
+
+					for (int j = 1; j < count; j++) {
+						tags.add(dictionary[(int) in.readVarLong()]);
+					}
+
+					ret[i] = tags;
+				}
+			}
+
+			return ret;
+		}
+	}
+
+	/*
+	 * ByteArrayOutputStream that exposes its buffer, to read from and to deflate into without copying
+	 */
+	private static class ColumnBuffer extends ByteArrayOutputStream {
+		private int readPos = 0;
+
+		ColumnBuffer(int size) {
+			super(size);
+		}
+
+		ColumnBuffer(byte[] data) {
+			super(0);
+
+			buf   = data;
+			count = data.length;
+		}
+
+		byte[] array() {
+			return buf;
+		}
+
+		int capacity() {
+			return buf.length;
+		}
+
+		void ensureCapacity(int minCapacity) {
+			if (minCapacity > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(minCapacity, buf.length * 2));
+			}
+		}
+
+		void skip(int len) {
+			count += len;
+		}
+
+		void writeVarLong(long value) {
+			while ((value & ~0x7FL) != 0) {
+				write((int) ((value & 0x7F) | 0x80));
+
+				value >>>= 7;
+			}
+
+			write((int) value);
+		}
+
+		int read() {
+			return buf[readPos++] & 0xFF;
+		}
+
+		long readVarLong() {
+			long ret   = 0;
+			int  shift = 0;
+
+			while (true) {
+				int b = read();
+
+				ret |= (long) (b & 0x7F) << shift;
+
+				if ((b & 0x80) == 0) {
+					return ret;
+				}
+
+				shift += 7;
+			}
+		}
+
+		String readString(int len) {
+			String ret = new String(buf, readPos, len, StandardCharsets.UTF_8);
+
+			readPos += len;
+
+			return ret;
+		}
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeInt(OutputStream out, int value) throws IOException {
+		out.write((value >>> 24) & 0xFF);
+		out.write((value >>> 16) & 0xFF);
+		out.write((value >>> 8) & 0xFF);
+		out.write(value & 0xFF);
+	}
+}
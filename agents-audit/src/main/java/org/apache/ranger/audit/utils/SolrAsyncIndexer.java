@@ -0,0 +1,440 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.solr.client.solrj.impl.HttpSolrClient.RemoteSolrException;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+
+/**
+ * Sends Solr documents in batches from background threads, so that the caller
+ * does not wait for Solr.
+ * <p>
+ * Documents are collected into batches of up to batchSize, or fewer once
+ * maxBatchIntervalMs has elapsed since the first document of the batch was
+ * added. At most maxInFlight batches are sent at a time. offer() waits while
+ * maxPending documents are queued or being sent, and returns false if they
+ * don't drain within the given timeout: this is the backpressure signal, which
+ * lets AuditBatchQueue spool or retry the events.
+ * <p>
+ * A batch that fails with an error that won't go away on retry (a
+ * SolrException other than a 5xx from the Solr server, like a bad document) is
+ * reported to the listener as failed. On other errors (like a 5xx or Solr being
+ * unreachable) it is retried every retryIntervalMs until sent or until the
+ * indexer is stopped, when it is reported as failed along with the batches not
+ * yet sent; the listener is expected to hand these back to the audit queue.
+ */
+public class SolrAsyncIndexer {
+	private static final Log LOG = LogFactory.getLog(SolrAsyncIndexer.class);
+
+	public interface BatchSender {
+		void send(List<SolrInputDocument> docs) throws Exception;
+	}
+
+	public interface BatchListener {
+		void onSuccess(List<AuditEventBase> events, long latencyMs);
+
+		/**
+		 * @param excp null if the batch was not sent before the indexer was stopped
+		 */
+		void onFailure(List<AuditEventBase> events, Throwable excp);
+	}
+
+	private static final Entry FLUSH_MARKER = new Entry(null, null);
+
+	private final String                     name;
+	private final BatchSender                sender;
+	private final BatchListener              listener;
+	private final int                        batchSize;
+	private final long                       maxBatchIntervalMs;
+	private final long                       retryIntervalMs;
+	private final LinkedBlockingQueue<Entry> pending = new LinkedBlockingQueue<Entry>();
+	private final Semaphore                  pendingPermits;
+	private final Semaphore                  inFlightPermits;
+	private final ExecutorService            senderPool;
+	private final AtomicInteger              inFlightCount = new AtomicInteger();
+	private final BatchLatencyStats          latencyStats  = new BatchLatencyStats();
+
+	private int              maxPending;
+	private volatile boolean isStopped     = false;
+	private Thread           batcherThread = null;
+
+	public SolrAsyncIndexer(String name, BatchSender sender, BatchListener listener, int batchSize, long maxBatchIntervalMs, int maxInFlight, int maxPending, long retryIntervalMs) {
+		this.name               = name;
+		this.sender             = sender;
+		this.listener           = listener;
+		this.batchSize          = Math.max(1, batchSize);
+		this.maxBatchIntervalMs = Math.max(1, maxBatchIntervalMs);
+		this.retryIntervalMs    = Math.max(1, retryIntervalMs);
+		this.maxPending         = Math.max(this.batchSize, maxPending);
+		this.pendingPermits     = new Semaphore(this.maxPending);
+		this.inFlightPermits    = new Semaphore(Math.max(1, maxInFlight));
+		this.senderPool         = Executors.newFixedThreadPool(Math.max(1, maxInFlight), new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread ret = new Thread(r, SolrAsyncIndexer.class.getSimpleName() + "-" + SolrAsyncIndexer.this.name + "-sender" + threadCount.incrementAndGet());
+
+				ret.setDaemon(true);
+
+				return ret;
+			}
+		});
+
+		LOG.info("SolrAsyncIndexer(name=" + name + ", batchSize=" + this.batchSize + ", maxBatchIntervalMs=" + this.maxBatchIntervalMs
+				+ ", maxInFlight=" + maxInFlight + ", maxPending=" + this.maxPending + ", retryIntervalMs=" + this.retryIntervalMs + ")");
+	}
+
+	public synchronized void start() {
+		if (batcherThread != null) {
+			return;
+		}
+
+		batcherThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				runBatcher();
+			}
+		}, SolrAsyncIndexer.class.getSimpleName() + "-" + name + "-batcher");
+
+		batcherThread.setDaemon(true);
+		batcherThread.start();
+	}
+
+	/**
+	 * Queues the documents to be sent, waiting up to timeoutMs for space.
+	 *
+	 * @return false if there was no space for all the documents within timeoutMs, or if stopped
+	 */
+	public boolean offer(List<AuditEventBase> events, List<SolrInputDocument> docs, long timeoutMs) throws InterruptedException {
+		int count = docs.size();
+
+		if (isStopped) {
+			return false;
+		}
+
+		if (count > getMaxPending()) {
+			growMaxPending(count);
+		}
+
+		if (!pendingPermits.tryAcquire(count, timeoutMs, TimeUnit.MILLISECONDS)) {
+			return false;
+		}
+
+		for (int i = 0; i < count; i++) {
+			pending.add(new Entry(events.get(i), docs.get(i)));
+		}
+
+		return true;
+	}
+
+	/**
+	 * Sends the queued documents without waiting for the batch interval, and
+	 * waits up to timeoutMs for all documents to be sent.
+	 *
+	 * @return true if all documents offered before this call were sent
+	 */
+	public boolean flush(long timeoutMs) throws InterruptedException {
+		pending.add(FLUSH_MARKER);
+
+		int permits = getMaxPending();
+
+		if (pendingPermits.tryAcquire(permits, timeoutMs, TimeUnit.MILLISECONDS)) {
+			pendingPermits.release(permits);
+
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Waits up to drainTimeoutMs for queued documents to be sent; those not sent
+	 * by then are reported to the listener as failed.
+	 */
+	public void stop(long drainTimeoutMs) {
+		LOG.info("Stopping SolrAsyncIndexer. name=" + name + ", pending=" + getPendingCount() + ", inFlight=" + getInFlightCount());
+
+		try {
+			if (!flush(drainTimeoutMs)) {
+				LOG.warn("Timed out waiting for pending audit documents to be sent to Solr. name=" + name + ", pending=" + getPendingCount());
+			}
+		} catch (InterruptedException excp) {
+			Thread.currentThread().interrupt();
+		}
+
+		isStopped = true;
+
+		Thread batcher;
+
+		synchronized (this) {
+			batcher       = batcherThread;
+			batcherThread = null;
+		}
+
+		if (batcher != null) {
+			batcher.interrupt();
+
+			try {
+				batcher.join(drainTimeoutMs);
+			} catch (InterruptedException excp) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		senderPool.shutdownNow(); // batches being retried are reported as failed
+
+		try {
+			senderPool.awaitTermination(drainTimeoutMs, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException excp) {
+			Thread.currentThread().interrupt();
+		}
+
+		List<Entry> remaining = new ArrayList<Entry>();
+
+		pending.drainTo(remaining);
+		failBatch(remaining, null);
+	}
+
+	/**
+	 * @return number of documents queued or being sent
+	 */
+	public int getPendingCount() {
+		return getMaxPending() - pendingPermits.availablePermits();
+	}
+
+	public int getInFlightCount() {
+		return inFlightCount.get();
+	}
+
+	/**
+	 * @return latency stats of the batches sent since the previous call
+	 */
+	public String getAndResetLatencyStats() {
+		return latencyStats.getAndReset();
+	}
+
+	private void runBatcher() {
+		List<Entry> batch = new ArrayList<Entry>(batchSize);
+
+		try {
+			while (!isStopped) {
+				Entry entry = pending.take();
+
+				if (entry == FLUSH_MARKER) {
+					continue;
+				}
+
+				batch.add(entry);
+
+				long    batchEndTime = System.currentTimeMillis() + maxBatchIntervalMs;
+				boolean isFlush      = false;
+
+				while (batch.size() < batchSize && !isFlush) {
+					long waitMs = batchEndTime - System.currentTimeMillis();
+
+					entry = waitMs > 0 ? pending.poll(waitMs, TimeUnit.MILLISECONDS) : pending.poll();
+
+					if (entry == null) {
+						break;
+					} else if (entry == FLUSH_MARKER) {
+						isFlush = true;
+					} else {
+						batch.add(entry);
+					}
+				}
+
+				inFlightPermits.acquire();
+				inFlightCount.incrementAndGet();
+
+				try {
+					senderPool.execute(new BatchTask(batch));
+				} catch (Throwable t) {
+					inFlightCount.decrementAndGet();
+					inFlightPermits.release();
+
+					throw t;
+				}
+
+				batch = new ArrayList<Entry>(batchSize);
+			}
+		} catch (InterruptedException excp) {
+			LOG.info("SolrAsyncIndexer batcher interrupted. name=" + name);
+		} catch (Throwable t) {
+			LOG.fatal("SolrAsyncIndexer batcher exited abnormally. name=" + name, t);
+		}
+
+		failBatch(batch, null);
+	}
+
+	private void failBatch(List<Entry> batch, Throwable excp) {
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		List<AuditEventBase> events = new ArrayList<AuditEventBase>(batch.size());
+
+		for (Entry entry : batch) {
+			if (entry != FLUSH_MARKER) {
+				events.add(entry.event);
+			}
+		}
+
+		if (!events.isEmpty()) {
+			listener.onFailure(events, excp);
+		}
+
+		pendingPermits.release(events.size());
+	}
+
+	static boolean isRetriable(Throwable excp) {
+		if (excp instanceof RemoteSolrException) {
+			return ((RemoteSolrException) excp).code() >= 500;
+		}
+
+		return !(excp instanceof SolrException);
+	}
+
+	private synchronized int getMaxPending() {
+		return maxPending;
+	}
+
+	private synchronized void growMaxPending(int newMaxPending) {
+		if (newMaxPending > maxPending) {
+			LOG.warn("Increasing maxPending of SolrAsyncIndexer to fit a batch of " + newMaxPending + " documents. name=" + name);
+
+			pendingPermits.release(newMaxPending - maxPending);
+
+			maxPending = newMaxPending;
+		}
+	}
+
+	private class BatchTask implements Runnable {
+		private final List<Entry> batch;
+
+		BatchTask(List<Entry> batch) {
+			this.batch = batch;
+		}
+
+		@Override
+		public void run() {
+			List<SolrInputDocument> docs   = new ArrayList<SolrInputDocument>(batch.size());
+			List<AuditEventBase>    events = new ArrayList<AuditEventBase>(batch.size());
+
+			for (Entry entry : batch) {
+				docs.add(entry.doc);
+				events.add(entry.event);
+			}
+
+			try {
+				while (true) {
+					long startTime = System.currentTimeMillis();
+
+					try {
+						sender.send(docs);
+
+						long latencyMs = System.currentTimeMillis() - startTime;
+
+						latencyStats.add(docs.size(), latencyMs);
+						listener.onSuccess(events, latencyMs);
+						pendingPermits.release(docs.size());
+
+						break;
+					} catch (Throwable t) {
+						if (!isRetriable(t) || isStopped || Thread.currentThread().isInterrupted()) {
+							failBatch(batch, t);
+
+							break;
+						}
+
+						LOG.warn("Error sending audit batch to Solr; will retry in " + retryIntervalMs + "ms. name=" + name + ", batchSize=" + docs.size(), t);
+
+						try {
+							Thread.sleep(retryIntervalMs);
+						} catch (InterruptedException excp) {
+							failBatch(batch, t);
+
+							break;
+						}
+					}
+				}
+			} finally {
+				inFlightCount.decrementAndGet();
+				inFlightPermits.release();
+			}
+		}
+	}
+
+	private static class Entry {
+		final AuditEventBase    event;
+		final SolrInputDocument doc;
+
+		Entry(AuditEventBase event, SolrInputDocument doc) {
+			this.event = event;
+			this.doc   = doc;
+		}
+	}
+
+	private static class BatchLatencyStats {
+		private long batchCount   = 0;
+		private long docCount     = 0;
+		private long totalLatency = 0;
+		private long minLatency   = Long.MAX_VALUE;
+		private long maxLatency   = 0;
+
+		synchronized void add(int docs, long latencyMs) {
+			batchCount++;
+			docCount     += docs;
+			totalLatency += latencyMs;
+			minLatency    = Math.min(minLatency, latencyMs);
+			maxLatency    = Math.max(maxLatency, latencyMs);
+		}
+
+		synchronized String getAndReset() {
+			String ret = "batches=" + batchCount + ", docs=" + docCount;
+
+			if (batchCount > 0) {
+				ret += ", avgBatchLatencyMs=" + (totalLatency / batchCount) + ", minBatchLatencyMs=" + minLatency + ", maxBatchLatencyMs=" + maxLatency;
+			}
+
+			batchCount   = 0;
+			docCount     = 0;
+			totalLatency = 0;
+			minLatency   = Long.MAX_VALUE;
+			maxLatency   = 0;
+
+			return ret;
+		}
+	}
+}
@@ -0,0 +1,371 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.audit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
+
+/**
+ * Limits the volume of audit events for allowed accesses; denied accesses are
+ * always audited.
+ * <p>
+ * An allowed event is audited only if it is sampled, by a deterministic hash of
+ * the event, and if the token bucket of its user, resource and access type has a
+ * token. Buckets hold up to rateLimitBurst tokens and are refilled at
+ * rateLimitPerSecond. Events not audited are counted per bucket, and the count is
+ * added to the eventCount of the next audited event of the bucket, so the number
+ * of accesses can still be reconstructed from the audit log.
+ * <p>
+ * Counts that stay pending for flush.interval.seconds, for example of a bucket
+ * with no more accesses, are reported by flush() in the last suppressed event of
+ * the bucket. Up to maxKeys buckets are tracked; the pending count of a least
+ * recently used bucket that is dropped is reported by the next flush() as well.
+ */
+public class RangerAuditVolumeController {
+	private static final Log LOG = LogFactory.getLog(RangerAuditVolumeController.class);
+
+	public static final String PROP_PREFIX             = "ranger.plugin.audit.volume.control";
+	public static final String PROP_ENABLED            = PROP_PREFIX + ".enabled";
+	public static final String PROP_RATE_LIMIT_PER_SEC = PROP_PREFIX + ".rate.limit.per.second";
+	public static final String PROP_RATE_LIMIT_BURST   = PROP_PREFIX + ".rate.limit.burst";
+	public static final String PROP_SAMPLE_PERCENT     = PROP_PREFIX + ".sample.percent";
+	public static final String PROP_MAX_KEYS           = PROP_PREFIX + ".max.keys";
+	public static final String PROP_FLUSH_INTERVAL_SEC = PROP_PREFIX + ".flush.interval.seconds";
+
+	private static final int  STRIPE_COUNT      = 16;
+	private static final int  SAMPLE_RESOLUTION = 10000;
+	private static final long NANOS_PER_SECOND  = 1000L * 1000 * 1000;
+
+	private static volatile RangerAuditVolumeController instance      = null;
+	private static volatile boolean                     isInitialized = false;
+
+	private final double         rateLimitPerNano; // 0: no rate limit
+	private final int            rateLimitBurst;
+	private final int            sampleThreshold;  // out of SAMPLE_RESOLUTION
+	private final long           flushIntervalNanos;
+	private final int            maxEvictedEvents;
+	private final BucketStripe[] stripes;
+	private final AtomicLong     suppressedCount      = new AtomicLong();
+	private final AtomicLong     droppedCount         = new AtomicLong();
+	private final AtomicLong     reportedDroppedCount = new AtomicLong();
+
+	private final List<AuthzAuditEvent> evictedEvents = new ArrayList<AuthzAuditEvent>(); // events of dropped buckets, to be reported by flush()
+
+	/**
+	 * @return the controller configured for the plugin, or null if volume control is not enabled
+	 */
+	public static RangerAuditVolumeController getInstance() {
+		if (!isInitialized) {
+			synchronized (RangerAuditVolumeController.class) {
+				if (!isInitialized) {
+					RangerConfiguration config = RangerConfiguration.getInstance();
+
+					if (config.getBoolean(PROP_ENABLED, false)) {
+						int flushIntervalSec = config.getInt(PROP_FLUSH_INTERVAL_SEC, 60);
+
+						instance = new RangerAuditVolumeController(config.getFloat(PROP_RATE_LIMIT_PER_SEC, 1),
+								config.getInt(PROP_RATE_LIMIT_BURST, 10),
+								config.getFloat(PROP_SAMPLE_PERCENT, 100),
+								config.getInt(PROP_MAX_KEYS, 10000),
+								flushIntervalSec);
+
+						if (flushIntervalSec > 0) {
+							long  flushIntervalMs = TimeUnit.SECONDS.toMillis(flushIntervalSec);
+							Timer flushTimer      = new Timer("AuditVolumeControllerFlushTimer", true);
+
+							flushTimer.schedule(new SuppressedCountFlusher(instance, new RangerDefaultAuditHandler()), flushIntervalMs, flushIntervalMs);
+						}
+					}
+
+					isInitialized = true;
+				}
+			}
+		}
+
+		return instance;
+	}
+
+	public RangerAuditVolumeController(float rateLimitPerSecond, int rateLimitBurst, float samplePercent, int maxKeys, int flushIntervalSec) {
+		this.rateLimitPerNano   = rateLimitPerSecond > 0 ? rateLimitPerSecond / (double) NANOS_PER_SECOND : 0;
+		this.rateLimitBurst     = Math.max(1, rateLimitBurst);
+		this.sampleThreshold    = (int) Math.round(Math.min(100, Math.max(0, samplePercent)) * (SAMPLE_RESOLUTION / 100));
+		this.flushIntervalNanos = TimeUnit.SECONDS.toNanos(Math.max(0, flushIntervalSec));
+		this.maxEvictedEvents   = Math.max(1, maxKeys);
+		this.stripes            = new BucketStripe[STRIPE_COUNT];
+
+		for (int i = 0; i < STRIPE_COUNT; i++) {
+			stripes[i] = new BucketStripe(Math.max(1, maxKeys / STRIPE_COUNT));
+		}
+
+		LOG.info("RangerAuditVolumeController(rateLimitPerSecond=" + rateLimitPerSecond + ", rateLimitBurst=" + this.rateLimitBurst
+				+ ", samplePercent=" + samplePercent + ", maxKeys=" + maxKeys + ", flushIntervalSec=" + flushIntervalSec + ")");
+	}
+
+	/**
+	 * @return true if the event should be audited. If so, its eventCount includes
+	 * the events of the same bucket not audited since the previous one.
+	 */
+	public boolean isToAudit(AuthzAuditEvent event) {
+		return isToAudit(event, System.nanoTime());
+	}
+
+	boolean isToAudit(AuthzAuditEvent event, long nowNanos) {
+		if (event.getAccessResult() != 1) { // only allowed accesses are limited
+			return true;
+		}
+
+		String       key    = getBucketKey(event);
+		int          hash   = key.hashCode();
+		boolean      ret    = isSampled(event, hash);
+		BucketStripe stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1)];
+
+		synchronized (stripe) {
+			TokenBucket bucket = stripe.get(key);
+
+			if (bucket == null) {
+				bucket = new TokenBucket(rateLimitBurst, nowNanos);
+
+				stripe.put(key, bucket);
+			}
+
+			if (ret && rateLimitPerNano > 0) {
+				ret = bucket.tryTake(nowNanos, rateLimitPerNano, rateLimitBurst);
+			}
+
+			if (ret) {
+				if (bucket.suppressedCount > 0) {
+					event.setEventCount(event.getEventCount() + bucket.suppressedCount);
+
+					bucket.suppressedCount     = 0;
+					bucket.lastSuppressedEvent = null;
+				}
+			} else {
+				if (bucket.suppressedCount == 0) {
+					bucket.firstSuppressedNanos = nowNanos;
+				}
+
+				bucket.suppressedCount     += event.getEventCount();
+				bucket.lastSuppressedEvent  = event;
+			}
+		}
+
+		if (!ret) {
+			suppressedCount.incrementAndGet();
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return number of events not audited since the controller was created
+	 */
+	public long getSuppressedCount() {
+		return suppressedCount.get();
+	}
+
+	/**
+	 * @return number of suppressed events not yet added to an audited event
+	 */
+	public long getPendingSuppressedCount() {
+		long ret = 0;
+
+		for (BucketStripe stripe : stripes) {
+			synchronized (stripe) {
+				for (TokenBucket bucket : stripe.values()) {
+					ret += bucket.suppressedCount;
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return number of suppressed events whose bucket was dropped, and that could not be kept for flush()
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * @return events to be audited, carrying in eventCount the suppressed counts pending
+	 * for longer than the flush interval, or whose bucket was dropped. Counts returned
+	 * are no longer pending.
+	 */
+	public List<AuthzAuditEvent> flush() {
+		return flush(System.nanoTime());
+	}
+
+	List<AuthzAuditEvent> flush(long nowNanos) {
+		List<AuthzAuditEvent> ret;
+
+		synchronized (evictedEvents) {
+			ret = new ArrayList<AuthzAuditEvent>(evictedEvents);
+
+			evictedEvents.clear();
+		}
+
+		for (BucketStripe stripe : stripes) {
+			synchronized (stripe) {
+				for (TokenBucket bucket : stripe.values()) {
+					if (bucket.suppressedCount > 0 && nowNanos - bucket.firstSuppressedNanos >= flushIntervalNanos) {
+						ret.add(bucket.takeSuppressedEvent());
+					}
+				}
+			}
+		}
+
+		long dropped         = droppedCount.get();
+		long reportedDropped = reportedDroppedCount.getAndSet(dropped);
+
+		if (dropped > reportedDropped) {
+			LOG.warn("RangerAuditVolumeController.flush(): counts of " + (dropped - reportedDropped) + " suppressed events were lost, as more than "
+					+ maxEvictedEvents + " buckets were dropped since the previous flush. Total lost: " + dropped);
+		}
+
+		return ret;
+	}
+
+	private boolean isSampled(AuthzAuditEvent event, int keyHash) {
+		if (sampleThreshold >= SAMPLE_RESOLUTION) {
+			return true;
+		} else if (sampleThreshold <= 0) {
+			return false;
+		}
+
+		long eventTime = event.getEventTime() != null ? event.getEventTime().getTime() : 0;
+		long hash      = keyHash * 0x9E3779B97F4A7C15L + eventTime;
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+
+		return (int) ((hash >>> 1) % SAMPLE_RESOLUTION) < sampleThreshold;
+	}
+
+	private static String getBucketKey(AuthzAuditEvent event) {
+		return event.getUser() + '\u0001' + event.getResourcePath() + '\u0001' + event.getAccessType();
+	}
+
+	private static class TokenBucket {
+		private double          tokens;
+		private long            lastRefillNanos;
+		private long            suppressedCount      = 0;
+		private long            firstSuppressedNanos = 0;
+		private AuthzAuditEvent lastSuppressedEvent  = null;
+
+		TokenBucket(int tokens, long nowNanos) {
+			this.tokens          = tokens;
+			this.lastRefillNanos = nowNanos;
+		}
+
+		boolean tryTake(long nowNanos, double tokensPerNano, int maxTokens) {
+			long elapsed = nowNanos - lastRefillNanos;
+
+			if (elapsed > 0) {
+				tokens          = Math.min(maxTokens, tokens + elapsed * tokensPerNano);
+				lastRefillNanos = nowNanos;
+			}
+
+			if (tokens >= 1) {
+				tokens -= 1;
+
+				return true;
+			}
+
+			return false;
+		}
+
+		// last suppressed event, with eventCount set to the pending count
+		AuthzAuditEvent takeSuppressedEvent() {
+			AuthzAuditEvent ret = lastSuppressedEvent;
+
+			ret.setEventCount(suppressedCount);
+
+			suppressedCount     = 0;
+			lastSuppressedEvent = null;
+
+			return ret;
+		}
+	}
+
+	private class BucketStripe extends LinkedHashMap<String, TokenBucket> {
+		private static final long serialVersionUID = 1L;
+
+		private final int maxKeys;
+
+		BucketStripe(int maxKeys) {
+			super(16, 0.75f, true);
+
+			this.maxKeys = maxKeys;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+			boolean ret = size() > maxKeys;
+
+			if (ret && eldest.getValue().suppressedCount > 0) {
+				synchronized (evictedEvents) {
+					if (evictedEvents.size() < maxEvictedEvents) {
+						evictedEvents.add(eldest.getValue().takeSuppressedEvent());
+					} else {
+						droppedCount.addAndGet(eldest.getValue().suppressedCount);
+					}
+				}
+			}
+
+			return ret;
+		}
+	}
+
+	static private final class SuppressedCountFlusher extends TimerTask {
+		private final RangerAuditVolumeController volumeController;
+		private final RangerDefaultAuditHandler   auditHandler;
+
+		SuppressedCountFlusher(RangerAuditVolumeController volumeController, RangerDefaultAuditHandler auditHandler) {
+			this.volumeController = volumeController;
+			this.auditHandler     = auditHandler;
+		}
+
+		@Override
+		public void run() {
+			try {
+				List<AuthzAuditEvent> events = volumeController.flush();
+
+				if (!events.isEmpty()) {
+					auditHandler.logSuppressedCounts(events);
+				}
+			} catch (Throwable excp) {
+				LOG.error("SuppressedCountFlusher.run(): failed to log suppressed counts", excp);
+			}
+		}
+	}
+}
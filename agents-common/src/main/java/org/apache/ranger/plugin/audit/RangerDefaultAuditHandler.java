@@ -168,11 +168,14 @@ public class RangerDefaultAuditHandler implements RangerAccessResultProcessor {
 			LOG.debug("==> RangerDefaultAuditHandler.logAuthzAudit(" + auditEvent + ")");
 		}
 
-		if(auditEvent != null) {
-			populateDefaults(auditEvent);
-                        if(!AuditProviderFactory.getAuditProvider().log(auditEvent)) {
-				MiscUtil.logErrorMessageByInterval(LOG, "fail to log audit event " + auditEvent);
+		RangerAuditVolumeController volumeController = RangerAuditVolumeController.getInstance();
+
+		if(auditEvent != null && volumeController != null && !volumeController.isToAudit(auditEvent)) {
+			if(LOG.isDebugEnabled()) {
+				LOG.debug("RangerDefaultAuditHandler.logAuthzAudit(): audit volume limit reached, not logging " + auditEvent);
 			}
+		} else if(auditEvent != null) {
+			logToAuditProvider(auditEvent);
 		}
 
 		if(LOG.isDebugEnabled()) {
@@ -180,6 +183,22 @@ public class RangerDefaultAuditHandler implements RangerAccessResultProcessor {
 		}
 	}
 
+	/*
+	 * logs events from RangerAuditVolumeController.flush(), which carry counts of events not audited
+	 */
+	void logSuppressedCounts(Collection<AuthzAuditEvent> auditEvents) {
+		for(AuthzAuditEvent auditEvent : auditEvents) {
+			logToAuditProvider(auditEvent);
+		}
+	}
+
+	private void logToAuditProvider(AuthzAuditEvent auditEvent) {
+		populateDefaults(auditEvent);
+		if(!AuditProviderFactory.getAuditProvider().log(auditEvent)) {
+			MiscUtil.logErrorMessageByInterval(LOG, "fail to log audit event " + auditEvent);
+		}
+	}
+
 	private void populateDefaults(AuthzAuditEvent auditEvent) {
 		if( auditEvent.getAclEnforcer() == null || auditEvent.getAclEnforcer().isEmpty()) {
 			auditEvent.setAclEnforcer("ranger-acl"); // TODO: review
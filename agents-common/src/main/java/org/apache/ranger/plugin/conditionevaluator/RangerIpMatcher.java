@@ -40,6 +40,9 @@ public class RangerIpMatcher extends RangerAbstractConditionEvaluator {
 	private List<String> _exactIps = new ArrayList<>();
 	private List<String> _wildCardIps = new ArrayList<>();
 	private boolean _allowAny;
+	// policy ips that are valid addresses or address blocks; the lists above are still needed for the others, and for requests with invalid ips
+	private final RangerIpPrefixTrie _ipTrie = new RangerIpPrefixTrie();
+	private boolean _hasNonTrieIps;
 	
 	@Override
 	public void init() {
@@ -61,20 +64,26 @@ public class RangerIpMatcher extends RangerAbstractConditionEvaluator {
 			LOG.debug("init: wildcard value found.  Will match always.");
 		} else {
 			for (String ip : condition.getValues()) {
+				if (ip.indexOf('/') != -1 && _ipTrie.add(ip)) {
+					// CIDR notation: 10.1.0.0/16, 2001:db8::/32
+					continue;
+				}
 				String digestedIp = digestPolicyIp(ip);
 				if (digestedIp.isEmpty()) {
 					LOG.debug("init: digested ip was empty! Will match always");
 					_allowAny = true;
 				} else if (digestedIp.equals(ip)) {
 					_exactIps.add(ip);
+					_hasNonTrieIps |= !_ipTrie.add(ip);
 				} else {
 					_wildCardIps.add(digestedIp);
+					_hasNonTrieIps |= !_ipTrie.add(toCidr(digestedIp));
 				}
 			}
 		}
 
 		if(LOG.isDebugEnabled()) {
-			LOG.debug("<== RangerIpMatcher.init(" + condition + "): exact-ips[" + _exactIps + "], wildcard-ips[" + _wildCardIps + "]");
+			LOG.debug("<== RangerIpMatcher.init(" + condition + "): exact-ips[" + _exactIps + "], wildcard-ips[" + _wildCardIps + "], hasNonTrieIps=" + _hasNonTrieIps);
 		}
 	}
 
@@ -92,7 +101,10 @@ public class RangerIpMatcher extends RangerAbstractConditionEvaluator {
 			if (requestIp == null) {
 				LOG.debug("isMatched: couldn't get ip address from request.  Ok.  Implicitly matched!");
 			} else {
-				ipMatched = isWildcardMatched(_wildCardIps, requestIp) || isExactlyMatched(_exactIps, requestIp);
+				ipMatched = _ipTrie.contains(requestIp);
+				if (!ipMatched && (_hasNonTrieIps || !RangerIpPrefixTrie.isIpAddress(requestIp))) {
+					ipMatched = isWildcardMatched(_wildCardIps, requestIp) || isExactlyMatched(_exactIps, requestIp);
+				}
 			}
 		}
 		
@@ -139,6 +151,34 @@ public class RangerIpMatcher extends RangerAbstractConditionEvaluator {
 		return result;
 	}
 	
+	/**
+	 * Converts a digested wildcard policy ip to CIDR notation, e.g. "10.20." to "10.20.0.0/16" and "a0:b0:" to "a0:b0::/32"
+	 * @param digestedIp
+	 * @return null if the digested ip doesn't have the form of an address prefix
+	 */
+	String toCidr(final String digestedIp) {
+		if (!digestedIp.endsWith(".") && !digestedIp.endsWith(":")) { // ipv6 lower cased by digestPolicyIp()
+			return null;
+		}
+
+		String  prefix    = digestedIp.substring(0, digestedIp.length() - 1);
+		boolean isIpv4    = digestedIp.endsWith(".");
+		int     partCount = prefix.split(isIpv4 ? "\\." : ":", -1).length;
+		String  result    = null;
+
+		if (isIpv4 && partCount < 4) {
+			StringBuilder sb = new StringBuilder(prefix);
+			for (int i = partCount; i < 4; i++) {
+				sb.append(".0");
+			}
+			result = sb.append('/').append(partCount * 8).toString();
+		} else if (!isIpv4 && partCount < 8 && !prefix.contains("::")) {
+			result = prefix + "::/" + (partCount * 16);
+		}
+
+		return result;
+	}
+
 	boolean isWildcardMatched(final List<String> ips, final String requestIp) {
 
 		if(LOG.isDebugEnabled()) {
@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.conditionevaluator;
+
+/**
+ * Binary prefix trie of IPv4 and IPv6 address blocks, given in CIDR notation.
+ * <p>
+ * Addresses are parsed from their text as the trie is walked, one bit per
+ * level, so a look-up takes at most 32 or 128 steps and allocates nothing.
+ * IPv4 addresses must be in dotted-quad form, without leading zeros; IPv6
+ * addresses may use "::" and a zone id ("fe80::1%eth0"), but not the embedded
+ * dotted-quad form. IPv4 blocks never match IPv6 addresses, and vice versa.
+ */
+public class RangerIpPrefixTrie {
+	private static final int IPV4_BITS      = 32;
+	private static final int IPV6_BITS      = 128;
+	private static final int NO_COMPRESSION = -1;
+	private static final int INVALID_IPV6   = -2;
+
+	private final Node ipv4Root = new Node();
+	private final Node ipv6Root = new Node();
+
+	/**
+	 * Adds an address block, like "10.1.0.0/16" or "2001:db8::/32". An address without prefix length is added as a block of one address.
+	 * @param cidr address block
+	 * @return false if cidr is not a valid IPv4 or IPv6 address block, in which case the trie is not changed
+	 */
+	public boolean add(String cidr) {
+		if (cidr == null) {
+			return false;
+		}
+
+		int slashPos = cidr.indexOf('/');
+		int end      = slashPos == -1 ? cidr.length() : slashPos;
+
+		if (isIpv4(cidr, end)) {
+			int prefixLength = slashPos == -1 ? IPV4_BITS : parsePrefixLength(cidr, slashPos + 1, IPV4_BITS);
+
+			if (prefixLength == -1) {
+				return false;
+			}
+
+			walkIpv4(ipv4Root, cidr, end, prefixLength, true).setTerminal();
+		} else {
+			int compressionPos = getIpv6CompressionPos(cidr, end);
+
+			if (compressionPos == INVALID_IPV6) {
+				return false;
+			}
+
+			int prefixLength = slashPos == -1 ? IPV6_BITS : parsePrefixLength(cidr, slashPos + 1, IPV6_BITS);
+
+			if (prefixLength == -1) {
+				return false;
+			}
+
+			walkIpv6(ipv6Root, cidr, end, compressionPos, prefixLength, true).setTerminal();
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param address IPv4 or IPv6 address
+	 * @return true if the address is in one of the blocks of this trie; false if it is not, or if it is not a valid address
+	 */
+	public boolean contains(String address) {
+		if (address == null) {
+			return false;
+		}
+
+		int  end = getAddressEnd(address);
+		Node node;
+
+		if (isIpv4(address, end)) {
+			node = walkIpv4(ipv4Root, address, end, IPV4_BITS, false);
+		} else {
+			int compressionPos = getIpv6CompressionPos(address, end);
+
+			node = compressionPos == INVALID_IPV6 ? null : walkIpv6(ipv6Root, address, end, compressionPos, IPV6_BITS, false);
+		}
+
+		return node != null && node.isTerminal;
+	}
+
+	/**
+	 * @param address string to check
+	 * @return true if the string is an IPv4 or IPv6 address that can be looked up in the trie
+	 */
+	public static boolean isIpAddress(String address) {
+		if (address == null) {
+			return false;
+		}
+
+		int end = getAddressEnd(address);
+
+		return isIpv4(address, end) || getIpv6CompressionPos(address, end) != INVALID_IPV6;
+	}
+
+	// walks the first maxBits bits of a valid IPv4 address; returns the node reached, the first terminal node on the way, or null
+	private static Node walkIpv4(Node node, String address, int end, int maxBits, boolean create) {
+		int bits = 0;
+
+		for (int pos = 0; pos < end && bits < maxBits && node != null && !node.isTerminal; pos++) { // pos++ skips the '.'
+			int value = 0;
+
+			for (; pos < end && address.charAt(pos) != '.'; pos++) {
+				value = value * 10 + (address.charAt(pos) - '0');
+			}
+
+			node  = descend(node, value, 8, maxBits - bits, create);
+			bits += 8;
+		}
+
+		return node;
+	}
+
+	// walks the first maxBits bits of a valid IPv6 address; returns the node reached, the first terminal node on the way, or null
+	private static Node walkIpv6(Node node, String address, int end, int compressionPos, int maxBits, boolean create) {
+		int bits = 0;
+		int pos  = 0;
+
+		while (pos < end && bits < maxBits && node != null && !node.isTerminal) {
+			if (pos == compressionPos) {
+				// zero groups elided by "::"
+				for (int zeroBits = IPV6_BITS - getIpv6GroupCount(address, end) * 16; zeroBits > 0 && bits < maxBits && node != null && !node.isTerminal; zeroBits -= 16) {
+					node  = descend(node, 0, 16, maxBits - bits, create);
+					bits += 16;
+				}
+
+				pos += 2;
+
+				continue;
+			}
+
+			if (address.charAt(pos) == ':') {
+				pos++;
+			}
+
+			int value = 0;
+
+			for (; pos < end && address.charAt(pos) != ':'; pos++) {
+				value = (value << 4) | Character.digit(address.charAt(pos), 16);
+			}
+
+			node  = descend(node, value, 16, maxBits - bits, create);
+			bits += 16;
+		}
+
+		return node;
+	}
+
+	// descends by the bitCount low bits of value, high bit first, stopping after maxBits bits or at a terminal node
+	private static Node descend(Node node, int value, int bitCount, int maxBits, boolean create) {
+		for (int i = bitCount - 1, last = Math.max(0, bitCount - maxBits); i >= last && node != null && !node.isTerminal; i--) {
+			node = node.getChild((value >>> i) & 1, create);
+		}
+
+		return node;
+	}
+
+	private static int getAddressEnd(String address) {
+		int zonePos = address.indexOf('%');
+
+		return zonePos == -1 ? address.length() : zonePos;
+	}
+
+	private static boolean isIpv4(String address, int end) {
+		int octetCount  = 0;
+		int octetDigits = 0;
+		int octetValue  = 0;
+
+		for (int pos = 0; pos <= end; pos++) {
+			char ch = pos < end ? address.charAt(pos) : '.';
+
+			if (ch == '.') {
+				if (octetDigits == 0 || ++octetCount > 4) {
+					return false;
+				}
+
+				octetDigits = 0;
+				octetValue  = 0;
+			} else if (ch >= '0' && ch <= '9') {
+				if (octetDigits > 0 && octetValue == 0) { // leading zero
+					return false;
+				}
+
+				octetValue = octetValue * 10 + (ch - '0');
+
+				if (++octetDigits > 3 || octetValue > 255) {
+					return false;
+				}
+			} else {
+				return false;
+			}
+		}
+
+		return octetCount == 4;
+	}
+
+	// returns the position of "::" in a valid IPv6 address, NO_COMPRESSION if there is none, or INVALID_IPV6 if the address is not valid
+	private static int getIpv6CompressionPos(String address, int end) {
+		int groupCount     = 0;
+		int groupDigits    = 0;
+		int compressionPos = NO_COMPRESSION;
+
+		for (int pos = 0; pos < end; pos++) {
+			char ch = address.charAt(pos);
+
+			if (ch == ':') {
+				if (groupDigits > 0) {
+					groupCount++;
+					groupDigits = 0;
+				} else if (pos > 0) { // ":::"
+					return INVALID_IPV6;
+				}
+
+				if (pos + 1 < end && address.charAt(pos + 1) == ':') {
+					if (compressionPos != NO_COMPRESSION) {
+						return INVALID_IPV6;
+					}
+
+					compressionPos = pos++;
+				} else if (pos == 0 || pos + 1 == end) { // leading or trailing single ':'
+					return INVALID_IPV6;
+				}
+			} else if (isHexDigit(ch)) {
+				if (++groupDigits > 4) {
+					return INVALID_IPV6;
+				}
+			} else {
+				return INVALID_IPV6;
+			}
+		}
+
+		if (groupDigits > 0) {
+			groupCount++;
+		}
+
+		boolean isValid = compressionPos == NO_COMPRESSION ? groupCount == 8 : groupCount < 8;
+
+		return isValid ? compressionPos : INVALID_IPV6;
+	}
+
+	// number of groups in a valid IPv6 address
+	private static int getIpv6GroupCount(String address, int end) {
+		int ret = 0;
+
+		for (int pos = 0; pos < end; pos++) {
+			if (address.charAt(pos) != ':' && (pos + 1 == end || address.charAt(pos + 1) == ':')) {
+				ret++;
+			}
+		}
+
+		return ret;
+	}
+
+	private static boolean isHexDigit(char ch) {
+		return (ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'f') || (ch >= 'A' && ch <= 'F');
+	}
+
+	private static int parsePrefixLength(String cidr, int start, int maxLength) {
+		int ret = 0;
+
+		if (start == cidr.length() || cidr.length() - start > 3) {
+			return -1;
+		}
+
+		for (int pos = start; pos < cidr.length(); pos++) {
+			char ch = cidr.charAt(pos);
+
+			if (ch < '0' || ch > '9') {
+				return -1;
+			}
+
+			ret = ret * 10 + (ch - '0');
+		}
+
+		return ret <= maxLength ? ret : -1;
+	}
+
+	private static class Node {
+		private Node    zero;
+		private Node    one;
+		private boolean isTerminal;
+
+		Node getChild(int bit, boolean create) {
+			Node ret = bit == 0 ? zero : one;
+
+			if (ret == null && create) {
+				ret = new Node();
+
+				if (bit == 0) {
+					zero = ret;
+				} else {
+					one = ret;
+				}
+			}
+
+			return ret;
+		}
+
+		// all addresses under a terminal node match, so its sub-blocks are dropped
+		void setTerminal() {
+			isTerminal = true;
+			zero       = null;
+			one        = null;
+		}
+	}
+}
@@ -28,6 +28,8 @@ import org.apache.ranger.plugin.contextenricher.RangerTagForEval;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
@@ -38,7 +40,8 @@ import java.util.Map;
 public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvaluator {
 	private static final Log LOG = LogFactory.getLog(RangerScriptConditionEvaluator.class);
 
-	private ScriptEngine scriptEngine;
+	private ScriptEngine   scriptEngine;
+	private CompiledScript compiledScript;
 
 	@Override
 	public void init() {
@@ -72,6 +75,18 @@ public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvalu
 			LOG.error("RangerScriptConditionEvaluator.init() failed with exception=" + exp);
 		}
 
+		if (scriptEngine instanceof Compilable) {
+			String script = getScript();
+
+			if (StringUtils.isNotBlank(script)) {
+				try {
+					compiledScript = ((Compilable) scriptEngine).compile(script);
+				} catch (ScriptException exception) {
+					LOG.error("RangerScriptConditionEvaluator.init(): failed to compile script, exception=" + exception + ". Script will be evaluated in each request");
+				}
+			}
+		}
+
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerScriptConditionEvaluator.init(" + condition + ")");
 		}
@@ -96,6 +111,7 @@ public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvalu
 				RangerTagForEval             currentTag = context.getCurrentTag();
 				Map<String, String>          tagAttribs = currentTag != null ? currentTag.getAttributes() : Collections.<String, String>emptyMap();
 
+				// fresh bindings for each evaluation: variables set by the script must not be seen by later requests
 				Bindings bindings = scriptEngine.createBindings();
 
 				bindings.put("ctx", context);
@@ -107,7 +123,7 @@ public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvalu
 				}
 				try {
 
-					Object ret = scriptEngine.eval(script, bindings);
+					Object ret = compiledScript != null ? compiledScript.eval(bindings) : scriptEngine.eval(script, bindings);
 
 					if (ret == null) {
 						ret = context.getResult();
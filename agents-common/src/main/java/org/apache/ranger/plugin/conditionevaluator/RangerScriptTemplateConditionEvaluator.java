@@ -26,11 +26,18 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 public class RangerScriptTemplateConditionEvaluator extends RangerScriptConditionEvaluator {
 	private static final Log LOG = LogFactory.getLog(RangerScriptTemplateConditionEvaluator.class);
 
-	protected String  script;
-	private   boolean reverseResult;
+	// templates evaluated in Java, without the script engine: ctx.isAccessedAfter('attr'), ctx.isAccessedBefore('tagType', 'attr'), ...
+	private static final Pattern NATIVE_TEMPLATE_PATTERN = Pattern.compile("ctx\\.(isAccessedAfter|isAccessedBefore)\\(\\s*(['\"])([^'\"]*)\\2\\s*(?:,\\s*(['\"])([^'\"]*)\\4\\s*)?\\)\\s*;?");
+
+	protected String         script;
+	private   boolean        reverseResult;
+	private   NativeTemplate nativeTemplate;
 
 	@Override
 	public void init() {
@@ -38,8 +45,6 @@ public class RangerScriptTemplateConditionEvaluator extends RangerScriptConditio
 			LOG.debug("==> RangerScriptTemplateConditionEvaluator.init(" + condition + ")");
 		}
 
-		super.init();
-
 		if(CollectionUtils.isNotEmpty(condition.getValues())) {
 			String expectedScriptReturn = condition.getValues().get(0);
 
@@ -56,8 +61,14 @@ public class RangerScriptTemplateConditionEvaluator extends RangerScriptConditio
 			}
 		}
 
+		nativeTemplate = NativeTemplate.parse(script);
+
+		if(nativeTemplate == null) {
+			super.init();
+		}
+
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("<== RangerScriptTemplateConditionEvaluator.init(" + condition + "): script=" + script + "; reverseResult=" + reverseResult);
+			LOG.debug("<== RangerScriptTemplateConditionEvaluator.init(" + condition + "): script=" + script + "; reverseResult=" + reverseResult + "; isNative=" + (nativeTemplate != null));
 		}
 	}
 
@@ -67,7 +78,7 @@ public class RangerScriptTemplateConditionEvaluator extends RangerScriptConditio
 			LOG.debug("==> RangerScriptTemplateConditionEvaluator.isMatched()");
 		}
 
-		boolean ret = super.isMatched(request);
+		boolean ret = nativeTemplate != null ? nativeTemplate.isMatched(request) : super.isMatched(request);
 
 		if(reverseResult) {
 			ret = !ret;
@@ -84,4 +95,50 @@ public class RangerScriptTemplateConditionEvaluator extends RangerScriptConditio
 	protected String getScript() {
 		return script;
 	}
+
+	static class NativeTemplate {
+		private final boolean isAccessedAfter;
+		private final String  tagType;
+		private final String  attributeName;
+
+		NativeTemplate(boolean isAccessedAfter, String tagType, String attributeName) {
+			this.isAccessedAfter = isAccessedAfter;
+			this.tagType         = tagType;
+			this.attributeName   = attributeName;
+		}
+
+		static NativeTemplate parse(String script) {
+			NativeTemplate ret     = null;
+			Matcher        matcher = script != null ? NATIVE_TEMPLATE_PATTERN.matcher(script) : null;
+
+			if (matcher != null && matcher.matches()) {
+				boolean isAccessedAfter = "isAccessedAfter".equals(matcher.group(1));
+
+				if (matcher.group(5) != null) {
+					ret = new NativeTemplate(isAccessedAfter, matcher.group(3), matcher.group(5));
+				} else {
+					ret = new NativeTemplate(isAccessedAfter, null, matcher.group(3));
+				}
+			}
+
+			return ret;
+		}
+
+		boolean isMatched(RangerAccessRequest request) {
+			boolean                      ret = true; // as when the script fails
+			RangerScriptExecutionContext ctx = new RangerScriptExecutionContext(request);
+
+			try {
+				if (tagType != null) {
+					ret = isAccessedAfter ? ctx.isAccessedAfter(tagType, attributeName) : ctx.isAccessedBefore(tagType, attributeName);
+				} else {
+					ret = isAccessedAfter ? ctx.isAccessedAfter(attributeName) : ctx.isAccessedBefore(attributeName);
+				}
+			} catch (Exception excp) {
+				LOG.error("RangerScriptTemplateConditionEvaluator.isMatched(): failed to evaluate template, exception=" + excp);
+			}
+
+			return ret;
+		}
+	}
 }
@@ -40,6 +40,7 @@ import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
 import org.apache.ranger.plugin.util.RangerResourceTrie;
 import org.apache.ranger.plugin.util.RangerServiceNotFoundException;
+import org.apache.ranger.plugin.util.RangerSiblingResourcesTrieLookup;
 import org.apache.ranger.plugin.util.ServiceTags;
 
 import java.io.File;
@@ -55,6 +56,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RangerTagEnricher extends RangerAbstractContextEnricher {
 	private static final Log LOG = LogFactory.getLog(RangerTagEnricher.class);
@@ -71,6 +73,7 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 	private boolean                            disableTrieLookupPrefilter;
 	private EnrichedServiceTags                enrichedServiceTags;
 	private boolean                            disableCacheIfServiceNotFound = true;
+	private final AtomicLong                   serviceTagsGeneration = new AtomicLong();
 
 	@Override
 	public void init() {
@@ -152,6 +155,58 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 		}
 	}
 
+	/*
+	 * Enriches a batch of requests, like the column-level requests of a single Hive query. Requests are grouped by user,
+	 * groups, access-type and parent resource; the tags of the parent resource are looked-up once per group, and only the
+	 * service-resources found for it are matched against each request's resource.
+	 */
+	public void enrich(Collection<RangerAccessRequest> requests) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerTagEnricher.enrich(requestCount=" + (requests == null ? 0 : requests.size()) + ")");
+		}
+
+		if (CollectionUtils.isNotEmpty(requests)) {
+			final EnrichedServiceTags                                                       enrichedServiceTags = this.enrichedServiceTags;
+			final Map<Object, RangerSiblingResourcesTrieLookup<RangerServiceResourceMatcher>> siblingsLookups     = new HashMap<>();
+
+			for (RangerAccessRequest request : requests) {
+				final Set<RangerTagForEval> matchedTags;
+
+				if (enrichedServiceTags == null) {
+					matchedTags = null;
+				} else {
+					RangerSiblingResourcesTrieLookup<RangerServiceResourceMatcher> siblingsLookup = null;
+
+					if (enrichedServiceTags.getServiceResourceTrie() != null && !isEmptyResourceAndAnyAccess(request)) {
+						Object groupKey = RangerSiblingResourcesTrieLookup.getGroupKey(request);
+
+						if (groupKey != null) {
+							siblingsLookup = siblingsLookups.get(groupKey);
+
+							if (siblingsLookup == null) {
+								siblingsLookup = new RangerSiblingResourcesTrieLookup<>(enrichedServiceTags.getServiceResourceTrie(), request.getResource());
+
+								siblingsLookups.put(groupKey, siblingsLookup);
+							}
+						}
+					}
+
+					if (siblingsLookup == null) {
+						matchedTags = findMatchingTags(request);
+					} else {
+						matchedTags = findMatchingTags(request, enrichedServiceTags, siblingsLookup.getEvaluators(request.getResource()));
+					}
+				}
+
+				RangerAccessRequestUtil.setRequestTagsInContext(request.getContext(), matchedTags);
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerTagEnricher.enrich(requestCount=" + (requests == null ? 0 : requests.size()) + ")");
+		}
+	}
+
 	/*
 	 * This class implements a cache of result of look-up of keyset of policy-resources for each of the collections of hierarchies
 	 * for policy types: access, datamask and rowfilter. If a keyset is examined for validity in a hierarchy of a policy-type,
@@ -268,6 +323,16 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 
 			enrichedServiceTags = new EnrichedServiceTags(serviceTags, resourceMatchers, serviceResourceTrie, tagsForEmptyResourceAndAnyAccess);
 		}
+
+		serviceTagsGeneration.incrementAndGet();
+	}
+
+	/*
+	 * Returns a number that changes every time a new set of service-tags is installed in this enricher;
+	 * used to invalidate results computed with earlier tags.
+	 */
+	public long getServiceTagsGeneration() {
+		return serviceTagsGeneration.get();
 	}
 
 	protected Long getServiceTagsVersion() {
@@ -305,35 +370,10 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 
 		RangerAccessResource resource = request.getResource();
 
-		if ((resource == null || resource.getKeys() == null || resource.getKeys().isEmpty()) && request.isAccessTypeAny()) {
+		if (isEmptyResourceAndAnyAccess(request)) {
 			ret = enrichedServiceTags.getTagsForEmptyResourceAndAnyAccess();
 		} else {
-
-			final List<RangerServiceResourceMatcher> serviceResourceMatchers = getEvaluators(resource, enrichedServiceTags);
-
-			if (CollectionUtils.isNotEmpty(serviceResourceMatchers)) {
-
-				for (RangerServiceResourceMatcher resourceMatcher : serviceResourceMatchers) {
-
-					final RangerPolicyResourceMatcher.MatchType matchType = resourceMatcher.getMatchType(resource, request.getContext());
-
-					final boolean isMatched;
-
-					if (request.isAccessTypeAny()) {
-						isMatched = matchType != RangerPolicyResourceMatcher.MatchType.NONE;
-					} else if (request.getResourceMatchingScope() == RangerAccessRequest.ResourceMatchingScope.SELF_OR_DESCENDANTS) {
-						isMatched = matchType == RangerPolicyResourceMatcher.MatchType.SELF || matchType == RangerPolicyResourceMatcher.MatchType.DESCENDANT;
-					} else {
-						isMatched = matchType == RangerPolicyResourceMatcher.MatchType.SELF || matchType == RangerPolicyResourceMatcher.MatchType.ANCESTOR;
-					}
-					if (isMatched) {
-						if (ret == null) {
-							ret = new HashSet<>();
-						}
-						ret.addAll(getTagsForServiceResource(enrichedServiceTags.getServiceTags(), resourceMatcher.getServiceResource(), matchType));
-					}
-				}
-			}
+			ret = findMatchingTags(request, enrichedServiceTags, getEvaluators(resource, enrichedServiceTags));
 		}
 
 		if (LOG.isDebugEnabled()) {
@@ -351,6 +391,43 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 		return ret;
 	}
 
+	private Set<RangerTagForEval> findMatchingTags(final RangerAccessRequest request, final EnrichedServiceTags enrichedServiceTags, final List<RangerServiceResourceMatcher> serviceResourceMatchers) {
+		Set<RangerTagForEval> ret = null;
+
+		if (CollectionUtils.isNotEmpty(serviceResourceMatchers)) {
+			RangerAccessResource resource = request.getResource();
+
+			for (RangerServiceResourceMatcher resourceMatcher : serviceResourceMatchers) {
+
+				final RangerPolicyResourceMatcher.MatchType matchType = resourceMatcher.getMatchType(resource, request.getContext());
+
+				final boolean isMatched;
+
+				if (request.isAccessTypeAny()) {
+					isMatched = matchType != RangerPolicyResourceMatcher.MatchType.NONE;
+				} else if (request.getResourceMatchingScope() == RangerAccessRequest.ResourceMatchingScope.SELF_OR_DESCENDANTS) {
+					isMatched = matchType == RangerPolicyResourceMatcher.MatchType.SELF || matchType == RangerPolicyResourceMatcher.MatchType.DESCENDANT;
+				} else {
+					isMatched = matchType == RangerPolicyResourceMatcher.MatchType.SELF || matchType == RangerPolicyResourceMatcher.MatchType.ANCESTOR;
+				}
+				if (isMatched) {
+					if (ret == null) {
+						ret = new HashSet<>();
+					}
+					ret.addAll(getTagsForServiceResource(enrichedServiceTags.getServiceTags(), resourceMatcher.getServiceResource(), matchType));
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private static boolean isEmptyResourceAndAnyAccess(final RangerAccessRequest request) {
+		RangerAccessResource resource = request.getResource();
+
+		return (resource == null || resource.getKeys() == null || resource.getKeys().isEmpty()) && request.isAccessTypeAny();
+	}
+
 	private List<RangerServiceResourceMatcher> getEvaluators(RangerAccessResource resource, EnrichedServiceTags enrichedServiceTags) {
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> RangerTagEnricher.getEvaluators(" + (resource != null ? resource.getAsString() : null) + ")");
@@ -20,7 +20,9 @@ package org.apache.ranger.plugin.policyengine;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -31,6 +33,10 @@ public class CacheMap<K, V> extends LinkedHashMap<K, V> {
 
     private static final float RANGER_CACHE_DEFAULT_LOAD_FACTOR = 0.75f;
 
+    public static final String RANGER_CACHE_IMPL_PROP  = "ranger.policyengine.cache.impl";
+    public static final String RANGER_CACHE_IMPL_LRU   = "lru";
+    public static final String RANGER_CACHE_IMPL_CLOCK = "clock";
+
     protected int initialCapacity;
 
     public CacheMap(int initialCapacity) {
@@ -39,6 +45,29 @@ public class CacheMap<K, V> extends LinkedHashMap<K, V> {
         this.initialCapacity = initialCapacity;
     }
 
+    /*
+     * Returns a bounded cache that is safe for concurrent access, implementation selected by RANGER_CACHE_IMPL_PROP:
+     *   clock (default): ConcurrentCacheMap, lock-free lookups with CLOCK eviction
+     *   lru            : synchronized access-ordered CacheMap
+     */
+    public static <K, V> Map<K, V> createSynchronizedCache(int capacity) {
+        String cacheImpl = RangerConfiguration.getInstance().get(RANGER_CACHE_IMPL_PROP, RANGER_CACHE_IMPL_CLOCK);
+
+        final Map<K, V> ret;
+
+        if (RANGER_CACHE_IMPL_LRU.equalsIgnoreCase(cacheImpl)) {
+            ret = Collections.synchronizedMap(new CacheMap<K, V>(capacity));
+        } else {
+            if (!RANGER_CACHE_IMPL_CLOCK.equalsIgnoreCase(cacheImpl)) {
+                LOG.warn("CacheMap.createSynchronizedCache(): unknown value '" + cacheImpl + "' for " + RANGER_CACHE_IMPL_PROP + ". Using " + RANGER_CACHE_IMPL_CLOCK);
+            }
+
+            ret = new ConcurrentCacheMap<>(capacity);
+        }
+
+        return ret;
+    }
+
     @Override
     protected boolean removeEldestEntry(Map.Entry eldest) {
         boolean result = size() > initialCapacity;
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Bounded cache with CLOCK (second-chance) eviction.
+ *
+ * Lookups are lock-free: they read from a ConcurrentHashMap and set the entry's reference bit.
+ * Only insertion of a new key takes the eviction lock, to claim a slot in the clock ring;
+ * entries whose reference bit is set get a second chance before being evicted.
+ * Null keys and values are not supported.
+ */
+public class ConcurrentCacheMap<K, V> extends AbstractMap<K, V> {
+    private static final Log LOG = LogFactory.getLog(ConcurrentCacheMap.class);
+
+    private final int                                    capacity;
+    private final ConcurrentHashMap<K, CacheEntry<K, V>> entries;
+    private final CacheEntry<K, V>[]                     clock;
+    private final ReentrantLock                          evictionLock  = new ReentrantLock();
+    private final LongAdder                              hitCount      = new LongAdder();
+    private final LongAdder                              missCount     = new LongAdder();
+    private final LongAdder                              evictionCount = new LongAdder();
+    private int                                          clockHand     = -1; // guarded by evictionLock
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentCacheMap(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.entries  = new ConcurrentHashMap<>(capacity);
+        this.clock    = new CacheEntry[capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public V get(Object key) {
+        CacheEntry<K, V> entry = entries.get(key);
+
+        if (entry == null) {
+            missCount.increment();
+
+            return null;
+        }
+
+        hitCount.increment();
+        entry.markReferenced();
+
+        return entry.value;
+    }
+
+    // marks the entry as referenced like get(), but doesn't update hit/miss counts
+    @Override
+    public boolean containsKey(Object key) {
+        CacheEntry<K, V> entry = entries.get(key);
+
+        if (entry == null) {
+            return false;
+        }
+
+        entry.markReferenced();
+
+        return true;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+
+        V ret = replaceExisting(key, value);
+
+        if (ret == null) {
+            evictionLock.lock();
+
+            try {
+                ret = replaceExisting(key, value);
+
+                if (ret == null) {
+                    CacheEntry<K, V> entry = new CacheEntry<>(key, value);
+                    int              slot  = claimSlot();
+
+                    clock[slot] = entry;
+                    entries.put(key, entry);
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+
+        return ret;
+    }
+
+    @Override
+    public V remove(Object key) {
+        // the slot in clock ring is left behind, to be reclaimed by claimSlot()
+        CacheEntry<K, V> entry = entries.remove(key);
+
+        return entry == null ? null : entry.value;
+    }
+
+    @Override
+    public void clear() {
+        evictionLock.lock();
+
+        try {
+            entries.clear();
+            Arrays.fill(clock, null);
+            clockHand = -1;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    // returns a snapshot of the entries; changes to the cache are not reflected in the returned set
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> ret = new HashSet<>();
+
+        for (CacheEntry<K, V> entry : entries.values()) {
+            ret.add(new AbstractMap.SimpleImmutableEntry<>(entry.key, entry.value));
+        }
+
+        return Collections.unmodifiableSet(ret);
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentCacheMap={capacity=" + capacity + ", size=" + size() + ", hitCount=" + getHitCount()
+                + ", missCount=" + getMissCount() + ", evictionCount=" + getEvictionCount() + "}";
+    }
+
+    private V replaceExisting(K key, V value) {
+        CacheEntry<K, V> entry = entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        V ret = entry.value;
+
+        entry.value = value;
+        entry.markReferenced();
+
+        return ret;
+    }
+
+    // must be called with evictionLock held
+    private int claimSlot() {
+        // the reference bit of an entry can be set again by concurrent lookups; evict unconditionally after two full sweeps
+        final int maxSweep = capacity * 2;
+
+        for (int i = 0; ; i++) {
+            clockHand = (clockHand + 1) % capacity;
+
+            CacheEntry<K, V> entry = clock[clockHand];
+
+            if (entry == null || entries.get(entry.key) != entry) { // empty slot, or entry already removed
+                return clockHand;
+            }
+
+            if (entry.referenced && i < maxSweep) {
+                entry.referenced = false;
+
+                continue;
+            }
+
+            if (entries.remove(entry.key, entry)) {
+                evictionCount.increment();
+
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("ConcurrentCacheMap.claimSlot(): evicted key=" + entry.key);
+                }
+            }
+
+            return clockHand;
+        }
+    }
+
+    private static final class CacheEntry<K, V> {
+        final K          key;
+        volatile V       value;
+        volatile boolean referenced;
+
+        CacheEntry(K key, V value) {
+            this.key   = key;
+            this.value = value;
+        }
+
+        void markReferenced() {
+            if (!referenced) { // avoid a write, hence cache-line invalidation, when the bit is already set
+                referenced = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Caches results of access evaluation in a policy-engine, keyed by a signature of the request: user, groups,
+ * access-type, resource and resource-matching-scope. A policy-engine instance is built for a specific policy
+ * version, hence the cache is discarded along with the engine when policies change. Cached results are also
+ * discarded when the tag enricher installs a new set of service-tags, identified by tagsGeneration.
+ *
+ * The caller is responsible for bypassing the cache for engines and requests whose results depend on more
+ * than the signature (custom conditions, context-enrichers other than tag-enricher, context tokens).
+ */
+class RangerAccessDecisionCache {
+	private static final Log LOG = LogFactory.getLog(RangerAccessDecisionCache.class);
+
+	private static final char   SEPARATOR          = '\u001F';
+	private static final String CURRENT_USER_TOKEN = RangerAccessRequestUtil.KEY_TOKEN_NAMESPACE + RangerAccessRequestUtil.KEY_USER;
+
+	private final Map<String, RangerAccessResult> results;
+	private volatile long                         tagsGeneration;
+
+	RangerAccessDecisionCache(int cacheSize, long tagsGeneration) {
+		this.results        = CacheMap.createSynchronizedCache(cacheSize);
+		this.tagsGeneration = tagsGeneration;
+	}
+
+	/*
+	 * Returns the signature for the request, or null if the result of the request can't be cached
+	 */
+	static String getSignature(RangerAccessRequest request) {
+		RangerAccessResource resource = request.getResource();
+
+		if (resource == null || !isCacheableContext(request.getContext())) {
+			return null;
+		}
+
+		String resourceKey = resource.getCacheKey();
+
+		if (resourceKey == null) {
+			return null;
+		}
+
+		StringBuilder sb = new StringBuilder(resourceKey.length() + 64);
+
+		sb.append(request.getUser()).append(SEPARATOR);
+		sb.append(request.getAccessType()).append(SEPARATOR);
+		sb.append(request.getResourceMatchingScope()).append(SEPARATOR);
+		sb.append(resource.getOwnerUser()).append(SEPARATOR);
+		sb.append(resourceKey).append(SEPARATOR);
+
+		Set<String> userGroups = request.getUserGroups();
+
+		if (CollectionUtils.isNotEmpty(userGroups)) {
+			if (userGroups.size() == 1) {
+				sb.append(userGroups.iterator().next()).append(SEPARATOR);
+			} else {
+				String[] groups = userGroups.toArray(new String[userGroups.size()]);
+
+				Arrays.sort(groups);
+
+				for (String group : groups) {
+					sb.append(group).append(SEPARATOR);
+				}
+			}
+		}
+
+		return sb.toString();
+	}
+
+	RangerAccessResult get(String signature, long currentTagsGeneration) {
+		if (currentTagsGeneration != tagsGeneration) {
+			invalidate(currentTagsGeneration);
+
+			return null;
+		}
+
+		return results.get(signature);
+	}
+
+	void put(String signature, RangerAccessResult result, long tagsGenerationForResult) {
+		// discard results computed with tags that have since been replaced
+		if (tagsGenerationForResult == tagsGeneration) {
+			results.put(signature, copyOf(result));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RangerAccessDecisionCache={tagsGeneration=" + tagsGeneration + ", results=" + results + "}";
+	}
+
+	private synchronized void invalidate(long newTagsGeneration) {
+		if (tagsGeneration != newTagsGeneration) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerAccessDecisionCache.invalidate(): tagsGeneration changed from " + tagsGeneration + " to " + newTagsGeneration);
+			}
+
+			tagsGeneration = newTagsGeneration;
+
+			results.clear();
+		}
+	}
+
+	// context tokens, other than current-user, can be referenced in resource values; such requests can't be cached
+	private static boolean isCacheableContext(Map<String, Object> context) {
+		if (context != null) {
+			for (String key : context.keySet()) {
+				if (key.startsWith(RangerAccessRequestUtil.KEY_TOKEN_NAMESPACE) && !key.equals(CURRENT_USER_TOKEN)) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private static RangerAccessResult copyOf(RangerAccessResult result) {
+		RangerAccessResult ret = new RangerAccessResult(result.getServiceName(), result.getServiceDef(), null);
+
+		ret.setAccessResultFrom(result);
+		ret.setAuditResultFrom(result);
+
+		return ret;
+	}
+}
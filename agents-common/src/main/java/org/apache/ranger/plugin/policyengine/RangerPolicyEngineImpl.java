@@ -26,6 +26,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.contextenricher.RangerContextEnricher;
+import org.apache.ranger.plugin.contextenricher.RangerTagEnricher;
 import org.apache.ranger.plugin.contextenricher.RangerTagForEval;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
@@ -34,6 +35,8 @@ import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
 import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
+import org.apache.ranger.plugin.util.RangerPrincipalDictionary;
+import org.apache.ranger.plugin.util.RangerSiblingResourcesTrieLookup;
 import org.apache.ranger.plugin.util.ServicePolicies;
 
 import java.util.ArrayList;
@@ -58,17 +61,28 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 
 	private final RangerPolicyRepository policyRepository;
 	private final RangerPolicyRepository tagPolicyRepository;
+	private final RangerPrincipalDictionary principalDictionary;
 	
 	private List<RangerContextEnricher> allContextEnrichers;
 
 	private final Map<Long, RangerPolicyEvaluator> policyEvaluatorsMap;
 
+	private final RangerAccessDecisionCache accessDecisionCache;
+
 	private boolean  useForwardedIPAddress;
 	private String[] trustedProxyAddresses;
 
 	public RangerPolicyEngineImpl(String appId, ServicePolicies servicePolicies, RangerPolicyEngineOptions options) {
+		this(appId, servicePolicies, options, null);
+	}
+
+	/*
+	 * previousEngine, when not null, is the policy-engine this instance replaces. Policy evaluators and resource tries
+	 * that are unaffected by the policy changes since previousEngine was built are reused
+	 */
+	public RangerPolicyEngineImpl(String appId, ServicePolicies servicePolicies, RangerPolicyEngineOptions options, RangerPolicyEngine previousEngine) {
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("==> RangerPolicyEngineImpl(" + appId + ", " + servicePolicies + ", " + options + ")");
+			LOG.debug("==> RangerPolicyEngineImpl(" + appId + ", " + servicePolicies + ", " + options + ", " + (previousEngine != null) + ")");
 		}
 
 		RangerPerfTracer perf = null;
@@ -105,7 +119,19 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 			options.evaluatorType = RangerPolicyEvaluator.EVALUATOR_TYPE_OPTIMIZED;
 		}
 
-		policyRepository = new RangerPolicyRepository(appId, servicePolicies, options);
+		RangerPolicyEngineImpl previous = options.reuseUnchangedPolicyEvaluators && previousEngine instanceof RangerPolicyEngineImpl ? (RangerPolicyEngineImpl) previousEngine : null;
+
+		// ids are never removed from a dictionary. Once it holds mostly users and groups no longer in policies, a new
+		// dictionary is built, and with it all evaluators, as reused evaluators hold ids from the previous dictionary
+		if (previous != null && previous.principalDictionary.isOversizedFor(servicePolicies)) {
+			LOG.info("RangerPolicyEngineImpl(" + servicePolicies.getServiceName() + "): rebuilding principal dictionary and all policy evaluators");
+
+			previous = null;
+		}
+
+		principalDictionary = previous != null ? previous.principalDictionary : new RangerPrincipalDictionary();
+
+		policyRepository = new RangerPolicyRepository(appId, servicePolicies, options, principalDictionary, previous == null ? null : previous.policyRepository);
 
 		ServicePolicies.TagPolicies tagPolicies = servicePolicies.getTagPolicies();
 
@@ -119,7 +145,7 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 				LOG.debug("RangerPolicyEngineImpl : Building tag-policy-repository for tag-service " + tagPolicies.getServiceName());
 			}
 
-			tagPolicyRepository = new RangerPolicyRepository(appId, tagPolicies, options, servicePolicies.getServiceDef(), servicePolicies.getServiceName());
+			tagPolicyRepository = new RangerPolicyRepository(appId, tagPolicies, options, servicePolicies.getServiceDef(), servicePolicies.getServiceName(), principalDictionary, previous == null ? null : previous.tagPolicyRepository);
 
 		} else {
 			if (LOG.isDebugEnabled()) {
@@ -146,6 +172,8 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 
 		policyEvaluatorsMap = createPolicyEvaluatorsMap();
 
+		accessDecisionCache = options.cacheAccessDecisions && isAccessDecisionCacheable() ? new RangerAccessDecisionCache(options.accessDecisionCacheSize, getServiceTagsGeneration()) : null;
+
 		RangerPerfTracer.log(perf);
 
 		if (PERF_POLICYENGINE_INIT_LOG.isDebugEnabled()) {
@@ -240,12 +268,7 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 			LOG.debug("==> RangerPolicyEngineImpl.preProcess(" + request + ")");
 		}
 
-		setResourceServiceDef(request);
-		if (request instanceof RangerAccessRequestImpl) {
-			((RangerAccessRequestImpl) request).extractAndSetClientIPAddress(useForwardedIPAddress, trustedProxyAddresses);
-		}
-
-		RangerAccessRequestUtil.setCurrentUserInContext(request.getContext(), request.getUser());
+		preProcessRequest(request);
 
 		List<RangerContextEnricher> enrichers = allContextEnrichers;
 
@@ -272,6 +295,15 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		}
 	}
 
+	private void preProcessRequest(RangerAccessRequest request) {
+		setResourceServiceDef(request);
+		if (request instanceof RangerAccessRequestImpl) {
+			((RangerAccessRequestImpl) request).extractAndSetClientIPAddress(useForwardedIPAddress, trustedProxyAddresses);
+		}
+
+		RangerAccessRequestUtil.setCurrentUserInContext(request.getContext(), request.getUser());
+	}
+
 	@Override
 	public void preProcess(Collection<RangerAccessRequest> requests) {
 		if(LOG.isDebugEnabled()) {
@@ -280,7 +312,31 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 
 		if(CollectionUtils.isNotEmpty(requests)) {
 			for(RangerAccessRequest request : requests) {
-				preProcess(request);
+				preProcessRequest(request);
+			}
+
+			List<RangerContextEnricher> enrichers = allContextEnrichers;
+
+			if(!CollectionUtils.isEmpty(enrichers)) {
+
+				for(RangerContextEnricher enricher : enrichers) {
+
+					RangerPerfTracer perf = null;
+
+					if(RangerPerfTracer.isPerfTraceEnabled(PERF_CONTEXTENRICHER_REQUEST_LOG)) {
+						perf = RangerPerfTracer.getPerfTracer(PERF_CONTEXTENRICHER_REQUEST_LOG, "RangerContextEnricher.enrich(requestCount=" + requests.size() + ", enricherName=" + enricher.getName() + ")");
+					}
+
+					if (enricher instanceof RangerTagEnricher) {
+						((RangerTagEnricher) enricher).enrich(requests);
+					} else {
+						for (RangerAccessRequest request : requests) {
+							enricher.enrich(request);
+						}
+					}
+
+					RangerPerfTracer.log(perf);
+				}
 			}
 		}
 
@@ -336,8 +392,12 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		Collection<RangerAccessResult> ret = new ArrayList<>();
 
 		if (requests != null) {
+			// requests in a batch usually are for sibling resources, like columns of a table: requests are grouped by user,
+			// groups, access-type and parent resource, and the policies for the parent resource are looked-up once per group
+			Map<Object, RangerSiblingResourcesTrieLookup<RangerPolicyEvaluator>> siblingsLookups = requests.size() > 1 ? new HashMap<Object, RangerSiblingResourcesTrieLookup<RangerPolicyEvaluator>>() : null;
+
 			for (RangerAccessRequest request : requests) {
-				RangerAccessResult result = isAccessAllowedNoAudit(request);
+				RangerAccessResult result = isAccessAllowedNoAudit(request, siblingsLookups);
 
 				ret.add(result);
 			}
@@ -648,10 +708,39 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 	}
 
 	protected RangerAccessResult isAccessAllowedNoAudit(RangerAccessRequest request) {
+		return isAccessAllowedNoAudit(request, null);
+	}
+
+	private RangerAccessResult isAccessAllowedNoAudit(RangerAccessRequest request, Map<Object, RangerSiblingResourcesTrieLookup<RangerPolicyEvaluator>> siblingsLookups) {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> RangerPolicyEngineImpl.isAccessAllowedNoAudit(" + request + ")");
 		}
 
+		final RangerAccessDecisionCache decisionCache = this.accessDecisionCache;
+		final String                    signature     = decisionCache != null && request != null ? RangerAccessDecisionCache.getSignature(request) : null;
+		final long                      tagsGeneration;
+
+		if (signature != null) {
+			tagsGeneration = getServiceTagsGeneration();
+
+			RangerAccessResult cachedResult = decisionCache.get(signature, tagsGeneration);
+
+			if (cachedResult != null) {
+				RangerAccessResult ret = createAccessResult(request);
+
+				ret.setAccessResultFrom(cachedResult);
+				ret.setAuditResultFrom(cachedResult);
+
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("<== RangerPolicyEngineImpl.isAccessAllowedNoAudit(" + request + "): " + ret + " (from decision cache)");
+				}
+
+				return ret;
+			}
+		} else {
+			tagsGeneration = -1;
+		}
+
 		RangerAccessResult ret = createAccessResult(request);
 
 		if (ret != null && request != null) {
@@ -677,7 +766,7 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 					ret.setIsAccessDetermined(false); // discard allowed result by tag-policies, to evaluate resource policies for possible deny
 				}
 
-				List<RangerPolicyEvaluator> evaluators = policyRepository.getLikelyMatchPolicyEvaluators(request.getResource());
+				List<RangerPolicyEvaluator> evaluators = policyRepository.getLikelyMatchPolicyEvaluators(request.getResource(), getSiblingResourcesLookup(request, siblingsLookups));
 				for (RangerPolicyEvaluator evaluator : evaluators) {
 					ret.incrementEvaluatedPoliciesCount();
 					evaluator.evaluate(request, ret);
@@ -699,6 +788,10 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 					policyRepository.storeAuditEnabledInCache(request, ret);
 				}
 			}
+
+			if (signature != null) {
+				decisionCache.put(signature, ret, tagsGeneration);
+			}
 		}
 
 		if (LOG.isDebugEnabled()) {
@@ -708,6 +801,28 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		return ret;
 	}
 
+	private RangerSiblingResourcesTrieLookup<RangerPolicyEvaluator> getSiblingResourcesLookup(RangerAccessRequest request, Map<Object, RangerSiblingResourcesTrieLookup<RangerPolicyEvaluator>> siblingsLookups) {
+		RangerSiblingResourcesTrieLookup<RangerPolicyEvaluator> ret = null;
+
+		if (siblingsLookups != null) {
+			Object groupKey = RangerSiblingResourcesTrieLookup.getGroupKey(request);
+
+			if (groupKey != null) {
+				ret = siblingsLookups.get(groupKey);
+
+				if (ret == null) {
+					ret = policyRepository.getSiblingResourcesLookup(request.getResource());
+
+					if (ret != null) {
+						siblingsLookups.put(groupKey, ret);
+					}
+				}
+			}
+		}
+
+		return ret;
+	}
+
 	protected void isAccessAllowedForTagPolicies(final RangerAccessRequest request, RangerAccessResult result) {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> RangerPolicyEngineImpl.isAccessAllowedForTagPolicies(" + request + ", " + result + ")");
@@ -1010,7 +1125,7 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		}
 		if (MapUtils.isNotEmpty(policyEvaluatorsMap)) {
 			for (Map.Entry<Long, RangerPolicyEvaluator> entry : policyEvaluatorsMap.entrySet()) {
-				entry.getValue().setUsageCountImmutable();
+				entry.getValue().snapshotUsageCount();
 			}
 		}
 
@@ -1021,12 +1136,6 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 			policyRepository.reorderPolicyEvaluators();
 		}
 
-		if (MapUtils.isNotEmpty(policyEvaluatorsMap)) {
-			for (Map.Entry<Long, RangerPolicyEvaluator> entry : policyEvaluatorsMap.entrySet()) {
-				entry.getValue().resetUsageCount();
-			}
-		}
-
 		RangerPerfTracer.log(perf);
 
 		if (LOG.isDebugEnabled()) {
@@ -1144,6 +1253,58 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		}
 	}
 
+	/*
+	 * Results can be cached only when they are fully determined by the request signature: i.e. no policy has custom
+	 * conditions and the only context-enricher, if any, is the tag-enricher that populates tags for the resource.
+	 */
+	private boolean isAccessDecisionCacheable() {
+		boolean hasTagEnricher = false;
+
+		if (CollectionUtils.isNotEmpty(allContextEnrichers)) {
+			for (RangerContextEnricher contextEnricher : allContextEnrichers) {
+				if (!(contextEnricher instanceof RangerTagEnricher)) {
+					LOG.info("RangerPolicyEngineImpl: access-decision cache disabled, as context-enricher " + contextEnricher.getName() + " is in use");
+
+					return false;
+				}
+
+				hasTagEnricher = true;
+			}
+		}
+
+		if (tagPolicyRepository != null && !hasTagEnricher) { // tags in request context are not derived from the resource
+			LOG.info("RangerPolicyEngineImpl: access-decision cache disabled, as tag-policies are used without a tag-enricher");
+
+			return false;
+		}
+
+		for (RangerPolicyEvaluator evaluator : policyEvaluatorsMap.values()) {
+			if (evaluator.getCustomConditionsCount() > 0) {
+				LOG.info("RangerPolicyEngineImpl: access-decision cache disabled, as policy " + evaluator.getId() + " has custom conditions");
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private long getServiceTagsGeneration() {
+		long ret = 0;
+
+		List<RangerContextEnricher> enrichers = allContextEnrichers;
+
+		if (CollectionUtils.isNotEmpty(enrichers)) {
+			for (RangerContextEnricher contextEnricher : enrichers) {
+				if (contextEnricher instanceof RangerTagEnricher) {
+					ret += ((RangerTagEnricher) contextEnricher).getServiceTagsGeneration();
+				}
+			}
+		}
+
+		return ret;
+	}
+
 	private boolean hasTagPolicies() {
 		return tagPolicyRepository != null && CollectionUtils.isNotEmpty(tagPolicyRepository.getPolicies());
 	}
@@ -1197,6 +1358,9 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 					updateUsageCount(accessPolicy, 1);
 				}
 
+				if (!accessResult.getIsAllowed()) {
+					accessPolicy.incrementDenyCount();
+				}
 			}
 		}
 
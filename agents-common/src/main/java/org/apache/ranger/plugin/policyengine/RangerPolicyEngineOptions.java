@@ -32,6 +32,10 @@ public class RangerPolicyEngineOptions {
 	public boolean cacheAuditResults = true;
 	public boolean evaluateDelegateAdminOnly = false;
 	public boolean enableTagEnricherWithLocalRefresher = false;
+	public boolean cacheAccessDecisions = false;
+	public int     accessDecisionCacheSize = 64 * 1024;
+	public boolean reuseUnchangedPolicyEvaluators = true;
+	public boolean reorderTrieEvaluators = false;
 
 	private RangerServiceDefHelper serviceDefHelper;
 
@@ -48,6 +52,12 @@ public class RangerPolicyEngineOptions {
 		}
 		evaluateDelegateAdminOnly = false;
 		enableTagEnricherWithLocalRefresher = false;
+
+		cacheAccessDecisions = conf.getBoolean(propertyPrefix + ".policyengine.option.cache.access.decisions", false);
+		accessDecisionCacheSize = conf.getInt(propertyPrefix + ".policyengine.option.access.decision.cache.size", 64 * 1024);
+
+		reuseUnchangedPolicyEvaluators = conf.getBoolean(propertyPrefix + ".policyengine.option.reuse.unchanged.policy.evaluators", true);
+		reorderTrieEvaluators = conf.getBoolean(propertyPrefix + ".policyengine.option.reorder.trie.evaluators", false);
 	}
 
 	public void configureDefaultRangerAdmin(Configuration conf, String propertyPrefix) {
@@ -108,7 +118,11 @@ public class RangerPolicyEngineOptions {
 					&& this.disableTrieLookupPrefilter == that.disableTrieLookupPrefilter
 					&& this.cacheAuditResults == that.cacheAuditResults
 					&& this.evaluateDelegateAdminOnly == that.evaluateDelegateAdminOnly
-					&& this.enableTagEnricherWithLocalRefresher == that.enableTagEnricherWithLocalRefresher;
+					&& this.enableTagEnricherWithLocalRefresher == that.enableTagEnricherWithLocalRefresher
+					&& this.cacheAccessDecisions == that.cacheAccessDecisions
+					&& this.accessDecisionCacheSize == that.accessDecisionCacheSize
+					&& this.reuseUnchangedPolicyEvaluators == that.reuseUnchangedPolicyEvaluators
+					&& this.reorderTrieEvaluators == that.reorderTrieEvaluators;
 		}
 		return ret;
 	}
@@ -130,6 +144,13 @@ public class RangerPolicyEngineOptions {
 		ret *= 2;
 		ret += enableTagEnricherWithLocalRefresher ? 1 : 0;
 		ret *= 2;
+		ret += cacheAccessDecisions ? 1 : 0;
+		ret *= 2;
+		ret += accessDecisionCacheSize;
+		ret *= 2;
+		ret += reuseUnchangedPolicyEvaluators ? 1 : 0;
+		ret *= 2;
+		ret += reorderTrieEvaluators ? 1 : 0;
 		return ret;
 	}
 
@@ -141,6 +162,10 @@ public class RangerPolicyEngineOptions {
 				", disableContextEnrichers: " + disableContextEnrichers +
 				", disableCustomConditions: " + disableContextEnrichers +
 				", disableTrieLookupPrefilter: " + disableTrieLookupPrefilter +
+				", cacheAccessDecisions: " + cacheAccessDecisions +
+				", accessDecisionCacheSize: " + accessDecisionCacheSize +
+				", reuseUnchangedPolicyEvaluators: " + reuseUnchangedPolicyEvaluators +
+				", reorderTrieEvaluators: " + reorderTrieEvaluators +
 				" }";
 
 	}
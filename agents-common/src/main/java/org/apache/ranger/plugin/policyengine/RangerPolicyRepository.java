@@ -20,6 +20,7 @@
 package org.apache.ranger.plugin.policyengine;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -31,19 +32,24 @@ import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemDataMaskInfo;
 import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.model.validation.RangerServiceDefHelper;
+import org.apache.ranger.plugin.policyevaluator.RangerAbstractPolicyEvaluator;
 import org.apache.ranger.plugin.policyevaluator.RangerCachedPolicyEvaluator;
 import org.apache.ranger.plugin.policyevaluator.RangerOptimizedPolicyEvaluator;
 import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
 import org.apache.ranger.plugin.store.AbstractServiceStore;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
+import org.apache.ranger.plugin.util.RangerPrincipalDictionary;
 import org.apache.ranger.plugin.util.RangerResourceTrie;
+import org.apache.ranger.plugin.util.RangerSiblingResourcesTrieLookup;
 import org.apache.ranger.plugin.util.ServiceDefUtil;
 import org.apache.ranger.plugin.util.ServicePolicies;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -95,9 +101,26 @@ class RangerPolicyRepository {
     private final Map<String, RangerResourceTrie> dataMaskResourceTrie;
     private final Map<String, RangerResourceTrie> rowFilterResourceTrie;
 
+    private final String                      evaluatorType;
+    private final boolean                     disableCustomConditions;
+    private final boolean                     reorderTrieEvaluators;
+    private final RangerPrincipalDictionary   principalDictionary; // when null, policy-items match users and groups by name
+    private int                               reusedEvaluatorsCount;
+
     RangerPolicyRepository(String appId, ServicePolicies servicePolicies, RangerPolicyEngineOptions options) {
+        this(appId, servicePolicies, options, null, null);
+    }
+
+    /*
+     * previousRepository, when not null, is the repository of the policy-engine being replaced. Evaluators of policies
+     * that haven't changed since then are reused, instead of being built again. principalDictionary must then be the
+     * dictionary of previousRepository, as reused evaluators hold ids from it
+     */
+    RangerPolicyRepository(String appId, ServicePolicies servicePolicies, RangerPolicyEngineOptions options, RangerPrincipalDictionary principalDictionary, RangerPolicyRepository previousRepository) {
         super();
 
+        this.principalDictionary = principalDictionary;
+
         this.componentServiceName = this.serviceName = servicePolicies.getServiceName();
         this.componentServiceDef = this.serviceDef = ServiceDefUtil.normalize(servicePolicies.getServiceDef());
 
@@ -127,7 +150,7 @@ class RangerPolicyRepository {
                 final int RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE = 64 * 1024;
 
                 int auditResultCacheSize = RangerConfiguration.getInstance().getInt(propertyName, RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE);
-                accessAuditCache = Collections.synchronizedMap(new CacheMap<String, AuditInfo>(auditResultCacheSize));
+                accessAuditCache = CacheMap.createSynchronizedCache(auditResultCacheSize);
             } else {
                 accessAuditCache = null;
             }
@@ -140,12 +163,24 @@ class RangerPolicyRepository {
                     + "] with auditMode[" + auditModeEnum + "]");
         }
 
-        init(options);
+        this.evaluatorType           = options.evaluatorType;
+        this.disableCustomConditions = options.disableCustomConditions;
+        this.reorderTrieEvaluators   = options.reorderTrieEvaluators;
+
+        if (previousRepository != null && !isEvaluatorReusableFrom(previousRepository, options)) {
+            previousRepository = null;
+        }
+
+        init(options, previousRepository);
 
         if(options.disableTrieLookupPrefilter) {
             policyResourceTrie    = null;
             dataMaskResourceTrie  = null;
             rowFilterResourceTrie = null;
+        } else if (previousRepository != null) {
+            policyResourceTrie    = getOrCreateResourceTrieMap(policyEvaluators, previousRepository.policyEvaluators, previousRepository.policyResourceTrie);
+            dataMaskResourceTrie  = getOrCreateResourceTrieMap(dataMaskPolicyEvaluators, previousRepository.dataMaskPolicyEvaluators, previousRepository.dataMaskResourceTrie);
+            rowFilterResourceTrie = getOrCreateResourceTrieMap(rowFilterPolicyEvaluators, previousRepository.rowFilterPolicyEvaluators, previousRepository.rowFilterResourceTrie);
         } else {
             policyResourceTrie    = createResourceTrieMap(policyEvaluators);
             dataMaskResourceTrie  = createResourceTrieMap(dataMaskPolicyEvaluators);
@@ -155,8 +190,15 @@ class RangerPolicyRepository {
 
     RangerPolicyRepository(String appId, ServicePolicies.TagPolicies tagPolicies, RangerPolicyEngineOptions options,
                            RangerServiceDef componentServiceDef, String componentServiceName) {
+        this(appId, tagPolicies, options, componentServiceDef, componentServiceName, null, null);
+    }
+
+    RangerPolicyRepository(String appId, ServicePolicies.TagPolicies tagPolicies, RangerPolicyEngineOptions options,
+                           RangerServiceDef componentServiceDef, String componentServiceName, RangerPrincipalDictionary principalDictionary, RangerPolicyRepository previousRepository) {
         super();
 
+        this.principalDictionary = principalDictionary;
+
         this.serviceName = tagPolicies.getServiceName();
         this.componentServiceName = componentServiceName;
 
@@ -185,12 +227,24 @@ class RangerPolicyRepository {
                     + "] with auditMode[" + auditModeEnum +"]");
         }
 
-        init(options);
+        this.evaluatorType           = options.evaluatorType;
+        this.disableCustomConditions = options.disableCustomConditions;
+        this.reorderTrieEvaluators   = options.reorderTrieEvaluators;
+
+        if (previousRepository != null && !isEvaluatorReusableFrom(previousRepository, options)) {
+            previousRepository = null;
+        }
+
+        init(options, previousRepository);
 
         if(options.disableTrieLookupPrefilter) {
             policyResourceTrie    = null;
             dataMaskResourceTrie  = null;
             rowFilterResourceTrie = null;
+        } else if (previousRepository != null) {
+            policyResourceTrie    = getOrCreateResourceTrieMap(policyEvaluators, previousRepository.policyEvaluators, previousRepository.policyResourceTrie);
+            dataMaskResourceTrie  = getOrCreateResourceTrieMap(dataMaskPolicyEvaluators, previousRepository.dataMaskPolicyEvaluators, previousRepository.dataMaskResourceTrie);
+            rowFilterResourceTrie = getOrCreateResourceTrieMap(rowFilterPolicyEvaluators, previousRepository.rowFilterPolicyEvaluators, previousRepository.rowFilterResourceTrie);
         } else {
             policyResourceTrie    = createResourceTrieMap(policyEvaluators);
             dataMaskResourceTrie  = createResourceTrieMap(dataMaskPolicyEvaluators);
@@ -218,12 +272,35 @@ class RangerPolicyRepository {
         return policyEvaluators;
     }
 
+    int getReusedEvaluatorsCount() {
+        return reusedEvaluatorsCount;
+    }
+
     List<RangerPolicyEvaluator> getLikelyMatchPolicyEvaluators(RangerAccessResource resource) {
        String resourceStr = resource == null ? null : resource.getAsString();
 
        return policyResourceTrie == null || StringUtils.isEmpty(resourceStr)  ? getPolicyEvaluators() : getLikelyMatchPolicyEvaluators(policyResourceTrie, resource);
     }
 
+    /*
+     * Used for a batch of requests on sibling resources, like columns of a table: the returned look-up finds the policies
+     * for the parent resource once, to be shared by the requests having the same group key
+     */
+    @SuppressWarnings("unchecked")
+    RangerSiblingResourcesTrieLookup<RangerPolicyEvaluator> getSiblingResourcesLookup(RangerAccessResource resource) {
+        return policyResourceTrie == null ? null : new RangerSiblingResourcesTrieLookup<RangerPolicyEvaluator>((Map) policyResourceTrie, resource);
+    }
+
+    List<RangerPolicyEvaluator> getLikelyMatchPolicyEvaluators(RangerAccessResource resource, RangerSiblingResourcesTrieLookup<RangerPolicyEvaluator> siblingsLookup) {
+       String resourceStr = resource == null ? null : resource.getAsString();
+
+       if (policyResourceTrie == null || StringUtils.isEmpty(resourceStr)) {
+           return getPolicyEvaluators();
+       }
+
+       return siblingsLookup == null ? getLikelyMatchPolicyEvaluators(policyResourceTrie, resource) : siblingsLookup.getEvaluators(resource);
+    }
+
     List<RangerPolicyEvaluator> getDataMaskPolicyEvaluators() {
         return dataMaskPolicyEvaluators;
     }
@@ -549,10 +626,12 @@ class RangerPolicyRepository {
         return ret;
     }
 
-    private void init(RangerPolicyEngineOptions options) {
+    private void init(RangerPolicyEngineOptions options, RangerPolicyRepository previousRepository) {
         RangerServiceDefHelper serviceDefHelper = new RangerServiceDefHelper(serviceDef, false);
         options.setServiceDefHelper(serviceDefHelper);
 
+        Map<Long, RangerPolicyEvaluator> previousEvaluators = previousRepository == null ? null : previousRepository.getAllPolicyEvaluatorsMap();
+
         List<RangerPolicyEvaluator> policyEvaluators = new ArrayList<>();
         List<RangerPolicyEvaluator> dataMaskPolicyEvaluators  = new ArrayList<>();
         List<RangerPolicyEvaluator> rowFilterPolicyEvaluators = new ArrayList<>();
@@ -562,7 +641,13 @@ class RangerPolicyRepository {
                 continue;
             }
 
-            RangerPolicyEvaluator evaluator = buildPolicyEvaluator(policy, serviceDef, options);
+            RangerPolicyEvaluator evaluator = previousEvaluators == null ? null : getReusableEvaluator(policy, previousEvaluators.get(policy.getId()));
+
+            if (evaluator != null) {
+                reusedEvaluatorsCount++;
+            } else {
+                evaluator = buildPolicyEvaluator(policy, serviceDef, options);
+            }
 
             if (evaluator != null) {
                 if(policy.getPolicyType() == null || policy.getPolicyType() == RangerPolicy.POLICY_TYPE_ACCESS) {
@@ -612,6 +697,10 @@ class RangerPolicyRepository {
         }
         this.contextEnrichers = Collections.unmodifiableList(contextEnrichers);
 
+        if(previousRepository != null) {
+            LOG.info("RangerPolicyRepository(" + serviceName + "): reused " + reusedEvaluatorsCount + " of " + policies.size() + " policy evaluators from policy-version " + previousRepository.policyVersion);
+        }
+
         if(LOG.isDebugEnabled()) {
             LOG.debug("policy evaluation order: " + this.policyEvaluators.size() + " policies");
 
@@ -689,7 +778,7 @@ class RangerPolicyRepository {
         }
 
         scrubPolicy(policy);
-        RangerPolicyEvaluator ret;
+        RangerAbstractPolicyEvaluator ret;
 
         if(StringUtils.equalsIgnoreCase(options.evaluatorType, RangerPolicyEvaluator.EVALUATOR_TYPE_CACHED)) {
             ret = new RangerCachedPolicyEvaluator();
@@ -697,6 +786,7 @@ class RangerPolicyRepository {
             ret = new RangerOptimizedPolicyEvaluator();
         }
 
+        ret.setPrincipalDictionary(principalDictionary);
         ret.init(policy, serviceDef, options);
 
         if(LOG.isDebugEnabled()) {
@@ -807,14 +897,20 @@ class RangerPolicyRepository {
 
         if(policyResourceTrie == null) {
             policyEvaluators = getReorderedPolicyEvaluators(policyEvaluators);
+        } else if (reorderTrieEvaluators) {
+            reorderPolicyEvaluators(policyResourceTrie);
         }
 
         if(dataMaskResourceTrie == null) {
             dataMaskPolicyEvaluators = getReorderedPolicyEvaluators(dataMaskPolicyEvaluators);
+        } else if (reorderTrieEvaluators) {
+            reorderPolicyEvaluators(dataMaskResourceTrie);
         }
 
         if(rowFilterResourceTrie == null) {
             rowFilterPolicyEvaluators = getReorderedPolicyEvaluators(rowFilterPolicyEvaluators);
+        } else if (reorderTrieEvaluators) {
+            reorderPolicyEvaluators(rowFilterResourceTrie);
         }
 
         if (LOG.isDebugEnabled()) {
@@ -822,6 +918,12 @@ class RangerPolicyRepository {
         }
     }
 
+    private void reorderPolicyEvaluators(Map<String, RangerResourceTrie> resourceTrie) {
+        for (RangerResourceTrie trie : resourceTrie.values()) {
+            trie.reorderEvaluators(RangerPolicyEvaluator.EVAL_ORDER_COMPARATOR);
+        }
+    }
+
     private List<RangerPolicyEvaluator> getReorderedPolicyEvaluators(List<RangerPolicyEvaluator> evaluators) {
         List<RangerPolicyEvaluator> ret = evaluators;
 
@@ -835,6 +937,90 @@ class RangerPolicyRepository {
         return ret;
     }
 
+    private boolean isEvaluatorReusableFrom(RangerPolicyRepository previousRepository, RangerPolicyEngineOptions options) {
+        return StringUtils.equals(serviceName, previousRepository.serviceName)
+                && StringUtils.equals(evaluatorType, previousRepository.evaluatorType)
+                && disableCustomConditions == previousRepository.disableCustomConditions
+                && isSameVersion(serviceDef, previousRepository.serviceDef)
+                && isSameVersion(componentServiceDef, previousRepository.componentServiceDef)
+                && principalDictionary == previousRepository.principalDictionary
+                && options.reuseUnchangedPolicyEvaluators;
+    }
+
+    private static boolean isSameVersion(RangerServiceDef serviceDef, RangerServiceDef other) {
+        return serviceDef != null && other != null
+                && serviceDef.getVersion() != null && serviceDef.getVersion().equals(other.getVersion())
+                && ObjectUtils.equals(serviceDef.getId(), other.getId())
+                && ObjectUtils.equals(serviceDef.getUpdateTime(), other.getUpdateTime());
+    }
+
+    /*
+     * An evaluator can be reused only if it was built for the same version of the policy. The policy instance held by
+     * the reused evaluator is from the previous download, which has identical contents
+     */
+    private static RangerPolicyEvaluator getReusableEvaluator(RangerPolicy policy, RangerPolicyEvaluator previousEvaluator) {
+        RangerPolicy previousPolicy = previousEvaluator == null ? null : previousEvaluator.getPolicy();
+
+        boolean isReusable = previousPolicy != null
+                && policy.getVersion() != null && policy.getVersion().equals(previousPolicy.getVersion())
+                && ObjectUtils.equals(policy.getUpdateTime(), previousPolicy.getUpdateTime())
+                && ObjectUtils.equals(policy.getPolicyType(), previousPolicy.getPolicyType());
+
+        return isReusable ? previousEvaluator : null;
+    }
+
+    private Map<Long, RangerPolicyEvaluator> getAllPolicyEvaluatorsMap() {
+        Map<Long, RangerPolicyEvaluator> ret = new HashMap<>();
+
+        for (List<RangerPolicyEvaluator> evaluators : Arrays.asList(policyEvaluators, dataMaskPolicyEvaluators, rowFilterPolicyEvaluators)) {
+            for (RangerPolicyEvaluator evaluator : evaluators) {
+                RangerPolicy policy = evaluator.getPolicy();
+
+                if (policy != null && policy.getId() != null) {
+                    ret.put(policy.getId(), evaluator);
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    /*
+     * Tries only hold references to evaluators; if no evaluator was added or removed for a policy-type, the tries of the
+     * previous repository are still accurate and are shared
+     */
+    private Map<String, RangerResourceTrie> getOrCreateResourceTrieMap(List<RangerPolicyEvaluator> evaluators, List<RangerPolicyEvaluator> previousEvaluators, Map<String, RangerResourceTrie> previousTrieMap) {
+        final Map<String, RangerResourceTrie> ret;
+
+        if (previousTrieMap != null && isSameEvaluators(evaluators, previousEvaluators)) {
+            ret = previousTrieMap;
+        } else {
+            ret = createResourceTrieMap(evaluators);
+        }
+
+        return ret;
+    }
+
+    private static boolean isSameEvaluators(List<RangerPolicyEvaluator> evaluators, List<RangerPolicyEvaluator> other) {
+        boolean ret = evaluators.size() == other.size();
+
+        if (ret) {
+            Set<RangerPolicyEvaluator> otherSet = Collections.newSetFromMap(new IdentityHashMap<RangerPolicyEvaluator, Boolean>());
+
+            otherSet.addAll(other);
+
+            for (RangerPolicyEvaluator evaluator : evaluators) {
+                if (!otherSet.contains(evaluator)) {
+                    ret = false;
+
+                    break;
+                }
+            }
+        }
+
+        return ret;
+    }
+
     private Map<String, RangerResourceTrie> createResourceTrieMap(List<RangerPolicyEvaluator> evaluators) {
         final Map<String, RangerResourceTrie> ret;
 
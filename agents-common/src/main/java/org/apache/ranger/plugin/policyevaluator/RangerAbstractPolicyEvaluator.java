@@ -28,9 +28,11 @@ import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.apache.ranger.plugin.util.RangerPrincipalDictionary;
 import org.apache.ranger.plugin.util.ServiceDefUtil;
 
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 public abstract class RangerAbstractPolicyEvaluator implements RangerPolicyEvaluator {
 	private static final Log LOG = LogFactory.getLog(RangerAbstractPolicyEvaluator.class);
@@ -39,8 +41,14 @@ public abstract class RangerAbstractPolicyEvaluator implements RangerPolicyEvalu
 	private RangerServiceDef serviceDef;
 	private Integer          leafResourceLevel;
 	private int              evalOrder;
-	protected long           usageCount;
-	protected boolean        usageCountMutable = true;
+	private final LongAdder  usageCounter = new LongAdder(); // updated by concurrent requests
+	private final LongAdder  denyCounter  = new LongAdder();
+	private volatile long    usageCount; // snapshots of counters, used for ordering; unchanged between snapshots
+	private volatile long    denyCount;
+	private long             lastRawUsage = 0; // counter sums at the previous snapshot; counters are never reset, to not lose concurrent updates
+	private long             lastRawDeny  = 0;
+
+	private RangerPrincipalDictionary principalDictionary; // when null, policy-items match users and groups by name
 
 
 	@Override
@@ -58,6 +66,17 @@ public abstract class RangerAbstractPolicyEvaluator implements RangerPolicyEvalu
 		}
 	}
 
+	public RangerPrincipalDictionary getPrincipalDictionary() {
+		return principalDictionary;
+	}
+
+	/*
+	 * dictionary to which policy-items add their users and groups; to be set before init()
+	 */
+	public void setPrincipalDictionary(RangerPrincipalDictionary principalDictionary) {
+		this.principalDictionary = principalDictionary;
+	}
+
 	@Override
 	public long getId() {
 		return policy != null ? policy.getId() :-1;
@@ -100,6 +119,11 @@ public abstract class RangerAbstractPolicyEvaluator implements RangerPolicyEvalu
 		return usageCount;
 	}
 
+	@Override
+	public long getDenyCount() {
+		return denyCount;
+	}
+
 	@Override
 	public int getEvalOrder() {
 		return evalOrder;
@@ -115,18 +139,34 @@ public abstract class RangerAbstractPolicyEvaluator implements RangerPolicyEvalu
 
 	@Override
 	public void incrementUsageCount(int number) {
-		if (usageCountMutable) usageCount += number;
+		usageCounter.add(number);
 	}
 
 	@Override
-	public void setUsageCountImmutable() {
-		this.usageCountMutable = false;
+	public void incrementDenyCount() {
+		denyCounter.increment();
 	}
 
 	@Override
-	public void resetUsageCount() {
+	public synchronized void snapshotUsageCount() {
+		long rawUsage = usageCounter.sum();
+		long rawDeny  = denyCounter.sum();
+
+		// halve earlier counts, so that the order follows recent usage without swinging on a single interval
+		this.usageCount = (usageCount / 2) + (rawUsage - lastRawUsage);
+		this.denyCount  = (denyCount / 2) + (rawDeny - lastRawDeny);
+
+		lastRawUsage = rawUsage;
+		lastRawDeny  = rawDeny;
+	}
+
+	@Override
+	public synchronized void resetUsageCount() {
+		lastRawUsage = usageCounter.sum();
+		lastRawDeny  = denyCounter.sum();
+
 		this.usageCount = 0;
-		this.usageCountMutable = true;
+		this.denyCount  = 0;
 	}
 
 	@Override
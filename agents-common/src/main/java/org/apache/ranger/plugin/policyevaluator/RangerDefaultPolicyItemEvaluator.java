@@ -37,10 +37,13 @@ import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
 import org.apache.ranger.plugin.model.RangerServiceDef.RangerPolicyConditionDef;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
 import org.apache.ranger.plugin.policyengine.RangerAccessResource;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
+import org.apache.ranger.plugin.util.RangerPrincipalDictionary;
 
 
 public class RangerDefaultPolicyItemEvaluator extends RangerAbstractPolicyItemEvaluator {
@@ -54,9 +57,20 @@ public class RangerDefaultPolicyItemEvaluator extends RangerAbstractPolicyItemEv
 	private boolean hasCurrentUser;
 	private boolean hasResourceOwner;
 	private boolean hasAllPerms;
+	private boolean hasPublicGroup;
+
+	private RangerPrincipalDictionary principalDictionary; // when null, users and groups of the policy-item are matched by name
+	private int[]                     userIds;
+	private int[]                     groupIds;
 
 	public RangerDefaultPolicyItemEvaluator(RangerServiceDef serviceDef, RangerPolicy policy, RangerPolicyItem policyItem, int policyItemType, int policyItemIndex, RangerPolicyEngineOptions options) {
+		this(serviceDef, policy, policyItem, policyItemType, policyItemIndex, options, null);
+	}
+
+	public RangerDefaultPolicyItemEvaluator(RangerServiceDef serviceDef, RangerPolicy policy, RangerPolicyItem policyItem, int policyItemType, int policyItemIndex, RangerPolicyEngineOptions options, RangerPrincipalDictionary principalDictionary) {
 		super(serviceDef, policy, policyItem, policyItemType, policyItemIndex, options);
+
+		this.principalDictionary = principalDictionary;
 	}
 
 	public void init() {
@@ -131,6 +145,14 @@ public class RangerDefaultPolicyItemEvaluator extends RangerAbstractPolicyItemEv
 		this.hasCurrentUser = CollectionUtils.isNotEmpty(users) && users.contains(RangerPolicyEngine.USER_CURRENT);
 		this.hasResourceOwner = CollectionUtils.isNotEmpty(users) && users.contains(RangerPolicyEngine.RESOURCE_OWNER);
 
+		List<String> groups = policyItem.getGroups();
+		this.hasPublicGroup = CollectionUtils.isNotEmpty(groups) && groups.contains(RangerPolicyEngine.GROUP_PUBLIC);
+
+		if (principalDictionary != null) {
+			this.userIds  = principalDictionary.addUsers(users);
+			this.groupIds = principalDictionary.addGroups(groups);
+		}
+
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerDefaultPolicyItemEvaluator(policyId=" + policyId + ", conditionsCount=" + getConditionEvaluators().size() + ")");
 		}
@@ -207,7 +229,9 @@ public class RangerDefaultPolicyItemEvaluator extends RangerAbstractPolicyItemEv
 
 		boolean ret = false;
 
-		if(policyItem != null) {
+		if(principalDictionary != null) {
+			ret = matchUserGroup(user, userGroups, principalDictionary.getPrincipalIds(user, userGroups));
+		} else if(policyItem != null) {
 			if(!ret && user != null && policyItem.getUsers() != null) {
 				ret = hasCurrentUser || policyItem.getUsers().contains(user);
 			}
@@ -225,6 +249,42 @@ public class RangerDefaultPolicyItemEvaluator extends RangerAbstractPolicyItemEv
 		return ret;
 	}
 
+	private boolean matchUserGroup(String user, Set<String> userGroups, RangerPrincipalDictionary.PrincipalIds principalIds) {
+		boolean ret = false;
+
+		if(user != null && userIds != null) {
+			ret = hasCurrentUser || RangerPrincipalDictionary.contains(userIds, principalIds.getUserId());
+		}
+
+		if(!ret && userGroups != null && groupIds != null) {
+			ret = hasPublicGroup || RangerPrincipalDictionary.containsAny(groupIds, principalIds.getGroupIds());
+		}
+
+		return ret;
+	}
+
+	// ids of the user and groups of the request, looked up once per request
+	private RangerPrincipalDictionary.PrincipalIds getPrincipalIds(RangerAccessRequest request, String user, Set<String> userGroups) {
+		RangerPrincipalDictionary.PrincipalIds ret = null;
+
+		// context of other requests, like RangerAccessRequestReadOnly, can't be updated
+		boolean isCacheable = request instanceof RangerAccessRequestImpl && request.getContext() != null;
+
+		if (isCacheable) {
+			ret = RangerAccessRequestUtil.getPrincipalIdsFromContext(request.getContext());
+		}
+
+		if (ret == null || !ret.isFor(principalDictionary, user, userGroups)) {
+			ret = principalDictionary.getPrincipalIds(user, userGroups);
+
+			if (isCacheable) {
+				RangerAccessRequestUtil.setPrincipalIdsInContext(request.getContext(), ret);
+			}
+		}
+
+		return ret;
+	}
+
 	private boolean matchUserGroupAndOwner(RangerAccessRequest request) {
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> RangerDefaultPolicyItemEvaluator.matchUserGroupAndOwner(" + request + ")");
@@ -244,7 +304,11 @@ public class RangerDefaultPolicyItemEvaluator extends RangerAbstractPolicyItemEv
 			}
 		}
 		if (!ret) {
-			ret = matchUserGroup(user, userGroups);
+			if (principalDictionary != null) {
+				ret = matchUserGroup(user, userGroups, getPrincipalIds(request, user, userGroups));
+			} else {
+				ret = matchUserGroup(user, userGroups);
+			}
 		}
 
 		if(LOG.isDebugEnabled()) {
@@ -57,11 +57,17 @@ public interface RangerPolicyEvaluator extends RangerPolicyResourceEvaluator {
 
 	int getEvalOrder();
 
+	// usage and deny counts as of the last snapshot; these are used to order evaluators
 	long getUsageCount();
 
+	long getDenyCount();
+
 	void incrementUsageCount(int number);
 
-	void setUsageCountImmutable();
+	void incrementDenyCount();
+
+	// takes a snapshot of counts updated since the previous snapshot
+	void snapshotUsageCount();
 
 	void resetUsageCount();
 
@@ -97,7 +103,12 @@ public interface RangerPolicyEvaluator extends RangerPolicyResourceEvaluator {
 			} else if (!me.hasDeny() && other.hasDeny()) {
 				result = 1;
 			} else {
-				result = Long.compare(other.getUsageCount(), me.getUsageCount());
+				// among policies having deny, ones that denied more often go first
+				result = me.hasDeny() ? Long.compare(other.getDenyCount(), me.getDenyCount()) : 0;
+
+				if (result == 0) {
+					result = Long.compare(other.getUsageCount(), me.getUsageCount());
+				}
 
 				if (result == 0) {
 					result = Integer.compare(me.getEvalOrder(), other.getEvalOrder());
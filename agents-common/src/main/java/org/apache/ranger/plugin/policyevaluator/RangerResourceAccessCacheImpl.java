@@ -37,8 +37,8 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
         return new RangerResourceAccessCacheImpl(policy);
     }
 
-    private Map<String, String> matchedResourceCache;
-    private Map<String, String> notMatchedResourceCache;
+    private final Map<String, String> matchedResourceCache;
+    private final Map<String, String> notMatchedResourceCache;
 
     private RangerResourceAccessCacheImpl(RangerPolicy policy) {
         if(LOG.isDebugEnabled()) {
@@ -48,8 +48,8 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
         int matchedCacheSize    = RangerConfiguration.getInstance().getInt("ranger.policyengine.matched.cached.count", 1000);
         int notMatchedCacheSize = RangerConfiguration.getInstance().getInt("ranger.policyengine.not.matched.cached.count", matchedCacheSize * 10);
 
-        matchedResourceCache    = new CacheMap<String, String>(matchedCacheSize);
-        notMatchedResourceCache = new CacheMap<String, String>(notMatchedCacheSize);
+        matchedResourceCache    = CacheMap.createSynchronizedCache(matchedCacheSize);
+        notMatchedResourceCache = CacheMap.createSynchronizedCache(notMatchedCacheSize);
 
         if(LOG.isDebugEnabled()) {
             LOG.debug("<== RangerResourceAccessCacheImpl.constructor(), policyName:" + policy.getName());
@@ -67,13 +67,12 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
         LookupResult result = LookupResult.NOT_FOUND;
 
         try {
-        	synchronized(this) {
-	            if (matchedResourceCache.containsKey(strResource)) {
-	                result = LookupResult.IN_MATCHED_CACHE;
-	            } else if(notMatchedResourceCache.containsKey(strResource)) {
-	                result = LookupResult.IN_NOTMATCHED_CACHE;
-	            }
-        	}
+            // get() rather than containsKey(), so that lookups are counted in the hit/miss counts of the caches
+            if (matchedResourceCache.get(strResource) != null) {
+                result = LookupResult.IN_MATCHED_CACHE;
+            } else if(notMatchedResourceCache.get(strResource) != null) {
+                result = LookupResult.IN_NOTMATCHED_CACHE;
+            }
         } catch (Exception exception) {
             result = LookupResult.ERROR;
         }
@@ -85,6 +84,14 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
         return result;
     }
 
+    Map<String, String> getMatchedResourceCache() {
+        return matchedResourceCache;
+    }
+
+    Map<String, String> getNotMatchedResourceCache() {
+        return notMatchedResourceCache;
+    }
+
     @Override
     public void add(RangerAccessResource resource, CacheType cacheType) {
         String strResource = resource.getCacheKey();
@@ -93,18 +100,16 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
             LOG.debug("==> RangerResourceAccessCacheImpl.add(" + strResource + ", " + cacheType + ")");
         }
 
-        synchronized(this) {
-	        switch (cacheType) {
-	            case MATCHED_CACHE:
-	                matchedResourceCache.put(strResource, strResource);
-	                break;
-	
-	            case NOTMATCHED_CACHE:
-	                notMatchedResourceCache.put(strResource, strResource);
-	                break;
-	            default:
-	                break;
-	        }
+        switch (cacheType) {
+            case MATCHED_CACHE:
+                matchedResourceCache.put(strResource, strResource);
+                break;
+
+            case NOTMATCHED_CACHE:
+                notMatchedResourceCache.put(strResource, strResource);
+                break;
+            default:
+                break;
         }
 
         if(LOG.isDebugEnabled()) {
@@ -21,12 +21,11 @@ package org.apache.ranger.plugin.resourcematcher;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOCase;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -185,12 +184,49 @@ public abstract class RangerAbstractResourceMatcher implements RangerResourceMat
 			}
 		}
 
+		combineWildcardMatchers(resourceMatchers);
+
 		Collections.sort(resourceMatchers, new ResourceMatcher.PriorityComparator());
 
 		return CollectionUtils.isNotEmpty(resourceMatchers) ?
 				new ResourceMatcherWrapper(needsDynamicEval, resourceMatchers) : null;
 	}
 
+	/**
+	 * Replaces wildcard matchers of values that don't need dynamic evaluation with one matcher of each kind, which
+	 * evaluates all the values in a single pass.
+	 */
+	static void combineWildcardMatchers(List<ResourceMatcher> resourceMatchers) {
+		Map<Class<?>, List<WildcardResourceMatcher>> matchersByKind = new LinkedHashMap<>();
+
+		for (ResourceMatcher matcher : resourceMatchers) {
+			if (matcher instanceof WildcardResourceMatcher && !matcher.getNeedsDynamicEval()) {
+				List<WildcardResourceMatcher> matchers = matchersByKind.get(matcher.getClass());
+
+				if (matchers == null) {
+					matchers = new ArrayList<>();
+
+					matchersByKind.put(matcher.getClass(), matchers);
+				}
+
+				matchers.add((WildcardResourceMatcher) matcher);
+			}
+		}
+
+		for (List<WildcardResourceMatcher> matchers : matchersByKind.values()) {
+			if (matchers.size() > 1) {
+				List<String> values = new ArrayList<>();
+
+				for (WildcardResourceMatcher matcher : matchers) {
+					values.addAll(matcher.values);
+				}
+
+				resourceMatchers.removeAll(matchers);
+				resourceMatchers.add(matchers.get(0).combine(values));
+			}
+		}
+	}
+
 	@Override
 	public boolean isCompleteMatch(String resource, Map<String, Object> evalContext) {
 		if(LOG.isDebugEnabled()) {
@@ -425,29 +461,70 @@ final class CaseInsensitiveEndsWithMatcher extends ResourceMatcher {
 	int getPriority() { return 4 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0); }
 }
 
-final class CaseSensitiveWildcardMatcher extends ResourceMatcher {
+abstract class WildcardResourceMatcher extends ResourceMatcher {
+	final List<String>       values;
+	final boolean            ignoreCase;
+	WildcardPatternSet       patternSet;
+
+	WildcardResourceMatcher(List<String> values, boolean ignoreCase) {
+		super(values.size() == 1 ? values.get(0) : StringUtils.join(values, ','));
+
+		this.values     = values;
+		this.ignoreCase = ignoreCase;
+		this.patternSet = new WildcardPatternSet(values, ignoreCase);
+	}
+
+	// a value with tokens is matched per request, after replacing tokens, without compiling it
+	@Override
+	void setDelimiters(char startDelimiterChar, char endDelimiterChar, char escapeChar, String tokenPrefix) {
+		super.setDelimiters(startDelimiterChar, endDelimiterChar, escapeChar, tokenPrefix);
+
+		if (getNeedsDynamicEval()) {
+			patternSet = null;
+		}
+	}
+
+	// returns a matcher of the same kind for the given values
+	abstract WildcardResourceMatcher combine(List<String> values);
+}
+
+final class CaseSensitiveWildcardMatcher extends WildcardResourceMatcher {
 	CaseSensitiveWildcardMatcher(String value) {
-		super(value);
+		this(Collections.singletonList(value));
+	}
+
+	CaseSensitiveWildcardMatcher(List<String> values) {
+		super(values, false);
 	}
 
 	@Override
 	boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
-		return FilenameUtils.wildcardMatch(resourceValue, getExpandedValue(evalContext), IOCase.SENSITIVE);
+		return getNeedsDynamicEval() ? WildcardPatternSet.isMatch(resourceValue, getExpandedValue(evalContext), false) : patternSet.isMatch(resourceValue);
 	}
 	int getPriority() { return 5 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0); }
+
+	@Override
+	WildcardResourceMatcher combine(List<String> values) { return new CaseSensitiveWildcardMatcher(values); }
 }
 
 
-final class CaseInsensitiveWildcardMatcher extends ResourceMatcher {
+final class CaseInsensitiveWildcardMatcher extends WildcardResourceMatcher {
 	CaseInsensitiveWildcardMatcher(String value) {
-		super(value);
+		this(Collections.singletonList(value));
+	}
+
+	CaseInsensitiveWildcardMatcher(List<String> values) {
+		super(values, true);
 	}
 
 	@Override
 	boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
-		return FilenameUtils.wildcardMatch(resourceValue, getExpandedValue(evalContext), IOCase.INSENSITIVE);
+		return getNeedsDynamicEval() ? WildcardPatternSet.isMatch(resourceValue, getExpandedValue(evalContext), true) : patternSet.isMatch(resourceValue);
 	}
 	int getPriority() {return 6 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0); }
+
+	@Override
+	WildcardResourceMatcher combine(List<String> values) { return new CaseInsensitiveWildcardMatcher(values); }
 }
 
 final class ResourceMatcherWrapper {
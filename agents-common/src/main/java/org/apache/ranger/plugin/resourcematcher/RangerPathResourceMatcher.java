@@ -20,9 +20,6 @@
 package org.apache.ranger.plugin.resourcematcher;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOCase;
-import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -88,6 +85,8 @@ public class RangerPathResourceMatcher extends RangerDefaultResourceMatcher {
 			}
 		}
 
+		combineWildcardMatchers(resourceMatchers);
+
 		Collections.sort(resourceMatchers, new ResourceMatcher.PriorityComparator());
 
 		return CollectionUtils.isNotEmpty(resourceMatchers) ?
@@ -140,38 +139,59 @@ public class RangerPathResourceMatcher extends RangerDefaultResourceMatcher {
 		return ret;
 	}
 
-	static boolean isRecursiveWildCardMatch(String pathToCheck, String wildcardPath, char pathSeparatorChar, IOCase caseSensitivity) {
+	static boolean isRecursiveWildCardMatch(String pathToCheck, WildcardPatternSet patternSet, char pathSeparatorChar) {
 
 		boolean ret = false;
 
-		if (! StringUtils.isEmpty(pathToCheck)) {
-			String[] pathElements = StringUtils.split(pathToCheck, pathSeparatorChar);
+		if (! StringUtils.isEmpty(pathToCheck) && patternSet != null) {
+			if (isOnlySeparators(pathToCheck, pathSeparatorChar)) {
+				ret = patternSet.isMatch(pathToCheck);
+			} else {
+				// leading path elements are matched without empty elements, i.e. "/a//b" as "/a/b"
+				ret = patternSet.isPathPrefixMatch(removeEmptyElements(pathToCheck, pathSeparatorChar), pathSeparatorChar);
+			}
+		}
+		return ret;
+	}
 
-			if(! ArrayUtils.isEmpty(pathElements)) {
-				StringBuilder sb = new StringBuilder();
+	// matches a wildcard path that is not compiled, like a policy value with tokens replaced for the request
+	static boolean isRecursiveWildCardMatch(String pathToCheck, String wildcardPath, boolean ignoreCase, char pathSeparatorChar) {
 
-				if(pathToCheck.charAt(0) == pathSeparatorChar) {
-					sb.append(pathSeparatorChar); // preserve the initial pathSeparatorChar
-				}
+		boolean ret = false;
 
-				for(String p : pathElements) {
-					sb.append(p);
+		if (! StringUtils.isEmpty(pathToCheck) && wildcardPath != null) {
+			if (isOnlySeparators(pathToCheck, pathSeparatorChar)) {
+				ret = WildcardPatternSet.isMatch(pathToCheck, wildcardPath, ignoreCase);
+			} else {
+				ret = WildcardPatternSet.isPathPrefixMatch(removeEmptyElements(pathToCheck, pathSeparatorChar), wildcardPath, ignoreCase, pathSeparatorChar);
+			}
+		}
+		return ret;
+	}
 
-					ret = FilenameUtils.wildcardMatch(sb.toString(), wildcardPath, caseSensitivity);
+	private static boolean isOnlySeparators(String path, char pathSeparatorChar) {
+		for (int i = 0; i < path.length(); i++) {
+			if (path.charAt(i) != pathSeparatorChar) {
+				return false;
+			}
+		}
+		return true;
+	}
 
-					if (ret) {
-						break;
-					}
+	private static String removeEmptyElements(String path, char pathSeparatorChar) {
+		StringBuilder sb = null;
 
-					sb.append(pathSeparatorChar);
+		for (int i = 1; i < path.length(); i++) {
+			if (path.charAt(i) == pathSeparatorChar && path.charAt(i - 1) == pathSeparatorChar) {
+				if (sb == null) {
+					sb = new StringBuilder(path.length()).append(path, 0, i);
 				}
-
-				sb = null;
-			} else { // pathToCheck consists of only pathSeparatorChar
-				ret = FilenameUtils.wildcardMatch(pathToCheck, wildcardPath, caseSensitivity);
+			} else if (sb != null) {
+				sb.append(path.charAt(i));
 			}
 		}
-		return ret;
+
+		return sb != null ? sb.toString() : path;
 	}
 
 	public StringBuilder toString(StringBuilder sb) {
@@ -187,33 +207,48 @@ public class RangerPathResourceMatcher extends RangerDefaultResourceMatcher {
 	}
 }
 
-final class CaseSensitiveRecursiveWildcardMatcher extends ResourceMatcher {
+final class CaseSensitiveRecursiveWildcardMatcher extends WildcardResourceMatcher {
 	private final char levelSeparatorChar;
 	CaseSensitiveRecursiveWildcardMatcher(String value, char levelSeparatorChar) {
-		super(value);
+		this(Collections.singletonList(value), levelSeparatorChar);
+	}
+
+	CaseSensitiveRecursiveWildcardMatcher(List<String> values, char levelSeparatorChar) {
+		super(values, false);
 		this.levelSeparatorChar = levelSeparatorChar;
 	}
 
 	@Override
 	boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
-		return RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, getExpandedValue(evalContext), levelSeparatorChar, IOCase.SENSITIVE);
+		return getNeedsDynamicEval() ? RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, getExpandedValue(evalContext), ignoreCase, levelSeparatorChar)
+									 : RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, patternSet, levelSeparatorChar);
 	}
 	int getPriority() { return 7 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0);}
+
+	@Override
+	WildcardResourceMatcher combine(List<String> values) { return new CaseSensitiveRecursiveWildcardMatcher(values, levelSeparatorChar); }
 }
 
-final class CaseInsensitiveRecursiveWildcardMatcher extends ResourceMatcher {
+final class CaseInsensitiveRecursiveWildcardMatcher extends WildcardResourceMatcher {
 	private final char levelSeparatorChar;
 	CaseInsensitiveRecursiveWildcardMatcher(String value, char levelSeparatorChar) {
-		super(value);
+		this(Collections.singletonList(value), levelSeparatorChar);
+	}
+
+	CaseInsensitiveRecursiveWildcardMatcher(List<String> values, char levelSeparatorChar) {
+		super(values, true);
 		this.levelSeparatorChar = levelSeparatorChar;
 	}
 
 	@Override
 	boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
-		return RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, getExpandedValue(evalContext), levelSeparatorChar, IOCase.INSENSITIVE);
+		return getNeedsDynamicEval() ? RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, getExpandedValue(evalContext), ignoreCase, levelSeparatorChar)
+									 : RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, patternSet, levelSeparatorChar);
 	}
 	int getPriority() { return 8 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0);}
 
+	@Override
+	WildcardResourceMatcher combine(List<String> values) { return new CaseInsensitiveRecursiveWildcardMatcher(values, levelSeparatorChar); }
 }
 
 abstract class RecursiveMatcher extends ResourceMatcher {
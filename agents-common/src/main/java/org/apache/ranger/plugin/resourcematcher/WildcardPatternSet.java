@@ -0,0 +1,399 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.resourcematcher;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Wildcard patterns - '*' matches any number of characters, '?' exactly one - compiled into an automaton that
+ * evaluates all of them in a single pass over a value, with the same results as FilenameUtils.wildcardMatch().
+ * <p>
+ * The automaton is a bit-parallel NFA: each pattern takes one bit per token (a literal character, '?' or a run of
+ * '*') plus one, and the set of active states of up to 64 such bits is advanced with a few shifts and masks per
+ * character; a pattern too long to fit in 64 bits is matched on its own, by backtracking. Matching allocates nothing.
+ * <p>
+ * FilenameUtils.wildcardMatch() doesn't treat a '*' followed by '?' as the two wildcards in sequence; patterns having
+ * that are left to FilenameUtils, to keep their results unchanged.
+ */
+final class WildcardPatternSet {
+	private static final int    ASCII_SIZE         = 128;
+	private static final char   WILDCARD_ANY_CHARS = '*';
+	private static final char   WILDCARD_ONE_CHAR  = '?';
+	private static final String STAR_ONE_CHAR      = "*?";
+
+	private final boolean  ignoreCase;
+	private final Bank[]   banks;
+	private final String[] longPatterns;   // patterns that don't fit in a bank
+	private final String[] legacyPatterns; // patterns matched by FilenameUtils
+
+	WildcardPatternSet(List<String> patterns, boolean ignoreCase) {
+		List<Bank>   banks        = new ArrayList<>();
+		List<String> longPatterns   = new ArrayList<>();
+		List<String> legacyPatterns = new ArrayList<>();
+		BankBuilder  builder        = new BankBuilder(ignoreCase);
+
+		for (String pattern : patterns) {
+			String compacted = compact(pattern);
+
+			if (compacted.contains(STAR_ONE_CHAR)) {
+				legacyPatterns.add(pattern);
+			} else if (compacted.length() + 1 > Long.SIZE) {
+				longPatterns.add(compacted);
+			} else {
+				if (!builder.canAdd(compacted)) {
+					banks.add(builder.build());
+
+					builder = new BankBuilder(ignoreCase);
+				}
+
+				builder.add(compacted);
+			}
+		}
+
+		if (!builder.isEmpty()) {
+			banks.add(builder.build());
+		}
+
+		this.ignoreCase     = ignoreCase;
+		this.banks          = banks.toArray(new Bank[banks.size()]);
+		this.longPatterns   = longPatterns.toArray(new String[longPatterns.size()]);
+		this.legacyPatterns = legacyPatterns.toArray(new String[legacyPatterns.size()]);
+	}
+
+	/**
+	 * @param value value to match
+	 * @return true if the entire value matches one of the patterns
+	 */
+	boolean isMatch(String value) {
+		if (value == null) {
+			return false;
+		}
+
+		for (Bank bank : banks) {
+			if (bank.isMatch(value, ignoreCase, (char) 0)) {
+				return true;
+			}
+		}
+
+		for (String pattern : longPatterns) {
+			if (isMatch(value, value.length(), pattern, ignoreCase)) {
+				return true;
+			}
+		}
+
+		for (String pattern : legacyPatterns) {
+			if (FilenameUtils.wildcardMatch(value, pattern, getIOCase(ignoreCase))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Matches the leading elements of a path: for "/a/b/c", values "/a", "/a/b" and "/a/b/c" are matched against the
+	 * patterns. The path must not have consecutive separators.
+	 * @param path path to match
+	 * @param separatorChar path separator
+	 * @return true if one of the leading elements of the path matches one of the patterns
+	 */
+	boolean isPathPrefixMatch(String path, char separatorChar) {
+		if (path == null) {
+			return false;
+		}
+
+		for (Bank bank : banks) {
+			if (bank.isMatch(path, ignoreCase, separatorChar)) {
+				return true;
+			}
+		}
+
+		for (String pattern : longPatterns) {
+			if (isPathPrefixMatch(path, pattern, ignoreCase, separatorChar)) {
+				return true;
+			}
+		}
+
+		for (String pattern : legacyPatterns) {
+			if (isPathPrefixMatch(path, pattern, ignoreCase, separatorChar)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Matches a value against a pattern that is not compiled, like a pattern with tokens replaced for the request.
+	 * @return the same as FilenameUtils.wildcardMatch(value, pattern, ignoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE)
+	 */
+	static boolean isMatch(String value, String pattern, boolean ignoreCase) {
+		if (value == null || pattern == null) {
+			return value == null && pattern == null;
+		}
+
+		if (pattern.contains(STAR_ONE_CHAR)) {
+			return FilenameUtils.wildcardMatch(value, pattern, getIOCase(ignoreCase));
+		}
+
+		return isMatch(value, value.length(), pattern, ignoreCase);
+	}
+
+	/**
+	 * Matches the leading elements of a path against a pattern that is not compiled, by backtracking at the end of
+	 * each element; see isPathPrefixMatch(String, char).
+	 */
+	static boolean isPathPrefixMatch(String path, String pattern, boolean ignoreCase, char separatorChar) {
+		if (path == null || pattern == null) {
+			return false;
+		}
+
+		boolean isLegacy = pattern.contains(STAR_ONE_CHAR);
+
+		for (int i = 1, len = path.length(); i <= len; i++) {
+			if (isPathElementEnd(path, i, separatorChar)) {
+				boolean isMatch = isLegacy ? FilenameUtils.wildcardMatch(path.substring(0, i), pattern, getIOCase(ignoreCase)) : isMatch(path, i, pattern, ignoreCase);
+
+				if (isMatch) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	// matches value[0, valueEnd) by backtracking to the last '*' on a mismatch
+	static boolean isMatch(String value, int valueEnd, String pattern, boolean ignoreCase) {
+		int patternLen  = pattern.length();
+		int valueIdx    = 0;
+		int patternIdx  = 0;
+		int starIdx     = -1;
+		int starNextIdx = 0;
+
+		while (valueIdx < valueEnd) {
+			if (patternIdx < patternLen) {
+				char patternChar = pattern.charAt(patternIdx);
+
+				if (patternChar == WILDCARD_ANY_CHARS) {
+					starIdx     = patternIdx++;
+					starNextIdx = valueIdx;
+
+					continue;
+				}
+
+				if (patternChar == WILDCARD_ONE_CHAR || isEqual(patternChar, value.charAt(valueIdx), ignoreCase)) {
+					patternIdx++;
+					valueIdx++;
+
+					continue;
+				}
+			}
+
+			if (starIdx == -1) {
+				return false;
+			}
+
+			// let the last '*' take one more character
+			patternIdx = starIdx + 1;
+			valueIdx   = ++starNextIdx;
+		}
+
+		while (patternIdx < patternLen && pattern.charAt(patternIdx) == WILDCARD_ANY_CHARS) {
+			patternIdx++;
+		}
+
+		return patternIdx == patternLen;
+	}
+
+	private static IOCase getIOCase(boolean ignoreCase) {
+		return ignoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE;
+	}
+
+	private static boolean isEqual(char c1, char c2, boolean ignoreCase) {
+		return c1 == c2 || (ignoreCase && foldCase(c1) == foldCase(c2));
+	}
+
+	// the same comparison as String.regionMatches(true, ...)
+	private static char foldCase(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static boolean isPathElementEnd(String path, int idx, char separatorChar) {
+		return idx == path.length() ? path.charAt(idx - 1) != separatorChar : path.charAt(idx) == separatorChar;
+	}
+
+	// collapses runs of '*', which match the same as a single '*'
+	private static String compact(String pattern) {
+		if (!pattern.contains("**")) {
+			return pattern;
+		}
+
+		StringBuilder sb = new StringBuilder(pattern.length());
+
+		for (int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+
+			if (c != WILDCARD_ANY_CHARS || sb.length() == 0 || sb.charAt(sb.length() - 1) != WILDCARD_ANY_CHARS) {
+				sb.append(c);
+			}
+		}
+
+		return sb.toString();
+	}
+
+	/*
+	 * Patterns sharing a 64-bit state word. State bit (offset + i) of a pattern is set when its first i tokens
+	 * match the characters seen so far.
+	 */
+	private static final class Bank {
+		private final long   initialStates;
+		private final long   finalStates;
+		private final long   starStates;      // states before a '*': followed, without a character, by the next state
+		private final long   loopStates;      // states after a '*': stay active on any character
+		private final long   anyCharStates;   // states after a '?': entered on any character
+		private final long[] asciiCharStates; // states after a literal, entered on that character
+		private final char[] otherChars;      // sorted
+		private final long[] otherCharStates;
+
+		Bank(long initialStates, long finalStates, long starStates, long loopStates, long anyCharStates, long[] asciiCharStates, char[] otherChars, long[] otherCharStates) {
+			this.initialStates   = initialStates | ((initialStates & starStates) << 1);
+			this.finalStates     = finalStates;
+			this.starStates      = starStates;
+			this.loopStates      = loopStates;
+			this.anyCharStates   = anyCharStates;
+			this.asciiCharStates = asciiCharStates;
+			this.otherChars      = otherChars;
+			this.otherCharStates = otherCharStates;
+		}
+
+		// matches the entire value; or, if separatorChar is not 0, the leading path elements of the value
+		boolean isMatch(String value, boolean ignoreCase, char separatorChar) {
+			long states = initialStates;
+
+			for (int i = 0, len = value.length(); i < len; i++) {
+				char c = value.charAt(i);
+
+				if (separatorChar != 0 && c == separatorChar && i > 0 && (states & finalStates) != 0) {
+					return true;
+				}
+
+				states = ((states << 1) & (getCharStates(ignoreCase ? foldCase(c) : c) | anyCharStates)) | (states & loopStates);
+				states = states | ((states & starStates) << 1);
+
+				if (states == 0) {
+					return false;
+				}
+			}
+
+			if (separatorChar != 0 && value.length() > 0 && value.charAt(value.length() - 1) == separatorChar) {
+				return false;
+			}
+
+			return (states & finalStates) != 0;
+		}
+
+		private long getCharStates(char c) {
+			if (c < ASCII_SIZE) {
+				return asciiCharStates[c];
+			}
+
+			int idx = Arrays.binarySearch(otherChars, c);
+
+			return idx >= 0 ? otherCharStates[idx] : 0;
+		}
+	}
+
+	private static final class BankBuilder {
+		private final boolean              ignoreCase;
+		private final long[]               asciiCharStates = new long[ASCII_SIZE];
+		private final Map<Character, Long> otherCharStates = new TreeMap<>();
+		private int                        bitCount        = 0;
+		private long                       initialStates   = 0;
+		private long                       finalStates     = 0;
+		private long                       starStates      = 0;
+		private long                       loopStates      = 0;
+		private long                       anyCharStates   = 0;
+
+		BankBuilder(boolean ignoreCase) {
+			this.ignoreCase = ignoreCase;
+		}
+
+		boolean isEmpty() {
+			return bitCount == 0;
+		}
+
+		boolean canAdd(String pattern) {
+			return bitCount + pattern.length() + 1 <= Long.SIZE;
+		}
+
+		void add(String pattern) {
+			int offset = bitCount;
+
+			initialStates |= 1L << offset;
+
+			for (int i = 0; i < pattern.length(); i++) {
+				char c         = pattern.charAt(i);
+				long nextState = 1L << (offset + i + 1);
+
+				if (c == WILDCARD_ANY_CHARS) {
+					starStates |= nextState >>> 1;
+					loopStates |= nextState;
+				} else if (c == WILDCARD_ONE_CHAR) {
+					anyCharStates |= nextState;
+				} else {
+					char key = ignoreCase ? foldCase(c) : c;
+
+					if (key < ASCII_SIZE) {
+						asciiCharStates[key] |= nextState;
+					} else {
+						Long states = otherCharStates.get(key);
+
+						otherCharStates.put(key, (states == null ? 0 : states) | nextState);
+					}
+				}
+			}
+
+			finalStates |= 1L << (offset + pattern.length());
+			bitCount    += pattern.length() + 1;
+		}
+
+		Bank build() {
+			char[] otherChars  = new char[otherCharStates.size()];
+			long[] otherStates = new long[otherCharStates.size()];
+			int    idx         = 0;
+
+			for (Map.Entry<Character, Long> entry : otherCharStates.entrySet()) {
+				otherChars[idx]  = entry.getKey();
+				otherStates[idx] = entry.getValue();
+				idx++;
+			}
+
+			return new Bank(initialStates, finalStates, starStates, loopStates, anyCharStates, asciiCharStates, otherChars, otherStates);
+		}
+	}
+}
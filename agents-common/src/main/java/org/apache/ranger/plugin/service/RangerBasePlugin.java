@@ -160,7 +160,7 @@ public class RangerBasePlugin {
 			LOG.debug(propertyPrefix + ".policy.policyReorderInterval:" + policyReorderIntervalMs);
 		}
 
-		if (policyEngineOptions.disableTrieLookupPrefilter && policyReorderIntervalMs > 0) {
+		if ((policyEngineOptions.disableTrieLookupPrefilter || policyEngineOptions.reorderTrieEvaluators) && policyReorderIntervalMs > 0) {
 			policyEngineRefreshTimer = new Timer("PolicyEngineRefreshTimer", true);
 			try {
 				policyEngineRefreshTimer.schedule(new PolicyEngineRefresher(this), policyReorderIntervalMs, policyReorderIntervalMs);
@@ -189,7 +189,7 @@ public class RangerBasePlugin {
 			if (policies == null) {
 				this.policyEngine = null;
 			} else {
-				RangerPolicyEngine policyEngine = new RangerPolicyEngineImpl(appId, policies, policyEngineOptions);
+				RangerPolicyEngine policyEngine = new RangerPolicyEngineImpl(appId, policies, policyEngineOptions, oldPolicyEngine);
 				policyEngine.setUseForwardedIPAddress(useForwardedIPAddress);
 				policyEngine.setTrustedProxyAddresses(trustedProxyAddresses);
 
@@ -41,17 +41,24 @@ public class PolicyRefresher extends Thread {
 
 	private static final Log PERF_POLICYENGINE_INIT_LOG = RangerPerfTracer.getPerfLogger("policyengine.init");
 
+	public static final String CACHE_FORMAT_BINARY = "binary";
+	public static final String CACHE_FORMAT_JSON   = "json";
+
 	private final RangerBasePlugin  plugIn;
 	private final String            serviceType;
 	private final String            serviceName;
 	private final RangerAdminClient rangerAdmin;
 	private final String            cacheFileName;
+	private final String            binaryCacheFileName;
 	private final String            cacheDir;
+	private final boolean           useBinaryCacheFormat;
 	private final Gson              gson;
+	private final Gson              compactGson;
 	private final boolean           disableCacheIfServiceNotFound;
 
 	private long 	pollingIntervalMs   = 30 * 1000;
 	private long 	lastKnownVersion    = -1L;
+	private ServicePolicies lastKnownPolicies;
 	private long	lastActivationTimeInMillis;
 	private boolean policiesSetInPlugin;
 	private boolean serviceDefSetInPlugin;
@@ -76,19 +83,27 @@ public class PolicyRefresher extends Thread {
 		cacheFilename = cacheFilename.replace(File.pathSeparatorChar,  '_');
 
 		this.cacheFileName = cacheFilename;
+		this.binaryCacheFileName = cacheFilename.substring(0, cacheFilename.length() - ".json".length()) + ".cache";
 		this.cacheDir = cacheDir;
 
 		Gson gson = null;
+		Gson compactGson = null;
 		try {
 			gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").setPrettyPrinting().create();
+			compactGson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
 		} catch(Throwable excp) {
 			LOG.fatal("PolicyRefresher(): failed to create GsonBuilder object", excp);
 		}
 		this.gson = gson;
+		this.compactGson = compactGson;
 
 		String propertyPrefix    = "ranger.plugin." + serviceType;
 		disableCacheIfServiceNotFound = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".disable.cache.if.servicenotfound", true);
 
+		// json format is human readable, hence useful to export/examine policies; binary format is smaller and loads faster
+		String cacheFormat = RangerConfiguration.getInstance().get(propertyPrefix + ".policy.cache.format", CACHE_FORMAT_BINARY);
+		useBinaryCacheFormat = !StringUtils.equalsIgnoreCase(cacheFormat, CACHE_FORMAT_JSON);
+
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("<== PolicyRefresher(serviceName=" + serviceName + ").PolicyRefresher()");
 		}
@@ -223,6 +238,7 @@ public class PolicyRefresher extends Thread {
 				policiesSetInPlugin = true;
 				setLastActivationTimeInMillis(System.currentTimeMillis());
 				lastKnownVersion = svcPolicies.getPolicyVersion();
+				lastKnownPolicies = svcPolicies;
 			} else {
 				if (!policiesSetInPlugin && !serviceDefSetInPlugin) {
 					plugIn.setPolicies(null);
@@ -235,6 +251,7 @@ public class PolicyRefresher extends Thread {
 				plugIn.setPolicies(null);
 				setLastActivationTimeInMillis(System.currentTimeMillis());
 				lastKnownVersion = -1;
+				lastKnownPolicies = null;
 				serviceDefSetInPlugin = true;
 			}
 		} catch (Exception excp) {
@@ -263,6 +280,20 @@ public class PolicyRefresher extends Thread {
 		try {
 			svcPolicies = rangerAdmin.getServicePoliciesIfUpdated(lastKnownVersion, lastActivationTimeInMillis);
 
+			if(svcPolicies != null && svcPolicies.isPolicyDelta()) {
+				ServicePolicies policies = ServicePolicies.applyDelta(lastKnownPolicies, svcPolicies);
+
+				if(policies != null) {
+					LOG.info("PolicyRefresher(serviceName=" + serviceName + "): applied policy deltas since version " + svcPolicies.getPolicyDeltaBaseVersion() + ": updatedPolicies=" + getPolicyCount(svcPolicies) + ", deletedPolicies=" + (svcPolicies.getDeletedPolicyIds() == null ? 0 : svcPolicies.getDeletedPolicyIds().size()));
+
+					svcPolicies = policies;
+				} else {
+					LOG.warn("PolicyRefresher(serviceName=" + serviceName + "): policy deltas since version " + svcPolicies.getPolicyDeltaBaseVersion() + " can't be applied to version " + (lastKnownPolicies == null ? null : lastKnownPolicies.getPolicyVersion()) + ". Downloading all policies");
+
+					svcPolicies = rangerAdmin.getServicePoliciesIfUpdated(-1L, lastActivationTimeInMillis);
+				}
+			}
+
 			boolean isUpdated = svcPolicies != null;
 
 			if(isUpdated) {
@@ -299,6 +330,16 @@ public class PolicyRefresher extends Thread {
 	}
 
 
+	private static int getPolicyCount(ServicePolicies policies) {
+		int ret = policies.getPolicies() == null ? 0 : policies.getPolicies().size();
+
+		if(policies.getTagPolicies() != null && policies.getTagPolicies().getPolicies() != null) {
+			ret += policies.getTagPolicies().getPolicies().size();
+		}
+
+		return ret;
+	}
+
 	private ServicePolicies loadFromCache() {
 
 		ServicePolicies policies = null;
@@ -307,11 +348,15 @@ public class PolicyRefresher extends Thread {
 			LOG.debug("==> PolicyRefresher(serviceName=" + serviceName + ").loadFromCache()");
 		}
 
-		File cacheFile = cacheDir == null ? null : new File(cacheDir + File.separator + cacheFileName);
+		// cache file in the other format could be present from an earlier configuration; use the latest of the two
+		File cacheFile      = getCacheFile(useBinaryCacheFormat);
+		File otherCacheFile = getCacheFile(!useBinaryCacheFormat);
 
-    	if(cacheFile != null && cacheFile.isFile() && cacheFile.canRead()) {
-    		Reader reader = null;
+		if(otherCacheFile != null && otherCacheFile.isFile() && (!cacheFile.isFile() || otherCacheFile.lastModified() > cacheFile.lastModified())) {
+			cacheFile = otherCacheFile;
+		}
 
+    	if(cacheFile != null && cacheFile.isFile() && cacheFile.canRead()) {
     		RangerPerfTracer perf = null;
 
     		if(RangerPerfTracer.isPerfTraceEnabled(PERF_POLICYENGINE_INIT_LOG)) {
@@ -319,9 +364,7 @@ public class PolicyRefresher extends Thread {
     		}
 
     		try {
-	        	reader = new FileReader(cacheFile);
-
-		        policies = gson.fromJson(reader, ServicePolicies.class);
+		        policies = readCacheFile(cacheFile);
 
 		        if(policies != null) {
 		        	if(!StringUtils.equals(serviceName, policies.getServiceName())) {
@@ -336,14 +379,6 @@ public class PolicyRefresher extends Thread {
 	        	LOG.error("failed to load policies from cache file " + cacheFile.getAbsolutePath(), excp);
 	        } finally {
 	        	RangerPerfTracer.log(perf);
-
-	        	if(reader != null) {
-	        		try {
-	        			reader.close();
-	        		} catch(Exception excp) {
-	        			LOG.error("error while closing opened cache file " + cacheFile.getAbsolutePath(), excp);
-	        		}
-	        	}
 	        }
 		} else {
 			LOG.warn("cache file does not exist or not readable '" + (cacheFile == null ? null : cacheFile.getAbsolutePath()) + "'");
@@ -355,7 +390,37 @@ public class PolicyRefresher extends Thread {
 
 		return policies;
 	}
-	
+
+	private ServicePolicies readCacheFile(File cacheFile) throws Exception {
+		final ServicePolicies ret;
+
+		if(ServicePoliciesCacheFile.isCacheFile(cacheFile)) {
+			ret = ServicePoliciesCacheFile.read(cacheFile, compactGson);
+		} else {
+			Reader reader = null;
+
+			try {
+				reader = new FileReader(cacheFile);
+
+				ret = gson.fromJson(reader, ServicePolicies.class);
+			} finally {
+				if(reader != null) {
+					try {
+						reader.close();
+					} catch(Exception excp) {
+						LOG.error("error while closing opened cache file " + cacheFile.getAbsolutePath(), excp);
+					}
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private File getCacheFile(boolean binaryFormat) {
+		return cacheDir == null ? null : new File(cacheDir + File.separator + (binaryFormat ? binaryCacheFileName : cacheFileName));
+	}
+
 	private void saveToCache(ServicePolicies policies) {
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> PolicyRefresher(serviceName=" + serviceName + ").saveToCache()");
@@ -367,11 +432,11 @@ public class PolicyRefresher extends Thread {
 				// Create the cacheDir if it doesn't already exist
 				File cacheDirTmp = new File(cacheDir);
 				if (cacheDirTmp.exists()) {
-					cacheFile =  new File(cacheDir + File.separator + cacheFileName);
+					cacheFile =  getCacheFile(useBinaryCacheFormat);
 				} else {
 					try {
 						cacheDirTmp.mkdirs();
-						cacheFile =  new File(cacheDir + File.separator + cacheFileName);
+						cacheFile =  getCacheFile(useBinaryCacheFormat);
 					} catch (SecurityException ex) {
 						LOG.error("Cannot create cache directory", ex);
 					}
@@ -386,23 +451,31 @@ public class PolicyRefresher extends Thread {
 					perf = RangerPerfTracer.getPerfTracer(PERF_POLICYENGINE_INIT_LOG, "PolicyRefresher.saveToCache(serviceName=" + serviceName + ")");
 				}
 
-				Writer writer = null;
-	
-				try {
-					writer = new FileWriter(cacheFile);
-	
-			        gson.toJson(policies, writer);
-		        } catch (Exception excp) {
-		        	LOG.error("failed to save policies to cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-		        } finally {
-		        	if(writer != null) {
-		        		try {
-		        			writer.close();
-		        		} catch(Exception excp) {
-		        			LOG.error("error while closing opened cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-		        		}
-		        	}
-		        }
+				if(useBinaryCacheFormat) {
+					try {
+						ServicePoliciesCacheFile.write(policies, cacheFile, compactGson);
+					} catch (Exception excp) {
+						LOG.error("failed to save policies to cache file '" + cacheFile.getAbsolutePath() + "'", excp);
+					}
+				} else {
+					Writer writer = null;
+
+					try {
+						writer = new FileWriter(cacheFile);
+
+						gson.toJson(policies, writer);
+					} catch (Exception excp) {
+						LOG.error("failed to save policies to cache file '" + cacheFile.getAbsolutePath() + "'", excp);
+					} finally {
+						if(writer != null) {
+							try {
+								writer.close();
+							} catch(Exception excp) {
+								LOG.error("error while closing opened cache file '" + cacheFile.getAbsolutePath() + "'", excp);
+							}
+						}
+					}
+				}
 
 				RangerPerfTracer.log(perf);
 
@@ -421,19 +494,19 @@ public class PolicyRefresher extends Thread {
 			LOG.debug("==> PolicyRefresher.disableCache(serviceName=" + serviceName + ")");
 		}
 
-		File cacheFile = cacheDir == null ? null : new File(cacheDir + File.separator + cacheFileName);
-
-		if(cacheFile != null && cacheFile.isFile() && cacheFile.canRead()) {
-			LOG.warn("Cleaning up local cache");
-			String renamedCacheFile = cacheFile.getAbsolutePath() + "_" + System.currentTimeMillis();
-			if (!cacheFile.renameTo(new File(renamedCacheFile))) {
-				LOG.error("Failed to move " + cacheFile.getAbsolutePath() + " to " + renamedCacheFile);
+		for (File cacheFile : new File[] { getCacheFile(false), getCacheFile(true) }) {
+			if(cacheFile != null && cacheFile.isFile() && cacheFile.canRead()) {
+				LOG.warn("Cleaning up local cache");
+				String renamedCacheFile = cacheFile.getAbsolutePath() + "_" + System.currentTimeMillis();
+				if (!cacheFile.renameTo(new File(renamedCacheFile))) {
+					LOG.error("Failed to move " + cacheFile.getAbsolutePath() + " to " + renamedCacheFile);
+				} else {
+					LOG.warn("Moved " + cacheFile.getAbsolutePath() + " to " + renamedCacheFile);
+				}
 			} else {
-				LOG.warn("Moved " + cacheFile.getAbsolutePath() + " to " + renamedCacheFile);
-			}
-		} else {
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("No local policy cache found. No need to disable it!");
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("No local policy cache found at " + (cacheFile == null ? null : cacheFile.getAbsolutePath()) + ". No need to disable it!");
+				}
 			}
 		}
 
@@ -37,6 +37,7 @@ public class RangerAccessRequestUtil {
 	public static final String KEY_CONTEXT_TAG_OBJECT          = "TAG_OBJECT";
 	public static final String KEY_CONTEXT_RESOURCE            = "RESOURCE";
 	public static final String KEY_CONTEXT_REQUESTED_RESOURCES = "REQUESTED_RESOURCES";
+	public static final String KEY_CONTEXT_PRINCIPAL_IDS       = "PRINCIPAL_IDS";
 	public static final String KEY_TOKEN_NAMESPACE = "token:";
 	public static final String KEY_USER = "USER";
 
@@ -111,6 +112,21 @@ public class RangerAccessRequestUtil {
 		return ret;
 	}
 
+	public static void setPrincipalIdsInContext(Map<String, Object> context, RangerPrincipalDictionary.PrincipalIds principalIds) {
+		context.put(KEY_CONTEXT_PRINCIPAL_IDS, principalIds);
+	}
+
+	public static RangerPrincipalDictionary.PrincipalIds getPrincipalIdsFromContext(Map<String, Object> context) {
+		RangerPrincipalDictionary.PrincipalIds ret = null;
+		Object                                 val = context.get(KEY_CONTEXT_PRINCIPAL_IDS);
+
+		if(val instanceof RangerPrincipalDictionary.PrincipalIds) {
+			ret = (RangerPrincipalDictionary.PrincipalIds)val;
+		}
+
+		return ret;
+	}
+
 	public static Map<String, Object> copyContext(Map<String, Object> context) {
 		final Map<String, Object> ret;
 
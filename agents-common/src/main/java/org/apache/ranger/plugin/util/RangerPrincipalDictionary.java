@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+
+/**
+ * Maps names of users and groups referenced in policies to ints, so that policy items can hold their users and groups
+ * as sorted int arrays, and membership checks become binary searches instead of scans of lists of names.
+ * <p>
+ * Ids are added while building policy evaluators, and only looked up while evaluating requests; names not referenced
+ * in any policy have no id. A dictionary is carried over to the next policy-engine when evaluators are reused, as the
+ * reused evaluators hold ids from it; it is replaced by a new one once most of its names are no longer in policies.
+ */
+public class RangerPrincipalDictionary {
+	public static final int UNKNOWN_ID = -1;
+
+	private static final int[] EMPTY_IDS = new int[0];
+
+	private static final int MIN_UNREFERENCED_COUNT = 1000; // dictionaries smaller than this are never oversized
+
+	private final Map<String, Integer> userIds  = new ConcurrentHashMap<>();
+	private final Map<String, Integer> groupIds = new ConcurrentHashMap<>();
+	private volatile int               version  = 0; // updated on addition of ids
+
+	public int[] addUsers(Collection<String> users) {
+		return users == null ? null : addAll(userIds, users);
+	}
+
+	public int[] addGroups(Collection<String> groups) {
+		return groups == null ? null : addAll(groupIds, groups);
+	}
+
+	public int getUserId(String user) {
+		Integer ret = user == null ? null : userIds.get(user);
+
+		return ret == null ? UNKNOWN_ID : ret;
+	}
+
+	// ids of the given groups that are referenced in policies, sorted
+	public int[] getGroupIds(Collection<String> groups) {
+		if (groups == null || groups.isEmpty()) {
+			return EMPTY_IDS;
+		}
+
+		int[] ret   = new int[groups.size()];
+		int   count = 0;
+
+		for (String group : groups) {
+			Integer id = group == null ? null : groupIds.get(group);
+
+			if (id != null) {
+				ret[count++] = id;
+			}
+		}
+
+		return sort(ret, count);
+	}
+
+	public PrincipalIds getPrincipalIds(String user, Set<String> userGroups) {
+		int version = this.version; // read before the ids, so that ids added later make these stale
+
+		return new PrincipalIds(this, version, user, userGroups, getUserId(user), getGroupIds(userGroups));
+	}
+
+	public int getUserCount() {
+		return userIds.size();
+	}
+
+	public int getGroupCount() {
+		return groupIds.size();
+	}
+
+	/*
+	 * true if more than half of the users or of the groups in this dictionary are not referenced in the given policies
+	 */
+	public boolean isOversizedFor(ServicePolicies servicePolicies) {
+		if (userIds.size() < MIN_UNREFERENCED_COUNT && groupIds.size() < MIN_UNREFERENCED_COUNT) {
+			return false;
+		}
+
+		Set<String> users  = new HashSet<>();
+		Set<String> groups = new HashSet<>();
+
+		addPrincipals(servicePolicies.getPolicies(), users, groups);
+
+		if (servicePolicies.getTagPolicies() != null) {
+			addPrincipals(servicePolicies.getTagPolicies().getPolicies(), users, groups);
+		}
+
+		return userIds.size() > Math.max(MIN_UNREFERENCED_COUNT, 2 * users.size())
+				|| groupIds.size() > Math.max(MIN_UNREFERENCED_COUNT, 2 * groups.size());
+	}
+
+	public static boolean contains(int[] sortedIds, int id) {
+		return id != UNKNOWN_ID && Arrays.binarySearch(sortedIds, id) >= 0;
+	}
+
+	public static boolean containsAny(int[] sortedIds1, int[] sortedIds2) {
+		// look up the ids of the smaller array in the larger one
+		int[] small = sortedIds1.length <= sortedIds2.length ? sortedIds1 : sortedIds2;
+		int[] large = small == sortedIds1 ? sortedIds2 : sortedIds1;
+
+		for (int id : small) {
+			if (Arrays.binarySearch(large, id) >= 0) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private synchronized int[] addAll(Map<String, Integer> ids, Collection<String> names) {
+		int[] ret   = new int[names.size()];
+		int   count = 0;
+
+		for (String name : names) {
+			if (name == null) {
+				continue;
+			}
+
+			Integer id = ids.get(name);
+
+			if (id == null) {
+				id = ids.size();
+
+				ids.put(name, id);
+
+				version++;
+			}
+
+			ret[count++] = id;
+		}
+
+		return sort(ret, count);
+	}
+
+	private static void addPrincipals(Collection<RangerPolicy> policies, Set<String> users, Set<String> groups) {
+		if (policies == null) {
+			return;
+		}
+
+		for (RangerPolicy policy : policies) {
+			addPrincipals(policy.getPolicyItems(), users, groups);
+			addPrincipals(policy.getDenyPolicyItems(), users, groups);
+			addPrincipals(policy.getAllowExceptions(), users, groups);
+			addPrincipals(policy.getDenyExceptions(), users, groups);
+			addPrincipals(policy.getDataMaskPolicyItems(), users, groups);
+			addPrincipals(policy.getRowFilterPolicyItems(), users, groups);
+		}
+	}
+
+	private static void addPrincipals(List<? extends RangerPolicyItem> policyItems, Set<String> users, Set<String> groups) {
+		if (policyItems == null) {
+			return;
+		}
+
+		for (RangerPolicyItem policyItem : policyItems) {
+			if (policyItem.getUsers() != null) {
+				users.addAll(policyItem.getUsers());
+			}
+
+			if (policyItem.getGroups() != null) {
+				groups.addAll(policyItem.getGroups());
+			}
+		}
+	}
+
+	private static int[] sort(int[] ids, int count) {
+		int[] ret = count == ids.length ? ids : Arrays.copyOf(ids, count);
+
+		Arrays.sort(ret);
+
+		return ret;
+	}
+
+	/*
+	 * Ids of the user and groups of a request; computed once per request, and kept in the request context
+	 */
+	public static final class PrincipalIds {
+		private final RangerPrincipalDictionary dictionary;
+		private final int                       version;
+		private final String                    user;
+		private final Set<String>               userGroups;
+		private final int                       userGroupsCount;
+		private final int                       userId;
+		private final int[]                     groupIds;
+
+		PrincipalIds(RangerPrincipalDictionary dictionary, int version, String user, Set<String> userGroups, int userId, int[] groupIds) {
+			this.dictionary      = dictionary;
+			this.version         = version;
+			this.user            = user;
+			this.userGroups      = userGroups;
+			this.userGroupsCount = userGroups == null ? 0 : userGroups.size();
+			this.userId          = userId;
+			this.groupIds        = groupIds;
+		}
+
+		public int getUserId() {
+			return userId;
+		}
+
+		public int[] getGroupIds() {
+			return groupIds;
+		}
+
+		// true if these ids are from the current version of the given dictionary, for the same user and groups objects
+		public boolean isFor(RangerPrincipalDictionary dictionary, String user, Set<String> userGroups) {
+			return this.dictionary == dictionary && this.version == dictionary.version && this.user == user && this.userGroups == userGroups
+					&& this.userGroupsCount == (userGroups == null ? 0 : userGroups.size());
+		}
+	}
+}
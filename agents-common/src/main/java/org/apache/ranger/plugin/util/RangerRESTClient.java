@@ -56,6 +56,7 @@ import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.api.client.filter.GZIPContentEncodingFilter;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 import com.sun.jersey.client.urlconnection.HTTPSProperties;
 
@@ -102,6 +103,7 @@ public class RangerRESTClient {
 
 	private int  mRestClientConnTimeOutMs;
 	private int  mRestClientReadTimeOutMs;
+	private boolean mAcceptCompressedResponse = true;
 
 	public RangerRESTClient() {
 		this(RangerConfiguration.getInstance().get(RANGER_PROP_POLICYMGR_URL),
@@ -147,6 +149,14 @@ public class RangerRESTClient {
 		this.mRestClientReadTimeOutMs = mRestClientReadTimeOutMs;
 	}
 
+	public boolean isAcceptCompressedResponse() {
+		return mAcceptCompressedResponse;
+	}
+
+	public void setAcceptCompressedResponse(boolean acceptCompressedResponse) {
+		this.mAcceptCompressedResponse = acceptCompressedResponse;
+	}
+
 	public void setBasicAuthInfo(String username, String password) {
 		mUsername = username;
 		mPassword = password;
@@ -215,6 +225,11 @@ public class RangerRESTClient {
 			client.addFilter(new HTTPBasicAuthFilter(mUsername, mPassword));
 		}
 
+		if(mAcceptCompressedResponse) {
+			// request gzip encoded responses and decode them; requests are sent uncompressed
+			client.addFilter(new GZIPContentEncodingFilter(false));
+		}
+
 		// Set Connection Timeout and ReadTime for the PolicyRefresh
 		client.setConnectTimeout(mRestClientConnTimeOutMs);
 		client.setReadTimeout(mRestClientReadTimeOutMs);
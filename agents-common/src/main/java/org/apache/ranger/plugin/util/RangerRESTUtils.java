@@ -62,6 +62,7 @@ public class RangerRESTUtils {
 	private static final int MAX_PLUGIN_ID_LEN = 255;
 	
 	public static final String REST_PARAM_CLUSTER_NAME   = "clusterName";
+	public static final String REST_PARAM_SUPPORTS_POLICY_DELTAS = "supportsPolicyDeltas";
 
 	public String getPolicyRestUrl(String propertyPrefix) {
 		String url = RangerConfiguration.getInstance().get(propertyPrefix + ".policy.rest.url");
@@ -30,9 +30,9 @@ import org.apache.ranger.plugin.resourcematcher.RangerAbstractResourceMatcher;
 import org.apache.ranger.plugin.resourcematcher.RangerResourceMatcher;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -45,7 +45,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
     private final boolean  optIgnoreCase;
     private final boolean  optWildcard;
     private final String   wildcardChars;
-    private final TrieNode root;
+    private final TrieNode<T> root;
 
     public RangerResourceTrie(RangerServiceDef.RangerResourceDef resourceDef, List<T> evaluators) {
         this(resourceDef, evaluators, null);
@@ -76,7 +76,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         this.optIgnoreCase = RangerAbstractResourceMatcher.getOptionIgnoreCase(matcherOptions);
         this.optWildcard   = RangerAbstractResourceMatcher.getOptionWildCard(matcherOptions);
         this.wildcardChars = optWildcard ? DEFAULT_WILDCARD_CHARS + tokenReplaceSpecialChars : "" + tokenReplaceSpecialChars;
-        this.root          = new TrieNode(Character.valueOf((char)0));
+        this.root          = new TrieNode<>(new char[0]);
 
         for(T evaluator : evaluators) {
             Map<String, RangerPolicyResource> policyResources = evaluator.getPolicyResource();
@@ -127,26 +127,39 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
 
         List<T> ret = null;
 
-        TrieNode curr = root;
+        TrieNode<T> curr = root;
 
         final int len = resource.length();
-        for(int i = 0; i < len; i++) {
-            Character ch    = getLookupChar(resource.charAt(i));
-            TrieNode  child = curr.getChild(ch);
+        int       i   = 0;
+
+        while(i < len) {
+            TrieNode<T> child = curr.getChild(getLookupChar(resource.charAt(i)));
 
             if(child == null) {
-                ret = curr.getWildcardEvaluators();
-                curr = null; // so that curr.getEvaluators() will not be called below
+                break;
+            }
+
+            // first char of the child's segment is already matched by getChild()
+            final char[] segment    = child.getSegment();
+            final int    segmentLen = segment.length;
+            int          matchedLen = 1;
+
+            while(matchedLen < segmentLen && (i + matchedLen) < len && segment[matchedLen] == getLookupChar(resource.charAt(i + matchedLen))) {
+                matchedLen++;
+            }
+
+            if(matchedLen < segmentLen) { // resource ended, or diverged, within the child's segment
                 break;
             }
 
             curr = child;
+            i   += segmentLen;
         }
 
-        if(ret == null) {
-            if(curr != null) {
-                ret = curr.getEvaluators();
-            }
+        if(i < len) { // resource is not fully consumed: only wildcard evaluators of the last matched node apply
+            ret = curr.getWildcardEvaluators();
+        } else {
+            ret = curr.getEvaluators();
         }
 
         if(LOG.isDebugEnabled()) {
@@ -156,6 +169,22 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         return ret;
     }
 
+    /*
+     * Replaces evaluator lists of nodes with copies sorted by the given comparator; lists are never modified in place,
+     * so that look-ups in progress continue with the list they got
+     */
+    public synchronized void reorderEvaluators(Comparator<T> comparator) {
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerResourceTrie.reorderEvaluators(" + resourceName + ")");
+        }
+
+        root.reorderEvaluators(null, comparator);
+
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerResourceTrie.reorderEvaluators(" + resourceName + ")");
+        }
+    }
+
     public TrieData getTrieData() {
         TrieData ret = new TrieData();
 
@@ -169,21 +198,19 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         return root.getMaxDepth();
     }
 
-    private final Character getLookupChar(char ch) {
-        if(optIgnoreCase) {
-            ch = Character.toLowerCase(ch);
-        }
-
-        return Character.valueOf(ch);
+    private char getLookupChar(char ch) {
+        return optIgnoreCase ? Character.toLowerCase(ch) : ch;
     }
 
     private void insert(String resource, boolean isRecursive, T evaluator) {
-        TrieNode curr       = root;
-        boolean  isWildcard = false;
+        boolean isWildcard = false;
+
+        final int    len    = resource.length();
+        final char[] key    = new char[len];
+        int          keyLen = 0;
 
-        final int len = resource.length();
         for(int i = 0; i < len; i++) {
-            Character ch = getLookupChar(resource.charAt(i));
+            char ch = getLookupChar(resource.charAt(i));
 
             if(optWildcard) {
                 if (wildcardChars.indexOf(ch) != -1) {
@@ -192,7 +219,13 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
                 }
             }
 
-            curr = curr.getOrCreateChild(ch);
+            key[keyLen++] = ch;
+        }
+
+        TrieNode<T> curr = root;
+
+        for(int i = 0; i < keyLen; i += curr.getSegment().length) {
+            curr = curr.getOrCreateChild(key, i, keyLen);
         }
 
         if(isWildcard || isRecursive) {
@@ -215,6 +248,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         sb.append("; nodeCount=").append(trieData.nodeCount);
         sb.append("; leafNodeCount=").append(trieData.leafNodeCount);
         sb.append("; singleChildNodeCount=").append(trieData.singleChildNodeCount);
+        sb.append("; charCount=").append(trieData.charCount);
         sb.append("; maxDepth=").append(trieData.maxDepth);
         sb.append("; evaluatorListCount=").append(trieData.evaluatorListCount);
         sb.append("; wildcardEvaluatorListCount=").append(trieData.wildcardEvaluatorListCount);
@@ -228,6 +262,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         int nodeCount;
         int leafNodeCount;
         int singleChildNodeCount;
+        int charCount;
         int maxDepth;
         int evaluatorListCount;
         int wildcardEvaluatorListCount;
@@ -237,22 +272,21 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
 }
 
 class TrieNode<T extends RangerPolicyResourceEvaluator> {
-    private final Character          c;
-    private Map<Character, TrieNode> children;
-    private List<T>                  evaluators;
-    private List<T>                  wildcardEvaluators;
-    private boolean   isSharingParentWildcardEvaluators;
-
-    TrieNode(Character c) {
-        this.c = c;
-    }
+    private static final int LINEAR_SEARCH_MAX_CHILDREN = 4;
+
+    private char[]        segment;
+    private char[]        childChars;
+    private TrieNode<T>[] children;
+    private List<T>       evaluators;
+    private List<T>       wildcardEvaluators;
+    private boolean       isSharingParentWildcardEvaluators;
 
-    Character getChar() {
-        return c;
+    TrieNode(char[] segment) {
+        this.segment = segment;
     }
 
-    Map<Character, TrieNode> getChildren() {
-        return children;
+    char[] getSegment() {
+        return segment;
     }
 
     List<T> getEvaluators() {
@@ -263,14 +297,15 @@ class TrieNode<T extends RangerPolicyResourceEvaluator> {
         return wildcardEvaluators;
     }
 
-    TrieNode getChild(Character c) {
-        TrieNode ret = children == null ? null : children.get(c);
+    TrieNode<T> getChild(char c) {
+        final int idx = indexOfChild(c);
 
-        return ret;
+        return idx < 0 ? null : children[idx];
     }
 
     void populateTrieData(RangerResourceTrie.TrieData trieData) {
         trieData.nodeCount++;
+        trieData.charCount += segment.length;
 
         if(wildcardEvaluators != null) {
             if(isSharingParentWildcardEvaluators) {
@@ -288,14 +323,12 @@ class TrieNode<T extends RangerPolicyResourceEvaluator> {
             }
         }
 
-        if(children != null && !children.isEmpty()) {
-            if(children.size() == 1) {
+        if(children != null && children.length > 0) {
+            if(children.length == 1) {
                 trieData.singleChildNodeCount++;
             }
 
-            for(Map.Entry<Character, TrieNode> entry : children.entrySet()) {
-                TrieNode child = entry.getValue();
-
+            for(TrieNode<T> child : children) {
                 child.populateTrieData(trieData);
             }
         } else {
@@ -307,9 +340,7 @@ class TrieNode<T extends RangerPolicyResourceEvaluator> {
         int ret = 0;
 
         if(children != null) {
-            for(Map.Entry<Character, TrieNode> entry : children.entrySet()) {
-                TrieNode child = entry.getValue();
-
+            for(TrieNode<T> child : children) {
                 int maxChildDepth = child.getMaxDepth();
 
                 if(maxChildDepth > ret) {
@@ -321,19 +352,44 @@ class TrieNode<T extends RangerPolicyResourceEvaluator> {
         return ret + 1;
     }
 
-    TrieNode getOrCreateChild(Character c) {
-        if(children == null) {
-            children = new HashMap<>();
+    /*
+     * Returns the child whose segment is the longest prefix of key[start..end) that is shared with an existing child,
+     * creating a child for the remaining key or splitting an existing child's segment as needed.
+     * The caller continues from (start + segment length of the returned node).
+     */
+    TrieNode<T> getOrCreateChild(char[] key, int start, int end) {
+        int idx = indexOfChild(key[start]);
+
+        if(idx < 0) {
+            TrieNode<T> child = new TrieNode<>(Arrays.copyOfRange(key, start, end));
+
+            insertChild(-(idx + 1), child);
+
+            return child;
         }
 
-        TrieNode child = children.get(c);
+        TrieNode<T> child        = children[idx];
+        char[]      childSegment = child.segment;
+        int         commonLen    = 1;
 
-        if(child == null) {
-            child = new TrieNode(c);
-            children.put(c, child);
+        while(commonLen < childSegment.length && (start + commonLen) < end && childSegment[commonLen] == key[start + commonLen]) {
+            commonLen++;
         }
 
-        return child;
+        if(commonLen == childSegment.length) {
+            return child;
+        }
+
+        // split the child: common prefix goes to a new intermediate node, the rest stays in child
+        TrieNode<T> intermediate = new TrieNode<>(Arrays.copyOfRange(childSegment, 0, commonLen));
+
+        child.segment = Arrays.copyOfRange(childSegment, commonLen, childSegment.length);
+
+        intermediate.insertChild(0, child);
+
+        children[idx] = intermediate;
+
+        return intermediate;
     }
 
     void addEvaluator(T evaluator) {
@@ -391,23 +447,33 @@ class TrieNode<T extends RangerPolicyResourceEvaluator> {
         }
 
         if(children != null) {
-            for(Map.Entry<Character, TrieNode> entry : children.entrySet()) {
-                TrieNode child = entry.getValue();
-
+            for(TrieNode<T> child : children) {
                 child.postSetup(wildcardEvaluators, comparator);
             }
         }
     }
 
-    public void toString(String prefix, StringBuilder sb) {
-        String nodeValue = prefix;
+    void reorderEvaluators(List<T> parentWildcardEvaluators, Comparator<T> comparator) {
+        final List<T> oldWildcardEvaluators = wildcardEvaluators;
+        final List<T> newWildcardEvaluators = isSharingParentWildcardEvaluators ? parentWildcardEvaluators : getSortedCopy(oldWildcardEvaluators, comparator);
+        final List<T> newEvaluators         = evaluators == oldWildcardEvaluators ? newWildcardEvaluators : getSortedCopy(evaluators, comparator);
 
-        if(c != 0) {
-            nodeValue += c;
+        // an unmodifiable list is safely published to look-ups in other threads, as it holds the copy in a final field
+        wildcardEvaluators = newWildcardEvaluators;
+        evaluators         = newEvaluators;
+
+        if(children != null) {
+            for(TrieNode<T> child : children) {
+                child.reorderEvaluators(newWildcardEvaluators, comparator);
+            }
         }
+    }
+
+    public void toString(String prefix, StringBuilder sb) {
+        String nodeValue = prefix + new String(segment);
 
         sb.append("nodeValue=").append(nodeValue);
-        sb.append("; childCount=").append(children == null ? 0 : children.size());
+        sb.append("; childCount=").append(children == null ? 0 : children.length);
         sb.append("; evaluators=[ ");
         if(evaluators != null) {
             for(T evaluator : evaluators) {
@@ -426,17 +492,81 @@ class TrieNode<T extends RangerPolicyResourceEvaluator> {
         sb.append(Character.LINE_SEPARATOR);
 
         if(children != null) {
-            for(Map.Entry<Character, TrieNode> entry : children.entrySet()) {
-                TrieNode child = entry.getValue();
-
+            for(TrieNode<T> child : children) {
                 child.toString(nodeValue, sb);
             }
         }
     }
 
     public void clear() {
+        childChars         = null;
         children           = null;
         evaluators         = null;
         wildcardEvaluators = null;
     }
+
+    // returns the given list if it is already in order
+    private static <T> List<T> getSortedCopy(List<T> list, Comparator<T> comparator) {
+        if(list == null || list.size() < 2) {
+            return list;
+        }
+
+        for(int i = 1; i < list.size(); i++) {
+            if(comparator.compare(list.get(i - 1), list.get(i)) > 0) {
+                List<T> ret = new ArrayList<>(list);
+
+                Collections.sort(ret, comparator);
+
+                return Collections.unmodifiableList(ret);
+            }
+        }
+
+        return list;
+    }
+
+    // returns index of the child starting with c; if not found, returns (-(insertion point) - 1)
+    private int indexOfChild(char c) {
+        if(childChars == null) {
+            return -1;
+        }
+
+        final int count = childChars.length;
+
+        if(count <= LINEAR_SEARCH_MAX_CHILDREN) {
+            for(int i = 0; i < count; i++) {
+                char childChar = childChars[i];
+
+                if(childChar == c) {
+                    return i;
+                } else if(childChar > c) {
+                    return -(i + 1);
+                }
+            }
+
+            return -(count + 1);
+        }
+
+        return Arrays.binarySearch(childChars, c);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void insertChild(int idx, TrieNode<T> child) {
+        final int count = childChars == null ? 0 : childChars.length;
+
+        char[]        newChildChars = new char[count + 1];
+        TrieNode<T>[] newChildren   = new TrieNode[count + 1];
+
+        if(count > 0) {
+            System.arraycopy(childChars, 0, newChildChars, 0, idx);
+            System.arraycopy(children, 0, newChildren, 0, idx);
+            System.arraycopy(childChars, idx, newChildChars, idx + 1, count - idx);
+            System.arraycopy(children, idx, newChildren, idx + 1, count - idx);
+        }
+
+        newChildChars[idx] = child.segment[0];
+        newChildren[idx]   = child;
+
+        childChars = newChildChars;
+        children   = newChildren;
+    }
 }
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerAccessResource;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceEvaluator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Look-up of resource tries shared by a group of requests on sibling resources, like the columns of a table accessed
+ * in a query. The tries of the parent resource levels are looked-up once for the group; for each request only the
+ * leaf value is looked-up, once per distinct value, and matched against the evaluators found for the parent.
+ *
+ * Not thread-safe: meant to be used while processing a single batch of requests.
+ */
+public class RangerSiblingResourcesTrieLookup<T extends RangerPolicyResourceEvaluator> {
+    private static final Log LOG = LogFactory.getLog(RangerSiblingResourcesTrieLookup.class);
+
+    private final String                leafName;
+    private final RangerResourceTrie<T> leafTrie;
+    private final List<T>               parentEvaluators; // null if no trie exists for the parent levels
+    private final Map<String, List<T>>  leafEvaluators = new HashMap<>();
+    private       int                   trieLookupCount = 0;
+
+    public RangerSiblingResourcesTrieLookup(Map<String, RangerResourceTrie<T>> resourceTrie, RangerAccessResource resource) {
+        List<T> parentEvaluators = null;
+
+        this.leafName = resource.getLeafName();
+        this.leafTrie = resourceTrie.get(leafName);
+
+        for (String resourceName : resource.getKeys()) {
+            if (resourceName.equals(leafName)) {
+                continue;
+            }
+
+            RangerResourceTrie<T> trie = resourceTrie.get(resourceName);
+
+            if (trie == null) { // if no trie exists for this resource level, ignore and continue to next level
+                continue;
+            }
+
+            List<T> evaluators = trie.getEvaluatorsForResource(resource.getValue(resourceName));
+
+            trieLookupCount++;
+
+            parentEvaluators = parentEvaluators == null ? notNull(evaluators) : intersect(parentEvaluators, evaluators);
+
+            if (parentEvaluators.isEmpty()) { // no policies for the parent resource, bail out
+                break;
+            }
+        }
+
+        this.parentEvaluators = parentEvaluators;
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("RangerSiblingResourcesTrieLookup(" + resource.getAsString() + "): leafName=" + leafName + ", parentEvaluatorCount=" + (parentEvaluators == null ? null : parentEvaluators.size()));
+        }
+    }
+
+    /*
+     * Returns the evaluators that may match the given resource, which must have the same group key as the resource this
+     * look-up was created with
+     */
+    public List<T> getEvaluators(RangerAccessResource resource) {
+        final List<T> ret;
+
+        if (parentEvaluators != null && parentEvaluators.isEmpty()) {
+            ret = parentEvaluators;
+        } else if (leafTrie == null) {
+            ret = parentEvaluators == null ? Collections.<T>emptyList() : parentEvaluators;
+        } else {
+            String  leafValue  = resource.getValue(leafName);
+            List<T> evaluators = leafEvaluators.get(leafValue);
+
+            if (evaluators == null) {
+                evaluators = notNull(leafTrie.getEvaluatorsForResource(leafValue));
+
+                trieLookupCount++;
+
+                leafEvaluators.put(leafValue, evaluators);
+            }
+
+            ret = parentEvaluators == null ? evaluators : intersect(parentEvaluators, evaluators);
+        }
+
+        return ret;
+    }
+
+    public int getTrieLookupCount() {
+        return trieLookupCount;
+    }
+
+    /*
+     * Requests with equal keys can share a look-up: same user, groups, access-type and parent resource values, with the
+     * leaf at the same level. Returns null if the leaf of the resource can't be determined.
+     */
+    public static Object getGroupKey(RangerAccessRequest request) {
+        RangerAccessResource resource = request.getResource();
+        String               leafName = resource == null ? null : resource.getLeafName();
+
+        if (leafName == null) {
+            return null;
+        }
+
+        Map<String, String> parentResource = new HashMap<>();
+
+        for (String resourceName : resource.getKeys()) {
+            parentResource.put(resourceName, resourceName.equals(leafName) ? null : resource.getValue(resourceName));
+        }
+
+        return Arrays.asList(request.getUser(), request.getUserGroups(), request.getAccessType(), parentResource);
+    }
+
+    // like RangerPolicyRepository.getLikelyMatchPolicyEvaluators(), retains from the smaller list to keep its order
+    private static <T> List<T> intersect(List<T> list1, List<T> list2) {
+        if (CollectionUtils.isEmpty(list1) || CollectionUtils.isEmpty(list2)) {
+            return Collections.emptyList();
+        }
+
+        final List<T> ret;
+
+        if (list1.size() <= list2.size()) {
+            ret = new ArrayList<>(list1);
+
+            ret.retainAll(list2);
+        } else {
+            ret = new ArrayList<>(list2);
+
+            ret.retainAll(list1);
+        }
+
+        return ret;
+    }
+
+    private static <T> List<T> notNull(List<T> list) {
+        return list == null ? Collections.<T>emptyList() : list;
+    }
+}
@@ -20,8 +20,14 @@
 package org.apache.ranger.plugin.util;
 
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -31,6 +37,7 @@ import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
 import org.codehaus.jackson.annotate.JsonAutoDetect;
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 import org.codehaus.jackson.annotate.JsonAutoDetect.Visibility;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
@@ -53,6 +60,8 @@ public class ServicePolicies implements java.io.Serializable {
 	private RangerServiceDef   serviceDef;
 	private String             auditMode = RangerPolicyEngine.AUDIT_DEFAULT;
 	private TagPolicies        tagPolicies;
+	private Long               policyDeltaBaseVersion;
+	private List<Long>         deletedPolicyIds;
 
 	/**
 	 * @return the serviceName
@@ -146,7 +155,116 @@ public class ServicePolicies implements java.io.Serializable {
 	public void setTagPolicies(ServicePolicies.TagPolicies tagPolicies) {
 		this.tagPolicies = tagPolicies;
 	}
-	
+	/**
+	 * @return the version these policies are a delta of; null if these are not deltas
+	 */
+	public Long getPolicyDeltaBaseVersion() {
+		return policyDeltaBaseVersion;
+	}
+	/**
+	 * @param policyDeltaBaseVersion the policyDeltaBaseVersion to set
+	 */
+	public void setPolicyDeltaBaseVersion(Long policyDeltaBaseVersion) {
+		this.policyDeltaBaseVersion = policyDeltaBaseVersion;
+	}
+	/**
+	 * @return ids of resource and tag policies deleted since policyDeltaBaseVersion
+	 */
+	public List<Long> getDeletedPolicyIds() {
+		return deletedPolicyIds;
+	}
+	/**
+	 * @param deletedPolicyIds the deletedPolicyIds to set
+	 */
+	public void setDeletedPolicyIds(List<Long> deletedPolicyIds) {
+		this.deletedPolicyIds = deletedPolicyIds;
+	}
+
+	@JsonIgnore
+	public boolean isPolicyDelta() {
+		return policyDeltaBaseVersion != null;
+	}
+
+	/*
+	 * Returns the policies resulting from applying policy deltas to the given policies, or null if the deltas are not
+	 * relative to the version of the given policies. In a delta, policies and tagPolicies.policies contain only the
+	 * policies added or updated since policyDeltaBaseVersion; other attributes are current
+	 */
+	public static ServicePolicies applyDelta(ServicePolicies policies, ServicePolicies delta) {
+		if (policies == null || delta == null || !delta.isPolicyDelta() || !delta.getPolicyDeltaBaseVersion().equals(policies.getPolicyVersion())) {
+			return null;
+		}
+
+		Set<Long> deletedPolicyIds = delta.getDeletedPolicyIds() == null ? Collections.<Long>emptySet() : new HashSet<>(delta.getDeletedPolicyIds());
+
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName(delta.getServiceName());
+		ret.setServiceId(delta.getServiceId());
+		ret.setPolicyVersion(delta.getPolicyVersion());
+		ret.setPolicyUpdateTime(delta.getPolicyUpdateTime());
+		ret.setServiceDef(delta.getServiceDef());
+		ret.setAuditMode(delta.getAuditMode());
+		ret.setPolicies(applyDelta(policies.getPolicies(), delta.getPolicies(), deletedPolicyIds));
+
+		TagPolicies tagPoliciesDelta = delta.getTagPolicies();
+
+		if (tagPoliciesDelta != null) {
+			TagPolicies tagPolicies     = policies.getTagPolicies();
+			TagPolicies tagPoliciesCopy = new TagPolicies();
+
+			tagPoliciesCopy.setServiceName(tagPoliciesDelta.getServiceName());
+			tagPoliciesCopy.setServiceId(tagPoliciesDelta.getServiceId());
+			tagPoliciesCopy.setPolicyVersion(tagPoliciesDelta.getPolicyVersion());
+			tagPoliciesCopy.setPolicyUpdateTime(tagPoliciesDelta.getPolicyUpdateTime());
+			tagPoliciesCopy.setServiceDef(tagPoliciesDelta.getServiceDef());
+			tagPoliciesCopy.setAuditMode(tagPoliciesDelta.getAuditMode());
+			tagPoliciesCopy.setPolicies(applyDelta(tagPolicies == null ? null : tagPolicies.getPolicies(), tagPoliciesDelta.getPolicies(), deletedPolicyIds));
+
+			ret.setTagPolicies(tagPoliciesCopy);
+		}
+
+		return ret;
+	}
+
+	/*
+	 * Updated policies replace the earlier version in place, and added policies are appended; this keeps the
+	 * order of policies same as in a full download
+	 */
+	private static List<RangerPolicy> applyDelta(List<RangerPolicy> policies, List<RangerPolicy> changedPolicies, Set<Long> deletedPolicyIds) {
+		Map<Long, RangerPolicy> changedPoliciesMap = new HashMap<>();
+
+		if (changedPolicies != null) {
+			for (RangerPolicy policy : changedPolicies) {
+				changedPoliciesMap.put(policy.getId(), policy);
+			}
+		}
+
+		List<RangerPolicy> ret = new ArrayList<>();
+
+		if (policies != null) {
+			for (RangerPolicy policy : policies) {
+				if (deletedPolicyIds.contains(policy.getId())) {
+					continue;
+				}
+
+				RangerPolicy changedPolicy = changedPoliciesMap.remove(policy.getId());
+
+				ret.add(changedPolicy != null ? changedPolicy : policy);
+			}
+		}
+
+		if (changedPolicies != null) {
+			for (RangerPolicy policy : changedPolicies) {
+				if (changedPoliciesMap.containsKey(policy.getId())) {
+					ret.add(policy);
+				}
+			}
+		}
+
+		return ret;
+	}
+
 	@Override
 	public String toString() {
 		return Objects.toStringHelper(this.getClass())
@@ -158,6 +276,8 @@ public class ServicePolicies implements java.io.Serializable {
 			.add("serviceDef", serviceDef)
 			.add("auditMode", auditMode)
 			.add("tagPolicies", tagPolicies)
+			.add("policyDeltaBaseVersion", policyDeltaBaseVersion)
+			.add("deletedPolicyIds", deletedPolicyIds)
 			.toString();
 	}
 
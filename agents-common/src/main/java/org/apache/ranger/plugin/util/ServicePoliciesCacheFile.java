@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import com.google.gson.Gson;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Binary file format for the policy cache of plugins:
+ *
+ *   magic          4 bytes: 'R' 'P' 'C' 'F'
+ *   formatVersion  int
+ *   payloadLength  long
+ *   payloadCrc32   long
+ *   payload        gzip compressed JSON of ServicePolicies
+ *
+ * The file is written to a temporary file, which is then renamed; hence readers never see a partially written file.
+ */
+final class ServicePoliciesCacheFile {
+	private static final Log LOG = LogFactory.getLog(ServicePoliciesCacheFile.class);
+
+	static final int FORMAT_VERSION = 1;
+
+	private static final byte[] MAGIC         = { 'R', 'P', 'C', 'F' };
+	private static final int    HEADER_LENGTH = MAGIC.length + 4 + 8 + 8;
+	private static final int    BUFFER_SIZE   = 64 * 1024;
+
+	private ServicePoliciesCacheFile() { }
+
+	static boolean isCacheFile(File file) throws IOException {
+		boolean ret = false;
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			if (raf.length() >= HEADER_LENGTH) {
+				byte[] magic = new byte[MAGIC.length];
+
+				raf.readFully(magic);
+
+				ret = isMagic(magic);
+			}
+		}
+
+		return ret;
+	}
+
+	static void write(ServicePolicies policies, File file, Gson gson) throws IOException {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> ServicePoliciesCacheFile.write(" + file.getAbsolutePath() + ")");
+		}
+
+		File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp." + Thread.currentThread().getId());
+
+		try {
+			try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw")) {
+				raf.setLength(0);
+				raf.seek(HEADER_LENGTH);
+
+				CRC32                crc     = new CRC32();
+				CountingOutputStream payload = new CountingOutputStream(new CheckedOutputStream(Channels.newOutputStream(raf.getChannel()), crc));
+				GZIPOutputStream     gzip    = new GZIPOutputStream(new BufferedOutputStream(payload, BUFFER_SIZE), BUFFER_SIZE);
+				Writer               writer  = new OutputStreamWriter(gzip, StandardCharsets.UTF_8);
+
+				gson.toJson(policies, writer);
+
+				writer.flush();
+				gzip.finish();
+				gzip.flush();
+
+				raf.seek(0);
+				raf.write(MAGIC);
+				raf.writeInt(FORMAT_VERSION);
+				raf.writeLong(payload.getCount());
+				raf.writeLong(crc.getValue());
+
+				raf.getFD().sync();
+			}
+
+			try {
+				Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException excp) {
+				Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			if (tmpFile.exists() && !tmpFile.delete()) {
+				LOG.warn("failed to delete temporary file " + tmpFile.getAbsolutePath());
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== ServicePoliciesCacheFile.write(" + file.getAbsolutePath() + "): fileSize=" + file.length());
+		}
+	}
+
+	static ServicePolicies read(File file, Gson gson) throws IOException {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> ServicePoliciesCacheFile.read(" + file.getAbsolutePath() + ")");
+		}
+
+		final ServicePolicies ret;
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.remaining() < HEADER_LENGTH) {
+				throw new IOException(file.getAbsolutePath() + ": not a policy cache file - too short");
+			}
+
+			byte[] magic = new byte[MAGIC.length];
+
+			buffer.get(magic);
+
+			if (!isMagic(magic)) {
+				throw new IOException(file.getAbsolutePath() + ": not a policy cache file");
+			}
+
+			int  formatVersion = buffer.getInt();
+			long payloadLength = buffer.getLong();
+			long payloadCrc32  = buffer.getLong();
+
+			if (formatVersion != FORMAT_VERSION) {
+				throw new IOException(file.getAbsolutePath() + ": unsupported policy cache format version " + formatVersion);
+			}
+
+			if (payloadLength != buffer.remaining()) {
+				throw new IOException(file.getAbsolutePath() + ": truncated policy cache file. expected payloadLength=" + payloadLength + ", found=" + buffer.remaining());
+			}
+
+			ByteBuffer payload = buffer.slice();
+			CRC32      crc     = new CRC32();
+
+			crc.update(payload.duplicate());
+
+			if (crc.getValue() != payloadCrc32) {
+				throw new IOException(file.getAbsolutePath() + ": checksum mismatch in policy cache file");
+			}
+
+			try (Reader reader = new InputStreamReader(new GZIPInputStream(new ByteBufferInputStream(payload), BUFFER_SIZE), StandardCharsets.UTF_8)) {
+				ret = gson.fromJson(reader, ServicePolicies.class);
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== ServicePoliciesCacheFile.read(" + file.getAbsolutePath() + ")");
+		}
+
+		return ret;
+	}
+
+	private static boolean isMagic(byte[] bytes) {
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (bytes[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static class CountingOutputStream extends FilterOutputStream {
+		private long count = 0;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		long getCount() {
+			return count;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+
+			int ret = Math.min(len, buffer.remaining());
+
+			buffer.get(b, off, ret);
+
+			return ret;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
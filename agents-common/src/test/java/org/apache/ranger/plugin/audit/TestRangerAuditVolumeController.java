@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.audit;
+
+import java.util.Date;
+import java.util.List;
+
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRangerAuditVolumeController {
+	private static final long ONE_SECOND = 1000L * 1000 * 1000;
+
+	@Test
+	public void testRateLimit() {
+		RangerAuditVolumeController controller = new RangerAuditVolumeController(1, 5, 100, 1000, 60);
+
+		long auditedCount = 0;
+		long eventCount   = 0;
+
+		for (int i = 0; i < 100; i++) {
+			AuthzAuditEvent event = createEvent("user1", "/data/file1", true, i);
+
+			if (controller.isToAudit(event, 0)) {
+				auditedCount++;
+				eventCount += event.getEventCount();
+			}
+		}
+
+		Assert.assertEquals(5, auditedCount);
+		Assert.assertEquals(95, controller.getSuppressedCount());
+
+		// denied accesses and other users are not limited
+		Assert.assertTrue(controller.isToAudit(createEvent("user1", "/data/file1", false, 100), 0));
+		Assert.assertTrue(controller.isToAudit(createEvent("user2", "/data/file1", true, 100), 0));
+
+		// after a second, one more event is audited, carrying the count of the suppressed ones
+		AuthzAuditEvent event = createEvent("user1", "/data/file1", true, 101);
+
+		Assert.assertTrue(controller.isToAudit(event, ONE_SECOND));
+		Assert.assertEquals(96, event.getEventCount());
+		Assert.assertFalse(controller.isToAudit(createEvent("user1", "/data/file1", true, 102), ONE_SECOND));
+
+		eventCount += event.getEventCount();
+
+		Assert.assertEquals(102, eventCount + controller.getPendingSuppressedCount());
+	}
+
+	@Test
+	public void testRateLimitPerAccessType() {
+		RangerAuditVolumeController controller = new RangerAuditVolumeController(1, 1, 100, 1000, 60);
+
+		AuthzAuditEvent open   = createEvent("user1", "/data/file1", true, 0);
+		AuthzAuditEvent delete = createEvent("user1", "/data/file1", true, 0);
+
+		delete.setAccessType("delete");
+
+		// same user and resource, different access types: limited in separate buckets
+		Assert.assertTrue(controller.isToAudit(open, 0));
+		Assert.assertTrue(controller.isToAudit(delete, 0));
+		Assert.assertFalse(controller.isToAudit(createEvent("user1", "/data/file1", true, 1), 0));
+		Assert.assertEquals(1, controller.getPendingSuppressedCount());
+	}
+
+	@Test
+	public void testSampling() {
+		RangerAuditVolumeController controller = new RangerAuditVolumeController(0, 1, 25, 1000, 60);
+
+		long auditedCount = 0;
+		long eventCount   = 0;
+		int  totalCount   = 20000;
+
+		for (int i = 0; i < totalCount; i++) {
+			AuthzAuditEvent event = createEvent("user" + (i % 10), "/data/file" + (i % 7), true, i);
+
+			if (controller.isToAudit(event, 0)) {
+				auditedCount++;
+				eventCount += event.getEventCount();
+			}
+		}
+
+		Assert.assertTrue("audited " + auditedCount, auditedCount > totalCount * 0.20 && auditedCount < totalCount * 0.30);
+		Assert.assertEquals(totalCount, eventCount + controller.getPendingSuppressedCount());
+
+		// sampling decision is deterministic for a given event
+		RangerAuditVolumeController other = new RangerAuditVolumeController(0, 1, 25, 1000, 60);
+
+		for (int i = 0; i < 100; i++) {
+			AuthzAuditEvent event = createEvent("user1", "/data/file1", true, i);
+
+			Assert.assertEquals(controller.isToAudit(event, 0), other.isToAudit(event, 0));
+		}
+
+		// denied accesses are always audited
+		RangerAuditVolumeController none = new RangerAuditVolumeController(0, 1, 0, 1000, 60);
+
+		Assert.assertFalse(none.isToAudit(createEvent("user1", "/data/file1", true, 0), 0));
+		Assert.assertTrue(none.isToAudit(createEvent("user1", "/data/file1", false, 0), 0));
+	}
+
+	@Test
+	public void testMaxKeys() {
+		RangerAuditVolumeController controller = new RangerAuditVolumeController(1, 1, 100, 16, 60);
+
+		long flushedCount = 0;
+
+		for (int i = 0; i < 1000; i++) {
+			controller.isToAudit(createEvent("user1", "/data/file" + i, true, 0), 0);
+			controller.isToAudit(createEvent("user1", "/data/file" + i, true, 0), 0);
+
+			// counts of dropped buckets are reported by the next flush
+			if (i % 10 == 9) {
+				flushedCount += getEventCount(controller.flush(0));
+			}
+		}
+
+		Assert.assertEquals(1000, controller.getSuppressedCount());
+		Assert.assertTrue(controller.getPendingSuppressedCount() <= 16);
+		Assert.assertEquals(0, controller.getDroppedCount());
+		Assert.assertEquals(1000, flushedCount + getEventCount(controller.flush(0)) + controller.getPendingSuppressedCount());
+
+		// counts that can't be kept until the next flush are dropped
+		long pendingCount = controller.getPendingSuppressedCount();
+
+		for (int i = 0; i < 1000; i++) {
+			controller.isToAudit(createEvent("user2", "/data/file" + i, true, 0), 0);
+			controller.isToAudit(createEvent("user2", "/data/file" + i, true, 0), 0);
+		}
+
+		List<AuthzAuditEvent> flushed = controller.flush(0);
+
+		Assert.assertEquals(16, flushed.size());
+		Assert.assertEquals(1000 + pendingCount, getEventCount(flushed) + controller.getDroppedCount() + controller.getPendingSuppressedCount());
+	}
+
+	@Test
+	public void testFlushIdleBuckets() {
+		RangerAuditVolumeController controller = new RangerAuditVolumeController(1, 1, 100, 1000, 60);
+
+		for (int i = 0; i < 4; i++) {
+			controller.isToAudit(createEvent("user1", "/data/file1", true, i), 0);
+		}
+
+		Assert.assertEquals(3, controller.getPendingSuppressedCount());
+
+		// pending for less than the flush interval
+		Assert.assertTrue(controller.flush(30 * ONE_SECOND).isEmpty());
+
+		List<AuthzAuditEvent> flushed = controller.flush(60 * ONE_SECOND);
+
+		Assert.assertEquals(1, flushed.size());
+		Assert.assertEquals(3, flushed.get(0).getEventCount());
+		Assert.assertEquals("/data/file1", flushed.get(0).getResourcePath());
+		Assert.assertEquals(0, controller.getPendingSuppressedCount());
+		Assert.assertTrue(controller.flush(120 * ONE_SECOND).isEmpty());
+
+		// the next audited event carries no count already flushed
+		AuthzAuditEvent event = createEvent("user1", "/data/file1", true, 4);
+
+		Assert.assertTrue(controller.isToAudit(event, 120 * ONE_SECOND));
+		Assert.assertEquals(1, event.getEventCount());
+	}
+
+	private static long getEventCount(List<AuthzAuditEvent> events) {
+		long ret = 0;
+
+		for (AuthzAuditEvent event : events) {
+			ret += event.getEventCount();
+		}
+
+		return ret;
+	}
+
+	private static AuthzAuditEvent createEvent(String user, String resource, boolean isAllowed, long time) {
+		AuthzAuditEvent event = new AuthzAuditEvent();
+
+		event.setUser(user);
+		event.setResourcePath(resource);
+		event.setAction("read");
+		event.setAccessType("open");
+		event.setAccessResult((short) (isAllowed ? 1 : 0));
+		event.setEventTime(new Date(time));
+
+		return event;
+	}
+}
@@ -220,7 +220,42 @@ public class RangerIpMatcherTest {
 		Assert.assertFalse(ipMatcher.isMatched(createRequest("10.20.3.10")));
 		Assert.assertFalse(ipMatcher.isMatched(createRequest("10.20.33.10")));
 	}
-	
+
+	@Test
+	public void test_cidr() {
+		RangerIpMatcher ipMatcher = createMatcher(new String[]{"10.0.0.0/8", "192.168.16.0/20", "2001:db8::/32", "1.2.3.*"} );
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("10.1.2.3")));
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("192.168.31.255")));
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("2001:DB8:0:0:1::1")));
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("1.2.3.4")));
+		// non-address request ips are still matched against the wildcard policy ips
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("1.2.3.boo")));
+
+		Assert.assertFalse(ipMatcher.isMatched(createRequest("11.1.2.3")));
+		Assert.assertFalse(ipMatcher.isMatched(createRequest("192.168.32.0")));
+		Assert.assertFalse(ipMatcher.isMatched(createRequest("2001:db9::1")));
+		Assert.assertFalse(ipMatcher.isMatched(createRequest("1.2.4.4")));
+
+		// ipv6 wildcards match compressed addresses too
+		ipMatcher = createMatcher(new String[]{"A0:B0:*", "a1:b1:c1:d1:e1:f1:0:1"} );
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("a0:b0::1")));
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("A0:B0:C0:D0:E0:F0:0:1")));
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("a1:b1:c1:d1:e1:f1::1")));
+		Assert.assertFalse(ipMatcher.isMatched(createRequest("a0:b1::1")));
+	}
+
+	@Test
+	public void test_toCidr() {
+		RangerIpMatcher matcher = new RangerIpMatcher();
+		Assert.assertEquals("10.0.0.0/8", matcher.toCidr("10."));
+		Assert.assertEquals("10.20.30.0/24", matcher.toCidr("10.20.30."));
+		Assert.assertEquals("a0::/16", matcher.toCidr("a0:"));
+		Assert.assertEquals("a0:b0:c0::/48", matcher.toCidr("a0:b0:c0:"));
+		Assert.assertNull(matcher.toCidr("1.2.3.4."));
+		Assert.assertNull(matcher.toCidr("a0::b0:"));
+		Assert.assertNull(matcher.toCidr("a0:b0"));
+	}
+
 	RangerIpMatcher createMatcher(String[] ipArray) {
 		RangerIpMatcher matcher = new RangerIpMatcher();
 
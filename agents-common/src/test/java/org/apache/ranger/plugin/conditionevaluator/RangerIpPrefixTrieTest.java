@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.conditionevaluator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RangerIpPrefixTrieTest {
+
+	@Test
+	public void test_ipv4() {
+		RangerIpPrefixTrie trie = new RangerIpPrefixTrie();
+
+		Assert.assertTrue(trie.add("10.0.0.0/8"));
+		Assert.assertTrue(trie.add("192.168.1.0/24"));
+		Assert.assertTrue(trie.add("172.16.0.0/12"));
+		Assert.assertTrue(trie.add("1.2.3.4"));
+		Assert.assertTrue(trie.add("100.64.1.7/20")); // host bits are ignored
+
+		Assert.assertTrue(trie.contains("10.0.0.1"));
+		Assert.assertTrue(trie.contains("10.255.255.255"));
+		Assert.assertTrue(trie.contains("192.168.1.200"));
+		Assert.assertTrue(trie.contains("172.31.0.1"));
+		Assert.assertTrue(trie.contains("1.2.3.4"));
+		Assert.assertTrue(trie.contains("100.64.15.255"));
+
+		Assert.assertFalse(trie.contains("11.0.0.1"));
+		Assert.assertFalse(trie.contains("192.168.2.1"));
+		Assert.assertFalse(trie.contains("172.32.0.1"));
+		Assert.assertFalse(trie.contains("1.2.3.5"));
+		Assert.assertFalse(trie.contains("100.64.16.0"));
+
+		// ipv4 blocks don't match ipv6 addresses
+		Assert.assertFalse(trie.contains("a00::1"));
+	}
+
+	@Test
+	public void test_ipv6() {
+		RangerIpPrefixTrie trie = new RangerIpPrefixTrie();
+
+		Assert.assertTrue(trie.add("2001:db8::/32"));
+		Assert.assertTrue(trie.add("fe80::/10"));
+		Assert.assertTrue(trie.add("::1"));
+		Assert.assertTrue(trie.add("a0:b0:c0:d0::/64"));
+
+		Assert.assertTrue(trie.contains("2001:db8::1"));
+		Assert.assertTrue(trie.contains("2001:DB8:FFFF:0:0:0:0:1"));
+		Assert.assertTrue(trie.contains("2001:0db8:0:0:1::"));
+		Assert.assertTrue(trie.contains("fe80::1%eth0"));
+		Assert.assertTrue(trie.contains("febf:ffff::"));
+		Assert.assertTrue(trie.contains("0:0:0:0:0:0:0:1"));
+		Assert.assertTrue(trie.contains("a0:b0:c0:d0:1:2:3:4"));
+
+		Assert.assertFalse(trie.contains("2001:db9::1"));
+		Assert.assertFalse(trie.contains("fec0::1"));
+		Assert.assertFalse(trie.contains("::2"));
+		Assert.assertFalse(trie.contains("::"));
+		Assert.assertFalse(trie.contains("a0:b0:c0:d1:1:2:3:4"));
+
+		// ipv6 blocks don't match ipv4 addresses
+		Assert.assertFalse(trie.contains("0.0.0.1"));
+	}
+
+	@Test
+	public void test_allAddresses() {
+		RangerIpPrefixTrie trie = new RangerIpPrefixTrie();
+
+		Assert.assertTrue(trie.add("1.2.3.0/24"));
+		Assert.assertTrue(trie.add("0.0.0.0/0"));
+
+		Assert.assertTrue(trie.contains("0.0.0.0"));
+		Assert.assertTrue(trie.contains("255.255.255.255"));
+		Assert.assertFalse(trie.contains("::1"));
+	}
+
+	@Test
+	public void test_invalid() {
+		RangerIpPrefixTrie trie = new RangerIpPrefixTrie();
+
+		Assert.assertFalse(trie.add(null));
+		Assert.assertFalse(trie.add(""));
+		Assert.assertFalse(trie.add("1.2.3.*"));
+		Assert.assertFalse(trie.add("1.2.3.0/33"));
+		Assert.assertFalse(trie.add("1.2.3.0/"));
+		Assert.assertFalse(trie.add("1.2.3.0/x"));
+		Assert.assertFalse(trie.add("::/129"));
+		Assert.assertFalse(trie.add("a0:b0:c0:d0:e0:f0"));
+
+		String[] invalidIps = { "", "1.2.3", "1.2.3.4.5", "1.2.3.256", "1.2.03.4", "1.2..4", "1.2.3.4.", " 1.2.3.4", "boo",
+		                        "1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9", "1::2::3", ":1:2:3:4:5:6:7", "1:2:3:4:5:6:7:", "1:::2", "12345::", "g::1", "::ffff:1.2.3.4" };
+
+		for (String ip : invalidIps) {
+			Assert.assertFalse(ip, RangerIpPrefixTrie.isIpAddress(ip));
+			Assert.assertFalse(ip, trie.contains(ip));
+		}
+
+		String[] validIps = { "0.0.0.0", "1.2.3.4", "255.255.255.255", "::", "::1", "1::", "1::8", "1:2:3:4:5:6:7::", "::2:3:4:5:6:7:8", "1:2:3:4:5:6:7:8", "fe80::1%eth0" };
+
+		for (String ip : validIps) {
+			Assert.assertTrue(ip, RangerIpPrefixTrie.isIpAddress(ip));
+			Assert.assertFalse(ip, trie.contains(ip));
+		}
+	}
+}
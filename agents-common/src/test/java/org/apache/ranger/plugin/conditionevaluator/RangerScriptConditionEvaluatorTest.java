@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.conditionevaluator;
+
+import java.util.Collections;
+
+import javax.script.ScriptEngineManager;
+
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerPolicyConditionDef;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class RangerScriptConditionEvaluatorTest {
+	@Test
+	public void testScriptVariablesNotKeptAcrossRequests() {
+		// recent JDKs have no JavaScript engine
+		Assume.assumeNotNull(new ScriptEngineManager().getEngineByName("JavaScript"));
+
+		String script = "var isFirstEval = (typeof evalCount === 'undefined'); evalCount = 1; isFirstEval;";
+
+		RangerScriptConditionEvaluator evaluator = getEvaluator(script);
+		RangerAccessRequestImpl        request   = new RangerAccessRequestImpl(new RangerAccessResourceImpl(), "select", "user1", Collections.<String>emptySet());
+
+		Assert.assertTrue(evaluator.isMatched(request));
+		Assert.assertTrue(evaluator.isMatched(request));
+	}
+
+	private RangerScriptConditionEvaluator getEvaluator(String script) {
+		RangerPolicyConditionDef conditionDef = new RangerPolicyConditionDef();
+
+		conditionDef.setName("script");
+
+		RangerScriptConditionEvaluator evaluator = new RangerScriptConditionEvaluator();
+
+		evaluator.setConditionDef(conditionDef);
+		evaluator.setPolicyItemCondition(new RangerPolicyItemCondition("script", Collections.singletonList(script)));
+		evaluator.init();
+
+		return evaluator;
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.conditionevaluator;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+import org.apache.ranger.plugin.contextenricher.RangerTagForEval;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerPolicyConditionDef;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RangerScriptTemplateConditionEvaluatorTest {
+	private static final String EXPIRY_TEMPLATE = "ctx.isAccessedAfter('expiry_date');";
+
+	@Test
+	public void testNativeTemplateParsing() {
+		Assert.assertNotNull(RangerScriptTemplateConditionEvaluator.NativeTemplate.parse(EXPIRY_TEMPLATE));
+		Assert.assertNotNull(RangerScriptTemplateConditionEvaluator.NativeTemplate.parse("ctx.isAccessedBefore( \"PII\", 'expiry_date' )"));
+		Assert.assertNull(RangerScriptTemplateConditionEvaluator.NativeTemplate.parse("ctx.isAccessedAfter('expiry_date') && ctx.getUser() == 'admin'"));
+		Assert.assertNull(RangerScriptTemplateConditionEvaluator.NativeTemplate.parse("ctx.isAccessedAfter(expiry_date);"));
+		Assert.assertNull(RangerScriptTemplateConditionEvaluator.NativeTemplate.parse(null));
+	}
+
+	@Test
+	public void testExpiryTemplate() {
+		Date accessTime = new GregorianCalendar(2020, 5, 15).getTime();
+
+		// access after the expiry date of the tag: the condition "expired = yes" matches
+		Assert.assertTrue(isMatched(EXPIRY_TEMPLATE, "yes", "2020/01/01", accessTime));
+		Assert.assertFalse(isMatched(EXPIRY_TEMPLATE, "no", "2020/01/01", accessTime));
+
+		Assert.assertFalse(isMatched(EXPIRY_TEMPLATE, "yes", "2021/01/01", accessTime));
+		Assert.assertTrue(isMatched(EXPIRY_TEMPLATE, "no", "2021/01/01", accessTime));
+
+		// tags without expiry date are expired, as with the script
+		Assert.assertTrue(isMatched(EXPIRY_TEMPLATE, "yes", null, accessTime));
+
+		Assert.assertTrue(isMatched("ctx.isAccessedBefore('PII', 'expiry_date');", "yes", "2021/01/01", accessTime));
+		Assert.assertFalse(isMatched("ctx.isAccessedBefore('PII', 'expiry_date');", "yes", "2020/01/01", accessTime));
+	}
+
+	private boolean isMatched(String scriptTemplate, String conditionValue, String expiryDate, Date accessTime) {
+		RangerPolicyConditionDef conditionDef = new RangerPolicyConditionDef();
+
+		conditionDef.setName("expiry");
+		conditionDef.setEvaluatorOptions(Collections.singletonMap("scriptTemplate", scriptTemplate));
+
+		RangerScriptTemplateConditionEvaluator evaluator = new RangerScriptTemplateConditionEvaluator();
+
+		evaluator.setConditionDef(conditionDef);
+		evaluator.setPolicyItemCondition(new RangerPolicyItemCondition("expiry", Collections.singletonList(conditionValue)));
+		evaluator.init();
+
+		RangerTag               tag        = new RangerTag("PII", expiryDate != null ? Collections.singletonMap("expiry_date", expiryDate) : Collections.<String, String>emptyMap());
+		RangerTagForEval        tagForEval = new RangerTagForEval(tag, RangerPolicyResourceMatcher.MatchType.SELF);
+		RangerAccessRequestImpl request    = new RangerAccessRequestImpl();
+
+		request.setAccessTime(accessTime);
+		RangerAccessRequestUtil.setRequestTagsInContext(request.getContext(), Collections.singleton(tagForEval));
+		RangerAccessRequestUtil.setCurrentTagInContext(request.getContext(), tagForEval);
+
+		return evaluator.isMatched(request);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Compares evaluating the column-level requests of a Hive query one at a time with evaluating them as a batch, which
+ * looks-up the policies for the database and table once.
+ * Run with: mvn -pl agents-common test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.apache.ranger.plugin.policyengine.RangerPolicyEngineBatchBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RangerPolicyEngineBatchBenchmark {
+	static final int POLICY_COUNT = 1000;
+	static final int COLUMN_COUNT = 200;
+
+	private RangerPolicyEngine        policyEngine;
+	private List<RangerAccessRequest> requests;
+
+	@Setup
+	public void setup() throws Exception {
+		RangerServiceDef serviceDef = getHiveServiceDef();
+
+		policyEngine = new RangerPolicyEngineImpl("benchmark", createServicePolicies(serviceDef, POLICY_COUNT), new RangerPolicyEngineOptions());
+		requests     = createColumnRequests(serviceDef, "db1", "tbl1", COLUMN_COUNT);
+	}
+
+	@Benchmark
+	public Collection<RangerAccessResult> oneAtATime() {
+		List<RangerAccessResult> ret = new ArrayList<>(requests.size());
+
+		for (RangerAccessRequest request : requests) {
+			policyEngine.preProcess(request);
+
+			ret.add(policyEngine.isAccessAllowed(request, null));
+		}
+
+		return ret;
+	}
+
+	@Benchmark
+	public Collection<RangerAccessResult> batch() {
+		policyEngine.preProcess(requests);
+
+		return policyEngine.isAccessAllowed(requests, null);
+	}
+
+	static RangerServiceDef getHiveServiceDef() throws Exception {
+		return EmbeddedServiceDefsUtil.instance().getEmbeddedServiceDef(EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_HIVE_NAME);
+	}
+
+	// policies on columns of 10 databases x 50 tables, and a few policies on all tables of a database
+	static ServicePolicies createServicePolicies(RangerServiceDef serviceDef, int policyCount) {
+		List<RangerPolicy> policies = new ArrayList<>(policyCount);
+
+		for (int i = 0; i < policyCount; i++) {
+			Map<String, RangerPolicyResource> resources = new HashMap<>();
+
+			resources.put("database", new RangerPolicyResource("db" + (i % 10)));
+
+			if (i % 100 == 99) {
+				resources.put("table", new RangerPolicyResource("*"));
+				resources.put("column", new RangerPolicyResource("*"));
+			} else {
+				resources.put("table", new RangerPolicyResource("tbl" + (i % 50)));
+				resources.put("column", new RangerPolicyResource(Arrays.asList("col" + (i % 20), "col" + ((i + 7) % 20), "key_*"), false, false));
+			}
+
+			RangerPolicyItem policyItem = new RangerPolicyItem(Collections.singletonList(new RangerPolicyItemAccess("select")),
+			                                                   Collections.singletonList("user" + (i % 5)), Collections.singletonList("group" + (i % 3)),
+			                                                   Collections.<RangerPolicyItemCondition>emptyList(), false);
+			RangerPolicy     policy     = new RangerPolicy("hivedev", "policy-" + i, RangerPolicy.POLICY_TYPE_ACCESS, null, resources, Collections.singletonList(policyItem), null);
+
+			policy.setId((long) i + 1);
+			policy.setVersion(1L);
+
+			policies.add(policy);
+		}
+
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName("hivedev");
+		ret.setServiceDef(serviceDef);
+		ret.setPolicies(policies);
+
+		return ret;
+	}
+
+	static List<RangerAccessRequest> createColumnRequests(RangerServiceDef serviceDef, String database, String table, int columnCount) {
+		List<RangerAccessRequest> ret = new ArrayList<>(columnCount);
+
+		for (int i = 0; i < columnCount; i++) {
+			RangerAccessResourceImpl resource = new RangerAccessResourceImpl();
+
+			resource.setValue("database", database);
+			resource.setValue("table", table);
+			resource.setValue("column", (i % 2 == 0 ? "col" : "key_") + i);
+			resource.setServiceDef(serviceDef);
+
+			ret.add(new RangerAccessRequestImpl(resource, "select", "user1", Collections.singleton("group1")));
+		}
+
+		return ret;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(RangerPolicyEngineBatchBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestConcurrentCacheMap {
+
+	@Test
+	public void testGetPutAndCounters() {
+		ConcurrentCacheMap<String, String> cache = new ConcurrentCacheMap<>(4);
+
+		assertNull(cache.get("k1"));
+
+		cache.put("k1", "v1");
+		cache.put("k2", "v2");
+
+		assertEquals("v1", cache.get("k1"));
+		assertEquals("v1", cache.put("k1", "v1-new"));
+		assertEquals("v1-new", cache.get("k1"));
+		assertTrue(cache.containsKey("k2"));
+		assertFalse(cache.containsKey("k3"));
+
+		// containsKey() doesn't count as a hit or miss
+		assertEquals(2, cache.size());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0, cache.getEvictionCount());
+
+		assertEquals("v2", cache.remove("k2"));
+		assertFalse(cache.containsKey("k2"));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testEvictionGivesReferencedEntriesSecondChance() {
+		final int capacity = 8;
+
+		ConcurrentCacheMap<String, String> cache = new ConcurrentCacheMap<>(capacity);
+
+		for (int i = 0; i < capacity; i++) {
+			cache.put("k" + i, "v" + i);
+		}
+
+		// reference the first half, so that the other half gets evicted first
+		for (int i = 0; i < capacity / 2; i++) {
+			assertEquals("v" + i, cache.get("k" + i));
+		}
+
+		for (int i = capacity; i < capacity + capacity / 2; i++) {
+			cache.put("k" + i, "v" + i);
+		}
+
+		assertEquals(capacity, cache.size());
+		assertEquals(capacity / 2, cache.getEvictionCount());
+
+		for (int i = 0; i < capacity / 2; i++) {
+			assertTrue(cache.containsKey("k" + i));
+		}
+
+		for (int i = capacity / 2; i < capacity; i++) {
+			assertFalse(cache.containsKey("k" + i));
+		}
+	}
+
+	@Test
+	public void testRemovedSlotsAreReused() {
+		ConcurrentCacheMap<String, String> cache = new ConcurrentCacheMap<>(2);
+
+		cache.put("k1", "v1");
+		cache.put("k2", "v2");
+		cache.remove("k1");
+		cache.put("k3", "v3");
+
+		assertEquals(2, cache.size());
+		assertEquals(0, cache.getEvictionCount());
+		assertTrue(cache.containsKey("k2"));
+		assertTrue(cache.containsKey("k3"));
+	}
+
+	@Test
+	public void testConcurrentAccessStaysBounded() throws Exception {
+		final int                                  capacity = 128;
+		final ConcurrentCacheMap<Integer, Integer> cache    = new ConcurrentCacheMap<>(capacity);
+		final AtomicInteger                        errors   = new AtomicInteger();
+		final List<Thread>                         threads  = new ArrayList<>();
+
+		for (int t = 0; t < 8; t++) {
+			final int seed = t;
+
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 20000; i++) {
+						Integer key   = (i * 31 + seed) % (capacity * 4);
+						Integer value = cache.get(key);
+
+						if (value == null) {
+							cache.put(key, key);
+						} else if (!value.equals(key)) {
+							errors.incrementAndGet();
+						}
+					}
+				}
+			});
+		}
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(0, errors.get());
+		assertTrue(cache.size() <= capacity);
+		assertTrue(cache.getEvictionCount() > 0);
+		assertEquals(8 * 20000, cache.getHitCount() + cache.getMissCount());
+	}
+}
@@ -36,8 +36,10 @@ import org.apache.ranger.plugin.contextenricher.RangerTagForEval;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.policyengine.TestPolicyEngine.PolicyEngineTestCase.TestData;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerRequestedResources;
+import org.apache.ranger.plugin.util.RangerSiblingResourcesTrieLookup;
 import org.apache.ranger.plugin.util.ServicePolicies;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -50,6 +52,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -295,16 +300,180 @@ public class TestPolicyEngine {
 		runTestsFromResourceFiles(resourceFiles);
 	}
 
+	@Test
+	public void testPolicyEngine_withAccessDecisionCache() {
+		String[] resourceFiles = { "/policyengine/test_policyengine_hdfs.json",
+		                           "/policyengine/test_policyengine_hive.json",
+		                           "/policyengine/test_policyengine_hbase.json",
+		                           "/policyengine/test_policyengine_owner.json",
+		                           "/policyengine/test_policyengine_conditions.json" };
+
+		runTestsFromResourceFiles(resourceFiles, true);
+	}
+
+	@Test
+	public void testPolicyEngine_reuseUnchangedEvaluators() {
+		InputStream          inStream = this.getClass().getResourceAsStream("/policyengine/test_policyengine_hive.json");
+		PolicyEngineTestCase testCase = gsonBuilder.fromJson(new InputStreamReader(inStream), PolicyEngineTestCase.class);
+
+		testCase.serviceDef.setVersion(1L);
+
+		for(RangerPolicy policy : testCase.policies) {
+			policy.setVersion(1L);
+		}
+
+		ServicePolicies servicePolicies = new ServicePolicies();
+		servicePolicies.setServiceName(testCase.serviceName);
+		servicePolicies.setServiceDef(testCase.serviceDef);
+		servicePolicies.setPolicies(testCase.policies);
+
+		RangerPolicyEngineOptions policyEngineOptions = new RangerPolicyEngineOptions();
+		RangerPolicyEngineImpl    oldPolicyEngine     = new RangerPolicyEngineImpl("test-reuse", servicePolicies, policyEngineOptions);
+
+		// the updated policy is a copy, as the evaluators of oldPolicyEngine hold the original
+		RangerPolicy updatedPolicy = gsonBuilder.fromJson(gsonBuilder.toJson(testCase.policies.get(0)), RangerPolicy.class);
+
+		updatedPolicy.setVersion(2L);
+
+		List<RangerPolicy> updatedPolicies = new ArrayList<>(testCase.policies);
+
+		updatedPolicies.set(0, updatedPolicy);
+		servicePolicies.setPolicies(updatedPolicies);
+
+		RangerPolicyEngineImpl newPolicyEngine = new RangerPolicyEngineImpl("test-reuse", servicePolicies, policyEngineOptions, oldPolicyEngine);
+
+		for(RangerPolicy policy : updatedPolicies) {
+			RangerPolicyEvaluator oldEvaluator = oldPolicyEngine.getPolicyEvaluator(policy.getId());
+			RangerPolicyEvaluator newEvaluator = newPolicyEngine.getPolicyEvaluator(policy.getId());
+
+			assertNotNull("evaluator not found for policy " + policy.getId(), newEvaluator);
+
+			if(policy == updatedPolicy) {
+				assertNotSame("evaluator reused for updated policy " + policy.getId(), oldEvaluator, newEvaluator);
+			} else {
+				assertSame("evaluator not reused for unchanged policy " + policy.getId(), oldEvaluator, newEvaluator);
+			}
+		}
+
+		// with a different service-def version, no evaluator should be reused
+		RangerServiceDef updatedServiceDef = gsonBuilder.fromJson(gsonBuilder.toJson(testCase.serviceDef), RangerServiceDef.class);
+
+		updatedServiceDef.setVersion(2L);
+		servicePolicies.setServiceDef(updatedServiceDef);
+
+		RangerPolicyEngineImpl rebuiltPolicyEngine = new RangerPolicyEngineImpl("test-reuse", servicePolicies, policyEngineOptions, newPolicyEngine);
+
+		for(RangerPolicy policy : updatedPolicies) {
+			assertNotSame("evaluator reused after service-def update " + policy.getId(), newPolicyEngine.getPolicyEvaluator(policy.getId()), rebuiltPolicyEngine.getPolicyEvaluator(policy.getId()));
+		}
+	}
+
+	@Test
+	public void testPolicyEngine_reorderEvaluatorsByUsage() {
+		InputStream          inStream = this.getClass().getResourceAsStream("/policyengine/test_policyengine_hive.json");
+		PolicyEngineTestCase testCase = gsonBuilder.fromJson(new InputStreamReader(inStream), PolicyEngineTestCase.class);
+
+		String resources = "\"resources\":{\"database\":{\"values\":[\"db1\"]},\"table\":{\"values\":[\"%s\"]},\"column\":{\"values\":[\"*\"]}}";
+		String allowItem = "\"policyItems\":[{\"accesses\":[{\"type\":\"select\",\"isAllowed\":true}],\"users\":[\"%s\"]}]";
+		String denyItem  = "\"denyPolicyItems\":[{\"accesses\":[{\"type\":\"select\",\"isAllowed\":true}],\"users\":[\"%s\"]}]";
+
+		List<RangerPolicy> policies = new ArrayList<>();
+
+		policies.add(gsonBuilder.fromJson("{\"id\":10,\"name\":\"allow-user1\",\"isEnabled\":true,\"isAuditEnabled\":true," + String.format(resources, "*") + "," + String.format(allowItem, "user1") + "}", RangerPolicy.class));
+		policies.add(gsonBuilder.fromJson("{\"id\":11,\"name\":\"allow-user2\",\"isEnabled\":true,\"isAuditEnabled\":true," + String.format(resources, "tbl*") + "," + String.format(allowItem, "user2") + "}", RangerPolicy.class));
+		policies.add(gsonBuilder.fromJson("{\"id\":12,\"name\":\"deny-user3\",\"isEnabled\":true,\"isAuditEnabled\":true," + String.format(resources, "*") + "," + String.format(denyItem, "user3") + "}", RangerPolicy.class));
+
+		ServicePolicies servicePolicies = new ServicePolicies();
+		servicePolicies.setServiceName(testCase.serviceName);
+		servicePolicies.setServiceDef(testCase.serviceDef);
+		servicePolicies.setPolicies(policies);
+
+		RangerPolicyEngineOptions options = new RangerPolicyEngineOptions();
+
+		options.reorderTrieEvaluators = true;
+
+		RangerPolicyEngine policyEngine = new RangerPolicyEngineImpl("test-reorder", servicePolicies, options);
+
+		// after requests from user2, the policy allowing user2 is evaluated right after the policy having deny
+		evaluateRequests(policyEngine, "user2", 10, 11L);
+		policyEngine.reorderPolicyEvaluators();
+		assertEquals(2L, evaluateRequests(policyEngine, "user2", 1, 11L));
+
+		// and after more requests from user1, the policy allowing user1
+		evaluateRequests(policyEngine, "user1", 20, 10L);
+		policyEngine.reorderPolicyEvaluators();
+		assertEquals(2L, evaluateRequests(policyEngine, "user1", 1, 10L));
+		assertEquals(3L, evaluateRequests(policyEngine, "user2", 1, 11L));
+
+		// policy having deny continues to be evaluated first
+		assertEquals(1L, evaluateRequests(policyEngine, "user3", 1, 12L));
+	}
+
+	@Test
+	public void testSiblingResourcesLookup() throws Exception {
+		RangerServiceDef          serviceDef = RangerPolicyEngineBatchBenchmark.getHiveServiceDef();
+		RangerPolicyRepository    repository = new RangerPolicyRepository("test", RangerPolicyEngineBatchBenchmark.createServicePolicies(serviceDef, 1000), new RangerPolicyEngineOptions());
+		List<RangerAccessRequest> requests   = RangerPolicyEngineBatchBenchmark.createColumnRequests(serviceDef, "db1", "tbl1", 200);
+		Object                    groupKey   = RangerSiblingResourcesTrieLookup.getGroupKey(requests.get(0));
+
+		RangerSiblingResourcesTrieLookup<RangerPolicyEvaluator> lookup = repository.getSiblingResourcesLookup(requests.get(0).getResource());
+
+		int matchedCount = 0;
+
+		for (RangerAccessRequest request : requests) {
+			List<RangerPolicyEvaluator> expected = repository.getLikelyMatchPolicyEvaluators(request.getResource());
+			List<RangerPolicyEvaluator> actual   = repository.getLikelyMatchPolicyEvaluators(request.getResource(), lookup);
+
+			assertEquals("group key mismatched for " + request.getResource(), groupKey, RangerSiblingResourcesTrieLookup.getGroupKey(request));
+			assertEquals("evaluators mismatched for " + request.getResource(), new HashSet<>(expected), new HashSet<>(actual));
+
+			matchedCount += actual.size();
+		}
+
+		assertTrue(matchedCount > 0);
+
+		// database and table are looked-up once for all the columns; one request at a time looks-up all 3 levels
+		assertEquals(2 + requests.size(), lookup.getTrieLookupCount());
+	}
+
+	private long evaluateRequests(RangerPolicyEngine policyEngine, String user, int count, long expectedPolicyId) {
+		long ret = 0;
+
+		for (int i = 0; i < count; i++) {
+			RangerAccessResourceImpl resource = new RangerAccessResourceImpl();
+
+			resource.setValue("database", "db1");
+			resource.setValue("table", "tbl1");
+			resource.setValue("column", "col1");
+
+			RangerAccessRequestImpl request = new RangerAccessRequestImpl(resource, "select", user, null);
+
+			policyEngine.preProcess(request);
+
+			RangerAccessResult result = policyEngine.isAccessAllowed(request, null);
+
+			assertEquals("policyId mismatched for " + user, expectedPolicyId, result.getPolicyId());
+
+			ret = result.getEvaluatedPoliciesCount();
+		}
+
+		return ret;
+	}
+
 	private void runTestsFromResourceFiles(String[] resourceNames) {
+		runTestsFromResourceFiles(resourceNames, false);
+	}
+
+	private void runTestsFromResourceFiles(String[] resourceNames, boolean cacheAccessDecisions) {
 		for(String resourceName : resourceNames) {
 			InputStream inStream = this.getClass().getResourceAsStream(resourceName);
 			InputStreamReader reader   = new InputStreamReader(inStream);
 
-			runTests(reader, resourceName);
+			runTests(reader, resourceName, cacheAccessDecisions);
 		}
 	}
 
-	private void runTests(InputStreamReader reader, String testName) {
+	private void runTests(InputStreamReader reader, String testName, boolean cacheAccessDecisions) {
 		PolicyEngineTestCase testCase = gsonBuilder.fromJson(reader, PolicyEngineTestCase.class);
 
 		assertTrue("invalid input: " + testName, testCase != null && testCase.serviceDef != null && testCase.policies != null && testCase.tests != null);
@@ -333,6 +502,7 @@ public class TestPolicyEngine {
 		RangerPolicyEngineOptions policyEngineOptions = new RangerPolicyEngineOptions();
 
 		policyEngineOptions.disableTagPolicyEvaluation = false;
+		policyEngineOptions.cacheAccessDecisions       = cacheAccessDecisions;
 
 		boolean useForwardedIPAddress = RangerConfiguration.getInstance().getBoolean("ranger.plugin.hive.use.x-forwarded-for.ipaddress", false);
 		String trustedProxyAddressString = RangerConfiguration.getInstance().get("ranger.plugin.hive.trusted.proxy.ipaddresses");
@@ -349,7 +519,14 @@ public class TestPolicyEngine {
 
 		RangerAccessRequest request = null;
 
+		List<RangerAccessRequest> batchRequests           = new ArrayList<>();
+		List<TestData>            batchTests              = new ArrayList<>();
+		List<RangerAccessRequest> batchPreProcessRequests = new ArrayList<>(); // to be preprocessed as a batch
+		List<Map<String, Object>> preProcessedContexts    = new ArrayList<>(); // contexts after preprocessing one request at a time
+
 		for(TestData test : testCase.tests) {
+			RangerAccessRequest batchRequest = null;
+
 			request = test.request;
 			if ((requestCount++ % 10) == 1) {
 				policyEngine.reorderPolicyEvaluators();
@@ -420,7 +597,12 @@ public class TestPolicyEngine {
 
 			} else
 			if (!request.getContext().containsKey(RangerAccessRequestUtil.KEY_CONTEXT_REQUESTED_RESOURCES)) {
+				batchRequest = copyRequest(request);
+
 				policyEngine.preProcess(request);
+
+				batchPreProcessRequests.add(batchRequest);
+				preProcessedContexts.add(new HashMap<>(request.getContext()));
 			}
 
 			RangerAccessResultProcessor auditHandler = new RangerDefaultAuditHandler();
@@ -433,6 +615,18 @@ public class TestPolicyEngine {
 				assertEquals("isAllowed mismatched! - " + test.name, expected.getIsAllowed(), result.getIsAllowed());
 				assertEquals("isAudited mismatched! - " + test.name, expected.getIsAudited(), result.getIsAudited());
 				assertEquals("policyId mismatched! - " + test.name, expected.getPolicyId(), result.getPolicyId());
+
+				batchRequests.add(batchRequest != null ? batchRequest : request);
+				batchTests.add(test);
+
+				if(cacheAccessDecisions) { // evaluate again, to get the result from cache
+					result = policyEngine.isAccessAllowed(request, auditHandler);
+
+					assertNotNull("cached result was null! - " + test.name, result);
+					assertEquals("cached isAllowed mismatched! - " + test.name, expected.getIsAllowed(), result.getIsAllowed());
+					assertEquals("cached isAudited mismatched! - " + test.name, expected.getIsAudited(), result.getIsAudited());
+					assertEquals("cached policyId mismatched! - " + test.name, expected.getPolicyId(), result.getPolicyId());
+				}
 			}
 
 			if(test.dataMaskResult != null) {
@@ -466,6 +660,50 @@ public class TestPolicyEngine {
 				assertEquals("deniedGroups mismatched! - " + test.name, expected.getDeniedGroups(), result.getDeniedGroups());
 			}
 		}
+
+		// preprocess copies of requests as a single batch; context should be same as preprocessing one request at a time
+		policyEngine.preProcess(batchPreProcessRequests);
+
+		for(int i = 0; i < batchPreProcessRequests.size(); i++) {
+			assertEquals("batch context mismatched! - " + testName + ", request=" + batchPreProcessRequests.get(i), preProcessedContexts.get(i), batchPreProcessRequests.get(i).getContext());
+		}
+
+		// evaluate all requests again as a single batch; results should be same as evaluating one request at a time
+		List<RangerAccessResult> batchResults = new ArrayList<>(policyEngine.isAccessAllowed(batchRequests, null));
+
+		assertEquals("batch result count mismatched! - " + testName, batchTests.size(), batchResults.size());
+
+		for(int i = 0; i < batchResults.size(); i++) {
+			TestData           test     = batchTests.get(i);
+			RangerAccessResult expected = test.result;
+			RangerAccessResult result   = batchResults.get(i);
+
+			assertNotNull("batch result was null! - " + test.name, result);
+			assertEquals("batch isAllowed mismatched! - " + test.name, expected.getIsAllowed(), result.getIsAllowed());
+			assertEquals("batch isAudited mismatched! - " + test.name, expected.getIsAudited(), result.getIsAudited());
+			assertEquals("batch policyId mismatched! - " + test.name, expected.getPolicyId(), result.getPolicyId());
+		}
+	}
+
+	// returns a copy of the request before preprocessing, with its own resource and context
+	private RangerAccessRequest copyRequest(RangerAccessRequest request) {
+		RangerAccessResource     resource = request.getResource();
+		RangerAccessResourceImpl copy     = new RangerAccessResourceImpl(new HashMap<>(resource.getAsMap()), resource.getOwnerUser());
+		RangerAccessRequestImpl  ret      = new RangerAccessRequestImpl(copy, request.getAccessType(), request.getUser(), request.getUserGroups());
+
+		ret.setAccessTime(request.getAccessTime());
+		ret.setClientIPAddress(request.getClientIPAddress());
+		ret.setRemoteIPAddress(request.getRemoteIPAddress());
+		ret.setForwardedAddresses(request.getForwardedAddresses());
+		ret.setClientType(request.getClientType());
+		ret.setAction(request.getAction());
+		ret.setRequestData(request.getRequestData());
+		ret.setSessionId(request.getSessionId());
+		ret.setClusterName(request.getClusterName());
+		ret.setResourceMatchingScope(request.getResourceMatchingScope());
+		ret.setContext(new HashMap<>(request.getContext()));
+
+		return ret;
 	}
 
 	static class PolicyEngineTestCase {
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyevaluator;
+
+import java.util.Collections;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.policyengine.ConcurrentCacheMap;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.apache.ranger.plugin.policyevaluator.RangerResourceAccessCache.CacheType;
+import org.apache.ranger.plugin.policyevaluator.RangerResourceAccessCache.LookupResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RangerResourceAccessCacheImplTest {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testLookupUpdatesHitAndMissCounts() {
+		RangerPolicy policy = new RangerPolicy();
+
+		policy.setName("test-policy");
+
+		RangerResourceAccessCacheImpl cache = (RangerResourceAccessCacheImpl) RangerResourceAccessCacheImpl.getInstance(new RangerServiceDef(), policy);
+
+		Assert.assertTrue(cache.getMatchedResourceCache() instanceof ConcurrentCacheMap);
+
+		ConcurrentCacheMap<String, String> matchedCache    = (ConcurrentCacheMap<String, String>) cache.getMatchedResourceCache();
+		ConcurrentCacheMap<String, String> notMatchedCache = (ConcurrentCacheMap<String, String>) cache.getNotMatchedResourceCache();
+
+		RangerAccessResourceImpl matched    = createResource("db1");
+		RangerAccessResourceImpl notMatched = createResource("db2");
+
+		Assert.assertEquals(LookupResult.NOT_FOUND, cache.lookup(matched));
+		Assert.assertEquals(1, matchedCache.getMissCount());
+		Assert.assertEquals(1, notMatchedCache.getMissCount());
+
+		cache.add(matched, CacheType.MATCHED_CACHE);
+		cache.add(notMatched, CacheType.NOTMATCHED_CACHE);
+
+		Assert.assertEquals(LookupResult.IN_MATCHED_CACHE, cache.lookup(matched));
+		Assert.assertEquals(LookupResult.IN_NOTMATCHED_CACHE, cache.lookup(notMatched));
+
+		Assert.assertEquals(1, matchedCache.getHitCount());
+		Assert.assertEquals(2, matchedCache.getMissCount());
+		Assert.assertEquals(1, notMatchedCache.getHitCount());
+		Assert.assertEquals(1, notMatchedCache.getMissCount());
+	}
+
+	private static RangerAccessResourceImpl createResource(String database) {
+		RangerServiceDef  serviceDef  = new RangerServiceDef();
+		RangerResourceDef resourceDef = new RangerResourceDef();
+
+		resourceDef.setName("database");
+		serviceDef.setResources(Collections.singletonList(resourceDef));
+
+		RangerAccessResourceImpl ret = new RangerAccessResourceImpl();
+
+		ret.setServiceDef(serviceDef);
+		ret.setValue("database", database);
+
+		return ret;
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.resourcematcher;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class WildcardPatternSetTest {
+
+	@Test
+	public void test_isMatch() {
+		WildcardPatternSet patternSet = new WildcardPatternSet(Arrays.asList("db_*", "tbl_??", "*_tmp", "a*b*c", "**x**"), false);
+
+		Assert.assertTrue(patternSet.isMatch("db_"));
+		Assert.assertTrue(patternSet.isMatch("db_sales"));
+		Assert.assertTrue(patternSet.isMatch("tbl_01"));
+		Assert.assertTrue(patternSet.isMatch("sales_tmp"));
+		Assert.assertTrue(patternSet.isMatch("abc"));
+		Assert.assertTrue(patternSet.isMatch("aXbYbZc"));
+		Assert.assertTrue(patternSet.isMatch("x"));
+
+		Assert.assertFalse(patternSet.isMatch(null));
+		Assert.assertFalse(patternSet.isMatch(""));
+		Assert.assertFalse(patternSet.isMatch("DB_sales"));
+		Assert.assertFalse(patternSet.isMatch("tbl_1"));
+		Assert.assertFalse(patternSet.isMatch("tbl_001"));
+		Assert.assertFalse(patternSet.isMatch("sales_tmp2"));
+		Assert.assertFalse(patternSet.isMatch("acb"));
+	}
+
+	@Test
+	public void test_isMatchIgnoreCase() {
+		WildcardPatternSet patternSet = new WildcardPatternSet(Arrays.asList("DB_*", "tést?", "Å*"), true);
+
+		Assert.assertTrue(patternSet.isMatch("db_sales"));
+		Assert.assertTrue(patternSet.isMatch("Db_Sales"));
+		Assert.assertTrue(patternSet.isMatch("TÉST1"));
+		Assert.assertTrue(patternSet.isMatch("ångström"));
+
+		Assert.assertFalse(patternSet.isMatch("test1"));
+		Assert.assertFalse(patternSet.isMatch("xdb_sales"));
+	}
+
+	@Test
+	public void test_longPatterns() {
+		String longPattern = StringUtils.repeat("ab?", 30) + "*";
+		String longValue   = StringUtils.repeat("abc", 30) + "tail";
+
+		WildcardPatternSet patternSet = new WildcardPatternSet(Arrays.asList("short*", longPattern), false);
+
+		Assert.assertTrue(patternSet.isMatch("short1"));
+		Assert.assertTrue(patternSet.isMatch(longValue));
+		Assert.assertFalse(patternSet.isMatch("x" + longValue));
+		Assert.assertTrue(patternSet.isPathPrefixMatch(longValue + "/a/b", '/'));
+	}
+
+	@Test
+	public void test_manyPatterns() {
+		List<String> patterns = new ArrayList<>();
+
+		for (int i = 0; i < 100; i++) {
+			patterns.add("db" + i + "_*");
+		}
+
+		WildcardPatternSet patternSet = new WildcardPatternSet(patterns, false);
+
+		for (int i = 0; i < 100; i++) {
+			Assert.assertTrue(patternSet.isMatch("db" + i + "_sales"));
+		}
+
+		Assert.assertFalse(patternSet.isMatch("db100_sales"));
+	}
+
+	@Test
+	public void test_isPathPrefixMatch() {
+		WildcardPatternSet patternSet = new WildcardPatternSet(Arrays.asList("/app/*/test", "/data/d?"), false);
+
+		Assert.assertTrue(patternSet.isPathPrefixMatch("/app/hive/test", '/'));
+		Assert.assertTrue(patternSet.isPathPrefixMatch("/app/hive/test/db1/tbl1", '/'));
+		Assert.assertTrue(patternSet.isPathPrefixMatch("/app/hive/warehouse/test", '/'));
+		Assert.assertTrue(patternSet.isPathPrefixMatch("/data/d1/file", '/'));
+
+		Assert.assertFalse(patternSet.isPathPrefixMatch("/app/hive/", '/'));
+		Assert.assertFalse(patternSet.isPathPrefixMatch("/app/hive/tests", '/'));
+		Assert.assertFalse(patternSet.isPathPrefixMatch("/data/d10/file", '/'));
+		Assert.assertFalse(patternSet.isPathPrefixMatch(null, '/'));
+
+		// patterns that are not compiled, like values with tokens replaced for the request
+		Assert.assertTrue(WildcardPatternSet.isPathPrefixMatch("/app/hive/test/db1", "/app/*/test", false, '/'));
+		Assert.assertTrue(WildcardPatternSet.isPathPrefixMatch("/APP/hive/test", "/app/*/test", true, '/'));
+		Assert.assertTrue(WildcardPatternSet.isPathPrefixMatch("/data/d1/file", "/data/d?", false, '/'));
+		Assert.assertFalse(WildcardPatternSet.isPathPrefixMatch("/app/hive/tests", "/app/*/test", false, '/'));
+		Assert.assertFalse(WildcardPatternSet.isPathPrefixMatch("/APP/hive/test", "/app/*/test", false, '/'));
+		Assert.assertFalse(WildcardPatternSet.isPathPrefixMatch("/app/hive/test", null, false, '/'));
+	}
+
+	@Test
+	public void test_sameAsFilenameUtils() {
+		String[] patterns = { "", "*", "?", "*?", "?*", "a*?c", "*a*", "a?c*", "**", "*.*", "a*b?c*d" };
+		String[] values   = { "", "a", "A", "ab", "abc", "aBc", "abbcd", "abxcyd", "a.b", ".", "xyz" };
+
+		for (String pattern : patterns) {
+			for (boolean ignoreCase : new boolean[] { false, true }) {
+				WildcardPatternSet patternSet = new WildcardPatternSet(Collections.singletonList(pattern), ignoreCase);
+
+				for (String value : values) {
+					boolean expected = FilenameUtils.wildcardMatch(value, pattern, ignoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE);
+					String  message  = "pattern=" + pattern + ", value=" + value + ", ignoreCase=" + ignoreCase;
+
+					Assert.assertEquals(message, expected, patternSet.isMatch(value));
+					Assert.assertEquals(message, expected, WildcardPatternSet.isMatch(value, pattern, ignoreCase));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void test_combineWildcardMatchers() {
+		List<ResourceMatcher> matchers = new ArrayList<>();
+
+		matchers.add(new CaseSensitiveStringMatcher("finance"));
+		matchers.add(new CaseSensitiveWildcardMatcher("db_*"));
+		matchers.add(new CaseInsensitiveWildcardMatcher("HR_*"));
+		matchers.add(new CaseSensitiveWildcardMatcher("*_tmp"));
+		matchers.add(new CaseSensitiveWildcardMatcher("tbl_??"));
+
+		RangerAbstractResourceMatcher.combineWildcardMatchers(matchers);
+
+		Assert.assertEquals(3, matchers.size());
+
+		ResourceMatcher combined = matchers.get(2);
+
+		Assert.assertTrue(combined instanceof CaseSensitiveWildcardMatcher);
+		Assert.assertTrue(combined.isMatch("db_sales", null));
+		Assert.assertTrue(combined.isMatch("sales_tmp", null));
+		Assert.assertTrue(combined.isMatch("tbl_01", null));
+		Assert.assertFalse(combined.isMatch("hr_payroll", null));
+		Assert.assertTrue(matchers.get(1).isMatch("hr_payroll", null));
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RangerPrincipalDictionaryTest {
+
+	@Test
+	public void test_ids() {
+		RangerPrincipalDictionary dictionary = new RangerPrincipalDictionary();
+
+		int[] userIds  = dictionary.addUsers(Arrays.asList("user1", "user2", null));
+		int[] groupIds = dictionary.addGroups(Arrays.asList("group2", "group1"));
+
+		Assert.assertEquals(2, userIds.length);
+		Assert.assertEquals(2, groupIds.length);
+		Assert.assertNull(dictionary.addUsers(null));
+
+		// ids of names already added are reused
+		Assert.assertArrayEquals(userIds, dictionary.addUsers(Arrays.asList("user2", "user1")));
+		Assert.assertEquals(2, dictionary.getUserCount());
+		Assert.assertEquals(2, dictionary.getGroupCount());
+
+		Assert.assertTrue(RangerPrincipalDictionary.contains(userIds, dictionary.getUserId("user1")));
+		Assert.assertFalse(RangerPrincipalDictionary.contains(userIds, dictionary.getUserId("user3")));
+		Assert.assertFalse(RangerPrincipalDictionary.contains(userIds, dictionary.getUserId(null)));
+
+		// groups not referenced in policies have no id
+		Assert.assertEquals(1, dictionary.getGroupIds(Arrays.asList("group1", "group3")).length);
+		Assert.assertEquals(0, dictionary.getGroupIds(null).length);
+	}
+
+	@Test
+	public void test_containsAny() {
+		Assert.assertTrue(RangerPrincipalDictionary.containsAny(new int[] { 1, 5, 9 }, new int[] { 9 }));
+		Assert.assertTrue(RangerPrincipalDictionary.containsAny(new int[] { 2 }, new int[] { 0, 1, 2, 3, 4 }));
+		Assert.assertFalse(RangerPrincipalDictionary.containsAny(new int[] { 1, 5, 9 }, new int[] { 2, 4 }));
+		Assert.assertFalse(RangerPrincipalDictionary.containsAny(new int[0], new int[] { 1 }));
+	}
+
+	@Test
+	public void test_principalIds() {
+		RangerPrincipalDictionary dictionary = new RangerPrincipalDictionary();
+		Set<String>               groups     = new HashSet<>(Arrays.asList("group1", "group2"));
+
+		int[] policyGroupIds = dictionary.addGroups(Arrays.asList("group2"));
+
+		RangerPrincipalDictionary.PrincipalIds principalIds = dictionary.getPrincipalIds("user1", groups);
+
+		Assert.assertEquals(RangerPrincipalDictionary.UNKNOWN_ID, principalIds.getUserId());
+		Assert.assertTrue(RangerPrincipalDictionary.containsAny(policyGroupIds, principalIds.getGroupIds()));
+		Assert.assertTrue(principalIds.isFor(dictionary, "user1", groups));
+		Assert.assertFalse(principalIds.isFor(new RangerPrincipalDictionary(), "user1", groups));
+		Assert.assertFalse(principalIds.isFor(dictionary, "user1", new HashSet<>(groups)));
+
+		// ids computed before a name was added don't include it
+		dictionary.addGroups(Arrays.asList("group1"));
+
+		Assert.assertFalse(principalIds.isFor(dictionary, "user1", groups));
+	}
+
+	@Test
+	public void test_isOversizedFor() {
+		RangerPrincipalDictionary dictionary = new RangerPrincipalDictionary();
+		List<String>              users      = new ArrayList<>();
+
+		for (int i = 0; i < 3000; i++) {
+			users.add("user" + i);
+		}
+
+		dictionary.addUsers(users);
+
+		Assert.assertFalse(dictionary.isOversizedFor(createServicePolicies(users.subList(0, 1500))));
+		Assert.assertTrue(dictionary.isOversizedFor(createServicePolicies(users.subList(0, 1499))));
+
+		// small dictionaries are not rebuilt
+		RangerPrincipalDictionary small = new RangerPrincipalDictionary();
+
+		small.addUsers(users.subList(0, 999));
+
+		Assert.assertFalse(small.isOversizedFor(createServicePolicies(Collections.<String>emptyList())));
+	}
+
+	private static ServicePolicies createServicePolicies(List<String> users) {
+		RangerPolicyItem policyItem = new RangerPolicyItem();
+		RangerPolicy     policy     = new RangerPolicy();
+		ServicePolicies  ret        = new ServicePolicies();
+
+		policyItem.setUsers(new ArrayList<>(users));
+		policy.setPolicyItems(Collections.singletonList(policyItem));
+		ret.setPolicies(Collections.singletonList(policy));
+
+		return ret;
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.junit.Test;
+
+public class TestServicePolicies {
+
+	@Test
+	public void testApplyDelta() {
+		RangerPolicy p1 = createPolicy(1L, 1L);
+		RangerPolicy p2 = createPolicy(2L, 1L);
+		RangerPolicy p3 = createPolicy(3L, 1L);
+		RangerPolicy t1 = createPolicy(11L, 1L);
+
+		ServicePolicies policies = createServicePolicies(5L, Arrays.asList(p1, p2, p3), Arrays.asList(t1));
+
+		RangerPolicy p2Updated = createPolicy(2L, 2L);
+		RangerPolicy p4        = createPolicy(4L, 1L);
+		RangerPolicy t2        = createPolicy(12L, 1L);
+
+		ServicePolicies delta = createServicePolicies(7L, Arrays.asList(p2Updated, p4), Arrays.asList(t2));
+
+		delta.setPolicyDeltaBaseVersion(5L);
+		delta.setDeletedPolicyIds(Arrays.asList(3L, 11L));
+
+		assertTrue(delta.isPolicyDelta());
+		assertFalse(policies.isPolicyDelta());
+
+		ServicePolicies result = ServicePolicies.applyDelta(policies, delta);
+
+		assertEquals(Long.valueOf(7L), result.getPolicyVersion());
+		assertFalse(result.isPolicyDelta());
+		assertEquals(Arrays.asList(p1, p2Updated, p4), result.getPolicies());
+		assertEquals(Arrays.asList(t2), result.getTagPolicies().getPolicies());
+
+		// policies given to applyDelta() must not be modified
+		assertEquals(Arrays.asList(p1, p2, p3), policies.getPolicies());
+		assertSame(t1, policies.getTagPolicies().getPolicies().get(0));
+	}
+
+	@Test
+	public void testApplyDeltaToDifferentVersion() {
+		ServicePolicies policies = createServicePolicies(5L, Arrays.asList(createPolicy(1L, 1L)), null);
+		ServicePolicies delta    = createServicePolicies(7L, new ArrayList<RangerPolicy>(), null);
+
+		delta.setPolicyDeltaBaseVersion(6L);
+
+		assertNull(ServicePolicies.applyDelta(policies, delta));
+		assertNull(ServicePolicies.applyDelta(null, delta));
+		assertNull(ServicePolicies.applyDelta(policies, policies));
+	}
+
+	private static RangerPolicy createPolicy(Long id, Long version) {
+		RangerPolicy ret = new RangerPolicy();
+
+		ret.setId(id);
+		ret.setVersion(version);
+		ret.setName("policy-" + id);
+
+		return ret;
+	}
+
+	private static ServicePolicies createServicePolicies(Long policyVersion, List<RangerPolicy> policies, List<RangerPolicy> tagPolicies) {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName("dev_hive");
+		ret.setPolicyVersion(policyVersion);
+		ret.setPolicies(policies);
+
+		if (tagPolicies != null) {
+			ServicePolicies.TagPolicies tagPoliciesObj = new ServicePolicies.TagPolicies();
+
+			tagPoliciesObj.setServiceName("dev_tag");
+			tagPoliciesObj.setPolicyVersion(policyVersion);
+			tagPoliciesObj.setPolicies(tagPolicies);
+
+			ret.setTagPolicies(tagPoliciesObj);
+		}
+
+		return ret;
+	}
+}
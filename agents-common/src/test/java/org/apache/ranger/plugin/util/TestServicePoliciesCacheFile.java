@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+public class TestServicePoliciesCacheFile {
+	private final Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+
+	private File cacheFile;
+
+	@Before
+	public void setUp() throws IOException {
+		cacheFile = File.createTempFile("ranger-policy-cache", ".cache");
+	}
+
+	@After
+	public void tearDown() {
+		cacheFile.delete();
+	}
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		ServicePolicies policies = createServicePolicies(1000);
+
+		ServicePoliciesCacheFile.write(policies, cacheFile, gson);
+
+		assertTrue(ServicePoliciesCacheFile.isCacheFile(cacheFile));
+
+		ServicePolicies loaded = ServicePoliciesCacheFile.read(cacheFile, gson);
+
+		assertEquals(policies.getServiceName(), loaded.getServiceName());
+		assertEquals(policies.getPolicyVersion(), loaded.getPolicyVersion());
+		assertEquals(policies.getPolicies().size(), loaded.getPolicies().size());
+		assertEquals(gson.toJson(policies), gson.toJson(loaded));
+	}
+
+	@Test
+	public void testCorruptedFile() throws IOException {
+		ServicePoliciesCacheFile.write(createServicePolicies(10), cacheFile, gson);
+
+		try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw")) {
+			long pos = raf.length() - 10;
+
+			raf.seek(pos);
+			int b = raf.read();
+			raf.seek(pos);
+			raf.write(b ^ 0xFF);
+		}
+
+		try {
+			ServicePoliciesCacheFile.read(cacheFile, gson);
+
+			fail("corrupted cache file must not be loaded");
+		} catch (IOException excp) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testJsonFileIsNotCacheFile() throws IOException {
+		try (FileWriter writer = new FileWriter(cacheFile)) {
+			gson.toJson(createServicePolicies(1), writer);
+		}
+
+		assertFalse(ServicePoliciesCacheFile.isCacheFile(cacheFile));
+	}
+
+	private static ServicePolicies createServicePolicies(int policyCount) {
+		ServicePolicies    ret      = new ServicePolicies();
+		List<RangerPolicy> policies = new ArrayList<>();
+
+		for (long i = 1; i <= policyCount; i++) {
+			RangerPolicy policy = new RangerPolicy();
+
+			policy.setId(i);
+			policy.setVersion(1L);
+			policy.setName("policy-" + i);
+			policy.setService("dev_hive");
+
+			policies.add(policy);
+		}
+
+		ret.setServiceName("dev_hive");
+		ret.setPolicyVersion(10L);
+		ret.setPolicies(policies);
+
+		return ret;
+	}
+}
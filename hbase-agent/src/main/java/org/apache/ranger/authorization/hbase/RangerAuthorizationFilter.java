@@ -21,6 +21,7 @@ package org.apache.ranger.authorization.hbase;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -28,7 +29,6 @@ import com.google.common.base.Objects;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hbase.Cell;
-import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.filter.FilterBase;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.ranger.audit.model.AuthzAuditEvent;
@@ -43,6 +43,11 @@ public class RangerAuthorizationFilter extends FilterBase {
 	final AuthorizationSession _session;
 	final HbaseAuditHandler _auditHandler = HbaseFactory.getInstance().getAuditHandler();
 
+	// decisions made in this scan, keyed by family/column bytes; a filter instance is used by only one scanner at a time
+	static final int MAX_CACHED_COLUMN_DECISIONS = 10000;
+	final Map<ColumnKey, ReturnCode> _columnDecisions = new HashMap<ColumnKey, ReturnCode>();
+	final ColumnKey _lookupKey = new ColumnKey();
+
 	public RangerAuthorizationFilter(AuthorizationSession session, Set<String> familiesAccessAllowed, Set<String> familiesAccessDenied, Set<String> familiesAccessIndeterminate,
 									 Map<String, Set<String>> columnsAccessAllowed) {
 		// the class assumes that all of these can be empty but none of these can be null
@@ -63,18 +68,41 @@ public class RangerAuthorizationFilter extends FilterBase {
 			LOG.debug("==> filterKeyValue");
 		}
 
+		_lookupKey.set(kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength(), kv.getQualifierArray(), kv.getQualifierOffset(), kv.getQualifierLength());
+
+		ReturnCode result = _columnDecisions.get(_lookupKey);
+
+		if (result == null) {
+			result = evaluate(kv);
+
+			if (_columnDecisions.size() < MAX_CACHED_COLUMN_DECISIONS) {
+				_columnDecisions.put(_lookupKey.copy(), result);
+			}
+		} else if (LOG.isDebugEnabled()) {
+			LOG.debug("filterKeyValue: found in column decision cache of this scan.");
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("filterKeyValue: " + result);
+		}
+		return result;
+	}
+
+	/*
+	 * Evaluates access to the family/column of the cell. Called once per family/column in a scan, hence the audit event,
+	 * if any, is logged once per column per scan
+	 */
+	ReturnCode evaluate(Cell kv) {
 		String family = null;
-		byte[] familyBytes = CellUtil.cloneFamily(kv);
-		if (familyBytes != null && familyBytes.length > 0) {
-			family = Bytes.toString(familyBytes);
+		if (kv.getFamilyLength() > 0) {
+			family = Bytes.toString(kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength());
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("filterKeyValue: evaluating family[" + family + "].");
 			}
 		}
 		String column = null;
-		byte[] qualifier = CellUtil.cloneQualifier(kv);
-                if (qualifier != null && qualifier.length > 0) {
-			column = Bytes.toString(qualifier);
+		if (kv.getQualifierLength() > 0) {
+			column = Bytes.toString(kv.getQualifierArray(), kv.getQualifierOffset(), kv.getQualifierLength());
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("filterKeyValue: evaluating column[" + column + "].");
 			}
@@ -127,9 +155,6 @@ public class RangerAuthorizationFilter extends FilterBase {
 				LOG.debug("filterKeyValue: Access denied.  Denial not audited.");
 			}
 		}
-		if (LOG.isDebugEnabled()) {
-			LOG.debug("filterKeyValue: " + result);
-		}
 		return result;
 	}
 
@@ -144,4 +169,69 @@ public class RangerAuthorizationFilter extends FilterBase {
 
 	}
 
+	/*
+	 * family/column of a cell, referring to the bytes in the cell. Only copies, which own their bytes, are added to the cache
+	 */
+	static final class ColumnKey {
+		private byte[] familyArray;
+		private int    familyOffset;
+		private int    familyLength;
+		private byte[] qualifierArray;
+		private int    qualifierOffset;
+		private int    qualifierLength;
+		private int    hashCode;
+
+		void set(byte[] familyArray, int familyOffset, int familyLength, byte[] qualifierArray, int qualifierOffset, int qualifierLength) {
+			this.familyArray     = familyArray;
+			this.familyOffset    = familyOffset;
+			this.familyLength    = familyLength;
+			this.qualifierArray  = qualifierArray;
+			this.qualifierOffset = qualifierOffset;
+			this.qualifierLength = qualifierLength;
+			this.hashCode        = 31 * Bytes.hashCode(familyArray, familyOffset, familyLength) + Bytes.hashCode(qualifierArray, qualifierOffset, qualifierLength);
+		}
+
+		ColumnKey copy() {
+			ColumnKey ret = new ColumnKey();
+
+			byte[] family    = new byte[familyLength];
+			byte[] qualifier = new byte[qualifierLength];
+
+			if (familyLength > 0) {
+				System.arraycopy(familyArray, familyOffset, family, 0, familyLength);
+			}
+			if (qualifierLength > 0) {
+				System.arraycopy(qualifierArray, qualifierOffset, qualifier, 0, qualifierLength);
+			}
+
+			ret.familyArray     = family;
+			ret.familyLength    = familyLength;
+			ret.qualifierArray  = qualifier;
+			ret.qualifierLength = qualifierLength;
+			ret.hashCode        = hashCode;
+
+			return ret;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ColumnKey)) {
+				return false;
+			}
+
+			ColumnKey other = (ColumnKey) obj;
+
+			return hashCode == other.hashCode
+					&& Bytes.equals(familyArray, familyOffset, familyLength, other.familyArray, other.familyOffset, other.familyLength)
+					&& Bytes.equals(qualifierArray, qualifierOffset, qualifierLength, other.qualifierArray, other.qualifierOffset, other.qualifierLength);
+		}
+	}
 }
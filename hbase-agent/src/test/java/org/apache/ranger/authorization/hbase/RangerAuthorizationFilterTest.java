@@ -21,6 +21,8 @@ package org.apache.ranger.authorization.hbase;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
@@ -98,6 +100,37 @@ public class RangerAuthorizationFilterTest {
 		}
 	}
 
+	@Test
+	public void testFilterKeyValueCell_authorizesColumnOncePerScan() throws IOException {
+		Set<String> familiesAccessAllowed = ImmutableSet.of("family1");
+		Set<String> familiesAccessIndeterminate = ImmutableSet.of("family2");
+		Set<String> emptySet = ImmutableSet.of();
+		Map<String, Set<String>> columnsAccessAllowed = new HashMap<String, Set<String>>();
+
+		AuthorizationSession session = createSessionMock();
+		when(session.isAuthorized()).thenReturn(true);
+		RangerAuthorizationFilter filter = new RangerAuthorizationFilter(session, familiesAccessAllowed, emptySet, familiesAccessIndeterminate, columnsAccessAllowed);
+
+		Cell aCell = mock(Cell.class);
+		for (int row = 0; row < 100; row++) {
+			for (String family : new String[] { "family1", "family2" }) {
+				// family/column bytes at different offsets in each cell, like cells of different rows
+				byte[] familyBytes = ("row" + row + family).getBytes();
+				when(aCell.getFamilyArray()).thenReturn(familyBytes);
+				when(aCell.getFamilyOffset()).thenReturn(familyBytes.length - family.length());
+				when(aCell.getFamilyLength()).thenReturn((byte) family.length());
+
+				for (String column : new String[] { "column1", "column2" }) {
+					setQualifierArray(aCell, column.getBytes());
+					assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(aCell));
+				}
+			}
+		}
+
+		// one authorization per family/column in the scan
+		verify(session, times(4)).authorize();
+	}
+
 	private void setFamilyArray(Cell aCell, byte[] familyArray) {
 		when(aCell.getFamilyArray()).thenReturn(familyArray);
 		when(aCell.getFamilyLength()).thenReturn((byte) familyArray.length);
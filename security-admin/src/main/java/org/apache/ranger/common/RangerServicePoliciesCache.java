@@ -23,30 +23,44 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.store.ServiceStore;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.plugin.util.ServicePolicies;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
 
 public class RangerServicePoliciesCache {
 	private static final Log LOG = LogFactory.getLog(RangerServicePoliciesCache.class);
 
 	private static final int MAX_WAIT_TIME_FOR_UPDATE = 10;
+	private static final int DEFAULT_POLICY_DELTA_LOG_SIZE = 10;
 
 	private static volatile RangerServicePoliciesCache sInstance = null;
 	private final boolean useServicePoliciesCache;
 	private final int waitTimeInSeconds;
+	private final int policyDeltaLogSize;
+	private final boolean compressServicePolicies;
 
-	private final Map<String, ServicePoliciesWrapper> servicePoliciesMap = new HashMap<String, ServicePoliciesWrapper>();
+	// per-service wrappers; loading policies of a service locks only its wrapper, hence doesn't block requests for other services
+	private final ConcurrentMap<String, ServicePoliciesWrapper> servicePoliciesMap = new ConcurrentHashMap<String, ServicePoliciesWrapper>();
 
 	public static RangerServicePoliciesCache getInstance() {
 		if (sInstance == null) {
@@ -62,24 +76,21 @@ public class RangerServicePoliciesCache {
 	private RangerServicePoliciesCache() {
 		useServicePoliciesCache = RangerConfiguration.getInstance().getBoolean("ranger.admin.policy.download.usecache", true);
 		waitTimeInSeconds = RangerConfiguration.getInstance().getInt("ranger.admin.policy.download.cache.max.waittime.for.update", MAX_WAIT_TIME_FOR_UPDATE);
+		policyDeltaLogSize = RangerConfiguration.getInstance().getInt("ranger.admin.policy.download.delta.log.size", DEFAULT_POLICY_DELTA_LOG_SIZE);
+		compressServicePolicies = RangerConfiguration.getInstance().getBoolean("ranger.admin.policy.download.compress", true);
 	}
 
 	public void dump() {
 
 		if (useServicePoliciesCache) {
-			Set<String> serviceNames = null;
-
-			synchronized (this) {
-				serviceNames = servicePoliciesMap.keySet();
-			}
+			Set<String> serviceNames = servicePoliciesMap.keySet();
 
 			if (CollectionUtils.isNotEmpty(serviceNames)) {
 				ServicePoliciesWrapper cachedServicePoliciesWrapper = null;
 
 				for (String serviceName : serviceNames) {
-					synchronized (this) {
-						cachedServicePoliciesWrapper = servicePoliciesMap.get(serviceName);
-					}
+					cachedServicePoliciesWrapper = servicePoliciesMap.get(serviceName);
+
 					if (LOG.isDebugEnabled()) {
 						LOG.debug("serviceName:" + serviceName + ", Cached-MetaData:" + cachedServicePoliciesWrapper);
 					}
@@ -115,28 +126,7 @@ public class RangerServicePoliciesCache {
 					LOG.error("getServicePolicies(" + serviceName + "): failed to get latest policies as service-store is null!");
 				}
 			} else {
-				ServicePoliciesWrapper servicePoliciesWrapper = null;
-
-				synchronized (this) {
-					servicePoliciesWrapper = servicePoliciesMap.get(serviceName);
-
-					if (servicePoliciesWrapper != null) {
-						if (!serviceId.equals(servicePoliciesWrapper.getServiceId())) {
-							if (LOG.isDebugEnabled()) {
-								LOG.debug("Service [" + serviceName + "] changed service-id from " + servicePoliciesWrapper.getServiceId()
-										+ " to " + serviceId);
-								LOG.debug("Recreating servicePoliciesWrapper for serviceName [" + serviceName + "]");
-							}
-							servicePoliciesMap.remove(serviceName);
-							servicePoliciesWrapper = null;
-						}
-					}
-
-					if (servicePoliciesWrapper == null) {
-						servicePoliciesWrapper = new ServicePoliciesWrapper(serviceId);
-						servicePoliciesMap.put(serviceName, servicePoliciesWrapper);
-					}
-				}
+				ServicePoliciesWrapper servicePoliciesWrapper = getServicePoliciesWrapper(serviceName, serviceId);
 
 				if (serviceStore != null) {
 					boolean refreshed = servicePoliciesWrapper.getLatestOrCached(serviceName, serviceStore);
@@ -164,13 +154,325 @@ public class RangerServicePoliciesCache {
 		return ret;
 	}
 
+	private ServicePoliciesWrapper getServicePoliciesWrapper(String serviceName, Long serviceId) {
+		ServicePoliciesWrapper ret = servicePoliciesMap.get(serviceName);
+
+		while (ret == null || !serviceId.equals(ret.getServiceId())) {
+			if (ret == null) {
+				ServicePoliciesWrapper newWrapper = new ServicePoliciesWrapper(serviceId);
+
+				ret = servicePoliciesMap.putIfAbsent(serviceName, newWrapper);
+
+				if (ret == null) {
+					ret = newWrapper;
+				}
+			} else {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Service [" + serviceName + "] changed service-id from " + ret.getServiceId() + " to " + serviceId);
+					LOG.debug("Recreating servicePoliciesWrapper for serviceName [" + serviceName + "]");
+				}
+
+				ServicePoliciesWrapper newWrapper = new ServicePoliciesWrapper(serviceId);
+
+				ret = servicePoliciesMap.replace(serviceName, ret, newWrapper) ? newWrapper : servicePoliciesMap.get(serviceName);
+			}
+		}
+
+		return ret;
+	}
+
+	/*
+	 * Returns policies added, updated or deleted since lastKnownVersion, as compared to servicePolicies - which should be
+	 * the latest policies returned by getServicePolicies(). Returns null if deltas are not available for lastKnownVersion,
+	 * in which case all policies should be returned to the caller
+	 */
+	public ServicePolicies getServicePolicyDeltas(String serviceName, Long lastKnownVersion, ServicePolicies servicePolicies) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerServicePoliciesCache.getServicePolicyDeltas(" + serviceName + ", " + lastKnownVersion + ")");
+		}
+
+		ServicePolicies ret = null;
+
+		if (useServicePoliciesCache && policyDeltaLogSize > 0 && lastKnownVersion != null && lastKnownVersion != -1 && servicePolicies != null) {
+			ServicePoliciesWrapper servicePoliciesWrapper;
+
+			servicePoliciesWrapper = servicePoliciesMap.get(serviceName);
+
+			if (servicePoliciesWrapper != null) {
+				ret = servicePoliciesWrapper.getPolicyDeltas(lastKnownVersion, servicePolicies);
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerServicePoliciesCache.getServicePolicyDeltas(" + serviceName + ", " + lastKnownVersion + "): " + (ret == null ? "not available" : ("changedPolicies=" + (ret.getPolicies() == null ? 0 : ret.getPolicies().size()) + ", deletedPolicies=" + ret.getDeletedPolicyIds().size())));
+		}
+
+		return ret;
+	}
+
+	/*
+	 * Returns servicePolicies without disabled policies, as sent to plugins. For servicePolicies returned earlier by
+	 * getServicePolicies(), the result is computed once per policy-version and reused for all downloads
+	 */
+	public ServicePolicies getServicePoliciesForDownload(String serviceName, ServicePolicies servicePolicies) {
+		ServicePolicies ret = null;
+
+		if (useServicePoliciesCache && servicePolicies != null) {
+			ServicePoliciesWrapper servicePoliciesWrapper;
+
+			servicePoliciesWrapper = servicePoliciesMap.get(serviceName);
+
+			DownloadablePolicies downloadablePolicies = servicePoliciesWrapper != null ? servicePoliciesWrapper.downloadablePolicies : null;
+
+			if (downloadablePolicies != null && downloadablePolicies.source == servicePolicies) {
+				ret = downloadablePolicies.policies;
+			}
+		}
+
+		if (ret == null) {
+			ret = filterServicePolicies(servicePolicies);
+		}
+
+		return ret;
+	}
+
+	/*
+	 * Returns gzip compressed JSON of servicePolicies, if servicePolicies is the latest returned by
+	 * getServicePoliciesForDownload() for the service; otherwise returns null
+	 */
+	public byte[] getCompressedServicePolicies(ServicePolicies servicePolicies) {
+		byte[] ret = null;
+
+		if (useServicePoliciesCache && compressServicePolicies && servicePolicies != null && servicePolicies.getServiceName() != null) {
+			ServicePoliciesWrapper servicePoliciesWrapper;
+
+			servicePoliciesWrapper = servicePoliciesMap.get(servicePolicies.getServiceName());
+
+			DownloadablePolicies downloadablePolicies = servicePoliciesWrapper != null ? servicePoliciesWrapper.downloadablePolicies : null;
+
+			if (downloadablePolicies != null && downloadablePolicies.policies == servicePolicies) {
+				ret = downloadablePolicies.compressedJson;
+			}
+		}
+
+		return ret;
+	}
+
+	public static ServicePolicies filterServicePolicies(ServicePolicies servicePolicies) {
+		ServicePolicies ret = null;
+		boolean containsDisabledResourcePolicies = false;
+		boolean containsDisabledTagPolicies = false;
+
+		if (servicePolicies != null) {
+			List<RangerPolicy> policies = null;
+
+			policies = servicePolicies.getPolicies();
+			if (CollectionUtils.isNotEmpty(policies)) {
+				for (RangerPolicy policy : policies) {
+					if (!policy.getIsEnabled()) {
+						containsDisabledResourcePolicies = true;
+						break;
+					}
+				}
+			}
+
+			if (servicePolicies.getTagPolicies() != null) {
+				policies = servicePolicies.getTagPolicies().getPolicies();
+				if (CollectionUtils.isNotEmpty(policies)) {
+					for (RangerPolicy policy : policies) {
+						if (!policy.getIsEnabled()) {
+							containsDisabledTagPolicies = true;
+							break;
+						}
+					}
+				}
+			}
+
+			if (!containsDisabledResourcePolicies && !containsDisabledTagPolicies) {
+				ret = servicePolicies;
+			} else {
+				ret = new ServicePolicies();
+
+				ret.setServiceDef(servicePolicies.getServiceDef());
+				ret.setServiceId(servicePolicies.getServiceId());
+				ret.setServiceName(servicePolicies.getServiceName());
+				ret.setPolicyVersion(servicePolicies.getPolicyVersion());
+				ret.setPolicyUpdateTime(servicePolicies.getPolicyUpdateTime());
+				ret.setPolicies(servicePolicies.getPolicies());
+				ret.setTagPolicies(servicePolicies.getTagPolicies());
+
+				if (containsDisabledResourcePolicies) {
+					List<RangerPolicy> filteredPolicies = new ArrayList<RangerPolicy>();
+					for (RangerPolicy policy : servicePolicies.getPolicies()) {
+						if (policy.getIsEnabled()) {
+							filteredPolicies.add(policy);
+						}
+					}
+					ret.setPolicies(filteredPolicies);
+				}
+
+				if (containsDisabledTagPolicies) {
+					ServicePolicies.TagPolicies tagPolicies = new ServicePolicies.TagPolicies();
+
+					tagPolicies.setServiceDef(servicePolicies.getTagPolicies().getServiceDef());
+					tagPolicies.setServiceId(servicePolicies.getTagPolicies().getServiceId());
+					tagPolicies.setServiceName(servicePolicies.getTagPolicies().getServiceName());
+					tagPolicies.setPolicyVersion(servicePolicies.getTagPolicies().getPolicyVersion());
+					tagPolicies.setPolicyUpdateTime(servicePolicies.getTagPolicies().getPolicyUpdateTime());
+
+					List<RangerPolicy> filteredPolicies = new ArrayList<RangerPolicy>();
+					for (RangerPolicy policy : servicePolicies.getTagPolicies().getPolicies()) {
+						if (policy.getIsEnabled()) {
+							filteredPolicies.add(policy);
+						}
+					}
+					tagPolicies.setPolicies(filteredPolicies);
+
+					ret.setTagPolicies(tagPolicies);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	/*
+	 * Policies sent to plugins for a policy-version, along with their serialized form
+	 */
+	private static class DownloadablePolicies {
+		final ServicePolicies source;
+		final ServicePolicies policies;
+		final byte[]          compressedJson;
+
+		DownloadablePolicies(ServicePolicies source, boolean compress) {
+			this.source         = source;
+			this.policies       = filterServicePolicies(source);
+			this.compressedJson = compress ? toCompressedJson(policies) : null;
+		}
+
+		static byte[] toCompressedJson(ServicePolicies servicePolicies) {
+			byte[] ret = null;
+
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+				try (OutputStream out = new GZIPOutputStream(bytes)) {
+					RangerServicePoliciesWriter.JSON_MAPPER.writeValue(out, servicePolicies);
+				}
+
+				ret = bytes.toByteArray();
+			} catch (IOException excp) {
+				LOG.error("failed to serialize policies of service " + servicePolicies.getServiceName() + ", version " + servicePolicies.getPolicyVersion(), excp);
+			}
+
+			return ret;
+		}
+	}
+
+	/*
+	 * Versions of enabled policies in a policy-version of a service. Disabled policies are left out, same as in
+	 * policies sent to plugins
+	 */
+	private static class PolicyVersions {
+		final String          header;
+		final Map<Long, Long> resourcePolicyVersions;
+		final Map<Long, Long> tagPolicyVersions;
+
+		PolicyVersions(ServicePolicies servicePolicies) {
+			ServicePolicies.TagPolicies tagPolicies = servicePolicies.getTagPolicies();
+
+			header                 = getHeader(servicePolicies);
+			resourcePolicyVersions = getPolicyVersions(servicePolicies.getPolicies());
+			tagPolicyVersions      = getPolicyVersions(tagPolicies == null ? null : tagPolicies.getPolicies());
+		}
+
+		/*
+		 * deltas are computed only between policy-versions having the same header
+		 */
+		static String getHeader(ServicePolicies servicePolicies) {
+			StringBuilder               sb          = new StringBuilder();
+			ServicePolicies.TagPolicies tagPolicies = servicePolicies.getTagPolicies();
+
+			sb.append(servicePolicies.getServiceId()).append('|').append(servicePolicies.getAuditMode());
+			appendServiceDef(sb, servicePolicies.getServiceDef());
+
+			if (tagPolicies != null) {
+				sb.append("|tag:").append(tagPolicies.getServiceName()).append('|').append(tagPolicies.getServiceId()).append('|').append(tagPolicies.getAuditMode());
+				appendServiceDef(sb, tagPolicies.getServiceDef());
+			}
+
+			return sb.toString();
+		}
+
+		static void appendServiceDef(StringBuilder sb, RangerServiceDef serviceDef) {
+			if (serviceDef != null) {
+				sb.append('|').append(serviceDef.getId()).append(':').append(serviceDef.getVersion()).append(':').append(serviceDef.getUpdateTime() == null ? null : serviceDef.getUpdateTime().getTime());
+			}
+		}
+
+		static Map<Long, Long> getPolicyVersions(List<RangerPolicy> policies) {
+			Map<Long, Long> ret = new HashMap<Long, Long>();
+
+			if (CollectionUtils.isNotEmpty(policies)) {
+				for (RangerPolicy policy : policies) {
+					if (policy.getIsEnabled()) {
+						ret.put(policy.getId(), policy.getVersion());
+					}
+				}
+			}
+
+			return ret;
+		}
+
+		static List<RangerPolicy> getChangedPolicies(List<RangerPolicy> policies, Map<Long, Long> basePolicyVersions, List<Long> deletedPolicyIds) {
+			List<RangerPolicy> ret       = new ArrayList<RangerPolicy>();
+			Set<Long>          policyIds = new HashSet<Long>();
+
+			if (CollectionUtils.isNotEmpty(policies)) {
+				for (RangerPolicy policy : policies) {
+					if (!policy.getIsEnabled()) {
+						continue;
+					}
+
+					policyIds.add(policy.getId());
+
+					Long baseVersion = basePolicyVersions.get(policy.getId());
+
+					if (baseVersion == null || !baseVersion.equals(policy.getVersion())) {
+						ret.add(policy);
+					}
+				}
+			}
+
+			for (Long policyId : basePolicyVersions.keySet()) {
+				if (!policyIds.contains(policyId)) {
+					deletedPolicyIds.add(policyId);
+				}
+			}
+
+			return ret;
+		}
+	}
+
 	private class ServicePoliciesWrapper {
 		final Long serviceId;
-		ServicePolicies servicePolicies;
+		volatile ServicePolicies servicePolicies;
 		Date updateTime = null;
 		long longestDbLoadTimeInMs = -1;
+		volatile DownloadablePolicies downloadablePolicies = null;
 
 		ReentrantLock lock = new ReentrantLock();
+		volatile long loadCount = 0; // number of completed getLatest() calls; updated while holding lock
+
+		// bounded log of policy-versions recently loaded in this cache, used to compute deltas for plugins
+		final Map<Long, PolicyVersions> policyVersionsLog = new LinkedHashMap<Long, PolicyVersions>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, PolicyVersions> eldest) {
+				return size() > policyDeltaLogSize;
+			}
+		};
 
 		ServicePoliciesWrapper(Long serviceId) {
 			this.serviceId = serviceId;
@@ -194,10 +496,22 @@ public class RangerServicePoliciesCache {
 		boolean getLatestOrCached(String serviceName, ServiceStore serviceStore) throws Exception {
 			boolean ret = false;
 
+			final long    loadCountOnEntry = loadCount;
+			final boolean isLoadInFlight   = !lock.tryLock();
+
 			try {
-				ret = lock.tryLock(waitTimeInSeconds, TimeUnit.SECONDS);
+				ret = !isLoadInFlight || lock.tryLock(waitTimeInSeconds, TimeUnit.SECONDS);
 				if (ret) {
-					getLatest(serviceName, serviceStore);
+					if (isLoadInFlight && loadCount != loadCountOnEntry) {
+						// another request completed a load while this one waited; share its result instead of going to the db again
+						if (LOG.isDebugEnabled()) {
+							LOG.debug("getLatestOrCached(" + serviceName + "): using policies loaded by a concurrent request");
+						}
+					} else {
+						getLatest(serviceName, serviceStore);
+
+						loadCount++;
+					}
 				}
 			} catch (InterruptedException exception) {
 				LOG.error("getLatestOrCached:lock got interrupted..", exception);
@@ -244,6 +558,16 @@ public class RangerServicePoliciesCache {
 					}
 					servicePolicies = servicePoliciesFromDb;
 					pruneUnusedAttributes();
+
+					downloadablePolicies = new DownloadablePolicies(servicePolicies, compressServicePolicies);
+
+					if (policyDeltaLogSize > 0) {
+						PolicyVersions policyVersions = new PolicyVersions(servicePolicies);
+
+						synchronized (policyVersionsLog) {
+							policyVersionsLog.put(servicePolicies.getPolicyVersion(), policyVersions);
+						}
+					}
 				}
 			}
 
@@ -252,6 +576,60 @@ public class RangerServicePoliciesCache {
 			}
 		}
 
+		ServicePolicies getPolicyDeltas(Long lastKnownVersion, ServicePolicies servicePolicies) {
+			final PolicyVersions basePolicyVersions;
+
+			synchronized (policyVersionsLog) {
+				basePolicyVersions = policyVersionsLog.get(lastKnownVersion);
+			}
+
+			if (basePolicyVersions == null || !basePolicyVersions.header.equals(PolicyVersions.getHeader(servicePolicies))) {
+				return null;
+			}
+
+			List<Long>                  deletedPolicyIds = new ArrayList<Long>();
+			List<RangerPolicy>          changedPolicies  = PolicyVersions.getChangedPolicies(servicePolicies.getPolicies(), basePolicyVersions.resourcePolicyVersions, deletedPolicyIds);
+			ServicePolicies.TagPolicies tagPolicies      = servicePolicies.getTagPolicies();
+			ServicePolicies             ret              = new ServicePolicies();
+
+			ret.setServiceName(servicePolicies.getServiceName());
+			ret.setServiceId(servicePolicies.getServiceId());
+			ret.setPolicyVersion(servicePolicies.getPolicyVersion());
+			ret.setPolicyUpdateTime(servicePolicies.getPolicyUpdateTime());
+			ret.setServiceDef(servicePolicies.getServiceDef());
+			ret.setAuditMode(servicePolicies.getAuditMode());
+			ret.setPolicies(changedPolicies);
+
+			int changedPoliciesCount = changedPolicies.size();
+			int policiesCount        = servicePolicies.getPolicies() == null ? 0 : servicePolicies.getPolicies().size();
+
+			if (tagPolicies != null) {
+				ServicePolicies.TagPolicies tagPoliciesDelta = new ServicePolicies.TagPolicies();
+
+				tagPoliciesDelta.setServiceName(tagPolicies.getServiceName());
+				tagPoliciesDelta.setServiceId(tagPolicies.getServiceId());
+				tagPoliciesDelta.setPolicyVersion(tagPolicies.getPolicyVersion());
+				tagPoliciesDelta.setPolicyUpdateTime(tagPolicies.getPolicyUpdateTime());
+				tagPoliciesDelta.setServiceDef(tagPolicies.getServiceDef());
+				tagPoliciesDelta.setAuditMode(tagPolicies.getAuditMode());
+				tagPoliciesDelta.setPolicies(PolicyVersions.getChangedPolicies(tagPolicies.getPolicies(), basePolicyVersions.tagPolicyVersions, deletedPolicyIds));
+
+				changedPoliciesCount += tagPoliciesDelta.getPolicies().size();
+				policiesCount        += tagPolicies.getPolicies() == null ? 0 : tagPolicies.getPolicies().size();
+
+				ret.setTagPolicies(tagPoliciesDelta);
+			}
+
+			if (changedPoliciesCount > policiesCount / 2) { // deltas aren't much smaller than all policies
+				return null;
+			}
+
+			ret.setDeletedPolicyIds(deletedPolicyIds);
+			ret.setPolicyDeltaBaseVersion(lastKnownVersion);
+
+			return ret;
+		}
+
 		private void pruneUnusedAttributes() {
 			if (servicePolicies != null) {
 				pruneUnusedPolicyAttributes(servicePolicies.getPolicies());
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.codehaus.jackson.jaxrs.JacksonJaxbJsonProvider;
+import org.codehaus.jackson.map.ObjectMapper;
+
+/*
+ * Writes ServicePolicies as JSON. Policies cached in RangerServicePoliciesCache are written from their pre-serialized,
+ * gzip compressed form - as is to clients that accept gzip encoding, and uncompressed to others
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class RangerServicePoliciesWriter implements MessageBodyWriter<ServicePolicies> {
+	private static final Log LOG = LogFactory.getLog(RangerServicePoliciesWriter.class);
+
+	private static final String ENCODING_GZIP = "gzip";
+
+	// the mapper of Jersey's JSON provider (POJOMappingFeature) for JAXB annotated types like ServicePolicies; the same
+	// mapper serializes policies cached in RangerServicePoliciesCache, so that plugins get the JSON the REST layer sends
+	static final ObjectMapper JSON_MAPPER = new JacksonJaxbJsonProvider().locateMapper(ServicePolicies.class, MediaType.APPLICATION_JSON_TYPE);
+
+	@Context
+	private HttpHeaders requestHeaders;
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return ServicePolicies.class.isAssignableFrom(type) && MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType);
+	}
+
+	@Override
+	public long getSize(ServicePolicies servicePolicies, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return -1;
+	}
+
+	@Override
+	public void writeTo(ServicePolicies servicePolicies, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+	                    MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+		byte[] compressedJson = RangerServicePoliciesCache.getInstance().getCompressedServicePolicies(servicePolicies);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerServicePoliciesWriter.writeTo(serviceName=" + servicePolicies.getServiceName() + ", policyVersion=" + servicePolicies.getPolicyVersion() + "): compressedJsonLength=" + (compressedJson == null ? null : compressedJson.length));
+		}
+
+		if (compressedJson == null) {
+			JSON_MAPPER.writeValue(entityStream, servicePolicies);
+		} else if (acceptsGzip()) {
+			httpHeaders.putSingle(HttpHeaders.CONTENT_ENCODING, ENCODING_GZIP);
+			httpHeaders.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+			entityStream.write(compressedJson);
+		} else {
+			try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressedJson))) {
+				IOUtils.copy(in, entityStream);
+			}
+		}
+	}
+
+	private boolean acceptsGzip() {
+		boolean ret = false;
+
+		List<String> acceptEncodings = requestHeaders != null ? requestHeaders.getRequestHeader(HttpHeaders.ACCEPT_ENCODING) : null;
+
+		if (acceptEncodings != null) {
+			for (String acceptEncoding : acceptEncodings) {
+				for (String encoding : StringUtils.split(acceptEncoding, ',')) {
+					String[] encodingAndParams = StringUtils.split(encoding, ';');
+
+					if (encodingAndParams.length > 0 && ENCODING_GZIP.equalsIgnoreCase(encodingAndParams[0].trim())) {
+						ret = encodingAndParams.length == 1 || !encodingAndParams[1].replace(" ", "").equalsIgnoreCase("q=0");
+						break;
+					}
+				}
+			}
+		}
+
+		return ret;
+	}
+}
@@ -72,6 +72,7 @@ import org.apache.ranger.common.MessageEnums;
 import org.apache.ranger.common.PropertiesUtil;
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.RangerSearchUtil;
+import org.apache.ranger.common.RangerServicePoliciesCache;
 import org.apache.ranger.common.RangerValidatorFactory;
 import org.apache.ranger.common.ServiceUtil;
 import org.apache.ranger.common.UserSessionBase;
@@ -2530,6 +2531,10 @@ public class ServiceREST {
 		return ret;
 	}
 
+	public ServicePolicies getServicePoliciesIfUpdated(String serviceName, Long lastKnownVersion, Long lastActivationTime, String pluginId, String clusterName, HttpServletRequest request) throws Exception {
+		return getServicePoliciesIfUpdated(serviceName, lastKnownVersion, lastActivationTime, pluginId, clusterName, false, request);
+	}
+
 	@GET
 	@Path("/policies/download/{serviceName}")
 	@Produces({ "application/json", "application/xml" })
@@ -2539,11 +2544,12 @@ public class ServiceREST {
 			@DefaultValue("0") @QueryParam("lastActivationTime") Long lastActivationTime,
 			@QueryParam("pluginId") String pluginId,
 			@DefaultValue("") @QueryParam("clusterName") String clusterName,
+			@DefaultValue("false") @QueryParam("supportsPolicyDeltas") Boolean supportsPolicyDeltas,
 			@Context HttpServletRequest request) throws Exception {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> ServiceREST.getServicePoliciesIfUpdated("
 					+ serviceName + ", " + lastKnownVersion + ", "
-					+ lastActivationTime + ")");
+					+ lastActivationTime + ", " + supportsPolicyDeltas + ")");
 		}
 
 		ServicePolicies ret      = null;
@@ -2579,9 +2585,9 @@ public class ServiceREST {
 					logMsg = "No change since last update";
 				} else {
 					downloadedVersion = servicePolicies.getPolicyVersion();
-					ret = filterServicePolicies(servicePolicies);
+					ret = getServicePoliciesForDownload(serviceName, lastKnownVersion, servicePolicies, supportsPolicyDeltas);
 					httpCode = HttpServletResponse.SC_OK;
-					logMsg = "Returning " + (ret.getPolicies() != null ? ret.getPolicies().size() : 0) + " policies. Policy version=" + ret.getPolicyVersion();
+					logMsg = "Returning " + (ret.getPolicies() != null ? ret.getPolicies().size() : 0) + (ret.isPolicyDelta() ? " updated" : "") + " policies. Policy version=" + ret.getPolicyVersion();
 				}
 			} catch (Throwable excp) {
 				LOG.error("getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + lastActivationTime + ") failed");
@@ -2616,10 +2622,11 @@ public class ServiceREST {
 			@DefaultValue("0") @QueryParam("lastActivationTime") Long lastActivationTime,
 			@QueryParam("pluginId") String pluginId,
 			@DefaultValue("") @QueryParam("clusterName") String clusterName,
+			@DefaultValue("false") @QueryParam("supportsPolicyDeltas") Boolean supportsPolicyDeltas,
 			@Context HttpServletRequest request) throws Exception {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> ServiceREST.getSecureServicePoliciesIfUpdated("
-					+ serviceName + ", " + lastKnownVersion + ")");
+					+ serviceName + ", " + lastKnownVersion + ", " + supportsPolicyDeltas + ")");
 		}
 		ServicePolicies ret = null;
 		int httpCode = HttpServletResponse.SC_OK;
@@ -2685,9 +2692,9 @@ public class ServiceREST {
 						logMsg = "No change since last update";
 					} else {
 						downloadedVersion = servicePolicies.getPolicyVersion();
-						ret = filterServicePolicies(servicePolicies);
+						ret = getServicePoliciesForDownload(serviceName, lastKnownVersion, servicePolicies, supportsPolicyDeltas);
 						httpCode = HttpServletResponse.SC_OK;
-						logMsg = "Returning " + (ret.getPolicies() != null ? ret.getPolicies().size() : 0) + " policies. Policy version=" + ret.getPolicyVersion();
+						logMsg = "Returning " + (ret.getPolicies() != null ? ret.getPolicies().size() : 0) + (ret.isPolicyDelta() ? " updated" : "") + " policies. Policy version=" + ret.getPolicyVersion();
 					}
 
 				} else {
@@ -3196,79 +3203,18 @@ public class ServiceREST {
 		return ret;
 	}
 
-	private ServicePolicies filterServicePolicies(ServicePolicies servicePolicies) {
+	/*
+	 * Policy deltas contain only enabled policies, hence need not be filtered
+	 */
+	private ServicePolicies getServicePoliciesForDownload(String serviceName, Long lastKnownVersion, ServicePolicies servicePolicies, Boolean supportsPolicyDeltas) {
 		ServicePolicies ret = null;
-		boolean containsDisabledResourcePolicies = false;
-		boolean containsDisabledTagPolicies = false;
-
-		if (servicePolicies != null) {
-			List<RangerPolicy> policies = null;
-
-			policies = servicePolicies.getPolicies();
-			if (CollectionUtils.isNotEmpty(policies)) {
-				for (RangerPolicy policy : policies) {
-					if (!policy.getIsEnabled()) {
-						containsDisabledResourcePolicies = true;
-						break;
-					}
-				}
-			}
-
-			if (servicePolicies.getTagPolicies() != null) {
-				policies = servicePolicies.getTagPolicies().getPolicies();
-				if (CollectionUtils.isNotEmpty(policies)) {
-					for (RangerPolicy policy : policies) {
-						if (!policy.getIsEnabled()) {
-							containsDisabledTagPolicies = true;
-							break;
-						}
-					}
-				}
-			}
 
-			if (!containsDisabledResourcePolicies && !containsDisabledTagPolicies) {
-				ret = servicePolicies;
-			} else {
-				ret = new ServicePolicies();
-
-				ret.setServiceDef(servicePolicies.getServiceDef());
-				ret.setServiceId(servicePolicies.getServiceId());
-				ret.setServiceName(servicePolicies.getServiceName());
-				ret.setPolicyVersion(servicePolicies.getPolicyVersion());
-				ret.setPolicyUpdateTime(servicePolicies.getPolicyUpdateTime());
-				ret.setPolicies(servicePolicies.getPolicies());
-				ret.setTagPolicies(servicePolicies.getTagPolicies());
-
-				if (containsDisabledResourcePolicies) {
-					List<RangerPolicy> filteredPolicies = new ArrayList<RangerPolicy>();
-					for (RangerPolicy policy : servicePolicies.getPolicies()) {
-						if (policy.getIsEnabled()) {
-							filteredPolicies.add(policy);
-						}
-					}
-					ret.setPolicies(filteredPolicies);
-				}
-
-				if (containsDisabledTagPolicies) {
-					ServicePolicies.TagPolicies tagPolicies = new ServicePolicies.TagPolicies();
-
-					tagPolicies.setServiceDef(servicePolicies.getTagPolicies().getServiceDef());
-					tagPolicies.setServiceId(servicePolicies.getTagPolicies().getServiceId());
-					tagPolicies.setServiceName(servicePolicies.getTagPolicies().getServiceName());
-					tagPolicies.setPolicyVersion(servicePolicies.getTagPolicies().getPolicyVersion());
-					tagPolicies.setPolicyUpdateTime(servicePolicies.getTagPolicies().getPolicyUpdateTime());
-
-					List<RangerPolicy> filteredPolicies = new ArrayList<RangerPolicy>();
-					for (RangerPolicy policy : servicePolicies.getTagPolicies().getPolicies()) {
-						if (policy.getIsEnabled()) {
-							filteredPolicies.add(policy);
-						}
-					}
-					tagPolicies.setPolicies(filteredPolicies);
+		if (Boolean.TRUE.equals(supportsPolicyDeltas)) {
+			ret = RangerServicePoliciesCache.getInstance().getServicePolicyDeltas(serviceName, lastKnownVersion, servicePolicies);
+		}
 
-					ret.setTagPolicies(tagPolicies);
-				}
-			}
+		if (ret == null) {
+			ret = RangerServicePoliciesCache.getInstance().getServicePoliciesForDownload(serviceName, servicePolicies);
 		}
 
 		return ret;
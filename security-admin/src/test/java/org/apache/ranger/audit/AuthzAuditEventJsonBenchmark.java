@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.model.AuthzAuditEventJsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/*
+ * Compares AuthzAuditEventJsonWriter with Gson, which MiscUtil.stringify() used earlier for all audit events.
+ * Run with: mvn -pl security-admin test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.apache.ranger.audit.AuthzAuditEventJsonBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthzAuditEventJsonBenchmark {
+	private Gson            gson;
+	private AuthzAuditEvent event;
+
+	@Setup
+	public void setup() {
+		Set<String> tags = new HashSet<String>();
+
+		tags.add("PII");
+		tags.add("FINANCE");
+
+		gson  = new GsonBuilder().setDateFormat(AuthzAuditEventJsonWriter.DATE_FORMAT).create();
+		event = new AuthzAuditEvent(1, "cl1_hive", "analyst", new Date(), "select", "db1/tbl1/col1", "@column", "SELECT",
+		                            (short) 1, "hiveServer2", 42L, "", "ranger-acl", "sess-7f3a", "HIVESERVER2", "10.20.30.40",
+		                            "select col1, col2 from db1.tbl1 where col3 = 'value' and col4 > 10", "cl1");
+
+		event.setAgentHostname("hs2-host-1.example.com");
+		event.setLogType("RangerAudit");
+		event.setEventId("5c4a0e7d-2bd9-4d5b-9b0e-6d4c41e5f1a2-0");
+		event.setSeqNum(12345);
+		event.setTags(tags);
+	}
+
+	@Benchmark
+	public String gson() {
+		return gson.toJson(event);
+	}
+
+	@Benchmark
+	public String jsonWriter() {
+		return AuthzAuditEventJsonWriter.toJson(event);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(AuthzAuditEventJsonBenchmark.class.getSimpleName()).build()).run();
+	}
+}
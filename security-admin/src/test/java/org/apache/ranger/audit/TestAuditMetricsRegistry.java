@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.AuditMetricsRegistry;
+import org.apache.ranger.audit.provider.BaseAuditHandler;
+import org.apache.ranger.audit.queue.AuditBatchQueue;
+import org.apache.ranger.audit.queue.AuditQueue;
+import org.apache.ranger.audit.utils.AuditHistogram;
+import org.junit.Test;
+
+public class TestAuditMetricsRegistry {
+	private static final String BASE_PROP_NAME = "xasecure.audit.test.metrics";
+
+	@Test
+	public void testHistogram() {
+		AuditHistogram histogram = new AuditHistogram();
+
+		assertEquals(0, histogram.getValueAtPercentile(99));
+
+		for (int i = 1; i <= 100000; i++) {
+			histogram.record(i);
+		}
+
+		assertEquals(100000, histogram.getCount());
+		assertEquals(100000, histogram.getMax());
+		assertEquals(50000, histogram.getMean());
+		assertWithin(50000, histogram.getValueAtPercentile(50), 1.0 / 32);
+		assertWithin(99000, histogram.getValueAtPercentile(99), 1.0 / 32);
+		assertEquals(100000, histogram.getValueAtPercentile(100));
+
+		// small values are exact, large ones are not lost
+		AuditHistogram other = new AuditHistogram();
+
+		other.record(-1);
+		other.record(42);
+		other.record(Long.MAX_VALUE);
+
+		assertEquals(0, other.getValueAtPercentile(0));
+		assertEquals(42, other.getValueAtPercentile(50));
+		assertEquals(Long.MAX_VALUE, other.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testQueueMetrics() throws Exception {
+		Properties   props        = new Properties();
+		TestConsumer testConsumer = new TestConsumer();
+		int          eventCount   = 1000;
+
+		props.put(BASE_PROP_NAME + "." + BaseAuditHandler.PROP_NAME, "metrics_test");
+		props.put(BASE_PROP_NAME + "." + AuditQueue.PROP_BATCH_SIZE, "100");
+		props.put(BASE_PROP_NAME + "." + AuditQueue.PROP_BATCH_INTERVAL, "50");
+
+		AuditBatchQueue queue = new AuditBatchQueue(testConsumer);
+
+		testConsumer.init(props, BASE_PROP_NAME + ".consumer");
+		queue.init(props, BASE_PROP_NAME);
+		queue.start();
+
+		for (int i = 0; i < eventCount; i++) {
+			AuthzAuditEvent event = new AuthzAuditEvent();
+
+			event.setUser("user1");
+			event.setSeqNum(i);
+			event.setEventTime(new Date());
+
+			queue.log(event);
+		}
+
+		queue.stop();
+		queue.waitToComplete(5000);
+
+		Map<String, Long> metrics = AuditMetricsRegistry.getInstance().getSnapshot();
+		String            dest    = testConsumer.getName();
+
+		assertEquals(eventCount, testConsumer.getCountTotal());
+		assertEquals(Long.valueOf(eventCount), metrics.get("metrics_test.enqueue.count"));
+		assertEquals(Long.valueOf(eventCount), metrics.get("metrics_test.dequeue.count"));
+		assertEquals(Long.valueOf(0), metrics.get("metrics_test.queue.depth"));
+		assertTrue(metrics.get("metrics_test.batch.size.max") <= 100);
+		assertTrue(metrics.get("metrics_test.queue.wait.ms.count") >= eventCount / 100);
+		assertEquals(metrics.get("metrics_test.batch.size.count"), metrics.get(dest + ".write.latency.us.count"));
+		assertTrue(metrics.containsKey(dest + ".write.latency.us.p99"));
+
+		// the same metrics are available through JMX
+		Object attr = ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(AuditMetricsRegistry.MBEAN_NAME), "Metrics");
+
+		assertTrue(attr instanceof TabularData);
+		assertTrue(((TabularData) attr).size() >= metrics.size());
+	}
+
+	private static void assertWithin(long expected, long actual, double relativeError) {
+		assertTrue("expected " + expected + ", actual " + actual, Math.abs(actual - expected) <= expected * relativeError);
+	}
+}
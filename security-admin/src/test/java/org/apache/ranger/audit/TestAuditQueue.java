@@ -25,12 +25,14 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.destination.FileAuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.audit.provider.AuditHandler;
 import org.apache.ranger.audit.provider.AuditProviderFactory;
@@ -42,6 +44,7 @@ import org.apache.ranger.audit.queue.AuditBatchQueue;
 import org.apache.ranger.audit.queue.AuditFileSpool;
 import org.apache.ranger.audit.queue.AuditQueue;
 import org.apache.ranger.audit.queue.AuditSummaryQueue;
+import org.apache.ranger.audit.queue.MpscRingBufferQueue;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -293,6 +296,95 @@ public class TestAuditQueue {
 
 	}
 
+	@Test
+	public void testAuditBatchQueueWithRingBuffer() {
+		logger.debug("testAuditBatchQueueWithRingBuffer()...");
+		int producerCount = 4;
+		int messagePerProducer = 1000;
+		int messageToSend = producerCount * messagePerProducer;
+
+		String basePropName = "testAuditBatchQueueWithRingBuffer_"
+				+ MiscUtil.generateUniqueId();
+		Properties props = new Properties();
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_SIZE, "100");
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_SIZE, ""
+				+ messageToSend);
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_INTERVAL, "100");
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_TYPE,
+				AuditQueue.QUEUE_TYPE_RING_BUFFER);
+
+		TestConsumer testConsumer = new TestConsumer();
+		final AuditBatchQueue queue = new AuditBatchQueue(testConsumer);
+		queue.init(props, basePropName);
+		queue.start();
+
+		final List<AuditEventBase> events = new ArrayList<AuditEventBase>();
+		for (int i = 0; i < messageToSend; i++) {
+			events.add(createEvent());
+		}
+
+		List<Thread> producers = new ArrayList<Thread>();
+		for (int p = 0; p < producerCount; p++) {
+			final List<AuditEventBase> producerEvents = events.subList(p
+					* messagePerProducer, (p + 1) * messagePerProducer);
+			Thread producer = new Thread() {
+				@Override
+				public void run() {
+					for (AuditEventBase event : producerEvents) {
+						queue.log(event);
+					}
+				}
+			};
+			producers.add(producer);
+			producer.start();
+		}
+		for (Thread producer : producers) {
+			try {
+				producer.join();
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+
+		queue.waitToComplete();
+		queue.stop();
+		queue.waitToComplete();
+
+		assertEquals("Total count", messageToSend, testConsumer.getCountTotal());
+		assertEquals("Total sum", messageToSend, testConsumer.getSumTotal());
+	}
+
+	@Test
+	public void testRingBufferQueueIterator() {
+		logger.debug("testRingBufferQueueIterator()...");
+		MpscRingBufferQueue<String> queue = new MpscRingBufferQueue<String>(4);
+		assertEquals("[]", queue.toString());
+
+		queue.offer("a");
+		queue.offer("b");
+		queue.offer("c");
+		assertEquals("[a, b, c]", queue.toString());
+		assertTrue(queue.contains("b"));
+		assertTrue(queue.containsAll(Arrays.asList("a", "c")));
+
+		// removed element is skipped by the consumer
+		assertTrue(queue.remove("b"));
+		assertFalse(queue.contains("b"));
+		assertFalse(queue.remove("b"));
+		assertEquals("[a, c]", queue.toString());
+
+		assertEquals("a", queue.poll());
+		assertEquals("c", queue.peek());
+		assertEquals("c", queue.poll());
+		assertNull(queue.poll());
+
+		// iterator wraps around the end of the buffer
+		queue.offer("d");
+		queue.offer("e");
+		queue.offer("f");
+		assertEquals("[d, e, f]", queue.toString());
+	}
+
 	@Test
 	public void testAuditBatchQueueByTime() {
 		logger.debug("testAuditBatchQueue()...");
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.BaseAuditHandler;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.queue.AuditBatchQueue;
+import org.apache.ranger.audit.queue.AuditFileSpool;
+import org.apache.ranger.audit.queue.AuditSegmentSpool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAuditSegmentSpool {
+	private static final String BASE_PROP_NAME = "xasecure.audit.test.segmentspool";
+
+	private File spoolDir;
+	private long seqNum = 0;
+
+	@Before
+	public void setUp() {
+		spoolDir = new File("target", "segment_spool_" + MiscUtil.generateUniqueId());
+	}
+
+	@After
+	public void tearDown() {
+		FileUtils.deleteQuietly(spoolDir);
+	}
+
+	@Test
+	public void testSpooledEventsAreSentAfterRestart() throws Exception {
+		TestConsumer testConsumer = new TestConsumer();
+		int          eventCount   = 500;
+
+		testConsumer.isDown = true;
+
+		AuditSegmentSpool spool = createSpool(testConsumer, 4, 100);
+
+		spool.start();
+
+		for (int i = 0; i < eventCount; i++) {
+			spool.stashLogs(createEvent());
+		}
+
+		assertTrue(spool.isPending());
+
+		Thread.sleep(200);
+		spool.stop();
+
+		assertEquals(0, testConsumer.getCountTotal());
+		assertTrue("events not spooled across segments", countSegmentFiles() > 1);
+
+		// restart, with the destination up: spooled events are sent from the checkpoint
+		testConsumer.isDown = false;
+
+		spool = createSpool(testConsumer, 4, 100);
+
+		assertTrue(spool.isPending());
+
+		spool.start();
+		waitUntilSent(spool);
+		spool.stop();
+
+		assertEquals(eventCount, testConsumer.getCountTotal());
+		assertNull("Event not in sequence", testConsumer.isInSequence());
+		assertEquals(1, countSegmentFiles());
+
+		// nothing is sent again after another restart
+		spool = createSpool(testConsumer, 4, 100);
+
+		assertFalse(spool.isPending());
+
+		spool.start();
+		spool.stashLogs(createEvent());
+		waitUntilSent(spool);
+		spool.stop();
+
+		assertEquals(eventCount + 1, testConsumer.getCountTotal());
+		assertNull("Event not in sequence", testConsumer.isInSequence());
+	}
+
+	@Test
+	public void testFullSpoolDropsNewEvents() throws Exception {
+		TestConsumer testConsumer = new TestConsumer();
+
+		testConsumer.isDown = true;
+
+		AuditSegmentSpool spool = createSpool(testConsumer, 1, 2);
+
+		spool.start();
+
+		for (int i = 0; i < 1000; i++) {
+			spool.stashLogs(createEvent());
+		}
+
+		assertEquals(2, countSegmentFiles());
+
+		testConsumer.isDown = false;
+
+		waitUntilSent(spool);
+		spool.stop();
+
+		assertTrue(testConsumer.getCountTotal() > 0);
+		assertTrue(testConsumer.getCountTotal() < 1000);
+		assertNull("Event not in sequence", testConsumer.isInSequence());
+	}
+
+	private AuditSegmentSpool createSpool(TestConsumer testConsumer, int segmentSizeKB, int maxSegmentCount) {
+		Properties props = new Properties();
+
+		props.put(BASE_PROP_NAME + "." + BaseAuditHandler.PROP_NAME, "segment_spool_test");
+		props.put(BASE_PROP_NAME + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR, spoolDir.getPath());
+		props.put(BASE_PROP_NAME + "." + AuditFileSpool.PROP_FILE_SPOOL_DEST_RETRY_MS, "10");
+		props.put(BASE_PROP_NAME + "." + AuditSegmentSpool.PROP_FILE_SPOOL_SEGMENT_SIZE_KB, "" + segmentSizeKB);
+		props.put(BASE_PROP_NAME + "." + AuditSegmentSpool.PROP_FILE_SPOOL_SEGMENT_MAX_COUNT, "" + maxSegmentCount);
+
+		AuditBatchQueue queue = new AuditBatchQueue(testConsumer);
+
+		queue.setName("segment_spool_test");
+
+		AuditSegmentSpool ret = new AuditSegmentSpool(queue, testConsumer);
+
+		assertTrue(ret.init(props, BASE_PROP_NAME));
+
+		return ret;
+	}
+
+	private void waitUntilSent(AuditSegmentSpool spool) throws InterruptedException {
+		for (int i = 0; i < 500 && spool.isPending(); i++) {
+			Thread.sleep(20);
+		}
+
+		assertFalse("spooled events not sent", spool.isPending());
+	}
+
+	private int countSegmentFiles() {
+		File[] files = spoolDir.listFiles();
+		int    ret   = 0;
+
+		if (files != null) {
+			for (File file : files) {
+				if (file.getName().endsWith(".seg")) {
+					ret++;
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private AuthzAuditEvent createEvent() {
+		AuthzAuditEvent event = new AuthzAuditEvent();
+
+		event.setUser("user1");
+		event.setAccessType("select");
+		event.setResourcePath("db1/tbl1/col1");
+		event.setSeqNum(++seqNum);
+
+		return event;
+	}
+}
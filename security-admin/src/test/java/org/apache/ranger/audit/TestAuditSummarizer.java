@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.queue.AuditSummarizer;
+import org.apache.ranger.audit.queue.AuditSummarizer.AuditSummary;
+import org.junit.Test;
+
+public class TestAuditSummarizer {
+
+	@Test
+	public void testExactCountsBelowLimit() {
+		AuditSummarizer   summarizer = new AuditSummarizer(1000, 10);
+		Random            random     = new Random(1);
+		Map<String, Long> expected   = new HashMap<String, Long>();
+
+		for (int i = 0; i < 20000; i++) {
+			AuthzAuditEvent event = createEvent("user" + random.nextInt(20), random.nextBoolean() ? "select" : "update", "db1/tbl" + random.nextInt(10), random.nextBoolean());
+
+			summarizer.add(event);
+
+			Long count = expected.get(event.getEventKey());
+
+			expected.put(event.getEventKey(), count == null ? 1 : count + 1);
+		}
+
+		List<AuditSummary> summaries = summarizer.getSummaries();
+
+		assertEquals(expected.size(), summaries.size());
+		assertEquals(0, summarizer.getEvictionCount());
+
+		for (AuditSummary summary : summaries) {
+			assertFalse(summary.isApproximate());
+			assertEquals(expected.get(summary.getEvent().getEventKey()), Long.valueOf(summary.getCount()));
+		}
+
+		summarizer.reset();
+
+		assertTrue(summarizer.isEmpty());
+	}
+
+	@Test
+	public void testSketchBoundsMemoryAndKeepsHeavyHitters() {
+		int             maxExact   = 100;
+		int             maxSketch  = 50;
+		AuditSummarizer summarizer = new AuditSummarizer(maxExact, maxSketch);
+		Random          random     = new Random(2);
+		int             eventCount = 0;
+
+		// fill the exact entries
+		for (int i = 0; i < maxExact; i++) {
+			summarizer.add(createEvent("user" + i, "select", "db1/tbl1", true));
+			eventCount++;
+		}
+
+		// a heavy hitter among a long tail of distinct events
+		int heavyHitterCount = 0;
+
+		for (int i = 0; i < 50000; i++) {
+			if (random.nextInt(10) == 0) {
+				summarizer.add(createEvent("scanner", "select", "db1/secret", false));
+				heavyHitterCount++;
+			} else {
+				summarizer.add(createEvent("tail" + i, "select", "db1/tbl" + i, true));
+			}
+			eventCount++;
+		}
+
+		assertEquals(maxExact, summarizer.getExactSummaryCount());
+		assertEquals(maxSketch, summarizer.getSketchSummaryCount());
+		assertTrue(summarizer.getEvictionCount() > 0);
+
+		List<AuditSummary> summaries   = summarizer.getSummaries();
+		long               totalCount  = 0;
+		AuditSummary       heavyHitter = null;
+
+		for (AuditSummary summary : summaries) {
+			totalCount += summary.getCount();
+
+			if ("scanner".equals(((AuthzAuditEvent) summary.getEvent()).getUser())) {
+				heavyHitter = summary;
+			}
+		}
+
+		assertEquals(eventCount, totalCount);
+		assertTrue("heavy hitter not tracked", heavyHitter != null);
+		assertTrue(heavyHitter.isApproximate());
+		assertTrue(heavyHitter.getCount() >= heavyHitterCount);
+		assertTrue(heavyHitter.getCount() <= heavyHitterCount + (eventCount - maxExact) / maxSketch);
+	}
+
+	@Test
+	public void testSameKeyAsEventKey() {
+		AuditSummarizer summarizer = new AuditSummarizer(10, 10);
+
+		AuthzAuditEvent event1 = createEvent("john", "select", "db1/tbl1", true);
+		AuthzAuditEvent event2 = createEvent("john", "select", "db1/tbl1", true);
+		AuthzAuditEvent event3 = createEvent("john", "select", "db1/tbl1", false);
+		AuthzAuditEvent event4 = createEvent("john", "select", "db1/tbl1", true);
+
+		event4.setClientIP("10.0.0.2");
+
+		summarizer.add(event1);
+		summarizer.add(event2);
+		summarizer.add(event3);
+		summarizer.add(event4);
+
+		assertEquals(3, summarizer.getExactSummaryCount());
+
+		for (AuditSummary summary : summarizer.getSummaries()) {
+			assertEquals(summary.getEvent() == event1 ? 2 : 1, summary.getCount());
+		}
+	}
+
+	private static AuthzAuditEvent createEvent(String user, String accessType, String resource, boolean isAllowed) {
+		AuthzAuditEvent event = new AuthzAuditEvent();
+
+		event.setUser(user);
+		event.setAccessType(accessType);
+		event.setResourcePath(resource);
+		event.setResourceType("@table");
+		event.setAction(accessType);
+		event.setAccessResult((short) (isAllowed ? 1 : 0));
+		event.setSessionId("session1");
+		event.setClientIP("10.0.0.1");
+		event.setEventTime(new Date());
+
+		return event;
+	}
+}
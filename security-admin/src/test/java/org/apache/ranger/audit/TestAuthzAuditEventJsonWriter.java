@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.model.AuthzAuditEventJsonWriter;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+public class TestAuthzAuditEventJsonWriter {
+	private static final String CHARS = "abc XYZ<>&='\"\\\t\n\r\b\f\u0001\u001f\u007f\u2028\u2029\u00e9\u4e2d\ud83d\ude00\ud800/";
+
+	private final Gson gson = new GsonBuilder().setDateFormat(AuthzAuditEventJsonWriter.DATE_FORMAT).create();
+
+	@Test
+	public void testSameAsGson() throws IOException {
+		Random random = new Random(1234);
+
+		for (int i = 0; i < 5000; i++) {
+			AuthzAuditEvent event = createEvent(random);
+			String          json  = gson.toJson(event);
+
+			assertEquals(json, AuthzAuditEventJsonWriter.toJson(event));
+			assertEquals(json, MiscUtil.stringify(event));
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+			AuthzAuditEventJsonWriter.writeTo(event, out);
+
+			assertArrayEquals(json.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+		}
+	}
+
+	@Test
+	public void testEmptyEvent() {
+		AuthzAuditEvent event = new AuthzAuditEvent();
+
+		event.setEventTime(null);
+		event.setTags(null);
+
+		assertEquals(gson.toJson(event), AuthzAuditEventJsonWriter.toJson(event));
+	}
+
+	@Test
+	public void testSubclassIsNotSupported() {
+		assertTrue(AuthzAuditEventJsonWriter.isSupported(new AuthzAuditEvent()));
+		assertFalse(AuthzAuditEventJsonWriter.isSupported(new AuthzAuditEvent() { }));
+		assertFalse(AuthzAuditEventJsonWriter.isSupported(null));
+	}
+
+	private static AuthzAuditEvent createEvent(Random random) {
+		AuthzAuditEvent ret = new AuthzAuditEvent();
+
+		ret.setRepositoryType(random.nextInt());
+		ret.setRepositoryName(randomString(random));
+		ret.setUser(randomString(random));
+		ret.setEventTime(random.nextInt(10) == 0 ? null : new Date(random.nextInt(5) == 0 ? random.nextLong() % 400000000000000L : 1500000000000L + (long) (random.nextDouble() * 1000000000000L)));
+		ret.setAccessType(randomString(random));
+		ret.setResourcePath(randomString(random));
+		ret.setResourceType(randomString(random));
+		ret.setAction(randomString(random));
+		ret.setAccessResult((short) random.nextInt(2));
+		ret.setAgentId(randomString(random));
+		ret.setPolicyId(random.nextLong());
+		ret.setResultReason(randomString(random));
+		ret.setAclEnforcer(randomString(random));
+		ret.setSessionId(randomString(random));
+		ret.setClientType(randomString(random));
+		ret.setClientIP(randomString(random));
+		ret.setRequestData(randomString(random));
+		ret.setAgentHostname(randomString(random));
+		ret.setLogType(randomString(random));
+		ret.setEventId(randomString(random));
+		ret.setSeqNum(random.nextLong());
+		ret.setEventCount(random.nextInt());
+		ret.setEventDurationMS(random.nextInt());
+		ret.setAdditionalInfo(randomString(random));
+		ret.setClusterName(randomString(random));
+
+		if (random.nextInt(4) == 0) {
+			ret.setTags(null);
+		} else {
+			Set<String> tags = new HashSet<String>();
+
+			for (int i = random.nextInt(4); i > 0; i--) {
+				tags.add(randomString(random));
+			}
+
+			ret.setTags(tags);
+		}
+
+		return ret;
+	}
+
+	private static String randomString(Random random) {
+		if (random.nextInt(5) == 0) {
+			return null;
+		}
+
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = random.nextInt(20); i > 0; i--) {
+			sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+		}
+
+		return sb.toString();
+	}
+}
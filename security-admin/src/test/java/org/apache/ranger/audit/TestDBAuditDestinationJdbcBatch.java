@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.dao.AuthzAuditEventJdbcWriter;
+import org.apache.ranger.audit.dao.AuthzAuditEventJdbcWriter.Dialect;
+import org.apache.ranger.audit.dao.DaoManager;
+import org.apache.ranger.audit.destination.DBAuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestDBAuditDestinationJdbcBatch {
+	private static final Log logger = LogFactory.getLog(TestDBAuditDestinationJdbcBatch.class);
+
+	private static final String JDBC_DRIVER    = "org.apache.derby.jdbc.EmbeddedDriver";
+	private static final String BASE_PROP_NAME = "xasecure.audit.destination.db";
+	private static final String DB_USER        = "rangeradmin";
+
+	private String     jdbcUrl;
+	private Connection conn;
+	private long       seqNum = 0;
+
+	@Before
+	public void setUp() throws Exception {
+		jdbcUrl = "jdbc:derby:memory:audit_" + MiscUtil.generateUniqueId().replace("-", "");
+
+		Class.forName(JDBC_DRIVER);
+
+		conn = DriverManager.getConnection(jdbcUrl + ";create=true", DB_USER, "");
+
+		Statement stmt = conn.createStatement();
+
+		stmt.execute("CREATE TABLE xa_access_audit ("
+				+ "id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY, audit_type INT DEFAULT 0 NOT NULL,"
+				+ "repo_type INT, repo_name VARCHAR(255), request_user VARCHAR(255), event_time TIMESTAMP,"
+				+ "access_type VARCHAR(255), resource_path VARCHAR(4000), resource_type VARCHAR(255), action VARCHAR(2000),"
+				+ "access_result INT, agent_id VARCHAR(255), policy_id BIGINT, result_reason VARCHAR(255),"
+				+ "acl_enforcer VARCHAR(255), session_id VARCHAR(255), client_type VARCHAR(255), client_ip VARCHAR(255),"
+				+ "request_data VARCHAR(4000), seq_num BIGINT, event_count BIGINT, event_dur_ms BIGINT, tags VARCHAR(4000))");
+		stmt.close();
+	}
+
+	@After
+	public void tearDown() {
+		try {
+			conn.close();
+			DriverManager.getConnection(jdbcUrl + ";drop=true");
+		} catch (SQLException excp) {
+			// dropping an in-memory database always reports an exception
+		}
+	}
+
+	@Test
+	public void testDBAuditDestinationBatchInsert() throws Exception {
+		DBAuditDestination destination = createDestination();
+
+		int eventCount = 0;
+
+		// batch sizes not multiple of the multi-row size
+		for (int batchSize : new int[] { 1, 49, 50, 51, 1234 }) {
+			assertTrue(destination.log(createEvents(batchSize)));
+
+			eventCount += batchSize;
+		}
+
+		destination.stop();
+
+		assertEquals(eventCount, queryLong("SELECT COUNT(*) FROM xa_access_audit"));
+		assertEquals(eventCount, queryLong("SELECT COUNT(DISTINCT seq_num) FROM xa_access_audit"));
+		assertEquals(eventCount, queryLong("SELECT MAX(seq_num) FROM xa_access_audit"));
+		assertEquals(eventCount, queryLong("SELECT COUNT(*) FROM xa_access_audit WHERE repo_name = 'hivedev' AND policy_id = 42 AND tags = 'PII'"));
+		assertEquals(0, queryLong("SELECT COUNT(*) FROM xa_access_audit WHERE seq_num = 20 AND request_user <> 'user0'"));
+	}
+
+	@Test
+	public void testUnsupportedEventCountedAsFailed() throws Exception {
+		DBAuditDestination destination = createDestination();
+
+		List<AuditEventBase> events = new ArrayList<AuditEventBase>(createEvents(10));
+
+		events.add(5, new AuditEventBase() {
+			@Override
+			public void persist(DaoManager daoManager) {
+			}
+
+			@Override
+			public String getEventKey() {
+				return "unsupported";
+			}
+
+			@Override
+			public Date getEventTime() {
+				return new Date();
+			}
+
+			@Override
+			public void setEventCount(long eventCount) {
+			}
+
+			@Override
+			public void setEventDurationMS(long eventDurationMS) {
+			}
+		});
+
+		assertTrue(destination.log(events));
+
+		destination.stop();
+
+		assertEquals(10, queryLong("SELECT COUNT(*) FROM xa_access_audit"));
+		assertEquals(10, destination.getTotalSuccessCount());
+		assertEquals(1, destination.getTotalFailedCount());
+	}
+
+	@Test
+	public void testMultiRowInsertThroughput() throws Exception {
+		int                   eventCount = 20000;
+		List<AuthzAuditEvent> events     = new ArrayList<AuthzAuditEvent>();
+
+		for (AuditEventBase event : createEvents(eventCount)) {
+			events.add((AuthzAuditEvent) event);
+		}
+
+		conn.setAutoCommit(false);
+
+		long singleRowMs = insert(new AuthzAuditEventJdbcWriter(Dialect.DERBY, 1000, 1), events);
+		long multiRowMs  = insert(new AuthzAuditEventJdbcWriter(Dialect.DERBY, 1000, 100), events);
+
+		logger.info("JDBC batch insert of " + eventCount + " audit events: single-row=" + singleRowMs + "ms, multi-row=" + multiRowMs + "ms");
+
+		assertEquals(2 * eventCount, queryLong("SELECT COUNT(*) FROM xa_access_audit"));
+	}
+
+	@Test
+	public void testDialect() {
+		assertEquals(Dialect.MYSQL, Dialect.fromJdbcUrl("jdbc:mysql://localhost/ranger"));
+		assertEquals(Dialect.ORACLE, Dialect.fromJdbcUrl("jdbc:oracle:thin:@localhost:1521/XE"));
+		assertEquals(Dialect.DERBY, Dialect.fromJdbcUrl(jdbcUrl));
+
+		assertEquals(1, new AuthzAuditEventJdbcWriter(Dialect.ORACLE, 1000, 100).getMultiRowSize());
+		assertEquals(99, new AuthzAuditEventJdbcWriter(Dialect.SQLSERVER, 1000, 500).getMultiRowSize());
+		assertEquals(100, new AuthzAuditEventJdbcWriter(Dialect.POSTGRES, 1000, 100).getMultiRowSize());
+	}
+
+	private DBAuditDestination createDestination() {
+		Properties props = new Properties();
+
+		props.put(BASE_PROP_NAME + "." + DBAuditDestination.PROP_DB_JDBC_DRIVER, JDBC_DRIVER);
+		props.put(BASE_PROP_NAME + "." + DBAuditDestination.PROP_DB_JDBC_URL, jdbcUrl);
+		props.put(BASE_PROP_NAME + "." + DBAuditDestination.PROP_DB_USER, DB_USER);
+		props.put(BASE_PROP_NAME + "." + DBAuditDestination.PROP_DB_JDBC_BATCH_ENABLED, "true");
+		props.put(BASE_PROP_NAME + "." + DBAuditDestination.PROP_DB_JDBC_BATCH_SIZE, "500");
+		props.put(BASE_PROP_NAME + "." + DBAuditDestination.PROP_DB_JDBC_MULTIROW_SIZE, "50");
+
+		DBAuditDestination ret = new DBAuditDestination();
+
+		ret.init(props, BASE_PROP_NAME);
+		ret.start();
+
+		return ret;
+	}
+
+	private long insert(AuthzAuditEventJdbcWriter writer, List<AuthzAuditEvent> events) throws SQLException {
+		long startTime = System.currentTimeMillis();
+
+		for (int i = 0; i < events.size(); i += 1000) {
+			writer.write(conn, events.subList(i, Math.min(i + 1000, events.size())));
+			conn.commit();
+		}
+
+		writer.close();
+
+		return System.currentTimeMillis() - startTime;
+	}
+
+	private long queryLong(String sql) throws SQLException {
+		Statement stmt = conn.createStatement();
+
+		try {
+			ResultSet rs = stmt.executeQuery(sql);
+
+			rs.next();
+
+			return rs.getLong(1);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	private Collection<AuditEventBase> createEvents(int count) {
+		List<AuditEventBase> ret = new ArrayList<AuditEventBase>(count);
+
+		for (int i = 0; i < count; i++) {
+			AuthzAuditEvent event = new AuthzAuditEvent();
+
+			event.setSeqNum(++seqNum);
+			event.setUser("user" + (seqNum % 10));
+			event.setAccessType("select");
+			event.setResourcePath("db1/tbl" + i + "/col1");
+			event.setResourceType("@column");
+			event.setRepositoryName("hivedev");
+			event.setRepositoryType(3);
+			event.setAccessResult((short) 1);
+			event.setPolicyId(42);
+			event.setEventTime(new Date());
+			event.setEventCount(1);
+			event.setTags(Collections.singleton("PII"));
+
+			ret.add(event);
+		}
+
+		return ret;
+	}
+}
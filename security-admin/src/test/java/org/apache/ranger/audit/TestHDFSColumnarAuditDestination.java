@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.ranger.audit.destination.HDFSColumnarAuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.utils.ColumnarAuditFile;
+import org.junit.Test;
+
+public class TestHDFSColumnarAuditDestination {
+
+	@Test
+	public void testRowGroupRoundTrip() throws IOException {
+		List<AuthzAuditEvent> events = createEvents(new Random(1234), 5000);
+
+		ColumnarAuditFile.RowGroupWriter writer = new ColumnarAuditFile.RowGroupWriter(Deflater.DEFAULT_COMPRESSION);
+		ByteArrayOutputStream            out    = new ByteArrayOutputStream();
+
+		ColumnarAuditFile.writeHeader(out);
+
+		for (int i = 0; i < events.size(); i++) {
+			writer.add(events.get(i));
+
+			if (writer.getRowCount() == 2000) {
+				writer.writeTo(out);
+			}
+		}
+		writer.writeTo(out);
+		writer.close();
+
+		long jsonLength = 0;
+		for (AuthzAuditEvent event : events) {
+			jsonLength += MiscUtil.stringify(event).getBytes(StandardCharsets.UTF_8).length + 1;
+		}
+
+		assertTrue("columnar size " + out.size() + " is not smaller than JSON size " + jsonLength, out.size() * 4 < jsonLength);
+
+		assertSameEvents(events, readAll(new ByteArrayInputStream(out.toByteArray())));
+	}
+
+	@Test
+	public void testIncompleteRowGroupIsSkipped() throws IOException {
+		List<AuthzAuditEvent> events = createEvents(new Random(42), 10);
+
+		ColumnarAuditFile.RowGroupWriter writer = new ColumnarAuditFile.RowGroupWriter(Deflater.BEST_SPEED);
+		ByteArrayOutputStream            out    = new ByteArrayOutputStream();
+
+		ColumnarAuditFile.writeHeader(out);
+
+		for (AuthzAuditEvent event : events.subList(0, 5)) {
+			writer.add(event);
+		}
+		writer.writeTo(out);
+
+		int firstRowGroupEnd = out.size();
+
+		for (AuthzAuditEvent event : events.subList(5, 10)) {
+			writer.add(event);
+		}
+		writer.writeTo(out);
+		writer.close();
+
+		byte[] truncated = Arrays.copyOf(out.toByteArray(), firstRowGroupEnd + (out.size() - firstRowGroupEnd) / 2);
+
+		ColumnarAuditFile.Reader reader = new ColumnarAuditFile.Reader(new ByteArrayInputStream(truncated));
+
+		assertSameEvents(events.subList(0, 5), reader.readRowGroup());
+		assertNull(reader.readRowGroup());
+		reader.close();
+	}
+
+	@Test
+	public void testDestinationWritesToLocalFileSystem() throws IOException {
+		File logFolder = new File(System.getProperty("java.io.tmpdir"), "ranger_columnar_audit_" + System.currentTimeMillis());
+
+		try {
+			String     propPrefix = "xasecure.audit.destination.hdfs_columnar";
+			Properties props      = new Properties();
+
+			props.put(propPrefix + "." + HDFSColumnarAuditDestination.PROP_HDFS_DIR, logFolder.toURI().toString());
+			props.put(propPrefix + "." + HDFSColumnarAuditDestination.PROP_HDFS_SUBDIR, "test");
+			props.put(propPrefix + "." + HDFSColumnarAuditDestination.PROP_HDFS_FILE_NAME_FORMAT, "audit.rcol");
+			props.put(propPrefix + "." + HDFSColumnarAuditDestination.PROP_ROW_GROUP_SIZE, "100");
+
+			HDFSColumnarAuditDestination destination = new HDFSColumnarAuditDestination();
+
+			destination.init(props, propPrefix);
+			destination.start();
+
+			List<AuthzAuditEvent> events = createEvents(new Random(7), 250);
+
+			for (int i = 0; i < events.size(); i += 50) {
+				assertTrue(destination.log(new ArrayList<AuditEventBase>(events.subList(i, i + 50))));
+			}
+
+			destination.stop();
+
+			File logFile = new File(new File(logFolder, "test"), "audit.rcol");
+
+			assertTrue("File created", logFile.exists());
+
+			assertSameEvents(events, readAll(new FileInputStream(logFile)));
+		} finally {
+			FileUtils.deleteQuietly(logFolder);
+		}
+	}
+
+	@Test
+	public void testRowGroupIsRetriedAfterWriteFailure() throws IOException {
+		File logFolder = new File(System.getProperty("java.io.tmpdir"), "ranger_columnar_audit_" + System.currentTimeMillis());
+		File subFolder = new File(logFolder, "test");
+
+		try {
+			String     propPrefix = "xasecure.audit.destination.hdfs_columnar";
+			Properties props      = new Properties();
+
+			props.put(propPrefix + "." + HDFSColumnarAuditDestination.PROP_HDFS_DIR, logFolder.toURI().toString());
+			props.put(propPrefix + "." + HDFSColumnarAuditDestination.PROP_HDFS_SUBDIR, "test");
+			props.put(propPrefix + "." + HDFSColumnarAuditDestination.PROP_HDFS_FILE_NAME_FORMAT, "audit.rcol");
+			props.put(propPrefix + "." + HDFSColumnarAuditDestination.PROP_ROW_GROUP_SIZE, "100");
+
+			// a file in place of the folder makes writes fail
+			FileUtils.writeStringToFile(subFolder, "not a folder");
+
+			HDFSColumnarAuditDestination destination = new HDFSColumnarAuditDestination();
+
+			destination.init(props, propPrefix);
+			destination.start();
+
+			List<AuthzAuditEvent> events = createEvents(new Random(11), 200);
+
+			// row group is due, but not written: its events are kept
+			assertTrue(destination.log(new ArrayList<AuditEventBase>(events.subList(0, 100))));
+
+			// no more events are accepted while the row group can't be written
+			assertFalse(destination.log(new ArrayList<AuditEventBase>(events.subList(100, 150))));
+
+			FileUtils.forceDelete(subFolder);
+
+			assertTrue(destination.log(new ArrayList<AuditEventBase>(events.subList(150, 200))));
+
+			destination.stop();
+
+			List<AuthzAuditEvent> expected = new ArrayList<AuthzAuditEvent>(events.subList(0, 100));
+
+			expected.addAll(events.subList(150, 200));
+
+			assertSameEvents(expected, readAll(new FileInputStream(new File(subFolder, "audit.rcol"))));
+		} finally {
+			FileUtils.deleteQuietly(logFolder);
+		}
+	}
+
+	private static List<AuthzAuditEvent> readAll(InputStream in) throws IOException {
+		List<AuthzAuditEvent>    ret    = new ArrayList<AuthzAuditEvent>();
+		ColumnarAuditFile.Reader reader = new ColumnarAuditFile.Reader(in);
+
+		try {
+			for (List<AuthzAuditEvent> rowGroup = reader.readRowGroup(); rowGroup != null; rowGroup = reader.readRowGroup()) {
+				ret.addAll(rowGroup);
+			}
+		} finally {
+			reader.close();
+		}
+
+		return ret;
+	}
+
+	private static void assertSameEvents(List<AuthzAuditEvent> expected, List<AuthzAuditEvent> actual) {
+		assertNotNull(actual);
+		assertEquals(expected.size(), actual.size());
+
+		for (int i = 0; i < expected.size(); i++) {
+			AuthzAuditEvent expectedEvent = expected.get(i);
+			AuthzAuditEvent actualEvent   = actual.get(i);
+
+			assertEquals(expectedEvent.getTags(), actualEvent.getTags());
+
+			// tags compared above; their order in JSON depends on the set
+			actualEvent.setTags(expectedEvent.getTags());
+
+			assertEquals(MiscUtil.stringify(expectedEvent), MiscUtil.stringify(actualEvent));
+		}
+	}
+
+	private static List<AuthzAuditEvent> createEvents(Random random, int count) {
+		String[] users     = { "hive", "hdfs", "alice", "bob", "\u00e9lodie", null };
+		String[] accesses  = { "read", "write", "execute", "select", "update" };
+		String[] resources = { "/data/sales", "/data/hr", "/tmp", "db1/tbl1/col1", "db1/tbl2", null };
+		List<AuthzAuditEvent> ret = new ArrayList<AuthzAuditEvent>();
+		long time = System.currentTimeMillis() - 60 * 60 * 1000L;
+
+		for (int i = 0; i < count; i++) {
+			AuthzAuditEvent event = new AuthzAuditEvent();
+
+			time += random.nextInt(100);
+
+			event.setEventTime(i == 3 ? null : new Date(time));
+			event.setRepositoryType(random.nextInt(3));
+			event.setRepositoryName("cl1_hive");
+			event.setUser(users[random.nextInt(users.length)]);
+			event.setAccessType(accesses[random.nextInt(accesses.length)]);
+			event.setResourcePath(resources[random.nextInt(resources.length)]);
+			event.setResourceType("@table");
+			event.setAction(event.getAccessType());
+			event.setAccessResult((short) random.nextInt(2));
+			event.setAgentId("hiveServer2");
+			event.setPolicyId(random.nextInt(20) - 1);
+			event.setResultReason(random.nextBoolean() ? null : "reason");
+			event.setAclEnforcer("ranger-acl");
+			event.setSessionId("session-" + (i / 10));
+			event.setClientType("HIVESERVER2");
+			event.setClientIP("10.0.0." + random.nextInt(5));
+			event.setRequestData("select * from tbl where id = " + i);
+			event.setAgentHostname("host1.example.com");
+			event.setLogType("RangerAudit");
+			event.setEventId(MiscUtil.generateUniqueId());
+			event.setSeqNum(i);
+			event.setEventCount(1 + random.nextInt(3));
+			event.setEventDurationMS(random.nextInt(1000));
+			event.setTags(random.nextBoolean() ? null : new HashSet<String>(Arrays.asList("PII", "tag" + random.nextInt(3))));
+			event.setAdditionalInfo(random.nextBoolean() ? null : "{\"remote-ip-address\":\"10.0.0.1\"}");
+			event.setClusterName("cl1");
+
+			ret.add(event);
+		}
+
+		return ret;
+	}
+}
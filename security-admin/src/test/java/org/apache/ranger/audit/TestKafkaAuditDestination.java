@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.ranger.audit.destination.KafkaAuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.model.AuthzAuditEventEnvelope;
+import org.apache.ranger.audit.model.AuthzAuditEventEnvelope.Codec;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.junit.Test;
+
+public class TestKafkaAuditDestination {
+	private static final String BASE_PROP_NAME = "xasecure.audit.destination.kafka_envelope";
+
+	private long seqNum = 0;
+
+	@Test
+	public void testEnvelopeRoundTrip() throws Exception {
+		List<AuthzAuditEvent> events    = createEvents(1000);
+		long                  jsonBytes = 0;
+
+		events.get(0).setTags(null);
+		events.get(1).setEventTime(null);
+		events.get(2).setRequestData("select * from tbl where name = '\u00e9t\u00e9'");
+
+		for (AuthzAuditEvent event : events) {
+			jsonBytes += MiscUtil.stringify(event).length();
+		}
+
+		for (Codec codec : Codec.values()) {
+			byte[]                envelope = AuthzAuditEventEnvelope.encode(events, codec);
+			List<AuthzAuditEvent> decoded  = AuthzAuditEventEnvelope.decode(envelope);
+
+			assertEquals(events.size(), decoded.size());
+
+			for (int i = 0; i < events.size(); i++) {
+				assertEquals(MiscUtil.stringify(events.get(i)), MiscUtil.stringify(decoded.get(i)));
+			}
+
+			if (codec != Codec.NONE) {
+				assertTrue("envelope is not compact: codec=" + codec + ", bytes=" + envelope.length + ", json bytes=" + jsonBytes, envelope.length * 10 < jsonBytes);
+			}
+		}
+	}
+
+	@Test
+	public void testLogSendsEnvelopes() throws Exception {
+		MockProducer<byte[], byte[]> producer    = new MockProducer<byte[], byte[]>(true, new ByteArraySerializer(), new ByteArraySerializer());
+		KafkaAuditDestination        destination = createDestination(producer);
+
+		assertTrue(destination.log(new ArrayList<AuditEventBase>(createEvents(250))));
+
+		List<ProducerRecord<byte[], byte[]>> records = producer.history();
+		List<AuthzAuditEvent>                events  = new ArrayList<AuthzAuditEvent>();
+
+		assertEquals(3, records.size());
+
+		for (ProducerRecord<byte[], byte[]> record : records) {
+			assertEquals("audits", record.topic());
+
+			events.addAll(AuthzAuditEventEnvelope.decode(record.value()));
+		}
+
+		assertEquals(250, events.size());
+
+		for (int i = 0; i < events.size(); i++) {
+			assertEquals(i + 1, events.get(i).getSeqNum());
+			assertEquals("RangerAudit", events.get(i).getLogType());
+		}
+
+		assertEquals(250, destination.getTotalSuccessCount());
+
+		destination.stop();
+	}
+
+	@Test
+	public void testSendFailureIsReported() throws Exception {
+		final MockProducer<byte[], byte[]> producer    = new MockProducer<byte[], byte[]>(false, new ByteArraySerializer(), new ByteArraySerializer());
+		final KafkaAuditDestination        destination = createDestination(producer);
+		final Collection<AuditEventBase>   events      = new ArrayList<AuditEventBase>(createEvents(250));
+		ExecutorService                    executor    = Executors.newSingleThreadExecutor();
+
+		try {
+			Future<Boolean> result = executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					return destination.log(events);
+				}
+			});
+
+			// acknowledge the first envelope, fail the others
+			while (!producer.completeNext()) {
+				Thread.sleep(1);
+			}
+
+			while (!result.isDone()) {
+				producer.errorNext(new RuntimeException("broker not available"));
+				Thread.sleep(1);
+			}
+
+			assertFalse(result.get());
+			assertEquals(0, destination.getTotalSuccessCount());
+			assertEquals(250, destination.getTotalDeferredCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private KafkaAuditDestination createDestination(MockProducer<byte[], byte[]> producer) {
+		Properties props = new Properties();
+
+		props.put(BASE_PROP_NAME + "." + KafkaAuditDestination.PROP_TOPIC_NAME, "audits");
+		props.put(BASE_PROP_NAME + "." + KafkaAuditDestination.PROP_ENVELOPE_MAX_EVENTS, "100");
+		props.put(BASE_PROP_NAME + "." + KafkaAuditDestination.PROP_SEND_TIMEOUT_MS, "10000");
+
+		KafkaAuditDestination ret = new KafkaAuditDestination(producer);
+
+		ret.init(props, BASE_PROP_NAME);
+		ret.start();
+
+		return ret;
+	}
+
+	private List<AuthzAuditEvent> createEvents(int count) {
+		List<AuthzAuditEvent> ret       = new ArrayList<AuthzAuditEvent>(count);
+		long                  startTime = System.currentTimeMillis();
+
+		for (int i = 0; i < count; i++) {
+			AuthzAuditEvent event = new AuthzAuditEvent();
+			HashSet<String> tags  = new HashSet<String>();
+
+			tags.add("PII");
+
+			event.setSeqNum(++seqNum);
+			event.setRepositoryType(3);
+			event.setRepositoryName("hivedev");
+			event.setClusterName("cl1");
+			event.setAgentHostname("hs2-node1.example.com");
+			event.setAgentId("hiveServer2");
+			event.setUser("user" + (i % 10));
+			event.setAccessType("SELECT");
+			event.setAction("select");
+			event.setResourcePath("db1/tbl" + (i % 50) + "/col" + (i % 7));
+			event.setResourceType("@column");
+			event.setAccessResult((short) (i % 5 == 0 ? 0 : 1));
+			event.setPolicyId(i % 5 == 0 ? -1 : 42);
+			event.setAclEnforcer("ranger-acl");
+			event.setClientIP("10.0.0." + (i % 20));
+			event.setRequestData("select col" + (i % 7) + " from db1.tbl" + (i % 50));
+			event.setEventTime(new Date(startTime + i * 3));
+			event.setEventId(MiscUtil.generateUniqueId());
+			event.setTags(tags);
+
+			ret.add(event);
+		}
+
+		return ret;
+	}
+}
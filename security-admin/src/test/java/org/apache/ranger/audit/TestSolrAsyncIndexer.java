@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ranger.audit.destination.SolrAuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.queue.AuditBatchQueue;
+import org.apache.ranger.audit.queue.AuditSpool;
+import org.apache.ranger.audit.utils.SolrAsyncIndexer;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient.RemoteSolrException;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+
+public class TestSolrAsyncIndexer {
+
+	@Test
+	public void testBatchesBySizeAndTime() throws Exception {
+		StubSolr         solr    = new StubSolr();
+		SolrAsyncIndexer indexer = new SolrAsyncIndexer("test", solr, solr, 100, 300, 2, 1000, 10);
+
+		indexer.start();
+
+		assertTrue(offer(indexer, 250));
+
+		// two full batches right away; the rest once the batch interval elapses
+		assertTrue(solr.waitForSuccessCount(200, 250));
+		assertTrue(solr.waitForSuccessCount(250, 2000));
+
+		assertEquals(3, solr.batchSizes.size());
+		assertEquals(Integer.valueOf(50), solr.batchSizes.get(2));
+
+		// flush sends a partial batch without waiting for the interval
+		assertTrue(offer(indexer, 10));
+		assertTrue(indexer.flush(200));
+		assertEquals(260, solr.successCount.get());
+		assertEquals(0, indexer.getPendingCount());
+
+		indexer.stop(1000);
+	}
+
+	@Test
+	public void testBackpressure() throws Exception {
+		StubSolr         solr    = new StubSolr();
+		SolrAsyncIndexer indexer = new SolrAsyncIndexer("test", solr, solr, 100, 10, 2, 300, 10);
+
+		solr.blockSends = new CountDownLatch(1);
+
+		indexer.start();
+
+		assertTrue(offer(indexer, 300));
+
+		// 2 batches in flight, 1 queued: no space for more
+		assertFalse(offer(indexer, 1));
+		assertEquals(2, indexer.getInFlightCount());
+		assertEquals(300, indexer.getPendingCount());
+
+		solr.blockSends.countDown();
+
+		assertTrue(offer(indexer, 1));
+		assertTrue(indexer.flush(1000));
+		assertEquals(301, solr.successCount.get());
+
+		indexer.stop(1000);
+	}
+
+	@Test
+	public void testRetryAndFailure() throws Exception {
+		StubSolr         solr    = new StubSolr();
+		SolrAsyncIndexer indexer = new SolrAsyncIndexer("test", solr, solr, 10, 10, 1, 100, 10);
+
+		indexer.start();
+
+		// transient errors are retried
+		solr.transientErrors.set(3);
+
+		assertTrue(offer(indexer, 10));
+		assertTrue(indexer.flush(1000));
+		assertEquals(10, solr.successCount.get());
+		assertEquals(4, solr.sendCount.get());
+
+		// as are 5xx errors from the Solr server
+		solr.serverErrors.set(2);
+
+		assertTrue(offer(indexer, 10));
+		assertTrue(indexer.flush(1000));
+		assertEquals(20, solr.successCount.get());
+		assertEquals(7, solr.sendCount.get());
+
+		// other errors reported by Solr are not
+		solr.solrError = true;
+
+		assertTrue(offer(indexer, 10));
+		assertTrue(indexer.flush(1000));
+		assertEquals(10, solr.failureCount.get());
+		assertEquals(8, solr.sendCount.get());
+
+		// unsent events are reported as failed on stop
+		solr.solrError = false;
+		solr.transientErrors.set(Integer.MAX_VALUE);
+
+		assertTrue(offer(indexer, 5));
+
+		indexer.stop(100);
+
+		assertEquals(15, solr.failureCount.get());
+		assertFalse(offer(indexer, 1));
+	}
+
+	@Test
+	public void testFailedBatchesAreStashedToSpool() throws Exception {
+		SolrClient client = mock(SolrClient.class);
+
+		when(client.add(anyCollection()))
+				.thenThrow(new RemoteSolrException("solr1", 400, "bad document", null))
+				.thenThrow(new RemoteSolrException("solr1", 503, "service unavailable", null))
+				.thenReturn(new UpdateResponse())
+				.thenThrow(new RemoteSolrException("solr1", 503, "service unavailable", null));
+
+		SolrAuditDestination destination = createDestination(client);
+		SpoolingQueue        queue       = new SpoolingQueue(destination);
+
+		destination.start();
+
+		// the batch rejected by Solr goes to the spool of the queue
+		assertTrue(destination.log(createEvents(10)));
+		destination.flush();
+
+		assertEquals(10, queue.spool.events.size());
+		assertEquals(10, queue.getTotalStashedCount());
+
+		// the 503 is retried
+		assertTrue(destination.log(createEvents(10)));
+		destination.flush();
+
+		assertEquals(10, destination.getTotalSuccessCount());
+		assertEquals(10, queue.spool.events.size());
+
+		// the batch still being retried on stop goes to the spool too
+		assertTrue(destination.log(createEvents(10)));
+
+		destination.stop();
+
+		assertEquals(20, queue.spool.events.size());
+		assertEquals(0, destination.getTotalFailedCount());
+	}
+
+	private static SolrAuditDestination createDestination(SolrClient client) {
+		String     propPrefix = "xasecure.audit.destination.solr";
+		Properties props      = new Properties();
+
+		props.put(propPrefix + "." + SolrAuditDestination.PROP_SOLR_ASYNC_ENABLED, "true");
+		props.put(propPrefix + "." + SolrAuditDestination.PROP_SOLR_ASYNC_BATCH_SIZE, "10");
+		props.put(propPrefix + "." + SolrAuditDestination.PROP_SOLR_ASYNC_RETRY_INTERVAL_MS, "10");
+		props.put(propPrefix + "." + SolrAuditDestination.PROP_SOLR_ASYNC_DRAIN_TIMEOUT_MS, "200");
+
+		SolrAuditDestination ret = new SolrAuditDestination(client);
+
+		ret.init(props, propPrefix);
+
+		return ret;
+	}
+
+	private static List<AuditEventBase> createEvents(int count) {
+		List<AuditEventBase> ret = new ArrayList<AuditEventBase>(count);
+
+		for (int i = 0; i < count; i++) {
+			AuthzAuditEvent event = new AuthzAuditEvent();
+
+			event.setEventId(MiscUtil.generateUniqueId());
+			event.setUser("user" + i);
+
+			ret.add(event);
+		}
+
+		return ret;
+	}
+
+	private static boolean offer(SolrAsyncIndexer indexer, int count) throws InterruptedException {
+		List<AuditEventBase>    events = new ArrayList<AuditEventBase>(count);
+		List<SolrInputDocument> docs   = new ArrayList<SolrInputDocument>(count);
+
+		for (int i = 0; i < count; i++) {
+			AuthzAuditEvent   event = new AuthzAuditEvent();
+			SolrInputDocument doc   = new SolrInputDocument();
+
+			event.setEventId("event-" + i);
+			doc.addField("id", event.getEventId());
+
+			events.add(event);
+			docs.add(doc);
+		}
+
+		return indexer.offer(events, docs, 50);
+	}
+
+	// Local stub of Solr
+	private static class StubSolr implements SolrAsyncIndexer.BatchSender, SolrAsyncIndexer.BatchListener {
+		final List<Integer> batchSizes      = new CopyOnWriteArrayList<Integer>();
+		final AtomicInteger sendCount       = new AtomicInteger();
+		final AtomicInteger successCount    = new AtomicInteger();
+		final AtomicInteger failureCount    = new AtomicInteger();
+		final AtomicInteger transientErrors = new AtomicInteger();
+		final AtomicInteger serverErrors    = new AtomicInteger();
+
+		volatile CountDownLatch blockSends = null;
+		volatile boolean        solrError  = false;
+
+		@Override
+		public void send(List<SolrInputDocument> docs) throws Exception {
+			CountDownLatch latch = blockSends;
+
+			if (latch != null) {
+				latch.await(10, TimeUnit.SECONDS);
+			}
+
+			sendCount.incrementAndGet();
+
+			if (transientErrors.get() > 0) {
+				transientErrors.decrementAndGet();
+
+				throw new IOException("Solr unreachable");
+			}
+
+			if (serverErrors.get() > 0) {
+				serverErrors.decrementAndGet();
+
+				throw new RemoteSolrException("solr1", 503, "service unavailable", null);
+			}
+
+			if (solrError) {
+				throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "bad document");
+			}
+
+			batchSizes.add(docs.size());
+		}
+
+		@Override
+		public void onSuccess(List<AuditEventBase> events, long latencyMs) {
+			successCount.addAndGet(events.size());
+		}
+
+		@Override
+		public void onFailure(List<AuditEventBase> events, Throwable excp) {
+			failureCount.addAndGet(events.size());
+		}
+
+		boolean waitForSuccessCount(int count, long timeoutMs) throws InterruptedException {
+			long endTime = System.currentTimeMillis() + timeoutMs;
+
+			while (successCount.get() < count && System.currentTimeMillis() < endTime) {
+				Thread.sleep(5);
+			}
+
+			return successCount.get() >= count;
+		}
+	}
+
+	// Batch queue with an in-memory file spool, not started: the destination is driven directly
+	private static class SpoolingQueue extends AuditBatchQueue {
+		final MemorySpool spool = new MemorySpool();
+
+		SpoolingQueue(SolrAuditDestination destination) {
+			super(destination);
+
+			fileSpooler        = spool;
+			fileSpoolerEnabled = true;
+		}
+	}
+
+	private static class MemorySpool implements AuditSpool {
+		final List<AuditEventBase> events = new CopyOnWriteArrayList<AuditEventBase>();
+
+		@Override
+		public boolean init(Properties props, String basePropertyName) {
+			return true;
+		}
+
+		@Override
+		public void start() {
+		}
+
+		@Override
+		public void stop() {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public boolean isPending() {
+			return !events.isEmpty();
+		}
+
+		@Override
+		public long getLastAttemptTimeDelta() {
+			return 0;
+		}
+
+		@Override
+		public void stashLogs(AuditEventBase event) {
+			events.add(event);
+		}
+
+		@Override
+		public void stashLogs(Collection<AuditEventBase> events) {
+			this.events.addAll(events);
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.ranger.plugin.store.ServiceStore;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestRangerServicePoliciesCache {
+
+	@Test
+	public void testConcurrentLoadsOfServiceShareOneDbLoad() throws Exception {
+		final int            requestCount    = 10;
+		final String         serviceName     = "single_flight_svc";
+		final CountDownLatch loadStarted     = new CountDownLatch(1);
+		final CountDownLatch requestsStarted = new CountDownLatch(requestCount);
+		final CountDownLatch finishLoad      = new CountDownLatch(1);
+		final ServiceStore   serviceStore    = Mockito.mock(ServiceStore.class);
+		final List<Thread>   threads         = Collections.synchronizedList(new ArrayList<Thread>());
+
+		Mockito.when(serviceStore.getServicePolicyVersion(serviceName)).thenReturn(1L);
+		Mockito.when(serviceStore.getServicePolicies(serviceName)).thenAnswer(new Answer<ServicePolicies>() {
+			@Override
+			public ServicePolicies answer(InvocationOnMock invocation) throws Throwable {
+				loadStarted.countDown();
+				finishLoad.await(30, TimeUnit.SECONDS);
+
+				return TestRangerServicePoliciesWriter.createServicePolicies(serviceName, 1L);
+			}
+		});
+
+		final RangerServicePoliciesCache cache    = RangerServicePoliciesCache.getInstance();
+		ExecutorService                  executor = Executors.newFixedThreadPool(requestCount, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread ret = new Thread(runnable);
+
+				threads.add(ret);
+
+				return ret;
+			}
+		});
+
+		try {
+			List<Future<ServicePolicies>> results = new ArrayList<Future<ServicePolicies>>();
+
+			for (int i = 0; i < requestCount; i++) {
+				results.add(executor.submit(new Callable<ServicePolicies>() {
+					@Override
+					public ServicePolicies call() throws Exception {
+						requestsStarted.countDown();
+
+						return cache.getServicePolicies(serviceName, 1L, serviceStore);
+					}
+				}));
+			}
+
+			assertTrue(loadStarted.await(30, TimeUnit.SECONDS));
+			assertTrue(requestsStarted.await(30, TimeUnit.SECONDS));
+
+			// requests for other services must not wait for the in-flight load
+			ServiceStore otherServiceStore = Mockito.mock(ServiceStore.class);
+
+			Mockito.when(otherServiceStore.getServicePolicyVersion("other_svc")).thenReturn(5L);
+			Mockito.when(otherServiceStore.getServicePolicies("other_svc")).thenReturn(TestRangerServicePoliciesWriter.createServicePolicies("other_svc", 5L));
+
+			ServicePolicies otherServicePolicies = cache.getServicePolicies("other_svc", 2L, otherServiceStore);
+
+			assertEquals(Long.valueOf(5L), otherServicePolicies.getPolicyVersion());
+			Mockito.verify(otherServiceStore, Mockito.times(1)).getServicePolicyVersion("other_svc");
+
+			// finish the load only after all other requests are waiting for it
+			waitUntilAllWaiting(threads, requestCount);
+			finishLoad.countDown();
+
+			ServicePolicies first = results.get(0).get(30, TimeUnit.SECONDS);
+
+			assertNotNull(first);
+
+			for (Future<ServicePolicies> result : results) {
+				assertSame(first, result.get(30, TimeUnit.SECONDS));
+			}
+
+			// requests that waited used the policies loaded by the in-flight request, without checking the db again
+			Mockito.verify(serviceStore, Mockito.times(1)).getServicePolicyVersion(serviceName);
+			Mockito.verify(serviceStore, Mockito.times(1)).getServicePolicies(serviceName);
+		} finally {
+			finishLoad.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	// waits until each thread is blocked in a timed wait: the loading thread on finishLoad, others on the service's lock
+	private static void waitUntilAllWaiting(List<Thread> threads, int threadCount) throws Exception {
+		long timeoutAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+
+		while (true) {
+			int waitingCount = 0;
+
+			synchronized (threads) {
+				for (Thread thread : threads) {
+					if (thread.getState() == Thread.State.TIMED_WAITING) {
+						waitingCount++;
+					}
+				}
+			}
+
+			if (waitingCount == threadCount) {
+				break;
+			}
+
+			assertTrue("timed out waiting for requests to block on the in-flight load", System.currentTimeMillis() < timeoutAt);
+
+			Thread.yield();
+		}
+	}
+
+	@Test
+	public void testCompressedPoliciesReusedUntilVersionChanges() throws Exception {
+		final String               serviceName  = "compressed_policies_svc";
+		final ServiceStore         serviceStore = Mockito.mock(ServiceStore.class);
+		RangerServicePoliciesCache cache        = RangerServicePoliciesCache.getInstance();
+
+		Mockito.when(serviceStore.getServicePolicyVersion(serviceName)).thenReturn(1L);
+		Mockito.when(serviceStore.getServicePolicies(serviceName)).thenReturn(TestRangerServicePoliciesWriter.createServicePolicies(serviceName, 1L));
+
+		ServicePolicies policies1       = cache.getServicePoliciesForDownload(serviceName, cache.getServicePolicies(serviceName, 1L, serviceStore));
+		byte[]          compressedJson1 = cache.getCompressedServicePolicies(policies1);
+
+		assertNotNull(compressedJson1);
+
+		// same policy-version: the policies are serialized and compressed only once
+		ServicePolicies policies1Again = cache.getServicePoliciesForDownload(serviceName, cache.getServicePolicies(serviceName, 1L, serviceStore));
+
+		assertSame(policies1, policies1Again);
+		assertSame(compressedJson1, cache.getCompressedServicePolicies(policies1Again));
+		Mockito.verify(serviceStore, Mockito.times(1)).getServicePolicies(serviceName);
+
+		// new policy-version: compressed form is rebuilt from the new policies
+		Mockito.when(serviceStore.getServicePolicyVersion(serviceName)).thenReturn(2L);
+		Mockito.when(serviceStore.getServicePolicies(serviceName)).thenReturn(TestRangerServicePoliciesWriter.createServicePolicies(serviceName, 2L));
+
+		ServicePolicies policies2       = cache.getServicePoliciesForDownload(serviceName, cache.getServicePolicies(serviceName, 1L, serviceStore));
+		byte[]          compressedJson2 = cache.getCompressedServicePolicies(policies2);
+
+		assertNotNull(compressedJson2);
+		assertNotSame(compressedJson1, compressedJson2);
+		assertEquals(Long.valueOf(2L), TestRangerServicePoliciesWriter.readServicePolicies(new GZIPInputStream(new ByteArrayInputStream(compressedJson2))).getPolicyVersion());
+
+		// compressed form of the earlier version is no longer returned
+		assertNull(cache.getCompressedServicePolicies(policies1));
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.store.ServiceStore;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.sun.jersey.api.core.DefaultResourceConfig;
+import com.sun.jersey.api.core.ResourceConfig;
+import com.sun.jersey.api.json.JSONConfiguration;
+import com.sun.jersey.core.header.OutBoundHeaders;
+import com.sun.jersey.json.impl.provider.entity.JacksonProviderProxy;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerServicePoliciesWriter {
+	@InjectMocks
+	RangerServicePoliciesWriter writer = new RangerServicePoliciesWriter();
+
+	@Mock
+	HttpHeaders requestHeaders;
+
+	@Test
+	public void test_gzipAccepted() throws Exception {
+		ServicePolicies                servicePolicies = getCachedServicePolicies("writer_gzip_svc", 1L);
+		MultivaluedMap<String, Object> responseHeaders = new OutBoundHeaders();
+
+		setAcceptEncoding("deflate, gzip");
+
+		byte[] body = write(servicePolicies, responseHeaders);
+
+		// cached compressed form is written as is
+		assertEquals("gzip", responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(HttpHeaders.ACCEPT_ENCODING, responseHeaders.getFirst(HttpHeaders.VARY));
+		assertArrayEquals(RangerServicePoliciesCache.getInstance().getCompressedServicePolicies(servicePolicies), body);
+		assertEquals(Long.valueOf(1L), readServicePolicies(new GZIPInputStream(new ByteArrayInputStream(body))).getPolicyVersion());
+	}
+
+	@Test
+	public void test_identity() throws Exception {
+		ServicePolicies                servicePolicies = getCachedServicePolicies("writer_identity_svc", 2L);
+		MultivaluedMap<String, Object> responseHeaders = new OutBoundHeaders();
+
+		setAcceptEncoding("identity");
+
+		byte[] body = write(servicePolicies, responseHeaders);
+
+		assertNull(responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(Long.valueOf(2L), readServicePolicies(new ByteArrayInputStream(body)).getPolicyVersion());
+	}
+
+	@Test
+	public void test_gzipRefused() throws Exception {
+		ServicePolicies                servicePolicies = getCachedServicePolicies("writer_gzip_refused_svc", 3L);
+		MultivaluedMap<String, Object> responseHeaders = new OutBoundHeaders();
+
+		setAcceptEncoding("gzip;q=0, identity");
+
+		byte[] body = write(servicePolicies, responseHeaders);
+
+		assertNull(responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(Long.valueOf(3L), readServicePolicies(new ByteArrayInputStream(body)).getPolicyVersion());
+	}
+
+	@Test
+	public void test_noAcceptEncoding() throws Exception {
+		ServicePolicies                servicePolicies = getCachedServicePolicies("writer_no_accept_encoding_svc", 4L);
+		MultivaluedMap<String, Object> responseHeaders = new OutBoundHeaders();
+
+		Mockito.when(requestHeaders.getRequestHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn(null);
+
+		byte[] body = write(servicePolicies, responseHeaders);
+
+		assertNull(responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(Long.valueOf(4L), readServicePolicies(new ByteArrayInputStream(body)).getPolicyVersion());
+	}
+
+	@Test
+	public void test_notCached() throws Exception {
+		ServicePolicies                servicePolicies = createServicePolicies("writer_not_cached_svc", 5L);
+		MultivaluedMap<String, Object> responseHeaders = new OutBoundHeaders();
+
+		// policies not from the cache are serialized for each request, and not compressed
+		assertNull(RangerServicePoliciesCache.getInstance().getCompressedServicePolicies(servicePolicies));
+
+		byte[] body = write(servicePolicies, responseHeaders);
+
+		assertNull(responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(Long.valueOf(5L), readServicePolicies(new ByteArrayInputStream(body)).getPolicyVersion());
+	}
+
+	@Test
+	public void test_sameAsJerseyProvider() throws Exception {
+		String          serviceName = "writer_jersey_svc";
+		ServicePolicies source      = createServicePolicies(serviceName, 6L);
+		RangerPolicy    policy      = new RangerPolicy(serviceName, "policy1", null, null, "description1", null, null);
+
+		// a date and fields left null, which mappers could write differently
+		policy.setId(1L);
+		policy.setCreateTime(new Date(1500000000000L));
+		source.setPolicyUpdateTime(new Date(1500000000000L));
+		source.getPolicies().add(policy);
+
+		ServiceStore serviceStore = Mockito.mock(ServiceStore.class);
+
+		Mockito.when(serviceStore.getServicePolicyVersion(serviceName)).thenReturn(6L);
+		Mockito.when(serviceStore.getServicePolicies(serviceName)).thenReturn(source);
+
+		RangerServicePoliciesCache cache           = RangerServicePoliciesCache.getInstance();
+		ServicePolicies            servicePolicies = cache.getServicePoliciesForDownload(serviceName, cache.getServicePolicies(serviceName, 1L, serviceStore));
+
+		setAcceptEncoding("identity");
+
+		// cached, pre-serialized policies and policies serialized per request are both written as Jersey would
+		assertNotNull(cache.getCompressedServicePolicies(servicePolicies));
+		assertEquals(writeWithJersey(servicePolicies), new String(write(servicePolicies, new OutBoundHeaders()), "UTF-8"));
+		assertEquals(writeWithJersey(source), new String(write(source, new OutBoundHeaders()), "UTF-8"));
+	}
+
+	private void setAcceptEncoding(String acceptEncoding) {
+		Mockito.when(requestHeaders.getRequestHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn(Collections.singletonList(acceptEncoding));
+	}
+
+	private byte[] write(ServicePolicies servicePolicies, MultivaluedMap<String, Object> responseHeaders) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		writer.writeTo(servicePolicies, ServicePolicies.class, ServicePolicies.class, null, MediaType.APPLICATION_JSON_TYPE, responseHeaders, out);
+
+		return out.toByteArray();
+	}
+
+	// writes as Jersey's JSON provider, with the POJOMappingFeature enabled in web.xml, did before RangerServicePoliciesWriter
+	private static String writeWithJersey(ServicePolicies servicePolicies) throws Exception {
+		ResourceConfig       config   = new DefaultResourceConfig();
+		JacksonProviderProxy provider = new JacksonProviderProxy();
+
+		config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
+		provider.setFeaturesAndProperties(config);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		provider.writeTo(servicePolicies, ServicePolicies.class, ServicePolicies.class, new Annotation[0], MediaType.APPLICATION_JSON_TYPE, new OutBoundHeaders(), out);
+
+		return new String(out.toByteArray(), "UTF-8");
+	}
+
+	// returns policies as sent to plugins by ServiceREST, after loading them into the cache
+	static ServicePolicies getCachedServicePolicies(String serviceName, Long policyVersion) throws Exception {
+		ServiceStore serviceStore = Mockito.mock(ServiceStore.class);
+
+		Mockito.when(serviceStore.getServicePolicyVersion(serviceName)).thenReturn(policyVersion);
+		Mockito.when(serviceStore.getServicePolicies(serviceName)).thenReturn(createServicePolicies(serviceName, policyVersion));
+
+		RangerServicePoliciesCache cache           = RangerServicePoliciesCache.getInstance();
+		ServicePolicies            servicePolicies = cache.getServicePolicies(serviceName, 1L, serviceStore);
+		ServicePolicies            ret             = cache.getServicePoliciesForDownload(serviceName, servicePolicies);
+
+		assertNotNull(ret);
+
+		return ret;
+	}
+
+	static ServicePolicies readServicePolicies(InputStream in) throws Exception {
+		try {
+			return new ObjectMapper().readValue(in, ServicePolicies.class);
+		} finally {
+			in.close();
+		}
+	}
+
+	static ServicePolicies createServicePolicies(String serviceName, Long policyVersion) {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName(serviceName);
+		ret.setPolicyVersion(policyVersion);
+		ret.setPolicies(new ArrayList<RangerPolicy>());
+
+		return ret;
+	}
+}